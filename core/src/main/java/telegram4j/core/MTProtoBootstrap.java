@@ -43,6 +43,12 @@ import telegram4j.mtproto.auth.DhPrimeChecker;
 import telegram4j.mtproto.auth.DhPrimeCheckerCache;
 import telegram4j.mtproto.client.*;
 import telegram4j.mtproto.resource.TcpClientResources;
+import telegram4j.mtproto.file.FileReferenceId;
+import telegram4j.mtproto.service.DiskMediaCache;
+import telegram4j.mtproto.service.DocumentIndex;
+import telegram4j.mtproto.service.DocumentIndexCache;
+import telegram4j.mtproto.service.FileDocumentIndex;
+import telegram4j.mtproto.service.MediaCache;
 import telegram4j.mtproto.service.ServiceHolder;
 import telegram4j.mtproto.store.FileStoreLayout;
 import telegram4j.mtproto.store.StoreLayout;
@@ -50,6 +56,7 @@ import telegram4j.mtproto.store.StoreLayoutImpl;
 import telegram4j.mtproto.transport.IntermediateTransport;
 import telegram4j.mtproto.transport.Transport;
 import telegram4j.mtproto.transport.TransportFactory;
+import telegram4j.mtproto.util.RandomSource;
 import telegram4j.tl.*;
 import telegram4j.tl.auth.Authorization;
 import telegram4j.tl.auth.BaseAuthorization;
@@ -63,6 +70,7 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
@@ -93,7 +101,7 @@ public final class MTProtoBootstrap {
     private final AuthorizationHandler authHandler;
     private List<ResponseTransformer> responseTransformers;
 
-    private TransportFactory transportFactory = dc -> new IntermediateTransport(true);
+    private TransportFactory transportFactory;
     private BiFunction<MTProtoOptions, MTProtoClient.Options, ClientFactory> clientFactory = DefaultClientFactory::new;
 
     @Nullable
@@ -105,16 +113,32 @@ public final class MTProtoBootstrap {
             new DefaultMTProtoClientGroup(new DefaultMTProtoClientGroup.Options(options));
     private DhPrimeChecker dhPrimeChecker;
     private PublicRsaKeyRegister publicRsaKeyRegister;
+    private RandomSource randomSource;
     private DcOptions dcOptions;
     private InitConnectionParams initConnectionParams;
     private StoreLayout storeLayout;
     private EventDispatcher eventDispatcher;
     private DataCenter dataCenter;
-    private int gzipCompressionSizeThreshold = 16 * 1024;
+    private int gzipCompressionSizeThreshold = DefaultCompressionPolicy.DEFAULT_SIZE_THRESHOLD;
+    private CompressionPolicy compressionPolicy;
     private TcpClientResources tcpClientResources;
     private UpdateDispatcher updateDispatcher;
     private Duration pingInterval = Duration.ofSeconds(10);
     private Duration authKeyLifetime = Duration.ofDays(1);
+    private WarmupPolicy warmupPolicy = WarmupPolicy.NONE;
+    @Nullable
+    private Duration writeCoalescingDelay;
+    @Nullable
+    private Executor decodeExecutor;
+    private int decodeOffloadThreshold = 64 * 1024;
+    @Nullable
+    private Executor handshakeExecutor;
+    private MetricsListener metricsListener = MetricsListener.NOOP;
+    @Nullable
+    private RequestScheduler requestScheduler;
+    @Nullable
+    private MediaCache mediaCache;
+    private DocumentIndex documentIndex;
     // Max backoff is 16 seconds
     private ReconnectionStrategy reconnectionStrategy = DefaultReconnectionStrategy.create(3, 5, Duration.ofSeconds(1));
 
@@ -139,16 +163,27 @@ public final class MTProtoBootstrap {
         this.clientManagerFactory = p.clientManagerFactory;
         this.dhPrimeChecker = p.dhPrimeChecker;
         this.publicRsaKeyRegister = p.publicRsaKeyRegister;
+        this.randomSource = p.randomSource;
         this.dcOptions = p.dcOptions;
         this.initConnectionParams = p.initConnectionParams;
         this.storeLayout = p.storeLayout;
         this.eventDispatcher = p.eventDispatcher;
         this.dataCenter = p.dataCenter;
         this.gzipCompressionSizeThreshold = p.gzipCompressionSizeThreshold;
+        this.compressionPolicy = p.compressionPolicy;
         this.tcpClientResources = p.tcpClientResources;
         this.updateDispatcher = p.updateDispatcher;
         this.pingInterval = p.pingInterval;
         this.authKeyLifetime = p.authKeyLifetime;
+        this.warmupPolicy = p.warmupPolicy;
+        this.writeCoalescingDelay = p.writeCoalescingDelay;
+        this.decodeExecutor = p.decodeExecutor;
+        this.decodeOffloadThreshold = p.decodeOffloadThreshold;
+        this.handshakeExecutor = p.handshakeExecutor;
+        this.metricsListener = p.metricsListener;
+        this.requestScheduler = p.requestScheduler;
+        this.mediaCache = p.mediaCache;
+        this.documentIndex = p.documentIndex;
         this.reconnectionStrategy = p.reconnectionStrategy;
         this.resultPublisher = p.resultPublisher;
         this.disposeResultPublisher = p.disposeResultPublisher;
@@ -185,7 +220,8 @@ public final class MTProtoBootstrap {
     /**
      * Sets TCP transport factory for all MTProto clients.
      * <p>
-     * If custom transport factory doesn't set, {@link IntermediateTransport} factory will be used as threshold.
+     * If custom transport factory doesn't set, {@link IntermediateTransport} factory will be used as threshold,
+     * wrapped to the {@link telegram4j.mtproto.transport.ObfuscatedTransport} for DCs which require obfuscation.
      *
      * @param transportFactory A new {@link Transport} factory for clients.
      * @return This builder.
@@ -289,13 +325,149 @@ public final class MTProtoBootstrap {
         return this;
     }
 
-    // Unused
+    /**
+     * Sets lifetime of temporary auth keys, which are used by upload and download clients
+     * according to perfect forward secrecy scheme. Keys are regenerated in background and
+     * replaced before expiration. By default, lifetime is 1 day.
+     *
+     * @param authKeyLifetime The lifetime of temporary keys or zero to use permanent keys.
+     * @return This builder.
+     * @throws IllegalArgumentException if {@code authKeyLifetime} is negative.
+     */
     public MTProtoBootstrap setAuthKeyLifetime(Duration authKeyLifetime) {
         requireArgument(!authKeyLifetime.isNegative());
         this.authKeyLifetime = authKeyLifetime;
         return this;
     }
 
+    /**
+     * Sets policy of media clients warmup, which are connected in parallel after authorization
+     * of main client. By default, media clients are created on demand.
+     *
+     * @param warmupPolicy A new warmup policy.
+     * @return This builder.
+     */
+    public MTProtoBootstrap setWarmupPolicy(WarmupPolicy warmupPolicy) {
+        this.warmupPolicy = Objects.requireNonNull(warmupPolicy);
+        return this;
+    }
+
+    /**
+     * Sets delay of outbound write coalescing, by default coalescing is disabled.
+     * <p>
+     * In this mode requests are not flushed on send, but accumulated and packed into containers,
+     * which are flushed once per batch after specified delay. With zero delay batch is flushed
+     * after processing of already queued writes of the event loop.
+     *
+     * @param writeCoalescingDelay The delay of batch flushing or {@code null} to disable coalescing.
+     * @return This builder.
+     * @throws IllegalArgumentException if {@code writeCoalescingDelay} is negative.
+     */
+    public MTProtoBootstrap setWriteCoalescingDelay(@Nullable Duration writeCoalescingDelay) {
+        requireArgument(writeCoalescingDelay == null || !writeCoalescingDelay.isNegative(),
+                "writeCoalescingDelay must be positive or zero");
+        this.writeCoalescingDelay = writeCoalescingDelay;
+        return this;
+    }
+
+    /**
+     * Sets executor for decoding of large inbound messages, by default messages are decoded on the event loop.
+     * <p>
+     * Messages which are larger than {@link #setDecodeOffloadThreshold(int) threshold} will be deserialized
+     * and decompressed on this executor, while the order of their handling is preserved.
+     * It's recommended to use pool with bounded number of threads and queue,
+     * if executor rejects task message will be decoded on the event loop.
+     * Executor will not be disposed on client group close.
+     *
+     * @param decodeExecutor The executor for decoding or {@code null} to decode all messages on the event loop.
+     * @return This builder.
+     */
+    public MTProtoBootstrap setDecodeExecutor(@Nullable Executor decodeExecutor) {
+        this.decodeExecutor = decodeExecutor;
+        return this;
+    }
+
+    /**
+     * Sets size threshold for inbound messages which will be decoded outside the event loop,
+     * by default equals to 64KiB. Threshold is applicable only if {@link #setDecodeExecutor(Executor)} is set.
+     *
+     * @param decodeOffloadThreshold The new size threshold in bytes.
+     * @return This builder.
+     * @throws IllegalArgumentException if {@code decodeOffloadThreshold} is not positive.
+     */
+    public MTProtoBootstrap setDecodeOffloadThreshold(int decodeOffloadThreshold) {
+        requireArgument(decodeOffloadThreshold > 0, "decodeOffloadThreshold must be positive");
+        this.decodeOffloadThreshold = decodeOffloadThreshold;
+        return this;
+    }
+
+    /**
+     * Sets executor for CPU-heavy steps of auth key generation, such as factorization,
+     * RSA encryption, primality checks of DH prime and modular exponentiations.
+     * By default, {@link MTProtoOptions#defaultHandshakeExecutor() shared bounded pool} will be used.
+     * <p>
+     * If executor rejects task it will be computed on the event loop.
+     * Executor will not be disposed on client group close.
+     *
+     * @param handshakeExecutor The executor for handshake computations.
+     * @return This builder.
+     */
+    public MTProtoBootstrap setHandshakeExecutor(Executor handshakeExecutor) {
+        this.handshakeExecutor = Objects.requireNonNull(handshakeExecutor);
+        return this;
+    }
+
+    /**
+     * Sets listener of connection metrics of all clients, by default metrics are
+     * only collected to the {@link MTProtoClient#stats()}.
+     * Listener is invoked on the event loops, so it must not block.
+     *
+     * @param metricsListener The new listener of metrics.
+     * @return This builder.
+     */
+    public MTProtoBootstrap setMetricsListener(MetricsListener metricsListener) {
+        this.metricsListener = Objects.requireNonNull(metricsListener);
+        return this;
+    }
+
+    /**
+     * Sets scheduler of requests sent through the client group, by default {@link RequestScheduler#direct()}
+     * is used and requests are sent without limits. Pass {@link DefaultRequestScheduler} to limit rate of requests
+     * before the server responds with {@code FLOOD_WAIT_X} errors.
+     *
+     * @param requestScheduler The new request scheduler.
+     * @return This builder.
+     */
+    public MTProtoBootstrap setRequestScheduler(RequestScheduler requestScheduler) {
+        this.requestScheduler = Objects.requireNonNull(requestScheduler);
+        return this;
+    }
+
+    /**
+     * Sets cache of downloaded files, for example {@link DiskMediaCache}, by default files are not cached.
+     * Cached files are served by {@link MTProtoTelegramClient#downloadFile(FileReferenceId, long, int, boolean)}
+     * without requests to the media DC.
+     *
+     * @param mediaCache The new cache of downloaded files.
+     * @return This builder.
+     */
+    public MTProtoBootstrap setMediaCache(MediaCache mediaCache) {
+        this.mediaCache = Objects.requireNonNull(mediaCache);
+        return this;
+    }
+
+    /**
+     * Sets index of uploaded documents for deduplication of uploads, by default {@link DocumentIndexCache} is used.
+     * Use {@link FileDocumentIndex} to keep index after restart.
+     *
+     * @param documentIndex The new index of uploaded documents.
+     * @return This builder.
+     */
+    public MTProtoBootstrap setDocumentIndex(DocumentIndex documentIndex) {
+        this.documentIndex = Objects.requireNonNull(documentIndex);
+        return this;
+    }
+
     public MTProtoBootstrap setPingInterval(Duration pingInterval) {
         requireArgument(!pingInterval.isNegative());
         this.pingInterval = pingInterval;
@@ -369,9 +541,22 @@ public final class MTProtoBootstrap {
         return this;
     }
 
+    /**
+     * Sets source of randomness for message ids, padding, session ids and auth key generation,
+     * by default {@link RandomSource#create()} will be used.
+     *
+     * @param randomSource A new source of randomness.
+     * @return This builder.
+     */
+    public MTProtoBootstrap setRandomSource(RandomSource randomSource) {
+        this.randomSource = Objects.requireNonNull(randomSource);
+        return this;
+    }
+
     /**
      * Sets DH prime register with known primes, needed for auth key generation,
      * by default the common {@link DhPrimeCheckerCache#instance()} will be used.
+     * Use {@link telegram4j.mtproto.auth.FileDhPrimeChecker} to keep checked primes between restarts.
      *
      * @param dhPrimeChecker A new prime checker.
      * @return This builder.
@@ -414,6 +599,7 @@ public final class MTProtoBootstrap {
 
     /**
      * Sets size threshold for gzip packing mtproto queries, by default equals to 16KiB.
+     * This value is ignored if custom policy was set via {@link #setCompressionPolicy(CompressionPolicy)}.
      *
      * @throws IllegalArgumentException if {@code gzipCompressionSizeThreshold} is negative.
      * @param gzipCompressionSizeThreshold The new request's size threshold.
@@ -425,6 +611,18 @@ public final class MTProtoBootstrap {
         return this;
     }
 
+    /**
+     * Sets policy for gzip compression of mtproto queries, by default {@link DefaultCompressionPolicy}
+     * with threshold from {@link #setGzipCompressionSizeThreshold(int)} will be used.
+     *
+     * @param compressionPolicy The new compression policy.
+     * @return This builder.
+     */
+    public MTProtoBootstrap setCompressionPolicy(CompressionPolicy compressionPolicy) {
+        this.compressionPolicy = Objects.requireNonNull(compressionPolicy);
+        return this;
+    }
+
     /**
      * Sets client factory for creating mtproto clients, by default {@link DefaultClientFactory} is used.
      *
@@ -469,6 +667,9 @@ public final class MTProtoBootstrap {
     // Static context is required to avoid usages of fields
     private static Mono<MTProtoTelegramClient> connect(MTProtoBootstrap copy) {
         var storeLayout = copy.initStoreLayout();
+        long startTime = System.nanoTime();
+        // Durations of store initialization and main client authorization in nanos
+        long[] stageTimes = new long[2];
 
         // For first, load DC info if any
         return storeLayout.initialize()
@@ -482,6 +683,8 @@ public final class MTProtoBootstrap {
                 .zipWhen(dcOptions -> storeLayout.getDataCenter()
                         .switchIfEmpty(Mono.fromSupplier(() -> copy.initDataCenter(dcOptions))))
                 .flatMap(function((dcOptions, mainDc) -> {
+                    stageTimes[0] = System.nanoTime() - startTime;
+
                     var initConnectionRequest = InvokeWithLayer.<Config, InitConnection<Config, GetConfig>>builder()
                             .layer(TlInfo.LAYER)
                             .query(copy.initConnection())
@@ -489,14 +692,18 @@ public final class MTProtoBootstrap {
                     var responseTransformers = copy.responseTransformers == null
                             ? List.<ResponseTransformer>of()
                             : List.copyOf(copy.responseTransformers);
+                    var randomSource = copy.initRandomSource();
                     var clientOptions = new MTProtoClient.Options(
-                            copy.transportFactory, initConnectionRequest,
+                            copy.initTransportFactory(randomSource), initConnectionRequest,
                             copy.pingInterval, copy.reconnectionStrategy,
-                            copy.gzipCompressionSizeThreshold, responseTransformers, copy.authKeyLifetime);
+                            copy.initCompressionPolicy(), responseTransformers, copy.authKeyLifetime,
+                            copy.writeCoalescingDelay, copy.decodeOffloadThreshold);
                     var mtProtoOptions = new MTProtoOptions(
                             copy.initTcpClientResources(), copy.initPublicRsaKeyRegister(),
                             copy.initDhPrimeChecker(), storeLayout,
-                            copy.initResultPublisher(), copy.disposeResultPublisher);
+                            copy.initResultPublisher(), copy.disposeResultPublisher,
+                            randomSource, copy.decodeExecutor, copy.initHandshakeExecutor(),
+                            copy.metricsListener, copy.initRequestScheduler());
 
                     var clientFactory = copy.clientFactory.apply(mtProtoOptions, clientOptions);
 
@@ -516,8 +723,22 @@ public final class MTProtoBootstrap {
                                     updateDispatcher, mtProtoOptions));
 
                     return authorizeClient(clientManager, storeLayout, dcOptions, copy)
-                            .flatMap(selfId -> initializeClient(selfId, clientManager,
-                                    mtProtoOptions, defaultUpdatesPublisher, copy));
+                            .flatMap(selfId -> {
+                                stageTimes[1] = System.nanoTime() - startTime - stageTimes[0];
+
+                                return warmup(clientManager, copy.warmupPolicy)
+                                        .doOnSuccess(warmupTime -> {
+                                            if (log.isInfoEnabled()) {
+                                                log.info("Bootstrapped in {} (store: {}, main client: {}, warmup: {})",
+                                                        Duration.ofNanos(System.nanoTime() - startTime),
+                                                        Duration.ofNanos(stageTimes[0]), Duration.ofNanos(stageTimes[1]),
+                                                        warmupTime != null ? warmupTime
+                                                                : copy.warmupPolicy.isEmpty() ? "none" : "in background");
+                                            }
+                                        })
+                                        .then(Mono.defer(() -> initializeClient(selfId, clientManager,
+                                                mtProtoOptions, defaultUpdatesPublisher, copy)));
+                            });
                 }));
     }
 
@@ -544,6 +765,32 @@ public final class MTProtoBootstrap {
                         .then(Mono.error(e)));
     }
 
+    // Returns duration of warmup if it was awaited
+    private static Mono<Duration> warmup(MTProtoClientManager clientManager, WarmupPolicy policy) {
+        if (policy.isEmpty()) {
+            return Mono.empty();
+        }
+
+        var warmup = clientManager.warmup(policy)
+                .doOnNext(report -> {
+                    if (report.isReady()) {
+                        log.info("Warmed up {} media client(s) in {}", report.clients().size(), report.elapsed());
+                    } else {
+                        log.warn("Warmed up media clients with errors in {}: {}", report.elapsed(), report);
+                    }
+                    if (report.isReady() && log.isDebugEnabled()) {
+                        log.debug("Warmup breakdown: {}", report);
+                    }
+                });
+
+        if (policy.awaitCompletion()) {
+            return warmup.map(WarmupReport::elapsed);
+        }
+
+        warmup.subscribe(null, t -> log.error("Failed to warm up media clients", t));
+        return Mono.empty();
+    }
+
     private static Mono<Id> authorizeUser(MTProtoClientManager clientManager,
                                           StoreLayout storeLayout,
                                           MTProtoBootstrap copy) {
@@ -584,7 +831,8 @@ public final class MTProtoBootstrap {
 
         var mtProtoResources = new MTProtoResources(
                 options.storeLayout(), eventDispatcher, copy.defaultEntityParserFactory);
-        var serviceHolder = new ServiceHolder(clientManager, options.storeLayout());
+        var serviceHolder = new ServiceHolder(clientManager, options.storeLayout(),
+                copy.mediaCache, copy.initDocumentIndex());
 
         var onDisconnect = Sinks.<Void>empty();
         var telegramClient = new MTProtoTelegramClient(
@@ -739,6 +987,50 @@ public final class MTProtoBootstrap {
         return DhPrimeCheckerCache.instance();
     }
 
+    private RequestScheduler initRequestScheduler() {
+        if (requestScheduler != null) {
+            return requestScheduler;
+        }
+        return RequestScheduler.direct();
+    }
+
+    private DocumentIndex initDocumentIndex() {
+        if (documentIndex != null) {
+            return documentIndex;
+        }
+        return DocumentIndexCache.create();
+    }
+
+    private CompressionPolicy initCompressionPolicy() {
+        if (compressionPolicy != null) {
+            return compressionPolicy;
+        }
+        return DefaultCompressionPolicy.builder()
+                .sizeThreshold(gzipCompressionSizeThreshold)
+                .build();
+    }
+
+    private TransportFactory initTransportFactory(RandomSource randomSource) {
+        if (transportFactory != null) {
+            return transportFactory;
+        }
+        return TransportFactory.obfuscatedIfRequired(TransportFactory.intermediate(true), randomSource);
+    }
+
+    private Executor initHandshakeExecutor() {
+        if (handshakeExecutor != null) {
+            return handshakeExecutor;
+        }
+        return MTProtoOptions.defaultHandshakeExecutor();
+    }
+
+    private RandomSource initRandomSource() {
+        if (randomSource != null) {
+            return randomSource;
+        }
+        return RandomSource.create();
+    }
+
     private StoreLayout initStoreLayout() {
         if (storeLayout != null) {
             return storeLayout;
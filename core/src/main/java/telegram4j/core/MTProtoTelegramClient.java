@@ -15,8 +15,6 @@
  */
 package telegram4j.core;
 
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufAllocator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.annotation.Nullable;
@@ -50,8 +48,11 @@ import telegram4j.core.util.PeerId;
 import telegram4j.mtproto.DcId;
 import telegram4j.mtproto.client.MTProtoClientGroup;
 import telegram4j.mtproto.file.*;
+import telegram4j.mtproto.service.DownloadOptions;
+import telegram4j.mtproto.service.MediaCache;
 import telegram4j.mtproto.service.ServiceHolder;
 import telegram4j.mtproto.service.UploadOptions;
+import telegram4j.mtproto.service.UploadResult;
 import telegram4j.mtproto.service.UploadService;
 import telegram4j.mtproto.util.TlEntityUtil;
 import telegram4j.tl.*;
@@ -59,9 +60,6 @@ import telegram4j.tl.messages.AffectedMessages;
 import telegram4j.tl.request.bots.*;
 import telegram4j.tl.request.messages.ImmutableDeleteMessages;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
@@ -253,7 +251,7 @@ public final class MTProtoTelegramClient implements EntityRetriever {
                     int ps = UploadService.suggestPartSize(size, partSize);
                     return serviceHolder.getUploadService()
                             .saveFile(UploadOptions.builder()
-                                    .data(fromPath(path, ps, ByteBufAllocator.DEFAULT))
+                                    .file(path)
                                     .size(size)
                                     .partSize(ps)
                                     .name(filename)
@@ -271,6 +269,19 @@ public final class MTProtoTelegramClient implements EntityRetriever {
         return serviceHolder.getUploadService().saveFile(options);
     }
 
+    /**
+     * Request to upload file which will be sent as document. If {@link UploadOptions#isDeduplicate() deduplication}
+     * is enabled, uploading of already known document is skipped.
+     * Document sent with uploaded file can be indexed by {@link UploadService#addDocument(UploadResult, BaseDocument)}.
+     *
+     * @see UploadService#saveDocument(UploadOptions)
+     * @param options The options of uploading.
+     * @return A {@link Mono} emitting on successful completion {@link UploadResult} with uploaded file or known document.
+     */
+    public Mono<UploadResult> uploadDocument(UploadOptions options) {
+        return serviceHolder.getUploadService().saveDocument(options);
+    }
+
     /**
      * Request to download file by their reference from Telegram Media DC or
      * if file {@link Document#isWeb()} and haven't telegram-proxying try to directly download file by url.
@@ -331,6 +342,9 @@ public final class MTProtoTelegramClient implements EntityRetriever {
      *   <li>{@code (1024 * 1024) %  limit == 0}</li>
      * </ul>
      *
+     * <p> If {@link MTProtoBootstrap#setMediaCache(MediaCache) media cache} is set, cached files
+     * are read from disk, and files downloaded from zero offset are cached.
+     *
      * @see <a href="https://core.telegram.org/api/files#downloading-files">File Downloading</a>
      * @throws IllegalArgumentException If specified download parameters incorrect or if
      * {@code fileRefId} points to webfile and current authorized account is bot or file has no telegram proxying.
@@ -355,11 +369,48 @@ public final class MTProtoTelegramClient implements EntityRetriever {
                         .map(FilePart::ofWebFile);
             }
 
-            return serviceHolder.getUploadService().getFile(fileRefId, offset, limit, precise)
+            return serviceHolder.getUploadService()
+                    .getFile(fileRefId, offset, limit, precise, refresherFor(fileRefId))
                     .map(FilePart::ofFile);
         });
     }
 
+    /**
+     * Request to download file of known size to the local file using several download connections.
+     * Interrupted download can be continued by the same call, only missing ranges will be requested.
+     *
+     * @see UploadService#downloadFile(DownloadOptions)
+     * @param fileRefId The location of file.
+     * @param size The exact size of file, e.g. {@link Document#getSize()}.
+     * @param path The path to local file.
+     * @return A {@link Mono} completing after downloading of file.
+     */
+    public Mono<Void> downloadFile(FileReferenceId fileRefId, long size, Path path) {
+        return Mono.defer(() -> serviceHolder.getUploadService()
+                .downloadFile(DownloadOptions.builder()
+                        .location(fileRefId)
+                        .size(size)
+                        .file(path)
+                        .refresher(refresherFor(fileRefId))
+                        .build()));
+    }
+
+    // Files without context can't be refreshed, so the original error is more informative
+    @Nullable
+    private FileReferenceRefresher refresherFor(FileReferenceId fileRefId) {
+        return fileRefId.getContext().getType() != Context.Type.UNKNOWN ? this::refresh : null;
+    }
+
+    /**
+     * Request to download file with specified options.
+     *
+     * @param options The options of downloading.
+     * @return A {@link Mono} completing after downloading of file.
+     */
+    public Mono<Void> downloadFile(DownloadOptions options) {
+        return serviceHolder.getUploadService().downloadFile(options);
+    }
+
     /**
      * Request to delete messages in DM or group chats.
      *
@@ -927,30 +978,4 @@ public final class MTProtoTelegramClient implements EntityRetriever {
                 })
                 .map(Document::getFileReferenceId);
     }
-
-    private static Flux<ByteBuf> fromPath(Path path, int maxChunkSize, ByteBufAllocator allocator) {
-        return Flux.generate(() -> FileChannel.open(path), (fc, sink) -> {
-            ByteBuf buf = allocator.buffer();
-            try {
-                if (buf.writeBytes(fc, maxChunkSize) < 0) {
-                    buf.release();
-                    sink.complete();
-                } else {
-                    sink.next(buf);
-                }
-            } catch (IOException e) {
-                buf.release();
-                sink.error(e);
-            }
-            return fc;
-        }, MTProtoTelegramClient::closeFileChannel);
-    }
-
-    private static void closeFileChannel(FileChannel fc) {
-        try {
-            fc.close();
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
-    }
 }
@@ -89,14 +89,19 @@ public class DownloadBotExample {
                                 Path filePath = dir.resolve(t + ".file");
                                 log.info("| Downloading file {}", filePath);
 
-                                return Mono.usingWhen(Mono.fromCallable(() -> FileChannel.open(filePath, StandardOpenOption.WRITE, StandardOpenOption.CREATE)),
+                                // Files with known size can be downloaded by ranges in parallel
+                                Mono<Void> download = doc.getSize()
+                                        .map(size -> client.downloadFile(doc.getFileReferenceId(), size, filePath))
+                                        .orElseGet(() -> Mono.usingWhen(Mono.fromCallable(() -> FileChannel.open(filePath, StandardOpenOption.WRITE, StandardOpenOption.CREATE)),
                                                 fc -> client.downloadFile(doc.getFileReferenceId())
                                                         .flatMap(fp -> Mono.fromCallable(() -> fc.write(fp.getBytes().nioBuffer())))
                                                         .then(),
                                                 fc -> Mono.fromCallable(() -> {
                                                     fc.close();
                                                     return null;
-                                                }))
+                                                })));
+
+                                return download
                                         .then(Mono.fromRunnable(() -> log.info("| File downloaded {} ({}s)", filePath,
                                                 (System.currentTimeMillis() - t) / 1000f)));
                             })
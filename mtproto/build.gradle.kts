@@ -1,3 +1,7 @@
+plugins {
+    alias(libs.plugins.jmh)
+}
+
 dependencies {
     api(libs.tl.parser) { isChanging = true }
     api(libs.reactor.core)
@@ -19,3 +23,9 @@ dependencies {
 
 description = "TCP client written with Reactor Netty for the Telegram API"
 extra["displayName"] = "Telegram4J MTProto"
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    // Benchmarks share fixtures with tests
+    includeTests.set(true)
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.*;
+import telegram4j.mtproto.DcId;
+import telegram4j.mtproto.DcOptions;
+import telegram4j.mtproto.PublicRsaKeyRegister;
+import telegram4j.mtproto.auth.AuthKey;
+import telegram4j.mtproto.auth.DhPrimeCheckerCache;
+import telegram4j.mtproto.client.DefaultCompressionPolicy;
+import telegram4j.mtproto.client.DefaultReconnectionStrategy;
+import telegram4j.mtproto.client.MTProtoClient;
+import telegram4j.mtproto.client.MTProtoOptions;
+import telegram4j.mtproto.client.MetricsListener;
+import telegram4j.mtproto.client.RequestScheduler;
+import telegram4j.mtproto.resource.TcpClientResources;
+import telegram4j.mtproto.store.StoreLayoutImpl;
+import telegram4j.mtproto.transport.IntermediateTransport;
+import telegram4j.mtproto.util.RandomSource;
+import telegram4j.tl.InputPeerSelf;
+import telegram4j.tl.TlInfo;
+import telegram4j.tl.api.TlMethod;
+import telegram4j.tl.request.ImmutableInitConnection;
+import telegram4j.tl.request.ImmutableInvokeWithLayer;
+import telegram4j.tl.request.help.GetConfig;
+import telegram4j.tl.request.messages.SendMessage;
+import telegram4j.tl.request.upload.ImmutableSaveFilePart;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Measures encoding of outbound requests by {@link MTProtoEncryption}:
+ * serialization, compression, padding and encryption.
+ * Allocation rate can be observed with {@code -prof gc} profiler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutboundEncodingBenchmark {
+
+    MTProtoClientImpl client;
+    EmbeddedChannel channel;
+
+    TlMethod<?> sendMessage;
+    TlMethod<?> saveFilePart;
+
+    @Setup
+    public void setup() {
+        var dc = DcOptions.createDefault(false)
+                .find(DcId.Type.MAIN, 2)
+                .orElseThrow();
+
+        var mtprotoOptions = new MTProtoOptions(
+                TcpClientResources.create(true),
+                PublicRsaKeyRegister.createDefault(),
+                DhPrimeCheckerCache.instance(),
+                new StoreLayoutImpl(Function.identity()),
+                ForkJoinPool.commonPool(), false,
+                RandomSource.create(), null, MTProtoOptions.defaultHandshakeExecutor(),
+                MetricsListener.NOOP, RequestScheduler.direct());
+
+        var clientOptions = new MTProtoClient.Options(
+                d -> new IntermediateTransport(true),
+                ImmutableInvokeWithLayer.of(TlInfo.LAYER, ImmutableInitConnection.of(1337,
+                        "N/A", "N/A", "N/A", "N/A", "N/A", "N/A", GetConfig.instance())),
+                Duration.ofSeconds(10), DefaultReconnectionStrategy.create(3, 5, Duration.ofSeconds(1)),
+                DefaultCompressionPolicy.create(), List.of(),
+                Duration.ofDays(1), null, 64 * 1024);
+
+        client = new MTProtoClientImpl(null, DcId.Type.MAIN, dc, mtprotoOptions, clientOptions);
+
+        var rnd = ThreadLocalRandom.current();
+        byte[] authKey = new byte[256];
+        rnd.nextBytes(authKey);
+        client.authData.authKey(new AuthKey(Unpooled.wrappedBuffer(authKey), null));
+
+        var transportCodec = new TransportCodec(new IntermediateTransport(true));
+        channel = new EmbeddedChannel(new MTProtoEncryption(client, transportCodec));
+
+        sendMessage = SendMessage.builder()
+                .flags(0)
+                .peer(InputPeerSelf.instance())
+                .message("Lorem ipsum dolor sit amet, consectetur adipiscing elit")
+                .randomId(rnd.nextLong())
+                .build();
+
+        byte[] part = new byte[512 * 1024];
+        rnd.nextBytes(part);
+        saveFilePart = ImmutableSaveFilePart.of(rnd.nextLong(), 0, Unpooled.wrappedBuffer(part));
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public int sendMessage() {
+        return encode(sendMessage);
+    }
+
+    @Benchmark
+    public int saveFilePart() {
+        return encode(saveFilePart);
+    }
+
+    int encode(TlMethod<?> method) {
+        channel.writeOutbound(new MTProtoClientImpl.RpcRequest(method));
+        client.requests.clear();
+
+        ByteBuf packet = channel.readOutbound();
+        int size = packet.readableBytes();
+        packet.release();
+        return size;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import io.netty.util.collection.LongObjectHashMap;
+import org.openjdk.jmh.annotations.*;
+import telegram4j.tl.request.help.GetConfig;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures lifecycle of request in the request table: registration on send,
+ * lookup of container, removal on result and acknowledgment of message id.
+ * Allocation rate can be observed with {@code -prof gc} profiler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestTableBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    int inflight;
+
+    final MTProtoClientImpl.RpcRequest request = new MTProtoClientImpl.RpcRequest(GetConfig.instance());
+
+    HashMap<Long, MTProtoClientImpl.Request> boxedRequests;
+    ArrayList<Long> boxedAcks;
+
+    LongObjectHashMap<MTProtoClientImpl.Request> requests;
+    LongArray acks;
+
+    // message ids are increasing and multiple of 4
+    long firstId;
+    long nextId;
+
+    @Setup
+    public void setup() {
+        boxedRequests = new HashMap<>();
+        boxedAcks = new ArrayList<>(32);
+        requests = new LongObjectHashMap<>();
+        acks = new LongArray(32);
+
+        firstId = nextId = System.currentTimeMillis() << 22;
+        for (int i = 0; i < inflight; i++) {
+            long id = nextId;
+            nextId += 4;
+
+            boxedRequests.put(id, request);
+            requests.put(id, request);
+        }
+    }
+
+    @Benchmark
+    public Object boxed() {
+        long id = nextId;
+        nextId += 4;
+        boxedRequests.put(id, request);
+        boxedRequests.get(id);
+
+        long completed = firstId;
+        firstId += 4;
+        var res = boxedRequests.remove(completed);
+        boxedAcks.add(completed);
+        if (boxedAcks.size() > MTProtoEncryption.ACKS_FORCE_SEND_THRESHOLD) {
+            var batch = boxedAcks.subList(0, boxedAcks.size());
+            List<Long> copy = List.copyOf(batch);
+            batch.clear();
+            return copy;
+        }
+        return res;
+    }
+
+    @Benchmark
+    public Object primitive() {
+        long id = nextId;
+        nextId += 4;
+        requests.put(id, request);
+        requests.get(id);
+
+        long completed = firstId;
+        firstId += 4;
+        var res = requests.remove(completed);
+        acks.add(completed);
+        if (acks.size() > MTProtoEncryption.ACKS_FORCE_SEND_THRESHOLD) {
+            return List.copyOf(acks.poll(acks.size()));
+        }
+        return res;
+    }
+}
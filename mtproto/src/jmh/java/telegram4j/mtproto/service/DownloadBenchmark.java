@@ -0,0 +1,207 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import telegram4j.mtproto.DataCenter;
+import telegram4j.mtproto.DcId;
+import telegram4j.mtproto.DcOptions;
+import telegram4j.mtproto.client.MTProtoClient;
+import telegram4j.mtproto.client.MTProtoClientGroup;
+import telegram4j.mtproto.client.UpdateDispatcher;
+import telegram4j.mtproto.file.FileReferenceId;
+import telegram4j.mtproto.store.StoreLayoutImpl;
+import telegram4j.tl.api.TlMethod;
+import telegram4j.tl.request.upload.GetFile;
+import telegram4j.tl.storage.FileType;
+import telegram4j.tl.upload.ImmutableBaseFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Measures throughput of {@link UploadService#downloadFile(DownloadOptions)} over loopback clients,
+ * which respond with ranges after simulated round-trip time and transfer time of link with fixed bandwidth.
+ * Auxiliary counter {@code megabytes} shows download speed in MB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class DownloadBenchmark {
+
+    // 10 MB, 100 MB and 1000 MB
+    @Param({"10485760", "104857600", "1048576000"})
+    long size;
+
+    @Param({"1", "4"})
+    int parallelism;
+
+    @Param({"50"})
+    int rttMillis;
+
+    // Bandwidth of single connection in bytes per second
+    @Param({"10485760"})
+    long bandwidth;
+
+    ByteBuf chunk;
+    Path file;
+    FileReferenceId location;
+    UploadService uploadService;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public double megabytes;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        chunk = Unpooled.directBuffer(UploadService.DOWNLOAD_CHUNK_SIZE).writeZero(UploadService.DOWNLOAD_CHUNK_SIZE);
+        uploadService = new UploadService(new LoopbackGroup(), new StoreLayoutImpl(Function.identity()));
+        file = Files.createTempFile("t4j-download", ".bin");
+        location = FakeClientGroup.documentLocation(size, Unpooled.EMPTY_BUFFER);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        chunk.release();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void download(Counters counters) {
+        uploadService.downloadFile(DownloadOptions.builder()
+                        .location(location)
+                        .size(size)
+                        .file(file)
+                        .parallelism(parallelism)
+                        .resume(false)
+                        .build())
+                .block();
+        counters.megabytes += size / (1024.0 * 1024.0);
+    }
+
+    class LoopbackGroup implements MTProtoClientGroup {
+        final DataCenter dc = DcOptions.createDefault(false)
+                .find(DcId.Type.MAIN, 2)
+                .orElseThrow();
+        final LoopbackClient main = new LoopbackClient(dc, DcId.Type.MAIN);
+        final ConcurrentHashMap<DcId, LoopbackClient> clients = new ConcurrentHashMap<>();
+
+        @Override
+        public MTProtoClient main() {
+            return main;
+        }
+
+        @Override
+        public <R> Mono<R> send(DcId id, TlMethod<? extends R> method) {
+            return getOrCreateClient(id).flatMap(c -> c.send(method));
+        }
+
+        @Override
+        public UpdateDispatcher updates() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Mono<Void> start() {
+            return Mono.never();
+        }
+
+        @Override
+        public Mono<Void> close() {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<MTProtoClient> getOrCreateClient(DcId id) {
+            return Mono.just(clients.computeIfAbsent(id, k -> new LoopbackClient(dc, id.getType())));
+        }
+    }
+
+    class LoopbackClient implements MTProtoClient {
+        final DataCenter dc;
+        final DcId.Type type;
+        // System.nanoTime() at which link will transfer all requested ranges
+        final AtomicLong linkFreeAt = new AtomicLong();
+
+        LoopbackClient(DataCenter dc, DcId.Type type) {
+            this.dc = dc;
+            this.type = type;
+        }
+
+        @Override
+        public Mono<Void> connect() {
+            return Mono.empty();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R> Mono<R> send(TlMethod<? extends R> method) {
+            return Mono.defer(() -> {
+                if (!(method instanceof GetFile getFile)) {
+                    throw new IllegalArgumentException("Unexpected method: " + method);
+                }
+
+                int length = (int) Math.min(getFile.limit(), size - getFile.offset());
+                long now = System.nanoTime();
+                long transfer = TimeUnit.SECONDS.toNanos(length) / bandwidth;
+                long done = linkFreeAt.accumulateAndGet(now, (free, n) -> Math.max(free, n) + transfer);
+                long delay = done - now + TimeUnit.MILLISECONDS.toNanos(rttMillis);
+                return Mono.delay(Duration.ofNanos(delay), Schedulers.parallel())
+                        .thenReturn((R) ImmutableBaseFile.of(FileType.UNKNOWN, 0, chunk.slice(0, length)));
+            });
+        }
+
+        @Override
+        public DataCenter dc() {
+            return dc;
+        }
+
+        @Override
+        public DcId.Type type() {
+            return type;
+        }
+
+        @Override
+        public Stats stats() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Mono<Void> close() {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<Void> onClose() {
+            return Mono.never();
+        }
+    }
+}
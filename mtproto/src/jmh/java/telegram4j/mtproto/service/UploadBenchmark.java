@@ -0,0 +1,267 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import telegram4j.mtproto.DataCenter;
+import telegram4j.mtproto.DcId;
+import telegram4j.mtproto.DcOptions;
+import telegram4j.mtproto.client.MTProtoClient;
+import telegram4j.mtproto.client.MTProtoClientGroup;
+import telegram4j.mtproto.client.UpdateDispatcher;
+import telegram4j.mtproto.store.StoreLayoutImpl;
+import telegram4j.tl.api.TlMethod;
+import telegram4j.tl.request.upload.SaveBigFilePart;
+import telegram4j.tl.request.upload.SaveFilePart;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Measures throughput of {@link UploadService#saveFile(UploadOptions)} over loopback clients,
+ * which acknowledge parts after simulated round-trip time and transfer time of link with fixed bandwidth.
+ * Auxiliary counter {@code megabytes} shows upload speed in MB/s and {@code inflightMegabytes}
+ * shows peak size of part content held by requests, which are sent but not acknowledged yet.
+ * <p>
+ * Source {@code generated} emits slices of single buffer, {@code publisher} reads file to the pooled
+ * buffers like generic publisher and {@code mapped} uploads memory-mapped file.
+ * Request objects copy content of parts, so every source allocates at least the size of file per upload.
+ * Run with {@code -prof gc} to compare allocated bytes per upload on top of it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class UploadBenchmark {
+
+    // 10 MB, 500 MB and 2000 MB (max parts count for 512 KB parts)
+    @Param({"10485760", "524288000", "2097152000"})
+    long size;
+
+    @Param({"generated", "publisher", "mapped"})
+    String source;
+
+    @Param({"50"})
+    int rttMillis;
+
+    // Bandwidth of single connection in bytes per second
+    @Param({"10485760"})
+    long bandwidth;
+
+    ByteBuf part;
+    Path file;
+    UploadService uploadService;
+    final AtomicLong inflightBytes = new AtomicLong();
+    final AtomicLong peakInflightBytes = new AtomicLong();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public double megabytes;
+        public double inflightMegabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+            inflightMegabytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        part = Unpooled.directBuffer(UploadService.MAX_PART_SIZE).writeZero(UploadService.MAX_PART_SIZE);
+        uploadService = new UploadService(new LoopbackGroup(), new StoreLayoutImpl(Function.identity()));
+
+        if (!source.equals("generated")) {
+            file = Files.createTempFile("t4j-upload", ".bin");
+            // Sparse file, so there is no need to write content
+            try (var raf = new RandomAccessFile(file.toFile(), "rw")) {
+                raf.setLength(size);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        part.release();
+        if (file != null) {
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public Object upload(Counters counters) {
+        var builder = UploadOptions.builder()
+                .size(size)
+                .name("file.bin");
+
+        int partsCount = (int) Math.ceil((double) size / UploadService.MAX_PART_SIZE);
+        switch (source) {
+            case "generated" -> builder.data(Flux.range(0, partsCount)
+                    .map(i -> i == partsCount - 1
+                            ? part.retainedSlice(0, (int) (size - (long) i * UploadService.MAX_PART_SIZE))
+                            : part.retainedDuplicate()));
+            case "publisher" -> builder.data(Flux.generate(() -> FileChannel.open(file), (fc, sink) -> {
+                ByteBuf buf = PooledByteBufAllocator.DEFAULT.buffer();
+                try {
+                    if (buf.writeBytes(fc, UploadService.MAX_PART_SIZE) < 0) {
+                        buf.release();
+                        sink.complete();
+                    } else {
+                        sink.next(buf);
+                    }
+                } catch (IOException e) {
+                    buf.release();
+                    sink.error(e);
+                }
+                return fc;
+            }, fc -> {
+                try {
+                    fc.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            case "mapped" -> builder.file(file);
+            default -> throw new IllegalStateException();
+        }
+
+        peakInflightBytes.set(0);
+        var result = uploadService.saveFile(builder.build()).block();
+        counters.megabytes += size / (1024.0 * 1024.0);
+        counters.inflightMegabytes = Math.max(counters.inflightMegabytes, peakInflightBytes.get() / (1024.0 * 1024.0));
+        return result;
+    }
+
+    class LoopbackGroup implements MTProtoClientGroup {
+        final DataCenter dc = DcOptions.createDefault(false)
+                .find(DcId.Type.MAIN, 2)
+                .orElseThrow();
+        final LoopbackClient main = new LoopbackClient(dc, DcId.Type.MAIN);
+        final ConcurrentHashMap<DcId, LoopbackClient> clients = new ConcurrentHashMap<>();
+
+        @Override
+        public MTProtoClient main() {
+            return main;
+        }
+
+        @Override
+        public <R> Mono<R> send(DcId id, TlMethod<? extends R> method) {
+            return getOrCreateClient(id).flatMap(c -> c.send(method));
+        }
+
+        @Override
+        public UpdateDispatcher updates() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Mono<Void> start() {
+            return Mono.never();
+        }
+
+        @Override
+        public Mono<Void> close() {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<MTProtoClient> getOrCreateClient(DcId id) {
+            return Mono.just(clients.computeIfAbsent(id, k -> new LoopbackClient(dc, id.getType())));
+        }
+    }
+
+    class LoopbackClient implements MTProtoClient {
+        final DataCenter dc;
+        final DcId.Type type;
+        // System.nanoTime() at which link will transfer all sent parts
+        final AtomicLong linkFreeAt = new AtomicLong();
+
+        LoopbackClient(DataCenter dc, DcId.Type type) {
+            this.dc = dc;
+            this.type = type;
+        }
+
+        @Override
+        public Mono<Void> connect() {
+            return Mono.empty();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R> Mono<R> send(TlMethod<? extends R> method) {
+            return Mono.defer(() -> {
+                int length = switch (method.identifier()) {
+                    case SaveFilePart.ID -> ((SaveFilePart) method).bytes().readableBytes();
+                    case SaveBigFilePart.ID -> ((SaveBigFilePart) method).bytes().readableBytes();
+                    default -> throw new IllegalArgumentException("Unexpected method: " + method);
+                };
+
+                peakInflightBytes.accumulateAndGet(inflightBytes.addAndGet(length), Math::max);
+
+                long now = System.nanoTime();
+                long transfer = TimeUnit.SECONDS.toNanos(length) / bandwidth;
+                long done = linkFreeAt.accumulateAndGet(now, (free, n) -> Math.max(free, n) + transfer);
+                long delay = done - now + TimeUnit.MILLISECONDS.toNanos(rttMillis);
+                return Mono.delay(Duration.ofNanos(delay), Schedulers.parallel())
+                        .doFinally(signal -> inflightBytes.addAndGet(-length))
+                        .thenReturn((R) Boolean.TRUE);
+            });
+        }
+
+        @Override
+        public DataCenter dc() {
+            return dc;
+        }
+
+        @Override
+        public DcId.Type type() {
+            return type;
+        }
+
+        @Override
+        public Stats stats() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Mono<Void> close() {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<Void> onClose() {
+            return Mono.never();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+import telegram4j.mtproto.util.RandomSource;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encode/decode throughput of transports.
+ * Auxiliary counters {@code payloadBytes} and {@code wireBytes} show the transport overhead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportBenchmark {
+
+    @Param({"intermediate", "abridged", "padded"})
+    String transportType;
+
+    // ack/ping sized, short message and large response
+    @Param({"56", "328", "65560"})
+    int size;
+
+    Transport transport;
+    ByteBuf payload;
+    ByteBuf wire;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long payloadBytes;
+        public long wireBytes;
+    }
+
+    @Setup
+    public void setup() {
+        transport = switch (transportType) {
+            case "intermediate" -> new IntermediateTransport(true);
+            case "abridged" -> new AbridgedTransport(true);
+            case "padded" -> new PaddedIntermediateTransport(true, RandomSource.create());
+            default -> throw new IllegalStateException();
+        };
+
+        byte[] data = new byte[size];
+        ThreadLocalRandom.current().nextBytes(data);
+        payload = PooledByteBufAllocator.DEFAULT.directBuffer(size).writeBytes(data);
+        wire = PooledByteBufAllocator.DEFAULT.directBuffer(size + 64);
+    }
+
+    @TearDown
+    public void tearDown() {
+        payload.release();
+        wire.release();
+    }
+
+    @Benchmark
+    public int encodeDecode(Counters counters) {
+        ByteBuf encoded = transport.encode(payload.retainedDuplicate(), false);
+        counters.payloadBytes += size;
+        counters.wireBytes += encoded.readableBytes();
+
+        wire.clear().writeBytes(encoded);
+        encoded.release();
+
+        ByteBuf decoded = transport.tryDecode(wire);
+        int res = decoded.readableBytes();
+        decoded.release();
+        return res;
+    }
+}
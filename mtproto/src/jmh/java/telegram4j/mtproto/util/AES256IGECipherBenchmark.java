@@ -0,0 +1,145 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AES256IGECipherBenchmark {
+
+    @Param({"1024", "32768", "1048576"})
+    int size;
+
+    byte[] key;
+    byte[] iv;
+    ByteBuf plain;
+
+    AES256IGECipher cipher;
+    LegacyIGECipher legacy;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        var rnd = ThreadLocalRandom.current();
+        key = new byte[32];
+        iv = new byte[32];
+        rnd.nextBytes(key);
+        rnd.nextBytes(iv);
+
+        byte[] data = new byte[size];
+        rnd.nextBytes(data);
+        plain = PooledByteBufAllocator.DEFAULT.directBuffer(size).writeBytes(data);
+
+        cipher = AES256IGECipher.create();
+        legacy = new LegacyIGECipher(key);
+    }
+
+    @TearDown
+    public void tearDown() {
+        plain.release();
+    }
+
+    @Benchmark
+    public int encrypt() {
+        cipher.init(true, Unpooled.wrappedBuffer(key), Unpooled.wrappedBuffer(iv));
+        ByteBuf res = cipher.encrypt(plain.retainedDuplicate());
+        int r = res.getByte(0);
+        res.release();
+        return r;
+    }
+
+    @Benchmark
+    public int encryptInPlace() {
+        ByteBuf copy = PooledByteBufAllocator.DEFAULT.directBuffer(size).writeBytes(plain, 0, size);
+        cipher.init(true, Unpooled.wrappedBuffer(key), Unpooled.wrappedBuffer(iv));
+        ByteBuf res = cipher.encryptInPlace(copy);
+        int r = res.getByte(0);
+        res.release();
+        return r;
+    }
+
+    @Benchmark
+    public int legacyEncrypt() throws GeneralSecurityException {
+        ByteBuf res = legacy.encrypt(plain.retainedDuplicate(), Unpooled.wrappedBuffer(iv));
+        int r = res.getByte(0);
+        res.release();
+        return r;
+    }
+
+    // The previous implementation, which calls Cipher.doFinal() for each 16-byte block
+    static final class LegacyIGECipher {
+        static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+        final Cipher baseCipher;
+
+        LegacyIGECipher(byte[] key) throws GeneralSecurityException {
+            baseCipher = Cipher.getInstance("AES/ECB/NoPadding");
+            baseCipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+        }
+
+        ByteBuf encrypt(ByteBuf data, ByteBuf iv) throws GeneralSecurityException {
+            int size = data.readableBytes();
+            int blockSize = 16;
+            ByteBuf encrypted = data.alloc().ioBuffer(size);
+            byte[] buffer = new byte[blockSize + blockSize];
+
+            ByteBuf x = iv;
+            int xOffset = blockSize;
+            ByteBuf y = iv;
+            int yOffset = 0;
+            for (int i = 0, n = size/blockSize; i < n; i++) {
+                int offset = i * blockSize;
+                for (int b = 0; b < blockSize/8; b++) {
+                    int d = b * 8;
+                    LONG_VIEW.set(buffer, d, data.getLong(offset + d) ^ y.getLong(yOffset + d));
+                }
+
+                baseCipher.doFinal(buffer, 0, blockSize, buffer, blockSize);
+                for (int b = 0; b < blockSize/8; b++) {
+                    int d = b * 8;
+                    LONG_VIEW.set(buffer, blockSize + d, (long) LONG_VIEW.get(buffer, blockSize + d) ^ x.getLong(xOffset + d));
+                }
+
+                encrypted.writeBytes(buffer, blockSize, blockSize);
+
+                x = data;
+                yOffset = offset;
+                y = encrypted;
+                xOffset = offset;
+            }
+
+            data.release();
+            iv.release();
+            return encrypted;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+// Simulates 16 clients generating padding and message ids concurrently
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class RandomSourceBenchmark {
+
+    SecureRandom shared;
+    DefaultRandomSource source;
+
+    @Setup
+    public void setup() {
+        try {
+            shared = SecureRandom.getInstanceStrong();
+        } catch (NoSuchAlgorithmException e) {
+            shared = new SecureRandom();
+        }
+        source = new DefaultRandomSource(DefaultRandomSource.DEFAULT_RESEED_INTERVAL);
+    }
+
+    @State(Scope.Thread)
+    public static class Padding {
+        final byte[] bytes = new byte[28];
+    }
+
+    @Benchmark
+    public byte[] sharedPadding(Padding p) {
+        shared.nextBytes(p.bytes);
+        return p.bytes;
+    }
+
+    @Benchmark
+    public byte[] sourcePadding(Padding p) {
+        source.nextBytes(p.bytes);
+        return p.bytes;
+    }
+
+    @Benchmark
+    public int sharedMessageIdBits() {
+        return shared.nextInt(0x1fffff);
+    }
+
+    @Benchmark
+    public int sourceMessageIdBits() {
+        return source.nextFastInt(0x1fffff);
+    }
+}
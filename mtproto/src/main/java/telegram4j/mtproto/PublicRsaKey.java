@@ -24,6 +24,7 @@ import telegram4j.tl.TlSerialUtil;
 
 import java.math.BigInteger;
 import java.security.MessageDigest;
+import java.util.Base64;
 import java.util.Objects;
 
 /** Value-based tuple of RSA exponent and modulus. */
@@ -73,6 +74,56 @@ public final class PublicRsaKey {
         return new PublicRsaKey(exponent, modulus);
     }
 
+    /**
+     * Parses rsa key from PEM encoded PKCS#1 structure with {@code RSA PUBLIC KEY} header,
+     * in which keys are distributed by {@code help.getCdnConfig} method.
+     *
+     * @throws IllegalArgumentException if key has invalid format.
+     * @param pem The PEM encoded key.
+     * @return The new rsa key.
+     */
+    public static PublicRsaKey fromPem(String pem) {
+        String base64 = pem.replaceAll("-----(BEGIN|END) RSA PUBLIC KEY-----", "")
+                .replaceAll("\\s", "");
+        ByteBuf der = Unpooled.wrappedBuffer(Base64.getDecoder().decode(base64));
+
+        // RSAPublicKey ::= SEQUENCE { modulus INTEGER, publicExponent INTEGER }
+        readDerHeader(der, 0x30);
+        BigInteger modulus = readDerInteger(der);
+        BigInteger exponent = readDerInteger(der);
+        return new PublicRsaKey(modulus, exponent);
+    }
+
+    private static int readDerHeader(ByteBuf der, int expectedTag) {
+        int tag = der.readUnsignedByte();
+        if (tag != expectedTag) {
+            throw new IllegalArgumentException("Unexpected DER tag: 0x" + Integer.toHexString(tag));
+        }
+
+        int length = der.readUnsignedByte();
+        if ((length & 0x80) != 0) { // long form
+            int count = length & 0x7f;
+            if (count > 3) {
+                throw new IllegalArgumentException("Too long DER length: " + count + " bytes");
+            }
+            length = 0;
+            for (int i = 0; i < count; i++) {
+                length = length << 8 | der.readUnsignedByte();
+            }
+        }
+        if (length > der.readableBytes()) {
+            throw new IllegalArgumentException("Truncated DER value, length: " + length);
+        }
+        return length;
+    }
+
+    private static BigInteger readDerInteger(ByteBuf der) {
+        int length = readDerHeader(der, 0x02);
+        byte[] bytes = new byte[length];
+        der.readBytes(bytes);
+        return new BigInteger(bytes);
+    }
+
     /**
      * Gets a modulus number of rsa key.
      *
@@ -212,6 +212,24 @@ public final class PublicRsaKeyRegister {
         return new PublicRsaKeyRegister(Map.copyOf(map));
     }
 
+    /**
+     * Creates new register with keys of this and specified registers.
+     * Keys of this register take precedence over keys with the same fingerprints.
+     *
+     * @param other The register with additional keys.
+     * @return A new {@code PublicRsaKeyRegister} containing keys of both registers, or this register
+     * if {@code other} doesn't have new keys.
+     */
+    public PublicRsaKeyRegister merge(PublicRsaKeyRegister other) {
+        if (map.keySet().containsAll(other.map.keySet())) {
+            return this;
+        }
+
+        var merged = new HashMap<>(other.map);
+        merged.putAll(map);
+        return new PublicRsaKeyRegister(Map.copyOf(merged));
+    }
+
     /**
      * Returns the key to which associated this fingerprint, if present.
      *
@@ -59,6 +59,17 @@ public final class RpcException extends MTProtoException {
                 t0.error.errorMessage().startsWith("FLOOD_WAIT_");
     }
 
+    /**
+     * Create {@link Predicate} for throwable which matches on errors of invalid or expired file reference,
+     * e.g. {@code FILE_REFERENCE_EXPIRED}. Such file references can be refreshed from file context.
+     *
+     * @return A {@link Predicate} for throwable which matches on file reference errors.
+     */
+    public static Predicate<Throwable> isFileReferenceError() {
+        return t -> t instanceof RpcException t0 && t0.error.errorCode() == 400 &&
+                t0.error.errorMessage().startsWith("FILE_REFERENCE_");
+    }
+
     /**
      * Create {@link Predicate} for throwable which matches on specified error message.
      *
@@ -17,13 +17,36 @@ package telegram4j.mtproto.auth;
 
 import io.netty.buffer.ByteBuf;
 
+/**
+ * Register of DH primes with known safety status, which is used to skip
+ * expensive primality tests during auth key generation.
+ * Implementations must be thread-safe.
+ *
+ * @see DhPrimeCheckerCache
+ * @see FileDhPrimeChecker
+ */
 public interface DhPrimeChecker {
-    // TODO: consider impls where prime caching will be backed with DB
 
+    /**
+     * Gets status of specified prime.
+     *
+     * @param prime The DH prime.
+     * @return The known status of prime or {@link PrimeStatus#UNKNOWN} if it wasn't checked.
+     */
     PrimeStatus lookup(ByteBuf prime);
 
+    /**
+     * Remembers specified prime as safe prime.
+     *
+     * @param prime The DH prime.
+     */
     void addGoodPrime(ByteBuf prime);
 
+    /**
+     * Remembers specified prime as unsafe.
+     *
+     * @param prime The DH prime.
+     */
     void addBadPrime(ByteBuf prime);
 
     enum PrimeStatus {
@@ -17,15 +17,15 @@ package telegram4j.mtproto.auth;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
 
+/** In-memory {@code DhPrimeChecker} implementation with primes keyed by their SHA-256 digest. */
 public final class DhPrimeCheckerCache implements DhPrimeChecker {
 
     // https://github.com/tdlib/td/blob/cf1984844be7ec0c06762d8d617cbb20352ec9a2/td/telegram/DhCache.cpp#L25
-    private static final byte[] builtInGoodPrime = ByteBufUtil.decodeHexDump(
+    static final byte[] builtInGoodPrime = ByteBufUtil.decodeHexDump(
             "c71caeb9c6b1c9048e6c522f70f13f73980d40238e3e21c14934d037563d930f48198a0aa7c14058229493d22530f4dbfa336f6e0ac9" +
             "25139543aed44cce7c3720fd51f69458705ac68cd4fe6b6b13abdc9746512969328454f18faf8c595f642477fe96bb2a941d5bcd1d4a" +
             "c8cc49880708fa9b378e3c4f3a9060bee67cf9a4a4a695811051907e162753b56b0f6b410dba74d8a84b2a14b3144e0ef1284754fd17" +
@@ -33,13 +33,14 @@ public final class DhPrimeCheckerCache implements DhPrimeChecker {
             "d956850ce929851f0d8115f635b105ee2e4e15d04b2454bf6f4fadf034b10403119cd8e3b92fcc5b"
     );
 
+    static final PrimeKey builtInGoodPrimeKey = PrimeKey.of(Unpooled.wrappedBuffer(builtInGoodPrime));
+
     private static final DhPrimeCheckerCache instance = new DhPrimeCheckerCache();
 
-    private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock();
-    private final Map<String, PrimeStatus> knownPrimes = new HashMap<>();
+    private final ConcurrentHashMap<PrimeKey, PrimeStatus> knownPrimes = new ConcurrentHashMap<>();
 
     private DhPrimeCheckerCache() {
-        this.knownPrimes.put(ByteBufUtil.hexDump(builtInGoodPrime), PrimeStatus.GOOD);
+        this.knownPrimes.put(builtInGoodPrimeKey, PrimeStatus.GOOD);
     }
 
     /**
@@ -53,31 +54,16 @@ public final class DhPrimeCheckerCache implements DhPrimeChecker {
 
     @Override
     public PrimeStatus lookup(ByteBuf prime) {
-        rwl.readLock().lock();
-        try {
-            return knownPrimes.getOrDefault(ByteBufUtil.hexDump(prime), PrimeStatus.UNKNOWN);
-        } finally {
-            rwl.readLock().unlock();
-        }
+        return knownPrimes.getOrDefault(PrimeKey.of(prime), PrimeStatus.UNKNOWN);
     }
 
     @Override
     public void addGoodPrime(ByteBuf prime) {
-        rwl.writeLock().lock();
-        try {
-            knownPrimes.put(ByteBufUtil.hexDump(prime), PrimeStatus.GOOD);
-        } finally {
-            rwl.writeLock().unlock();
-        }
+        knownPrimes.put(PrimeKey.of(prime), PrimeStatus.GOOD);
     }
 
     @Override
     public void addBadPrime(ByteBuf prime) {
-        rwl.writeLock().lock();
-        try {
-            knownPrimes.put(ByteBufUtil.hexDump(prime), PrimeStatus.GOOD);
-        } finally {
-            rwl.writeLock().unlock();
-        }
+        knownPrimes.put(PrimeKey.of(prime), PrimeStatus.BAD);
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.auth;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * {@code DhPrimeChecker} implementation which persists checked primes to the file,
+ * so primality tests are not repeated after restart or by other processes which share the file.
+ *
+ * <p> Primes are keyed by first 128 bits of their SHA-256 digest. The file
+ * contains only digests with statuses, protected by CRC32C checksum. Corrupted file is ignored.
+ * On save the current file content is merged with known primes, so file can be shared between several processes.
+ */
+public final class FileDhPrimeChecker implements DhPrimeChecker {
+
+    private static final Logger log = Loggers.getLogger(FileDhPrimeChecker.class);
+
+    static final int MAGIC = 0x50443454; // T4DP in LE
+    static final int VERSION = 0;
+    // status and 16 bytes of digest
+    static final int ENTRY_SIZE = 1 + 16;
+    // magic, version, count
+    static final int HEADER_SIZE = 4 + 1 + 4;
+
+    private final Path file;
+    private final ConcurrentHashMap<PrimeKey, PrimeStatus> knownPrimes = new ConcurrentHashMap<>();
+
+    private FileDhPrimeChecker(Path file) {
+        this.file = file;
+        this.knownPrimes.put(DhPrimeCheckerCache.builtInGoodPrimeKey, PrimeStatus.GOOD);
+    }
+
+    /**
+     * Creates new {@code FileDhPrimeChecker} and loads known primes from specified file, if it exists.
+     *
+     * @param file The path to file with known primes.
+     * @return A new {@code FileDhPrimeChecker}.
+     */
+    public static FileDhPrimeChecker load(Path file) {
+        var checker = new FileDhPrimeChecker(Objects.requireNonNull(file));
+        checker.knownPrimes.putAll(read(file));
+        return checker;
+    }
+
+    /**
+     * Gets path to file with known primes.
+     *
+     * @return The path to file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public PrimeStatus lookup(ByteBuf prime) {
+        return knownPrimes.getOrDefault(PrimeKey.of(prime), PrimeStatus.UNKNOWN);
+    }
+
+    @Override
+    public void addGoodPrime(ByteBuf prime) {
+        add(PrimeKey.of(prime), PrimeStatus.GOOD);
+    }
+
+    @Override
+    public void addBadPrime(ByteBuf prime) {
+        add(PrimeKey.of(prime), PrimeStatus.BAD);
+    }
+
+    private void add(PrimeKey key, PrimeStatus status) {
+        if (knownPrimes.put(key, status) != status) {
+            save();
+        }
+    }
+
+    private synchronized void save() {
+        // merge primes which were added by other processes
+        read(file).forEach(knownPrimes::putIfAbsent);
+
+        var snapshot = new HashMap<>(knownPrimes);
+        ByteBuf buf = Unpooled.buffer(HEADER_SIZE + snapshot.size() * ENTRY_SIZE + 4);
+        buf.writeIntLE(MAGIC);
+        buf.writeByte(VERSION);
+        buf.writeIntLE(snapshot.size());
+        snapshot.forEach((key, status) -> buf.writeByte(status.ordinal())
+                .writeLong(key.h0())
+                .writeLong(key.h1()));
+        buf.writeIntLE(checksum(buf, buf.writerIndex()));
+
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, buf.array(), 0, buf.writerIndex());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            if (log.isDebugEnabled()) {
+                log.debug("Saved {} DH primes to {}", snapshot.size(), file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to save DH primes to " + file, e);
+        }
+    }
+
+    static Map<PrimeKey, PrimeStatus> read(Path file) {
+        if (Files.notExists(file)) {
+            return Map.of();
+        }
+
+        try {
+            ByteBuf buf = Unpooled.wrappedBuffer(Files.readAllBytes(file));
+            if (buf.readableBytes() < HEADER_SIZE + 4 || buf.readIntLE() != MAGIC || buf.readByte() != VERSION) {
+                log.warn("Ignoring DH primes file {} with unknown format", file);
+                return Map.of();
+            }
+
+            int count = buf.readIntLE();
+            long size = HEADER_SIZE + (long) count * ENTRY_SIZE;
+            if (count < 0 || buf.capacity() != size + 4 || buf.getIntLE((int) size) != checksum(buf, (int) size)) {
+                log.warn("Ignoring corrupted DH primes file {}", file);
+                return Map.of();
+            }
+
+            var primes = new HashMap<PrimeKey, PrimeStatus>(count);
+            var statuses = PrimeStatus.values();
+            for (int i = 0; i < count; i++) {
+                int status = buf.readUnsignedByte();
+                var key = new PrimeKey(buf.readLong(), buf.readLong());
+                if (status < statuses.length && statuses[status] != PrimeStatus.UNKNOWN) {
+                    primes.put(key, statuses[status]);
+                }
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("Loaded {} DH primes from {}", primes.size(), file);
+            }
+            return primes;
+        } catch (IOException e) {
+            log.warn("Failed to load DH primes from " + file, e);
+            return Map.of();
+        }
+    }
+
+    static int checksum(ByteBuf buf, int length) {
+        var crc = new CRC32C();
+        crc.update(buf.nioBuffer(0, length));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.auth;
+
+import io.netty.buffer.ByteBuf;
+
+import static telegram4j.mtproto.internal.Crypto.sha256Digest;
+
+/**
+ * Compact key of DH prime, which is a first 128 bits of SHA-256 of the prime.
+ *
+ * @param h0 The first 8 bytes of digest.
+ * @param h1 The second 8 bytes of digest.
+ */
+record PrimeKey(long h0, long h1) {
+
+    static PrimeKey of(ByteBuf prime) {
+        ByteBuf digest = sha256Digest(prime);
+        try {
+            return new PrimeKey(digest.getLong(0), digest.getLong(8));
+        } finally {
+            digest.release();
+        }
+    }
+}
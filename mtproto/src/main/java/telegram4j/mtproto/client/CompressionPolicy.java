@@ -0,0 +1,68 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client;
+
+import io.netty.buffer.ByteBuf;
+import telegram4j.tl.api.TlMethod;
+
+/**
+ * Interface for controlling gzip compression of outbound requests.
+ * <p>
+ * Regardless of policy, compressed request will be sent only if it is smaller than the original one.
+ */
+public interface CompressionPolicy {
+
+    /** Compression level indicating that request must be sent as is. */
+    int NO_COMPRESSION = 0;
+
+    /**
+     * Creates new {@code CompressionPolicy} that never compresses requests.
+     *
+     * @return A new {@code CompressionPolicy}.
+     */
+    static CompressionPolicy disabled() {
+        return new CompressionPolicy() {
+            @Override
+            public int sizeThreshold() {
+                return Integer.MAX_VALUE;
+            }
+
+            @Override
+            public int compressionLevel(TlMethod<?> method, ByteBuf payload) {
+                return NO_COMPRESSION;
+            }
+        };
+    }
+
+    /**
+     * Gets minimal size of serialized request in bytes at which the
+     * {@link #compressionLevel(TlMethod, ByteBuf)} will be consulted.
+     *
+     * @return The minimal size of request in bytes.
+     */
+    int sizeThreshold();
+
+    /**
+     * Computes gzip compression level for serialized request.
+     * This method is called on the event loop, so it must be cheap.
+     *
+     * @param method The request.
+     * @param payload The serialized request. Indices and contents of buffer must not be modified.
+     * @return The compression level in range {@code [1, 9]} or
+     * {@link #NO_COMPRESSION} to send request as is.
+     */
+    int compressionLevel(TlMethod<?> method, ByteBuf payload);
+}
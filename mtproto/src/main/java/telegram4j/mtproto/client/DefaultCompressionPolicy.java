@@ -0,0 +1,206 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client;
+
+import io.netty.buffer.ByteBuf;
+import telegram4j.tl.api.TlMethod;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+
+/**
+ * Implementation of {@code CompressionPolicy} that compresses
+ * requests larger than the size threshold with fixed level.
+ * <p>
+ * Optionally, payload can be sampled to estimate its entropy and skip compression
+ * of already compressed or encrypted data like a parts of JPEG or video files.
+ */
+public class DefaultCompressionPolicy implements CompressionPolicy {
+    /** Default size threshold, 16KiB. */
+    public static final int DEFAULT_SIZE_THRESHOLD = 16 * 1024;
+    /** Default compression level which offers the good balance between speed and ratio. */
+    public static final int DEFAULT_LEVEL = 6;
+    /** Default number of sampled bytes of payload. */
+    public static final int DEFAULT_SAMPLE_SIZE = 1024;
+    /** Default max entropy in bits per byte at which payload still considered compressible. */
+    public static final double DEFAULT_MAX_ENTROPY = 7.2;
+
+    private final int sizeThreshold;
+    private final int level;
+    private final Set<Integer> excludedMethods;
+    private final int sampleSize;
+    private final double maxEntropy;
+
+    DefaultCompressionPolicy(Builder builder) {
+        this.sizeThreshold = builder.sizeThreshold;
+        this.level = builder.level;
+        this.excludedMethods = Set.copyOf(builder.excludedMethods);
+        this.sampleSize = builder.sampleSize;
+        this.maxEntropy = builder.maxEntropy;
+    }
+
+    /**
+     * Creates new {@code DefaultCompressionPolicy} with default parameters.
+     *
+     * @return A new {@code DefaultCompressionPolicy}.
+     */
+    public static DefaultCompressionPolicy create() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public int sizeThreshold() {
+        return sizeThreshold;
+    }
+
+    @Override
+    public int compressionLevel(TlMethod<?> method, ByteBuf payload) {
+        if (excludedMethods.contains(method.identifier())) {
+            return NO_COMPRESSION;
+        }
+        if (sampleSize != 0 && estimateEntropy(payload, sampleSize) > maxEntropy) {
+            return NO_COMPRESSION;
+        }
+        return level;
+    }
+
+    /**
+     * Estimates Shannon entropy of payload in bits per byte
+     * from evenly distributed sample of specified size.
+     *
+     * @param payload The payload to estimate.
+     * @param sampleSize The max number of sampled bytes.
+     * @return The estimated entropy in range {@code [0, 8]}.
+     */
+    static double estimateEntropy(ByteBuf payload, int sampleSize) {
+        int length = payload.readableBytes();
+        int count = Math.min(length, sampleSize);
+        if (count == 0) {
+            return 0;
+        }
+
+        int start = payload.readerIndex();
+        int step = length / count;
+        int[] freq = new int[256];
+        for (int i = 0; i < count; i++) {
+            freq[payload.getByte(start + i * step) & 0xff]++;
+        }
+
+        double entropy = 0;
+        for (int f : freq) {
+            if (f != 0) {
+                double p = (double) f / count;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+
+    @Override
+    public String toString() {
+        return "DefaultCompressionPolicy{" +
+                "sizeThreshold=" + sizeThreshold +
+                ", level=" + level +
+                ", excludedMethods=" + excludedMethods +
+                ", sampleSize=" + sampleSize +
+                ", maxEntropy=" + maxEntropy +
+                '}';
+    }
+
+    public static class Builder {
+        private int sizeThreshold = DEFAULT_SIZE_THRESHOLD;
+        private int level = DEFAULT_LEVEL;
+        private final Set<Integer> excludedMethods = new HashSet<>();
+        private int sampleSize = DEFAULT_SAMPLE_SIZE;
+        private double maxEntropy = DEFAULT_MAX_ENTROPY;
+
+        private Builder() {}
+
+        /**
+         * Sets minimal size of serialized request to compress, by default equals to 16KiB.
+         *
+         * @throws IllegalArgumentException if {@code sizeThreshold} is not positive.
+         * @param sizeThreshold The new size threshold.
+         * @return This builder.
+         */
+        public Builder sizeThreshold(int sizeThreshold) {
+            requireArgument(sizeThreshold > 0, "sizeThreshold must be positive");
+            this.sizeThreshold = sizeThreshold;
+            return this;
+        }
+
+        /**
+         * Sets gzip compression level, by default equals to {@value #DEFAULT_LEVEL}.
+         *
+         * @throws IllegalArgumentException if {@code level} is not in range {@code [1, 9]}.
+         * @param level The new compression level.
+         * @return This builder.
+         */
+        public Builder level(int level) {
+            requireArgument(level >= 1 && level <= 9, "level must be in range [1, 9]");
+            this.level = level;
+            return this;
+        }
+
+        /**
+         * Adds method identifier to the set of methods which must never be compressed.
+         *
+         * @param methodId The TL identifier of method, e.g. {@code SaveFilePart.ID}.
+         * @return This builder.
+         */
+        public Builder excludeMethod(int methodId) {
+            excludedMethods.add(methodId);
+            return this;
+        }
+
+        /**
+         * Sets number of sampled bytes for entropy estimation, by default equals to {@value #DEFAULT_SAMPLE_SIZE}.
+         *
+         * @throws IllegalArgumentException if {@code sampleSize} is negative.
+         * @param sampleSize The new sample size. Pass {@code 0} to disable entropy sampling.
+         * @return This builder.
+         */
+        public Builder sampleSize(int sampleSize) {
+            requireArgument(sampleSize >= 0, "sampleSize must be positive or zero");
+            this.sampleSize = sampleSize;
+            return this;
+        }
+
+        /**
+         * Sets max estimated entropy in bits per byte at which payload will be compressed,
+         * by default equals to {@value #DEFAULT_MAX_ENTROPY}.
+         *
+         * @throws IllegalArgumentException if {@code maxEntropy} is not in range {@code [0, 8]}.
+         * @param maxEntropy The new max entropy.
+         * @return This builder.
+         */
+        public Builder maxEntropy(double maxEntropy) {
+            requireArgument(maxEntropy >= 0 && maxEntropy <= 8, "maxEntropy must be in range [0, 8]");
+            this.maxEntropy = maxEntropy;
+            return this;
+        }
+
+        public DefaultCompressionPolicy build() {
+            return new DefaultCompressionPolicy(this);
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package telegram4j.mtproto.client;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 import reactor.core.scheduler.Schedulers;
@@ -23,6 +24,8 @@ import telegram4j.mtproto.DataCenter;
 import telegram4j.mtproto.DcId;
 import telegram4j.mtproto.util.ResettableInterval;
 import telegram4j.tl.api.TlMethod;
+import telegram4j.tl.request.auth.ImmutableExportAuthorization;
+import telegram4j.tl.request.auth.ImmutableImportAuthorization;
 
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
@@ -30,8 +33,11 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 
 import static telegram4j.mtproto.internal.Preconditions.requireArgument;
@@ -42,10 +48,15 @@ import static telegram4j.mtproto.internal.Preconditions.requireArgument;
  */
 public class DefaultMTProtoClientGroup implements MTProtoClientManager {
 
-    // TODO:
-    //  Client load should be determined by load on the socket,
-    //  not on the RPC, since there are such requests as upload.getFile and upload.save*FilePart
     protected static final int FORK_REQUESTS_THRESHOLD = 20;
+    // Count of pending bytes at which new client is forked. Corresponds to two upload.getFile requests with max limit
+    protected static final long FORK_PENDING_BYTES_THRESHOLD = Long.getLong(
+            "telegram4j.mtproto.client.forkPendingBytesThreshold", 1024 * 1024);
+    // Throughput of single connection which is used to estimate time of pending bytes transferring
+    protected static final long NOMINAL_THROUGHPUT = Long.getLong(
+            "telegram4j.mtproto.client.nominalThroughput", 1024 * 1024); // bytes per second
+    // Used for clients without RTT measurements
+    protected static final long DEFAULT_RTT_MICROS = 100_000;
 
     protected static final VarHandle MAIN;
 
@@ -62,6 +73,8 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
     protected final ResettableInterval activityMonitoring = new ResettableInterval(Schedulers.single(),
             Sinks.many().unicast().onBackpressureError());
     protected final ConcurrentMap<Integer, Dc> dcs = new ConcurrentHashMap<>();
+    // Cached imports of authorization, which are shared by concurrent requests to the client
+    protected final ConcurrentMap<MTProtoClient, Mono<Void>> authorizations = new ConcurrentHashMap<>();
     protected volatile MTProtoClient main;
 
     protected volatile boolean terminated;
@@ -87,8 +100,9 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
 
     @Override
     public <R> Mono<R> send(DcId id, TlMethod<? extends R> method) {
-        return getOrCreateClient(id)
-                .flatMap(client -> client.send(method));
+        // Client is selected on each subscription, because scheduler can send request later or retry it
+        return options.mtProtoOptions().requestScheduler().schedule(method, Mono.defer(() -> getOrCreateClient(id))
+                .flatMap(client -> client.send(method)));
     }
 
     @Override
@@ -102,6 +116,7 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
             terminated = true;
 
             activityMonitoring.close();
+            authorizations.clear();
 
             var closeAll = new ArrayList<Mono<Void>>();
             for (Dc dc : dcs.values()) {
@@ -176,6 +191,7 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
 
                                 if (client != null && isInactive(client, inactivePeriod, now)) {
                                     clientSet.remove(i);
+                                    authorizations.remove(client);
                                     toClose.add(client.close());
                                 }
                             }
@@ -239,13 +255,93 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
         };
     }
 
+    @Override
+    public Mono<MTProtoClient> getOrCreateAuthorizedClient(DcId id) {
+        return getOrCreateClient(id)
+                .flatMap(client -> authorize(client).thenReturn(client));
+    }
+
+    @Override
+    public void invalidateAuthorization(MTProtoClient client) {
+        authorizations.remove(client);
+    }
+
+    @Override
+    public Mono<WarmupReport> warmup(WarmupPolicy policy) {
+        Objects.requireNonNull(policy);
+        if (terminated) {
+            return Mono.error(new IllegalStateException("Client group has been closed"));
+        }
+
+        return Mono.defer(() -> {
+            long startTime = System.nanoTime();
+            int mainDcId = main.dc().getId();
+            var dcIds = policy.dcIds().isEmpty() ? Set.of(mainDcId) : policy.dcIds();
+            int downloadCount = Math.min(policy.downloadClientsCount(), options.maxDownloadClientsCount);
+            int uploadCount = Math.min(policy.uploadClientsCount(), options.maxUploadClientsCount);
+
+            var clients = new ArrayList<Mono<WarmupReport.Client>>();
+            for (int dcId : dcIds) {
+                // authorization is shared by clients of main DC
+                boolean importAuthorization = policy.exportAuthorization() && dcId != mainDcId;
+                for (int i = 0; i < downloadCount; i++) {
+                    clients.add(warmupClient(DcId.download(dcId, i), importAuthorization));
+                }
+                for (int i = 0; i < uploadCount; i++) {
+                    clients.add(warmupClient(DcId.upload(dcId, i), importAuthorization));
+                }
+            }
+
+            return Flux.merge(clients)
+                    .collectList()
+                    .map(list -> new WarmupReport(Duration.ofNanos(System.nanoTime() - startTime), list));
+        });
+    }
+
     // Implementation code
     // ======================
 
+    protected Mono<WarmupReport.Client> warmupClient(DcId id, boolean importAuthorization) {
+        return Mono.defer(() -> {
+            long startTime = System.nanoTime();
+            return getOrCreateClient(id)
+                    .flatMap(client -> {
+                        long authStartTime = System.nanoTime();
+                        var connectTime = Duration.ofNanos(authStartTime - startTime);
+                        if (!importAuthorization) {
+                            return Mono.just(new WarmupReport.Client(id, connectTime, Duration.ZERO, null));
+                        }
+
+                        return authorize(client)
+                                .then(Mono.fromSupplier(() -> new WarmupReport.Client(id, connectTime,
+                                        Duration.ofNanos(System.nanoTime() - authStartTime), null)));
+                    })
+                    .onErrorResume(e -> Mono.just(new WarmupReport.Client(id,
+                            Duration.ofNanos(System.nanoTime() - startTime), Duration.ZERO, e)));
+        });
+    }
+
     protected MTProtoClient createClient(DcId.Type type, DataCenter dcOption) {
         return options.clientFactory.create(this, type, dcOption);
     }
 
+    // Imports authorization once per client; concurrent callers share the same import
+    protected Mono<Void> authorize(MTProtoClient client) {
+        int dcId = client.dc().getId();
+        // CDN DCs serve files without authorization
+        if (client.type() == DcId.Type.MAIN || dcId == main.dc().getId() ||
+                client.dc().getType() == DataCenter.Type.CDN) {
+            return Mono.empty();
+        }
+
+        return authorizations.computeIfAbsent(client, c -> main.send(ImmutableExportAuthorization.of(dcId))
+                .flatMap(auth -> c.send(ImmutableImportAuthorization.of(auth.id(), auth.bytes())))
+                .then()
+                // failed import must be retried by next caller
+                .doOnError(e -> authorizations.remove(c))
+                .cache());
+    }
+
     protected boolean isInactive(MTProtoClient client, Duration inactivePeriod, Instant now) {
         return client.stats().lastQueryTimestamp()
                 .map(ts -> ts.plus(inactivePeriod).isBefore(now))
@@ -255,21 +351,45 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
     @Nullable
     protected MTProtoClient autoSelect(DcId.Type type, ClientSet clientSet) {
         MTProtoClient lessLoaded = null;
+        long minLoad = 0;
         for (int i = 0; i < clientSet.size(); i++) {
             var v = clientSet.get(i);
             if (v == null) {
                 continue;
             }
 
-            if (lessLoaded == null || v.stats().queriesCount() < lessLoaded.stats().queriesCount()) {
+            long load = estimateLoad(v.stats());
+            if (lessLoaded == null || load < minLoad) {
                 lessLoaded = v;
+                minLoad = load;
             }
         }
         return lessLoaded;
     }
 
+    /**
+     * Estimates load of client as time in microseconds which new request will wait for:
+     * round trip plus transferring of already pending bytes with nominal throughput.
+     * Clients with full outbound buffer are considered twice loaded.
+     *
+     * @param stats The statistics of client.
+     * @return The estimated load of client.
+     */
+    protected long estimateLoad(MTProtoClient.Stats stats) {
+        long rttMicros = stats.smoothedRtt()
+                .map(d -> TimeUnit.NANOSECONDS.toMicros(d.toNanos()))
+                .orElse(DEFAULT_RTT_MICROS);
+        long transferMicros = stats.pendingBytes() * 1_000_000 / NOMINAL_THROUGHPUT;
+
+        long load = rttMicros + transferMicros;
+        return stats.writable() ? load : load * 2;
+    }
+
     protected boolean isOverloaded(MTProtoClient client) {
-        return client.stats().queriesCount() >= FORK_REQUESTS_THRESHOLD;
+        var stats = client.stats();
+        return !stats.writable() ||
+                stats.pendingBytes() >= FORK_PENDING_BYTES_THRESHOLD ||
+                stats.queriesCount() >= FORK_REQUESTS_THRESHOLD;
     }
 
     protected Mono<DataCenter> findDcOption(DcId.Type type, int dcId) {
@@ -293,7 +413,7 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
         public static final Duration INACTIVE_UPLOAD_DURATION = Duration.ofMinutes(3);
         public static final Duration INACTIVE_DOWNLOAD_DURATION = Duration.ofMinutes(3);
         public static final int DEFAULT_MAX_DOWNLOAD_CLIENTS_COUNT = 4;
-        public static final int DEFAULT_MAX_UPLOAD_CLIENTS_COUNT = 4;
+        public static final int DEFAULT_MAX_UPLOAD_CLIENTS_COUNT = 8;
 
         public Options(MTProtoClientGroup.Options options) {
             this(options.mainDc(), options.clientFactory(), options.updateDispatcher(), options.mtProtoOptions());
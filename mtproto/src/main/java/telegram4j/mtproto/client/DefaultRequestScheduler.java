@@ -0,0 +1,677 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.annotation.Nullable;
+import telegram4j.mtproto.RpcException;
+import telegram4j.tl.*;
+import telegram4j.tl.api.TlMethod;
+import telegram4j.tl.request.messages.*;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+import static telegram4j.mtproto.util.TlEntityUtil.schemaTypeName;
+
+/**
+ * Implementation of {@code RequestScheduler} which limits rate of requests with token buckets.
+ * <p>
+ * Methods are grouped to the {@link Family families} which have global limit and optional
+ * limits per target chat and per target group. Requests without free permits are queued
+ * and sent in order of their {@link Priority priority}. Methods which don't belong to any family are
+ * not limited and sent immediately, without synchronization with other requests.
+ * <p>
+ * When request receives {@code FLOOD_WAIT_X} error, all requests of its family (or of the same method
+ * for methods without family) are paused for the specified time and the request is queued again if
+ * the time doesn't exceed {@link Builder#maxFloodWait(Duration) the threshold}.
+ */
+public class DefaultRequestScheduler implements RequestScheduler {
+    private static final Logger log = Loggers.getLogger(DefaultRequestScheduler.class);
+
+    /**
+     * Default family of message sending and editing methods with limits from the bots FAQ.
+     * User accounts have other limits, so for them family should be replaced by {@link Builder#family(Family, int...)}.
+     */
+    public static final Family MESSAGES = new Family("messages",
+            new RateLimit(30, Duration.ofSeconds(1)),
+            new RateLimit(1, Duration.ofSeconds(1)),
+            new RateLimit(20, Duration.ofMinutes(1)));
+    /** Default max flood wait, after which request is not retried. */
+    public static final Duration DEFAULT_MAX_FLOOD_WAIT = Duration.ofMinutes(1);
+
+    // in milliseconds: <2, 2-3, 4-7, ..., 2^16+ (~65s)
+    static final int WAIT_TIME_BUCKETS = 17;
+    // Count of per-peer buckets at which full ones are evicted
+    static final int PEER_BUCKETS_PRUNE_THRESHOLD = 1024;
+
+    private final Map<Integer, Family> families;
+    private final Map<Integer, Priority> priorities;
+    private final Duration maxFloodWait;
+    private final Scheduler timer;
+
+    // Guarded by this. Requests are grouped by family and then by per-peer bucket,
+    // so drain looks only at heads of queues and not at requests blocked by the same bucket
+    private final Map<String, FamilyQueue> queued = new HashMap<>();
+    private final int[] queueDepths = new int[Priority.values().length];
+    private final Map<String, TokenBucket> globalBuckets = new HashMap<>();
+    private final Map<PeerKey, TokenBucket> peerBuckets = new HashMap<>();
+    // family name -> System.nanoTime() until which requests are paused; read without lock by unlimited methods
+    private final ConcurrentHashMap<String, Long> penalties = new ConcurrentHashMap<>();
+    @Nullable
+    private Disposable drainTask;
+    private long drainAt;
+
+    private final AtomicLongArray waitTimes = new AtomicLongArray(WAIT_TIME_BUCKETS);
+    private final AtomicLong floodWaits = new AtomicLong();
+
+    DefaultRequestScheduler(Builder builder) {
+        this.families = Map.copyOf(builder.families);
+        this.priorities = Map.copyOf(builder.priorities);
+        this.maxFloodWait = builder.maxFloodWait;
+        this.timer = builder.timer;
+    }
+
+    /**
+     * Creates new {@code DefaultRequestScheduler} with default parameters.
+     *
+     * @return A new {@code DefaultRequestScheduler}.
+     */
+    public static DefaultRequestScheduler create() {
+        return builder().build();
+    }
+
+    /**
+     * Creates new builder with {@link #MESSAGES} family for sending and editing methods
+     * and {@link Priority#HIGH} priority for answers to the bot queries.
+     *
+     * @return A new builder.
+     */
+    public static Builder builder() {
+        return new Builder()
+                .family(MESSAGES, SendMessage.ID, SendMedia.ID, SendMultiMedia.ID,
+                        ForwardMessages.ID, SendInlineBotResult.ID, EditMessage.ID)
+                .priority(Priority.HIGH, SetBotCallbackAnswer.ID, SetInlineBotResults.ID);
+    }
+
+    @Override
+    public <R> Mono<R> schedule(TlMethod<? extends R> method, Mono<R> request) {
+        var family = families.get(method.identifier());
+        var priority = priorities.getOrDefault(method.identifier(), Priority.NORMAL);
+        if (family != null) {
+            return queue(family.name(), family, peerId(method), priority, request);
+        }
+
+        // Methods without family are queued only while they are paused by flood wait
+        String familyName = schemaTypeName(method);
+        return Mono.defer(() -> {
+            if (isPaused(familyName)) {
+                return queue(familyName, null, null, priority, request);
+            }
+
+            return request.onErrorResume(RpcException.isFloodWait(), t -> {
+                var wait = parseFloodWait((RpcException) t);
+                penalize(familyName, wait);
+                if (wait.compareTo(maxFloodWait) > 0) {
+                    return Mono.error(t);
+                }
+                return queue(familyName, null, null, priority, request);
+            });
+        });
+    }
+
+    private <R> Mono<R> queue(String familyName, @Nullable Family family, @Nullable Long peerId,
+                              Priority priority, Mono<R> request) {
+        return Mono.create(sink -> {
+            var pending = new Pending<>(familyName, family, peerId, priority, request, sink);
+            sink.onCancel(pending::cancel);
+            enqueue(pending);
+        });
+    }
+
+    private boolean isPaused(String familyName) {
+        Long until = penalties.get(familyName);
+        if (until == null) {
+            return false;
+        }
+        if (until - System.nanoTime() > 0) {
+            return true;
+        }
+        penalties.remove(familyName, until);
+        return false;
+    }
+
+    @Override
+    public Stats stats() {
+        return new Stats() {
+            @Override
+            public int queueDepth(Priority priority) {
+                synchronized (DefaultRequestScheduler.this) {
+                    return queueDepths[priority.ordinal()];
+                }
+            }
+
+            @Override
+            public long[] waitTimes() {
+                long[] res = new long[waitTimes.length()];
+                for (int i = 0; i < res.length; i++) {
+                    res[i] = waitTimes.get(i);
+                }
+                return res;
+            }
+
+            @Override
+            public long floodWaits() {
+                return floodWaits.get();
+            }
+        };
+    }
+
+    void enqueue(Pending<?> pending) {
+        pending.enqueuedNanos = System.nanoTime();
+        synchronized (this) {
+            // Requests without per-peer limit share the single queue of family
+            Long bucketPeerId = peerLimit(pending) != null ? pending.peerId : null;
+            queued.computeIfAbsent(pending.familyName, k -> new FamilyQueue(pending.family))
+                    .add(bucketPeerId, pending);
+            queueDepths[pending.priority.ordinal()]++;
+        }
+        drain();
+    }
+
+    void drain() {
+        var ready = new ArrayList<Pending<?>>();
+        synchronized (this) {
+            drainTask = null;
+
+            long now = System.nanoTime();
+            long nextDelay = Long.MAX_VALUE;
+            for (var it = queued.entrySet().iterator(); it.hasNext(); ) {
+                var e = it.next();
+                long delay = drain(e.getKey(), e.getValue(), now, ready);
+                if (delay > 0) {
+                    nextDelay = Math.min(nextDelay, delay);
+                }
+                if (e.getValue().size == 0) {
+                    it.remove();
+                }
+            }
+
+            if (nextDelay != Long.MAX_VALUE) {
+                scheduleDrain(now, nextDelay);
+            }
+            if (peerBuckets.size() >= PEER_BUCKETS_PRUNE_THRESHOLD) {
+                peerBuckets.values().removeIf(bucket -> bucket.isFull(now));
+            }
+        }
+
+        for (var pending : ready) {
+            long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pending.enqueuedNanos);
+            int bucket = Math.min(63 - Long.numberOfLeadingZeros(Math.max(waitMillis, 1)), WAIT_TIME_BUCKETS - 1);
+            waitTimes.getAndIncrement(bucket);
+
+            pending.start();
+        }
+    }
+
+    // Must be called under lock. Starts requests of family while global bucket has tokens
+    // and returns delay until the next request can be started, or 0 if family has no ready requests
+    private long drain(String familyName, FamilyQueue familyQueue, long now, List<Pending<?>> ready) {
+        Long until = penalties.get(familyName);
+        if (until != null) {
+            if (until - now > 0) {
+                return until - now;
+            }
+            penalties.remove(familyName, until);
+        }
+
+        var family = familyQueue.family;
+        var globalBucket = family != null
+                ? globalBuckets.computeIfAbsent(family.name(), k -> new TokenBucket(family.global(), now))
+                : null;
+        while (familyQueue.size > 0) {
+            if (globalBucket != null) {
+                long delay = globalBucket.delayNanos(now);
+                if (delay > 0) {
+                    return delay;
+                }
+            }
+
+            // Select the head with the highest priority among peers with free permits
+            Pending<?> next = null;
+            PeerQueue nextQueue = null;
+            long peerDelay = 0;
+            for (var it = familyQueue.peers.values().iterator(); it.hasNext(); ) {
+                var peerQueue = it.next();
+                var head = peerQueue.peek();
+                if (head == null) {
+                    it.remove();
+                    continue;
+                }
+
+                var peerBucket = head.peerId != null && family != null
+                        ? peerBuckets.get(new PeerKey(family.name(), head.peerId))
+                        : null;
+                long delay = peerBucket != null ? peerBucket.delayNanos(now) : 0;
+                if (delay > 0) {
+                    peerDelay = peerDelay == 0 ? delay : Math.min(peerDelay, delay);
+                    continue;
+                }
+                if (next == null || head.priority.compareTo(next.priority) < 0 ||
+                        head.priority == next.priority && head.enqueuedNanos - next.enqueuedNanos < 0) {
+                    next = head;
+                    nextQueue = peerQueue;
+                }
+            }
+
+            if (next == null) {
+                return peerDelay;
+            }
+
+            nextQueue.poll();
+            familyQueue.size--;
+            queueDepths[next.priority.ordinal()]--;
+            acquire(next, now);
+            ready.add(next);
+        }
+        familyQueue.peers.clear();
+        return 0;
+    }
+
+    // Must be called under lock
+    private void acquire(Pending<?> pending, long now) {
+        var family = pending.family;
+        if (family == null) {
+            return;
+        }
+
+        globalBuckets.get(family.name()).take();
+        var peerLimit = peerLimit(pending);
+        if (peerLimit != null) {
+            peerBuckets.computeIfAbsent(new PeerKey(family.name(), pending.peerId), k -> new TokenBucket(peerLimit, now))
+                    .take();
+        }
+    }
+
+    @Nullable
+    private static RateLimit peerLimit(Pending<?> pending) {
+        if (pending.peerId == null || pending.family == null) {
+            return null;
+        }
+        // Chats and channels have negative ids, like in the Bot API
+        return pending.peerId < 0 ? pending.family.perGroup() : pending.family.perChat();
+    }
+
+    // Must be called under lock
+    private void scheduleDrain(long now, long delayNanos) {
+        long at = now + delayNanos;
+        if (drainTask != null) {
+            if (drainAt - at <= 0) {
+                return;
+            }
+            drainTask.dispose();
+        }
+
+        drainAt = at;
+        drainTask = timer.schedule(this::drain, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void penalize(String familyName, Duration wait) {
+        floodWaits.incrementAndGet();
+        long until = System.nanoTime() + wait.toNanos();
+        synchronized (this) {
+            penalties.merge(familyName, until, (a, b) -> a - b > 0 ? a : b);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Pausing requests of '{}' for {}", familyName, wait);
+        }
+    }
+
+    // Must be called under lock
+    void remove(Pending<?> pending) {
+        var familyQueue = queued.get(pending.familyName);
+        if (familyQueue == null) {
+            return;
+        }
+        for (var peerQueue : familyQueue.peers.values()) {
+            if (peerQueue.remove(pending)) {
+                familyQueue.size--;
+                queueDepths[pending.priority.ordinal()]--;
+                return;
+            }
+        }
+    }
+
+    @Nullable
+    static Long peerId(TlMethod<?> method) {
+        InputPeer peer = switch (method.identifier()) {
+            case SendMessage.ID -> ((SendMessage) method).peer();
+            case SendMedia.ID -> ((SendMedia) method).peer();
+            case SendMultiMedia.ID -> ((SendMultiMedia) method).peer();
+            case ForwardMessages.ID -> ((ForwardMessages) method).toPeer();
+            case SendInlineBotResult.ID -> ((SendInlineBotResult) method).peer();
+            case EditMessage.ID -> ((EditMessage) method).peer();
+            default -> null;
+        };
+        if (peer == null) {
+            return null;
+        }
+
+        return switch (peer.identifier()) {
+            case InputPeerSelf.ID -> 0L;
+            case InputPeerUser.ID -> ((InputPeerUser) peer).userId();
+            case InputPeerUserFromMessage.ID -> ((InputPeerUserFromMessage) peer).userId();
+            case InputPeerChat.ID -> -((InputPeerChat) peer).chatId();
+            case InputPeerChannel.ID -> -1000000000000L - ((InputPeerChannel) peer).channelId();
+            case InputPeerChannelFromMessage.ID -> -1000000000000L - ((InputPeerChannelFromMessage) peer).channelId();
+            default -> null;
+        };
+    }
+
+    static Duration parseFloodWait(RpcException e) {
+        String message = e.getError().errorMessage();
+        return Duration.ofSeconds(Integer.parseInt(message.substring(message.lastIndexOf('_') + 1)));
+    }
+
+    @Override
+    public String toString() {
+        return "DefaultRequestScheduler{" +
+                "families=" + families +
+                ", priorities=" + priorities +
+                ", maxFloodWait=" + maxFloodWait +
+                '}';
+    }
+
+    /**
+     * Limit of requests rate.
+     *
+     * @param permits The max count of requests per period, which also can be sent as burst.
+     * @param period The period during which permits are fully restored.
+     */
+    public record RateLimit(int permits, Duration period) {
+        public RateLimit {
+            requireArgument(permits > 0, "permits must be positive");
+            requireArgument(!period.isNegative() && !period.isZero(), "period must be positive");
+        }
+    }
+
+    /**
+     * Group of methods which share same limits.
+     *
+     * @param name The name of family, used as key of limits and flood waits.
+     * @param global The limit for all requests of family.
+     * @param perChat The limit for requests to the same private chat, if present.
+     * @param perGroup The limit for requests to the same group or channel, if present.
+     */
+    public record Family(String name, RateLimit global, @Nullable RateLimit perChat, @Nullable RateLimit perGroup) {
+        public Family {
+            Objects.requireNonNull(name);
+            Objects.requireNonNull(global);
+        }
+    }
+
+    record PeerKey(String family, long peerId) {}
+
+    static final class FamilyQueue {
+        @Nullable
+        final Family family;
+        // Keyed by peer id for requests with per-peer limit, otherwise by null
+        final Map<Long, PeerQueue> peers = new LinkedHashMap<>();
+        int size;
+
+        FamilyQueue(@Nullable Family family) {
+            this.family = family;
+        }
+
+        void add(@Nullable Long peerId, Pending<?> pending) {
+            peers.computeIfAbsent(peerId, k -> new PeerQueue()).add(pending);
+            size++;
+        }
+    }
+
+    static final class PeerQueue {
+        @SuppressWarnings("unchecked")
+        final ArrayDeque<Pending<?>>[] byPriority = new ArrayDeque[Priority.values().length];
+
+        void add(Pending<?> pending) {
+            var queue = byPriority[pending.priority.ordinal()];
+            if (queue == null) {
+                queue = byPriority[pending.priority.ordinal()] = new ArrayDeque<>();
+            }
+            queue.addLast(pending);
+        }
+
+        @Nullable
+        Pending<?> peek() {
+            for (var queue : byPriority) {
+                if (queue != null && !queue.isEmpty()) {
+                    return queue.peekFirst();
+                }
+            }
+            return null;
+        }
+
+        void poll() {
+            for (var queue : byPriority) {
+                if (queue != null && !queue.isEmpty()) {
+                    queue.pollFirst();
+                    return;
+                }
+            }
+        }
+
+        boolean remove(Pending<?> pending) {
+            var queue = byPriority[pending.priority.ordinal()];
+            return queue != null && queue.remove(pending);
+        }
+    }
+
+    static final class TokenBucket {
+        final double capacity;
+        final double permitsPerNano;
+        double tokens;
+        long updated;
+
+        TokenBucket(RateLimit limit, long now) {
+            this.capacity = limit.permits();
+            this.permitsPerNano = limit.permits() / (double) limit.period().toNanos();
+            this.tokens = capacity;
+            this.updated = now;
+        }
+
+        void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - updated) * permitsPerNano);
+            updated = now;
+        }
+
+        long delayNanos(long now) {
+            refill(now);
+            return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerNano);
+        }
+
+        boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        void take() {
+            tokens -= 1;
+        }
+    }
+
+    final class Pending<R> {
+        final String familyName;
+        @Nullable
+        final Family family;
+        @Nullable
+        final Long peerId;
+        final Priority priority;
+        final Mono<R> request;
+        final MonoSink<R> sink;
+
+        long enqueuedNanos;
+        volatile boolean cancelled;
+        volatile Disposable subscription;
+
+        Pending(String familyName, @Nullable Family family, @Nullable Long peerId,
+                Priority priority, Mono<R> request, MonoSink<R> sink) {
+            this.familyName = familyName;
+            this.family = family;
+            this.peerId = peerId;
+            this.priority = priority;
+            this.request = request;
+            this.sink = sink;
+        }
+
+        void start() {
+            if (cancelled) {
+                return;
+            }
+
+            var s = request.subscribe(sink::success, this::onError, sink::success);
+            subscription = s;
+            // Cancelled concurrently with subscription
+            if (cancelled) {
+                s.dispose();
+            }
+        }
+
+        void onError(Throwable t) {
+            if (!RpcException.isFloodWait().test(t)) {
+                sink.error(t);
+                return;
+            }
+
+            var wait = parseFloodWait((RpcException) t);
+            penalize(familyName, wait);
+            if (cancelled || wait.compareTo(maxFloodWait) > 0) {
+                sink.error(t);
+                return;
+            }
+
+            enqueue(this);
+        }
+
+        void cancel() {
+            cancelled = true;
+            synchronized (DefaultRequestScheduler.this) {
+                remove(this);
+            }
+            var s = subscription;
+            if (s != null) {
+                s.dispose();
+            }
+        }
+    }
+
+    public static class Builder {
+        private final Map<Integer, Family> families = new HashMap<>();
+        private final Map<Integer, Priority> priorities = new HashMap<>();
+        private Duration maxFloodWait = DEFAULT_MAX_FLOOD_WAIT;
+        private Scheduler timer = Schedulers.parallel();
+
+        private Builder() {}
+
+        /**
+         * Assigns methods to the specified family, replacing previous assignment.
+         *
+         * @param family The family of methods.
+         * @param methodIds The TL identifiers of methods, e.g. {@code SendMessage.ID}.
+         * @return This builder.
+         */
+        public Builder family(Family family, int... methodIds) {
+            Objects.requireNonNull(family);
+            for (int methodId : methodIds) {
+                families.put(methodId, family);
+            }
+            return this;
+        }
+
+        /**
+         * Removes methods from their families, so they will be sent without limits.
+         *
+         * @param methodIds The TL identifiers of methods.
+         * @return This builder.
+         */
+        public Builder unlimited(int... methodIds) {
+            for (int methodId : methodIds) {
+                families.remove(methodId);
+            }
+            return this;
+        }
+
+        /**
+         * Sets priority of methods, by default all methods have {@link Priority#NORMAL} priority.
+         *
+         * @param priority The new priority of methods.
+         * @param methodIds The TL identifiers of methods.
+         * @return This builder.
+         */
+        public Builder priority(Priority priority, int... methodIds) {
+            Objects.requireNonNull(priority);
+            for (int methodId : methodIds) {
+                priorities.put(methodId, priority);
+            }
+            return this;
+        }
+
+        /**
+         * Sets max flood wait after which request is queued again, by default equals to 1 minute.
+         * Requests with longer flood wait are terminated with original error, but still pause their family.
+         *
+         * @param maxFloodWait The new max flood wait. Pass {@link Duration#ZERO} to never retry requests.
+         * @return This builder.
+         */
+        public Builder maxFloodWait(Duration maxFloodWait) {
+            requireArgument(!maxFloodWait.isNegative(), "maxFloodWait must be positive or zero");
+            this.maxFloodWait = maxFloodWait;
+            return this;
+        }
+
+        /**
+         * Sets scheduler for delayed sending of queued requests, by default {@link Schedulers#parallel()} is used.
+         *
+         * @param timer The new timer scheduler.
+         * @return This builder.
+         */
+        public Builder timer(Scheduler timer) {
+            this.timer = Objects.requireNonNull(timer);
+            return this;
+        }
+
+        public DefaultRequestScheduler build() {
+            return new DefaultRequestScheduler(this);
+        }
+    }
+}
@@ -17,7 +17,13 @@ package telegram4j.mtproto.client;
 
 import reactor.util.annotation.Nullable;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 /** Immutable implementation of {@code MTProtoClient.Stats}. */
@@ -25,10 +31,105 @@ public class ImmutableStats implements MTProtoClient.Stats {
     @Nullable
     protected final Instant lastQueryTimestamp;
     protected final int queriesCount;
+    protected final int stuckQueriesCount;
+    protected final long[] writeBatchSizes;
+    protected final Map<String, MTProtoClient.CompressionStats> compressionStats;
+    protected final long[] inboundDecodeTimes;
+    protected final long[] offloadedDecodeTimes;
+    protected final Map<MTProtoClient.HandshakePhase, long[]> handshakeTimes;
+    protected final long pendingBytes;
+    protected final boolean writable;
+    @Nullable
+    protected final Duration smoothedRtt;
+    protected final long[] counters;
+    protected final long[] containerSizes;
+    protected final long[] quickAckTimes;
+    protected final Map<String, long[]> queryTimes;
+
+    /**
+     * Creates a snapshot of specified statistics. Arrays returned by the statistics
+     * are supposed to be new and therefore are not copied.
+     *
+     * @param stats The statistics to copy.
+     */
+    public ImmutableStats(MTProtoClient.Stats stats) {
+        this.lastQueryTimestamp = stats.lastQueryTimestamp().orElse(null);
+        this.queriesCount = stats.queriesCount();
+        this.stuckQueriesCount = stats.stuckQueriesCount();
+        this.writeBatchSizes = stats.writeBatchSizes();
+        this.compressionStats = Map.copyOf(stats.compressionStats());
+        this.inboundDecodeTimes = stats.inboundDecodeTimes();
+        this.offloadedDecodeTimes = stats.offloadedDecodeTimes();
+        this.handshakeTimes = handshakeTimes(stats);
+        this.pendingBytes = stats.pendingBytes();
+        this.writable = stats.writable();
+        this.smoothedRtt = stats.smoothedRtt().orElse(null);
+        this.counters = counters(stats);
+        this.containerSizes = stats.containerSizes();
+        this.quickAckTimes = stats.quickAckTimes();
+        this.queryTimes = Map.copyOf(stats.queryTimes());
+    }
 
     public ImmutableStats(@Nullable Instant lastQueryTimestamp, int queriesCount) {
+        this(lastQueryTimestamp, queriesCount, new long[0]);
+    }
+
+    public ImmutableStats(@Nullable Instant lastQueryTimestamp, int queriesCount, long[] writeBatchSizes) {
+        this(lastQueryTimestamp, queriesCount, 0, writeBatchSizes, Map.of(), new long[0], new long[0], Map.of());
+    }
+
+    public ImmutableStats(@Nullable Instant lastQueryTimestamp, int queriesCount, int stuckQueriesCount,
+                          long[] writeBatchSizes, Map<String, MTProtoClient.CompressionStats> compressionStats,
+                          long[] inboundDecodeTimes, long[] offloadedDecodeTimes,
+                          Map<MTProtoClient.HandshakePhase, long[]> handshakeTimes) {
+        this(lastQueryTimestamp, queriesCount, stuckQueriesCount, writeBatchSizes, compressionStats,
+                inboundDecodeTimes, offloadedDecodeTimes, handshakeTimes, 0, true, null);
+    }
+
+    public ImmutableStats(@Nullable Instant lastQueryTimestamp, int queriesCount, int stuckQueriesCount,
+                          long[] writeBatchSizes, Map<String, MTProtoClient.CompressionStats> compressionStats,
+                          long[] inboundDecodeTimes, long[] offloadedDecodeTimes,
+                          Map<MTProtoClient.HandshakePhase, long[]> handshakeTimes,
+                          long pendingBytes, boolean writable, @Nullable Duration smoothedRtt) {
         this.lastQueryTimestamp = lastQueryTimestamp;
         this.queriesCount = queriesCount;
+        this.stuckQueriesCount = stuckQueriesCount;
+        this.writeBatchSizes = writeBatchSizes.clone();
+        this.compressionStats = Map.copyOf(compressionStats);
+        this.inboundDecodeTimes = inboundDecodeTimes.clone();
+        this.offloadedDecodeTimes = offloadedDecodeTimes.clone();
+        this.handshakeTimes = new EnumMap<>(MTProtoClient.HandshakePhase.class);
+        handshakeTimes.forEach((phase, times) -> this.handshakeTimes.put(phase, times.clone()));
+        this.pendingBytes = pendingBytes;
+        this.writable = writable;
+        this.smoothedRtt = smoothedRtt;
+        this.counters = new long[MTProtoClient.Counter.values().length];
+        this.containerSizes = new long[0];
+        this.quickAckTimes = new long[0];
+        this.queryTimes = Map.of();
+    }
+
+    /**
+     * Collects distributions of handshake phases times of specified statistics.
+     *
+     * @param stats The statistics.
+     * @return The new map with distributions of handshake phases times.
+     */
+    public static Map<MTProtoClient.HandshakePhase, long[]> handshakeTimes(MTProtoClient.Stats stats) {
+        var res = new EnumMap<MTProtoClient.HandshakePhase, long[]>(MTProtoClient.HandshakePhase.class);
+        for (var phase : MTProtoClient.HandshakePhase.values()) {
+            res.put(phase, stats.handshakeTimes(phase));
+        }
+        return res;
+    }
+
+    private static long[] counters(MTProtoClient.Stats stats) {
+        var values = MTProtoClient.Counter.values();
+        long[] res = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            res[i] = stats.counter(values[i]);
+        }
+        return res;
     }
 
     @Override
@@ -41,11 +142,109 @@ public class ImmutableStats implements MTProtoClient.Stats {
         return queriesCount;
     }
 
+    @Override
+    public int stuckQueriesCount() {
+        return stuckQueriesCount;
+    }
+
+    @Override
+    public long[] writeBatchSizes() {
+        return writeBatchSizes.clone();
+    }
+
+    @Override
+    public Map<String, MTProtoClient.CompressionStats> compressionStats() {
+        return compressionStats;
+    }
+
+    @Override
+    public long[] inboundDecodeTimes() {
+        return inboundDecodeTimes.clone();
+    }
+
+    @Override
+    public long[] offloadedDecodeTimes() {
+        return offloadedDecodeTimes.clone();
+    }
+
+    @Override
+    public long[] handshakeTimes(MTProtoClient.HandshakePhase phase) {
+        long[] times = handshakeTimes.get(phase);
+        return times != null ? times.clone() : new long[0];
+    }
+
+    @Override
+    public long pendingBytes() {
+        return pendingBytes;
+    }
+
+    @Override
+    public boolean writable() {
+        return writable;
+    }
+
+    @Override
+    public Optional<Duration> smoothedRtt() {
+        return Optional.ofNullable(smoothedRtt);
+    }
+
+    @Override
+    public long counter(MTProtoClient.Counter counter) {
+        return counters[counter.ordinal()];
+    }
+
+    @Override
+    public long[] containerSizes() {
+        return containerSizes.clone();
+    }
+
+    @Override
+    public long[] quickAckTimes() {
+        return quickAckTimes.clone();
+    }
+
+    @Override
+    public Map<String, long[]> queryTimes() {
+        var res = new HashMap<String, long[]>(queryTimes.size());
+        queryTimes.forEach((method, times) -> res.put(method, times.clone()));
+        return Collections.unmodifiableMap(res);
+    }
+
+    @Override
+    public MTProtoClient.Stats copy() {
+        // Instance is already immutable
+        return this;
+    }
+
     @Override
     public String toString() {
         return "ImmutableStats{" +
                 "lastQueryTimestamp=" + lastQueryTimestamp +
                 ", queriesCount=" + queriesCount +
+                ", stuckQueriesCount=" + stuckQueriesCount +
+                ", writeBatchSizes=" + Arrays.toString(writeBatchSizes) +
+                ", compressionStats=" + compressionStats +
+                ", inboundDecodeTimes=" + Arrays.toString(inboundDecodeTimes) +
+                ", offloadedDecodeTimes=" + Arrays.toString(offloadedDecodeTimes) +
+                ", handshakeTimes=" + handshakeTimesString() +
+                ", pendingBytes=" + pendingBytes +
+                ", writable=" + writable +
+                ", smoothedRtt=" + smoothedRtt +
+                ", counters=" + Arrays.toString(counters) +
+                ", containerSizes=" + Arrays.toString(containerSizes) +
+                ", quickAckTimes=" + Arrays.toString(quickAckTimes) +
+                ", queryTimes=" + queryTimes.keySet() +
                 '}';
     }
+
+    private String handshakeTimesString() {
+        var builder = new StringBuilder("{");
+        handshakeTimes.forEach((phase, times) -> {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(phase).append('=').append(Arrays.toString(times));
+        });
+        return builder.append('}').toString();
+    }
 }
@@ -16,6 +16,7 @@
 package telegram4j.mtproto.client;
 
 import reactor.core.publisher.Mono;
+import reactor.util.annotation.Nullable;
 import telegram4j.mtproto.DataCenter;
 import telegram4j.mtproto.DcId;
 import telegram4j.mtproto.ResponseTransformer;
@@ -29,6 +30,7 @@ import telegram4j.tl.request.help.GetConfig;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static java.util.Objects.requireNonNull;
@@ -110,29 +112,222 @@ public interface MTProtoClient {
          */
         int queriesCount();
 
+        /**
+         * Gets count of queries which were pending longer than the stuck threshold
+         * at the time of last sweep of in-flight queries.
+         * By default, threshold equals to 30 seconds and can be configured by
+         * {@code telegram4j.mtproto.client.stuckThreshold} system property in milliseconds.
+         *
+         * @return The count of stuck queries.
+         */
+        default int stuckQueriesCount() {
+            return 0;
+        }
+
+        /**
+         * Gets distribution of sizes of coalesced write batches.
+         * The {@code i}-th element contains count of batches with size
+         * in range {@code [2^i, 2^(i+1))}, and the last element also counts all larger batches.
+         *
+         * @return The new array with distribution of write batch sizes.
+         */
+        default long[] writeBatchSizes() {
+            return new long[0];
+        }
+
+        /**
+         * Gets counters of outbound requests compression grouped by type name of request.
+         *
+         * @return The immutable map with compression counters.
+         */
+        default Map<String, CompressionStats> compressionStats() {
+            return Map.of();
+        }
+
+        /**
+         * Gets distribution of time spent on the event loop for decoding inbound messages and their handling.
+         * The {@code i}-th element contains count of messages processed in range {@code [2^i, 2^(i+1))}
+         * microseconds, the first element also counts faster ones and the last element counts all slower ones.
+         *
+         * @return The new array with distribution of decoding time on the event loop.
+         */
+        default long[] inboundDecodeTimes() {
+            return new long[0];
+        }
+
+        /**
+         * Gets distribution of time spent on decoding of inbound messages which were
+         * offloaded from the event loop. Buckets are same as in {@link #inboundDecodeTimes()}.
+         *
+         * @return The new array with distribution of offloaded decoding time.
+         */
+        default long[] offloadedDecodeTimes() {
+            return new long[0];
+        }
+
+        /**
+         * Gets distribution of time spent on the specified phase of auth key generation.
+         * The {@code i}-th element contains count of handshakes which spent on the phase time in range {@code [2^i, 2^(i+1))}
+         * microseconds, the first element also counts faster ones and the last element counts all slower ones.
+         *
+         * @param phase The phase of handshake.
+         * @return The new array with distribution of time spent on the phase.
+         */
+        default long[] handshakeTimes(HandshakePhase phase) {
+            return new long[0];
+        }
+
+        /**
+         * Gets estimated count of bytes which are transferring by pending queries.
+         * The estimation includes size of serialized queries and expected size of their
+         * responses for file download methods, like {@code upload.getFile}.
+         *
+         * @return The estimated count of bytes of pending queries.
+         */
+        default long pendingBytes() {
+            return 0;
+        }
+
+        /**
+         * Gets whether the client's socket accepts writes without buffering, i.e.
+         * outbound buffer of the channel is below high watermark.
+         *
+         * @return {@code true} if socket is writable.
+         */
+        default boolean writable() {
+            return true;
+        }
+
+        /**
+         * Gets smoothed round-trip time, measured by pings.
+         *
+         * @return The smoothed round-trip time, if at least one ping was received.
+         */
+        default Optional<Duration> smoothedRtt() {
+            return Optional.empty();
+        }
+
+        /**
+         * Gets current value of the specified monotonic counter.
+         *
+         * @param counter The counter.
+         * @return The current value of counter.
+         */
+        default long counter(Counter counter) {
+            return 0;
+        }
+
+        /**
+         * Gets distribution of count of messages in the sent containers.
+         * Buckets are same as in {@link #writeBatchSizes()}.
+         *
+         * @return The new array with distribution of container sizes.
+         */
+        default long[] containerSizes() {
+            return new long[0];
+        }
+
+        /**
+         * Gets distribution of time from sending of message to the receiving of its quick acknowledgement.
+         * The {@code i}-th element contains count of acks received in range {@code [2^i, 2^(i+1))}
+         * microseconds, the first element also counts faster ones and the last element counts all slower ones.
+         *
+         * @return The new array with distribution of quick ack latency.
+         */
+        default long[] quickAckTimes() {
+            return new long[0];
+        }
+
+        /**
+         * Gets distributions of time from the last sending of query to the receiving of its result
+         * grouped by type name of query, e.g. {@code upload.getFile}.
+         * Buckets are same as in {@link #quickAckTimes()}.
+         *
+         * @return The immutable map with distributions of query latency.
+         */
+        default Map<String, long[]> queryTimes() {
+            return Map.of();
+        }
+
         /**
          * Creates new immutable copy of this statistics.
          *
          * @return A new immutable copy of this statistics.
          */
         default Stats copy() {
-            return new ImmutableStats(lastQueryTimestamp().orElse(null), queriesCount());
+            return new ImmutableStats(this);
         }
     }
 
+    /** Monotonic counters of client's connection. */
+    enum Counter {
+        /** The count of received bytes of encrypted packets. */
+        BYTES_IN,
+
+        /** The count of sent bytes of encrypted packets. */
+        BYTES_OUT,
+
+        /** The count of received encrypted packets. */
+        PACKETS_IN,
+
+        /** The count of sent encrypted packets. */
+        PACKETS_OUT,
+
+        /** The count of messages which were resent by server request or after state checks. */
+        RESENT_MESSAGES,
+
+        /** The count of received {@code bad_msg_notification}s, excluding {@code bad_server_salt}. */
+        BAD_MSG_NOTIFICATIONS,
+
+        /** The count of received {@code bad_server_salt}s. */
+        BAD_SERVER_SALTS,
+
+        /** The count of received quick acknowledgements. */
+        QUICK_ACKS
+    }
+
+    /** Measured phases of auth key generation. */
+    enum HandshakePhase {
+        /** Handling of {@code resPQ}: factorization of {@code pq} and RSA encryption of inner data. */
+        RES_PQ,
+
+        /** Handling of {@code server_DH_params}: checks of DH prime and computation of auth key. */
+        SERVER_DH_PARAMS,
+
+        /** Whole handshake, from sending of {@code req_pq_multi} to the receiving of {@code dh_gen_ok}. */
+        TOTAL
+    }
+
+    /**
+     * Counters of outbound requests compression.
+     *
+     * @param attempts The count of requests which were compressed.
+     * @param compressed The count of requests which were sent compressed,
+     * i.e. gzipped data was smaller than the original one.
+     * @param skipped The count of requests which exceeded size threshold, but were not compressed by policy.
+     * @param savedBytes The total count of bytes saved by compression.
+     * @param compressionNanos The total time spent on compression in nanoseconds.
+     */
+    record CompressionStats(long attempts, long compressed, long skipped, long savedBytes, long compressionNanos) {}
+
     record Options(TransportFactory transportFactory,
                    InvokeWithLayer<Config, InitConnection<Config, GetConfig>> initConnection,
                    Duration pingInterval, ReconnectionStrategy reconnectionStrategy,
-                   int gzipCompressionSizeThreshold, List<ResponseTransformer> responseTransformers,
-                   Duration authKeyLifetime) {
+                   CompressionPolicy compressionPolicy, List<ResponseTransformer> responseTransformers,
+                   Duration authKeyLifetime, @Nullable Duration writeCoalescingDelay,
+                   int decodeOffloadThreshold) {
 
         public Options {
             requireNonNull(transportFactory);
             requireNonNull(initConnection);
             requireNonNull(pingInterval);
             requireNonNull(reconnectionStrategy);
+            requireNonNull(compressionPolicy);
             requireNonNull(responseTransformers);
             requireArgument(!authKeyLifetime.isNegative(), "authKeyLifetime must be positive or zero");
+            requireArgument(writeCoalescingDelay == null || !writeCoalescingDelay.isNegative(),
+                    "writeCoalescingDelay must be positive or zero");
+            requireArgument(decodeOffloadThreshold > 0, "decodeOffloadThreshold must be positive");
         }
     }
 }
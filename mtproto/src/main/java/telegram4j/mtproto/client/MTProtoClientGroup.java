@@ -19,7 +19,11 @@ import reactor.core.publisher.Mono;
 import telegram4j.mtproto.DataCenter;
 import telegram4j.mtproto.DcId;
 import telegram4j.tl.api.TlMethod;
+import telegram4j.tl.request.auth.ImmutableExportAuthorization;
+import telegram4j.tl.request.auth.ImmutableImportAuthorization;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Objects;
 
 /** The group of MTProto clients which associated to one user.  */
@@ -69,6 +73,54 @@ public interface MTProtoClientGroup {
      */
     Mono<MTProtoClient> getOrCreateClient(DcId id);
 
+    /**
+     * Searches or creates the client by specified id like {@link #getOrCreateClient(DcId)}
+     * and imports authorization of main client to it, if client is associated with DC other than main.
+     * Clients of CDN DCs are returned as is, because such DCs don't need authorization.
+     * <p>
+     * Default implementation imports authorization on each call.
+     *
+     * @param id The id of client.
+     * @return A {@link Mono} emitting authorized client.
+     */
+    default Mono<MTProtoClient> getOrCreateAuthorizedClient(DcId id) {
+        return getOrCreateClient(id)
+                .flatMap(client -> {
+                    int dcId = client.dc().getId();
+                    if (client.type() == DcId.Type.MAIN || dcId == main().dc().getId() ||
+                            client.dc().getType() == DataCenter.Type.CDN) {
+                        return Mono.just(client);
+                    }
+
+                    return main().send(ImmutableExportAuthorization.of(dcId))
+                            .flatMap(auth -> client.send(ImmutableImportAuthorization.of(auth.id(), auth.bytes())))
+                            .thenReturn(client);
+                });
+    }
+
+    /**
+     * Resets authorization state of specified client, so authorization will be imported again
+     * on the next {@link #getOrCreateAuthorizedClient(DcId)} call. Should be called when
+     * client receives {@code 401} error.
+     *
+     * @param client The client which authorization is lost.
+     */
+    default void invalidateAuthorization(MTProtoClient client) {
+    }
+
+    /**
+     * Connects and authorizes media clients described by policy in parallel.
+     * Errors of individual clients don't terminate warmup and are reported in the result.
+     * <p>
+     * Default implementation doesn't create any client.
+     *
+     * @param policy The policy describing clients to create.
+     * @return A {@link Mono} emitting report with time spent on each client after all clients are processed.
+     */
+    default Mono<WarmupReport> warmup(WarmupPolicy policy) {
+        return Mono.just(new WarmupReport(Duration.ZERO, List.of()));
+    }
+
     interface Options {
 
         static Options of(DataCenter mainDc, ClientFactory clientFactory,
@@ -15,18 +15,28 @@
  */
 package telegram4j.mtproto.client;
 
+import io.netty.util.concurrent.DefaultThreadFactory;
+import reactor.util.annotation.Nullable;
 import telegram4j.mtproto.PublicRsaKeyRegister;
 import telegram4j.mtproto.auth.DhPrimeChecker;
 import telegram4j.mtproto.resource.TcpClientResources;
 import telegram4j.mtproto.store.StoreLayout;
+import telegram4j.mtproto.util.RandomSource;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Objects.requireNonNull;
 
 public record MTProtoOptions(TcpClientResources tcpClientResources, PublicRsaKeyRegister publicRsaKeyRegister,
                              DhPrimeChecker dhPrimeChecker, StoreLayout storeLayout,
-                             ExecutorService resultPublisher, boolean disposeResultPublisher) {
+                             ExecutorService resultPublisher, boolean disposeResultPublisher,
+                             RandomSource randomSource, @Nullable Executor decodeExecutor,
+                             Executor handshakeExecutor, MetricsListener metricsListener,
+                             RequestScheduler requestScheduler) {
 
     public MTProtoOptions {
         requireNonNull(tcpClientResources);
@@ -34,5 +44,33 @@ public record MTProtoOptions(TcpClientResources tcpClientResources, PublicRsaKey
         requireNonNull(dhPrimeChecker);
         requireNonNull(storeLayout);
         requireNonNull(resultPublisher);
+        requireNonNull(randomSource);
+        requireNonNull(handshakeExecutor);
+        requireNonNull(metricsListener);
+        requireNonNull(requestScheduler);
+    }
+
+    /**
+     * Gets shared executor for CPU-heavy steps of auth key generation.
+     * This executor has bounded number of daemon threads, which are stopped when idle,
+     * and bounded queue of tasks. Rejected tasks are computed on the event loop.
+     *
+     * @return The shared executor for handshakes.
+     */
+    public static Executor defaultHandshakeExecutor() {
+        return DefaultHandshakeExecutor.INSTANCE;
+    }
+
+    static final class DefaultHandshakeExecutor {
+        static final int THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+        static final int QUEUE_CAPACITY = 64;
+
+        static final ThreadPoolExecutor INSTANCE;
+
+        static {
+            INSTANCE = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_CAPACITY), new DefaultThreadFactory("t4j-handshake", true));
+            INSTANCE.allowCoreThreadTimeOut(true);
+        }
     }
 }
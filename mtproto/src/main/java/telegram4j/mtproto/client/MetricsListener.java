@@ -0,0 +1,81 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client;
+
+/**
+ * Listener of client metrics, which allows to bridge them to the external monitoring system.
+ * Methods are invoked on the event loop of client, so implementations must be fast and non-blocking.
+ * <p>
+ * All methods are no-op by default.
+ *
+ * @see MTProtoOptions#metricsListener()
+ */
+public interface MetricsListener {
+
+    /** Listener which ignores all metrics. */
+    MetricsListener NOOP = new MetricsListener() {};
+
+    /**
+     * Invoked on receiving of response to the query.
+     *
+     * @param client The client which sent query.
+     * @param method The type name of query, e.g. {@code upload.getFile}.
+     * @param latencyNanos The time from the last sending of query to the receiving of response in nanoseconds.
+     * @param error Whether response is an RPC error.
+     */
+    default void onQuery(MTProtoClient client, String method, long latencyNanos, boolean error) {}
+
+    /**
+     * Invoked on sending or receiving of encrypted packet.
+     *
+     * @param client The client.
+     * @param inbound Whether packet was received.
+     * @param size The size of packet in bytes without transport framing.
+     */
+    default void onPacket(MTProtoClient client, boolean inbound, int size) {}
+
+    /**
+     * Invoked on receiving of quick acknowledgement.
+     *
+     * @param client The client.
+     * @param latencyNanos The time from sending of message to receiving of its quick ack in nanoseconds.
+     */
+    default void onQuickAck(MTProtoClient client, long latencyNanos) {}
+
+    /**
+     * Invoked on receiving of {@code bad_msg_notification} or {@code bad_server_salt}.
+     *
+     * @param client The client.
+     * @param errorCode The error code of notification, {@code 48} for {@code bad_server_salt}.
+     */
+    default void onBadMessage(MTProtoClient client, int errorCode) {}
+
+    /**
+     * Invoked on resending of messages.
+     *
+     * @param client The client.
+     * @param count The count of resent messages.
+     */
+    default void onResend(MTProtoClient client, int count) {}
+
+    /**
+     * Invoked on receiving of pong for the client's ping.
+     *
+     * @param client The client.
+     * @param rttNanos The round-trip time in nanoseconds.
+     */
+    default void onRtt(MTProtoClient client, long rttNanos) {}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client;
+
+import reactor.core.publisher.Mono;
+import telegram4j.mtproto.DcId;
+import telegram4j.tl.api.TlMethod;
+
+/**
+ * Interface for scheduling of requests sent through the {@link MTProtoClientGroup#send(DcId, TlMethod)},
+ * which allows to limit rate of requests before the server responds with {@code FLOOD_WAIT_X} errors.
+ *
+ * @see DefaultRequestScheduler
+ */
+public interface RequestScheduler {
+
+    /**
+     * Creates new {@code RequestScheduler} that sends all requests immediately.
+     *
+     * @return A new {@code RequestScheduler}.
+     */
+    static RequestScheduler direct() {
+        return new RequestScheduler() {
+            @Override
+            public <R> Mono<R> schedule(TlMethod<? extends R> method, Mono<R> request) {
+                return request;
+            }
+        };
+    }
+
+    /**
+     * Wraps lazy request sending with the scheduling logic.
+     *
+     * @param <R> The type of method result.
+     * @param method The method to send.
+     * @param request The lazy {@link Mono} which sends method on subscription.
+     * Scheduler may subscribe to it multiple times to retry request.
+     * @return A {@link Mono} emitting result of request.
+     */
+    <R> Mono<R> schedule(TlMethod<? extends R> method, Mono<R> request);
+
+    /**
+     * Gets live statistics of this scheduler.
+     *
+     * @return The statistics of scheduler.
+     */
+    default Stats stats() {
+        return new Stats() {};
+    }
+
+    /** Priorities of requests. Requests with higher priority acquire permits first. */
+    enum Priority {
+        /** Interactive requests, like answers to the callback queries. */
+        HIGH,
+
+        /** Default priority. */
+        NORMAL,
+
+        /** Bulk requests, like mass mailing. */
+        LOW
+    }
+
+    /** Interface for scheduler statistics. */
+    interface Stats {
+
+        /**
+         * Gets current count of requests of specified priority which are waiting for permit.
+         *
+         * @param priority The priority of requests.
+         * @return The count of queued requests.
+         */
+        default int queueDepth(Priority priority) {
+            return 0;
+        }
+
+        /**
+         * Gets distribution of time spent by requests in queue.
+         * The {@code i}-th element contains count of requests which waited time in range {@code [2^i, 2^(i+1))}
+         * milliseconds, the first element also counts faster ones and the last element counts all slower ones.
+         *
+         * @return The new array with distribution of waiting time.
+         */
+        default long[] waitTimes() {
+            return new long[0];
+        }
+
+        /**
+         * Gets count of {@code FLOOD_WAIT_X} errors received by scheduled requests.
+         *
+         * @return The count of flood wait errors.
+         */
+        default long floodWaits() {
+            return 0;
+        }
+    }
+}
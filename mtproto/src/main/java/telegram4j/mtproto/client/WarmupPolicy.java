@@ -0,0 +1,87 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client;
+
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+
+/**
+ * Policy of eager connection of media clients on startup, which allows
+ * to not pay connection, handshake and authorization latency on the first file request.
+ * Warmed up clients are closed by inactivity the same way as clients created on demand.
+ *
+ * @param dcIds The ids of DCs to warm up. Empty set means DC of main client.
+ * @param downloadClientsCount The count of download clients to connect per DC.
+ * Values exceeding group limit are truncated.
+ * @param uploadClientsCount The count of upload clients to connect per DC.
+ * Values exceeding group limit are truncated.
+ * @param exportAuthorization Whether to import authorization of main client
+ * to the clients of DCs other than main.
+ * @param awaitCompletion Whether bootstrap should complete only after warmup.
+ * Otherwise, warmup is performed in background.
+ */
+public record WarmupPolicy(Set<Integer> dcIds, int downloadClientsCount, int uploadClientsCount,
+                           boolean exportAuthorization, boolean awaitCompletion) {
+
+    /** Policy that doesn't create any client. */
+    public static final WarmupPolicy NONE = new WarmupPolicy(Set.of(), 0, 0, false, false);
+
+    public WarmupPolicy {
+        dcIds = Set.copyOf(requireNonNull(dcIds));
+        requireArgument(downloadClientsCount >= 0, "downloadClientsCount must be positive or zero");
+        requireArgument(uploadClientsCount >= 0, "uploadClientsCount must be positive or zero");
+    }
+
+    /**
+     * Creates policy which connects one download client of each specified DC in background
+     * and imports authorization to them.
+     *
+     * @param dcIds The ids of DCs to warm up. If not specified, DC of main client will be used.
+     * @return A new {@code WarmupPolicy}.
+     */
+    public static WarmupPolicy downloads(Integer... dcIds) {
+        return new WarmupPolicy(Set.copyOf(List.of(dcIds)), 1, 0, true, false);
+    }
+
+    /** {@return {@code true} if policy doesn't create any client} */
+    public boolean isEmpty() {
+        return downloadClientsCount == 0 && uploadClientsCount == 0;
+    }
+
+    /**
+     * Creates a new policy with specified count of download and upload clients.
+     *
+     * @param downloadClientsCount The count of download clients to connect per DC.
+     * @param uploadClientsCount The count of upload clients to connect per DC.
+     * @return A new {@code WarmupPolicy} with specified counts.
+     */
+    public WarmupPolicy withClients(int downloadClientsCount, int uploadClientsCount) {
+        return new WarmupPolicy(dcIds, downloadClientsCount, uploadClientsCount, exportAuthorization, awaitCompletion);
+    }
+
+    /**
+     * Creates a new policy with specified awaiting mode.
+     *
+     * @param awaitCompletion Whether bootstrap should complete only after warmup.
+     * @return A new {@code WarmupPolicy} with specified awaiting mode.
+     */
+    public WarmupPolicy withAwaitCompletion(boolean awaitCompletion) {
+        return new WarmupPolicy(dcIds, downloadClientsCount, uploadClientsCount, exportAuthorization, awaitCompletion);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client;
+
+import reactor.util.annotation.Nullable;
+import telegram4j.mtproto.DcId;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Result of media clients warmup.
+ *
+ * @param elapsed The total time of warmup.
+ * @param clients The breakdown of warmup by each client.
+ */
+public record WarmupReport(Duration elapsed, List<Client> clients) {
+
+    public WarmupReport {
+        requireNonNull(elapsed);
+        clients = List.copyOf(clients);
+    }
+
+    /** {@return {@code true} if all clients were connected and authorized} */
+    public boolean isReady() {
+        return clients.stream().allMatch(c -> c.error == null);
+    }
+
+    @Override
+    public String toString() {
+        return clients.stream()
+                .map(Client::toString)
+                .collect(Collectors.joining(", ", "WarmupReport{elapsed=" + elapsed + ", clients=[", "]}"));
+    }
+
+    /**
+     * Warmup result of single client.
+     *
+     * @param id The id of client.
+     * @param connectTime The time of connection establishment, including handshake.
+     * @param authorizationTime The time of authorization export and import. Zero if it wasn't needed.
+     * @param error The error which occurred during warmup, if present.
+     */
+    public record Client(DcId id, Duration connectTime, Duration authorizationTime, @Nullable Throwable error) {
+
+        public Client {
+            requireNonNull(id);
+            requireNonNull(connectTime);
+            requireNonNull(authorizationTime);
+        }
+
+        @Override
+        public String toString() {
+            return id + ": " + (error != null ? "failed (" + error + ")"
+                    : "connect " + connectTime.toMillis() + "ms, auth " + authorizationTime.toMillis() + "ms");
+        }
+    }
+}
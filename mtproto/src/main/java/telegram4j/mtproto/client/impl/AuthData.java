@@ -19,6 +19,7 @@ import reactor.util.annotation.Nullable;
 import telegram4j.mtproto.DataCenter;
 import telegram4j.mtproto.auth.AuthKey;
 import telegram4j.mtproto.internal.Preconditions;
+import telegram4j.mtproto.util.RandomSource;
 import telegram4j.tl.api.TlMethod;
 import telegram4j.tl.mtproto.MessageContainer;
 import telegram4j.tl.mtproto.MsgResendReq;
@@ -30,27 +31,35 @@ import telegram4j.tl.request.mtproto.PingDelayDisconnect;
 import java.util.Arrays;
 import java.util.Objects;
 
-import static telegram4j.mtproto.util.CryptoUtil.random;
-
 final class AuthData {
     private static final int IMSG_ID_REGISTER_SIZE =
             Integer.getInteger("telegram4j.mtproto.imsgIdRegisterSize", 128);
 
     @Nullable
     private AuthKey authKey;
+    // Permanent key to which temporary authKey is bound, if PFS is used
+    @Nullable
+    private AuthKey permAuthKey;
+    // Temporary key which was used before rotation; kept to accept responses to in-flight requests
+    @Nullable
+    private AuthKey previousAuthKey;
+    private boolean tempAuthKeyBound;
     private int timeOffset;
     private long lastMessageId;
     private long oldSessionId;
-    private long sessionId = random.nextLong();
+    private long sessionId;
     private long serverSalt;
     private int seqNo;
     private boolean unauthorized;
 
     private final DataCenter dc;
+    private final RandomSource random;
     final InboundMessageIdRegister messageIdRegister = new InboundMessageIdRegister(IMSG_ID_REGISTER_SIZE);
 
-    public AuthData(DataCenter dc) {
+    public AuthData(DataCenter dc, RandomSource random) {
         this.dc = Objects.requireNonNull(dc);
+        this.random = Objects.requireNonNull(random);
+        this.sessionId = random.nextLong();
     }
 
     public void updateTimeOffset(int serverTime) {
@@ -67,7 +76,7 @@ final class AuthData {
         long seconds = millis / 1000;
         long mod = millis % 1000;
         // [ 32 bits to approximate server time in seconds | 12 bits to fractional part of time | 20 bits of random number (divisible by 4) ]
-        long messageId = seconds + timeOffset << 32 | mod << 20 | random.nextInt(0x1fffff) << 2;
+        long messageId = seconds + timeOffset << 32 | mod << 20 | random.nextFastInt(0x1fffff) << 2;
         long l = lastMessageId;
         if (l >= messageId) {
             messageId = l + 4;
@@ -128,6 +137,32 @@ final class AuthData {
         this.authKey = authKey;
     }
 
+    @Nullable
+    public AuthKey permAuthKey() {
+        return permAuthKey;
+    }
+
+    public void permAuthKey(AuthKey permAuthKey) {
+        this.permAuthKey = permAuthKey;
+    }
+
+    @Nullable
+    public AuthKey previousAuthKey() {
+        return previousAuthKey;
+    }
+
+    public void previousAuthKey(@Nullable AuthKey previousAuthKey) {
+        this.previousAuthKey = previousAuthKey;
+    }
+
+    public boolean tempAuthKeyBound() {
+        return tempAuthKeyBound;
+    }
+
+    public void tempAuthKeyBound(boolean state) {
+        tempAuthKeyBound = state;
+    }
+
     public void lastMessageId(long firstMsgId) {
         this.lastMessageId = firstMsgId;
     }
@@ -136,6 +171,10 @@ final class AuthData {
         return dc;
     }
 
+    public int timeOffset() {
+        return timeOffset;
+    }
+
     public void timeOffset(int timeOffset) {
         this.timeOffset = timeOffset;
     }
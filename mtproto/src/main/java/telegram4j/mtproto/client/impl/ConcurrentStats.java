@@ -17,26 +17,183 @@ package telegram4j.mtproto.client.impl;
 
 import telegram4j.mtproto.client.ImmutableStats;
 import telegram4j.mtproto.client.MTProtoClient;
+import telegram4j.mtproto.client.MetricsListener;
 
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 final class ConcurrentStats implements MTProtoClient.Stats {
     static final VarHandle QUERIES_COUNT;
+    static final VarHandle PENDING_BYTES;
 
     static {
         try {
             var l = MethodHandles.lookup();
             QUERIES_COUNT = l.findVarHandle(ConcurrentStats.class, "queriesCount", int.class);
+            PENDING_BYTES = l.findVarHandle(ConcurrentStats.class, "pendingBytes", long.class);
         } catch (ReflectiveOperationException e) {
             throw new ExceptionInInitializerError(e);
         }
     }
 
+    // 1, 2-3, 4-7, ..., 512-1023, 1024+
+    static final int WRITE_BATCH_BUCKETS = 11;
+    // in microseconds: <2, 2-3, 4-7, ..., 2^19+ (~0.5s)
+    static final int DECODE_TIME_BUCKETS = 20;
+    // in microseconds: <2, 2-3, 4-7, ..., 2^23+ (~8s)
+    static final int HANDSHAKE_TIME_BUCKETS = 24;
+    // in microseconds: <2, 2-3, 4-7, ..., 2^25+ (~33s)
+    static final int LATENCY_BUCKETS = 26;
+
+    final MTProtoClient client;
+    final MetricsListener listener;
+
     volatile Instant lastQueryTimestamp;
     volatile int queriesCount;
+    volatile int stuckQueriesCount;
+    volatile long pendingBytes;
+    volatile boolean writable = true;
+    // 0 means that there is no measurements yet
+    volatile long smoothedRttNanos;
+    final AtomicLongArray writeBatchSizes = new AtomicLongArray(WRITE_BATCH_BUCKETS);
+    final AtomicLongArray inboundDecodeTimes = new AtomicLongArray(DECODE_TIME_BUCKETS);
+    final AtomicLongArray offloadedDecodeTimes = new AtomicLongArray(DECODE_TIME_BUCKETS);
+    final AtomicLongArray[] handshakeTimes = new AtomicLongArray[MTProtoClient.HandshakePhase.values().length];
+    // type name -> [attempts, compressed, skipped, savedBytes, compressionNanos]
+    final ConcurrentHashMap<String, AtomicLongArray> compressionStats = new ConcurrentHashMap<>();
+    // indexed by MTProtoClient.Counter#ordinal()
+    final AtomicLongArray counters = new AtomicLongArray(MTProtoClient.Counter.values().length);
+    final AtomicLongArray containerSizes = new AtomicLongArray(WRITE_BATCH_BUCKETS);
+    final AtomicLongArray quickAckTimes = new AtomicLongArray(LATENCY_BUCKETS);
+    // type name -> latency histogram
+    final ConcurrentHashMap<String, AtomicLongArray> queryTimes = new ConcurrentHashMap<>();
+
+    ConcurrentStats(MTProtoClient client, MetricsListener listener) {
+        this.client = client;
+        this.listener = listener;
+
+        for (int i = 0; i < handshakeTimes.length; i++) {
+            handshakeTimes[i] = new AtomicLongArray(HANDSHAKE_TIME_BUCKETS);
+        }
+    }
+
+    void recordWriteBatch(int size) {
+        recordLog2(writeBatchSizes, size);
+    }
+
+    void recordInboundDecode(long nanos) {
+        recordLog2(inboundDecodeTimes, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    void recordOffloadedDecode(long nanos) {
+        recordLog2(offloadedDecodeTimes, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    void recordHandshakePhase(MTProtoClient.HandshakePhase phase, long nanos) {
+        recordLog2(handshakeTimes[phase.ordinal()], TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    static void recordLog2(AtomicLongArray histogram, long value) {
+        int bucket = Math.min(63 - Long.numberOfLeadingZeros(Math.max(value, 1)), histogram.length() - 1);
+        histogram.getAndIncrement(bucket);
+    }
+
+    static long[] snapshot(AtomicLongArray histogram) {
+        long[] res = new long[histogram.length()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = histogram.get(i);
+        }
+        return res;
+    }
+
+    void recordCompressionSkip(String type) {
+        compressionCounters(type).getAndIncrement(2);
+    }
+
+    void recordCompression(String type, int originalSize, int compressedSize, long nanos) {
+        var counters = compressionCounters(type);
+        counters.getAndIncrement(0);
+        if (compressedSize < originalSize) {
+            counters.getAndIncrement(1);
+            counters.getAndAdd(3, originalSize - compressedSize);
+        }
+        counters.getAndAdd(4, nanos);
+    }
+
+    private AtomicLongArray compressionCounters(String type) {
+        var counters = compressionStats.get(type);
+        if (counters == null) {
+            counters = compressionStats.computeIfAbsent(type, k -> new AtomicLongArray(5));
+        }
+        return counters;
+    }
+
+    void recordPacket(boolean inbound, int size) {
+        if (inbound) {
+            counters.getAndIncrement(MTProtoClient.Counter.PACKETS_IN.ordinal());
+            counters.getAndAdd(MTProtoClient.Counter.BYTES_IN.ordinal(), size);
+        } else {
+            counters.getAndIncrement(MTProtoClient.Counter.PACKETS_OUT.ordinal());
+            counters.getAndAdd(MTProtoClient.Counter.BYTES_OUT.ordinal(), size);
+        }
+        listener.onPacket(client, inbound, size);
+    }
+
+    void recordContainer(int size) {
+        recordLog2(containerSizes, size);
+    }
+
+    void recordResend(int count) {
+        if (count <= 0) {
+            return;
+        }
+        counters.getAndAdd(MTProtoClient.Counter.RESENT_MESSAGES.ordinal(), count);
+        listener.onResend(client, count);
+    }
+
+    void recordBadMessage(int errorCode, boolean badServerSalt) {
+        counters.getAndIncrement(badServerSalt
+                ? MTProtoClient.Counter.BAD_SERVER_SALTS.ordinal()
+                : MTProtoClient.Counter.BAD_MSG_NOTIFICATIONS.ordinal());
+        listener.onBadMessage(client, errorCode);
+    }
+
+    void recordQuickAck(long nanos) {
+        counters.getAndIncrement(MTProtoClient.Counter.QUICK_ACKS.ordinal());
+        recordLog2(quickAckTimes, TimeUnit.NANOSECONDS.toMicros(nanos));
+        listener.onQuickAck(client, nanos);
+    }
+
+    void recordQuery(String type, long nanos, boolean error) {
+        var histogram = queryTimes.get(type);
+        if (histogram == null) {
+            histogram = queryTimes.computeIfAbsent(type, k -> new AtomicLongArray(LATENCY_BUCKETS));
+        }
+        recordLog2(histogram, TimeUnit.NANOSECONDS.toMicros(nanos));
+        listener.onQuery(client, type, nanos, error);
+    }
+
+    void addPendingBytes(long amount) {
+        PENDING_BYTES.getAndAdd(this, amount);
+    }
+
+    // Must be called on the event loop
+    void recordRtt(long nanos) {
+        long srtt = smoothedRttNanos;
+        // Exponential moving average with factor 1/8 like in the RFC 6298
+        smoothedRttNanos = srtt == 0 ? Math.max(nanos, 1) : srtt + (nanos - srtt) / 8;
+        listener.onRtt(client, nanos);
+    }
 
     void addQueriesCount(int amount) {
         QUERIES_COUNT.getAndAdd(this, amount);
@@ -60,9 +217,81 @@ final class ConcurrentStats implements MTProtoClient.Stats {
         return queriesCount;
     }
 
+    @Override
+    public int stuckQueriesCount() {
+        return stuckQueriesCount;
+    }
+
+    @Override
+    public long pendingBytes() {
+        return pendingBytes;
+    }
+
+    @Override
+    public boolean writable() {
+        return writable;
+    }
+
+    @Override
+    public Optional<Duration> smoothedRtt() {
+        long srtt = smoothedRttNanos;
+        return srtt != 0 ? Optional.of(Duration.ofNanos(srtt)) : Optional.empty();
+    }
+
+    @Override
+    public long[] writeBatchSizes() {
+        return snapshot(writeBatchSizes);
+    }
+
+    @Override
+    public long[] inboundDecodeTimes() {
+        return snapshot(inboundDecodeTimes);
+    }
+
+    @Override
+    public long[] offloadedDecodeTimes() {
+        return snapshot(offloadedDecodeTimes);
+    }
+
+    @Override
+    public long[] handshakeTimes(MTProtoClient.HandshakePhase phase) {
+        return snapshot(handshakeTimes[phase.ordinal()]);
+    }
+
+    @Override
+    public long counter(MTProtoClient.Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    @Override
+    public long[] containerSizes() {
+        return snapshot(containerSizes);
+    }
+
+    @Override
+    public long[] quickAckTimes() {
+        return snapshot(quickAckTimes);
+    }
+
+    @Override
+    public Map<String, long[]> queryTimes() {
+        var res = new HashMap<String, long[]>(queryTimes.size());
+        queryTimes.forEach((type, h) -> res.put(type, snapshot(h)));
+        return Collections.unmodifiableMap(res);
+    }
+
+    @Override
+    public Map<String, MTProtoClient.CompressionStats> compressionStats() {
+        var res = new HashMap<String, MTProtoClient.CompressionStats>(compressionStats.size());
+        compressionStats.forEach((type, c) -> res.put(type, new MTProtoClient.CompressionStats(
+                c.get(0), c.get(1), c.get(2), c.get(3), c.get(4))));
+        return Collections.unmodifiableMap(res);
+    }
+
     @Override
     public MTProtoClient.Stats copy() {
-        return new ImmutableStats(lastQueryTimestamp, queriesCount);
+        // Snapshots are already fresh arrays, so they are passed without extra copying
+        return new ImmutableStats(this);
     }
 
     @Override
@@ -70,6 +299,30 @@ final class ConcurrentStats implements MTProtoClient.Stats {
         return "Stats{" +
                 "lastQueryTimestamp=" + lastQueryTimestamp +
                 ", queriesCount=" + queriesCount +
+                ", stuckQueriesCount=" + stuckQueriesCount +
+                ", writeBatchSizes=" + Arrays.toString(writeBatchSizes()) +
+                ", compressionStats=" + compressionStats() +
+                ", inboundDecodeTimes=" + Arrays.toString(inboundDecodeTimes()) +
+                ", offloadedDecodeTimes=" + Arrays.toString(offloadedDecodeTimes()) +
+                ", handshakeTimes=" + handshakeTimesString() +
+                ", pendingBytes=" + pendingBytes +
+                ", writable=" + writable +
+                ", smoothedRtt=" + smoothedRtt().orElse(null) +
+                ", counters=" + Arrays.toString(snapshot(counters)) +
+                ", containerSizes=" + Arrays.toString(containerSizes()) +
+                ", quickAckTimes=" + Arrays.toString(quickAckTimes()) +
+                ", queryTimes=" + queryTimes.keySet() +
                 '}';
     }
+
+    private String handshakeTimesString() {
+        var builder = new StringBuilder("{");
+        for (var phase : MTProtoClient.HandshakePhase.values()) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(phase).append('=').append(Arrays.toString(handshakeTimes(phase)));
+        }
+        return builder.append('}').toString();
+    }
 }
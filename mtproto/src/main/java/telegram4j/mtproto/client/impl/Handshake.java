@@ -23,11 +23,14 @@ import io.netty.handler.timeout.ReadTimeoutException;
 import io.netty.util.concurrent.ScheduledFuture;
 import reactor.util.Logger;
 import reactor.util.Loggers;
+import reactor.util.annotation.Nullable;
 import telegram4j.mtproto.PublicRsaKey;
 import telegram4j.mtproto.auth.AuthKey;
 import telegram4j.mtproto.auth.AuthorizationException;
+import telegram4j.mtproto.client.MTProtoClient.HandshakePhase;
 import telegram4j.mtproto.util.AES256IGECipher;
 import telegram4j.mtproto.util.CryptoUtil;
+import telegram4j.mtproto.util.RandomSource;
 import telegram4j.tl.TlDeserializer;
 import telegram4j.tl.TlSerializer;
 import telegram4j.tl.api.MTProtoObject;
@@ -38,13 +41,20 @@ import telegram4j.tl.request.mtproto.ReqDHParams;
 
 import java.math.BigInteger;
 import java.time.Instant;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static telegram4j.mtproto.internal.Crypto.sha1Digest;
 import static telegram4j.mtproto.internal.Crypto.sha256Digest;
 import static telegram4j.mtproto.util.CryptoUtil.*;
 
+/**
+ * Handler of auth key generation. The CPU-heavy steps, i.e. factorization, RSA encryption,
+ * primality checks of DH prime and modular exponentiations, are computed on the
+ * {@link HandshakeContext#computeExecutor()} and the handshake is resumed on the event loop.
+ */
 final class Handshake extends ChannelInboundHandlerAdapter {
 
     private static final Logger log = Loggers.getLogger("telegram4j.mtproto.Handshake");
@@ -56,6 +66,7 @@ final class Handshake extends ChannelInboundHandlerAdapter {
     private final HandshakeContext context;
 
     private ScheduledFuture<?> timeoutSchedule;
+    private long startNanos;
 
     public Handshake(String clientId, AuthData authData, HandshakeContext context) {
         this.clientId = clientId;
@@ -67,15 +78,62 @@ final class Handshake extends ChannelInboundHandlerAdapter {
     public void handlerAdded(ChannelHandlerContext ctx) {
 
         byte[] nonceb = new byte[16];
-        random.nextBytes(nonceb);
+        context.randomSource().nextBytes(nonceb);
 
         ByteBuf nonce = Unpooled.wrappedBuffer(nonceb);
         context.nonce(nonce);
 
         log.debug("[C:0x{}] Sending ReqPqMulti", clientId);
+        startNanos = System.nanoTime();
         write(ctx, ImmutableReqPqMulti.of(nonce));
     }
 
+    private void offload(ChannelHandlerContext ctx, HandshakePhase phase, Supplier<MTProtoObject> computation) {
+        Runnable task = () -> {
+            long start = System.nanoTime();
+            MTProtoObject request = null;
+            Throwable error = null;
+            try {
+                request = computation.get();
+            } catch (Throwable t) {
+                error = t;
+            }
+            context.stats().recordHandshakePhase(phase, System.nanoTime() - start);
+
+            MTProtoObject result = request;
+            Throwable cause = error;
+            if (ctx.executor().inEventLoop()) {
+                resume(ctx, result, cause);
+            } else {
+                try {
+                    ctx.executor().execute(() -> resume(ctx, result, cause));
+                } catch (RejectedExecutionException e) {
+                    log.debug("[C:0x{}] Event loop rejected handshake continuation", clientId);
+                }
+            }
+        };
+
+        try {
+            context.computeExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            // compute executor is overloaded or shut down; fallback to the event loop
+            task.run();
+        }
+    }
+
+    private void resume(ChannelHandlerContext ctx, @Nullable MTProtoObject request, @Nullable Throwable error) {
+        // channel may be closed while computation
+        if (ctx.isRemoved() || !ctx.channel().isActive()) {
+            return;
+        }
+
+        if (error != null) {
+            ctx.fireExceptionCaught(error);
+        } else {
+            write(ctx, request);
+        }
+    }
+
     private void write(ChannelHandlerContext ctx, MTProtoObject object) {
         ctx.writeAndFlush(object)
                 .addListener(future -> {
@@ -125,65 +183,67 @@ final class Handshake extends ChannelInboundHandlerAdapter {
                     .collect(Collectors.joining(", ", "[", "]")));
         }
 
-        BigInteger pq = fromByteBuf(resPQ.pq());
-        BigInteger p = BigInteger.valueOf(pqFactorize(pq.longValueExact()));
-        BigInteger q = pq.divide(p);
+        offload(ctx, HandshakePhase.RES_PQ, () -> {
+            BigInteger pq = fromByteBuf(resPQ.pq());
+            BigInteger p = BigInteger.valueOf(pqFactorize(context.randomSource(), pq.longValueExact()));
+            BigInteger q = pq.divide(p);
 
-        if (p.longValueExact() > q.longValueExact()) {
-            throw new AuthorizationException("Invalid factorization result. p: " + p + ", q: " + q + ", pq: " + pq);
-        }
-
-        ByteBuf pb = toByteBuf(p);
-        ByteBuf qb = toByteBuf(q);
-
-        byte[] newNonceb = new byte[32];
-        random.nextBytes(newNonceb);
+            if (p.longValueExact() > q.longValueExact()) {
+                throw new AuthorizationException("Invalid factorization result. p: " + p + ", q: " + q + ", pq: " + pq);
+            }
 
-        ByteBuf newNonce = Unpooled.wrappedBuffer(newNonceb);
+            ByteBuf pb = toByteBuf(p);
+            ByteBuf qb = toByteBuf(q);
+
+            byte[] newNonceb = new byte[32];
+            context.randomSource().nextBytes(newNonceb);
+
+            ByteBuf newNonce = Unpooled.wrappedBuffer(newNonceb);
+
+            context.newNonce(newNonce);
+            context.serverNonce(resPQ.serverNonce());
+
+            PQInnerData pqInnerData;
+            if (context.expiresIn() != 0) {
+                pqInnerData = PQInnerDataTempDc.builder()
+                        .pq(resPQ.pq())
+                        .p(pb)
+                        .q(qb)
+                        .nonce(nonce)
+                        .serverNonce(resPQ.serverNonce())
+                        .newNonce(newNonce)
+                        .dc(authData.dc().getInternalId())
+                        .expiresIn(context.expiresIn())
+                        .build();
+                context.expiresAt(System.currentTimeMillis() + context.expiresIn()*1000L);
+            } else {
+                pqInnerData = PQInnerDataDc.builder()
+                        .pq(resPQ.pq())
+                        .p(pb)
+                        .q(qb)
+                        .nonce(nonce)
+                        .serverNonce(resPQ.serverNonce())
+                        .newNonce(newNonce)
+                        .dc(authData.dc().getInternalId())
+                        .build();
+            }
 
-        context.newNonce(newNonce);
-        context.serverNonce(resPQ.serverNonce());
+            ByteBuf pqInnerDataBuf = TlSerializer.serialize(ctx.alloc(), pqInnerData);
+            ByteBuf encryptedData = rsa(context.randomSource(), pqInnerDataBuf, foundKey.key());
 
-        PQInnerData pqInnerData;
-        if (context.expiresIn() != 0) {
-            pqInnerData = PQInnerDataTempDc.builder()
-                    .pq(resPQ.pq())
-                    .p(pb)
-                    .q(qb)
+            log.debug("[C:0x{}] Sending ReqDHParams", clientId);
+            return ReqDHParams.builder()
                     .nonce(nonce)
                     .serverNonce(resPQ.serverNonce())
-                    .newNonce(newNonce)
-                    .dc(authData.dc().getInternalId())
-                    .expiresIn(context.expiresIn())
-                    .build();
-            context.expiresAt(System.currentTimeMillis() + context.expiresIn()*1000L);
-        } else {
-            pqInnerData = PQInnerDataDc.builder()
-                    .pq(resPQ.pq())
+                    .encryptedData(encryptedData)
                     .p(pb)
                     .q(qb)
-                    .nonce(nonce)
-                    .serverNonce(resPQ.serverNonce())
-                    .newNonce(newNonce)
-                    .dc(authData.dc().getInternalId())
+                    .publicKeyFingerprint(foundKey.fingerprint())
                     .build();
-        }
-
-        ByteBuf pqInnerDataBuf = TlSerializer.serialize(ctx.alloc(), pqInnerData);
-        ByteBuf encryptedData = rsa(pqInnerDataBuf, foundKey.key());
-
-        log.debug("[C:0x{}] Sending ReqDHParams", clientId);
-        write(ctx, ReqDHParams.builder()
-                .nonce(nonce)
-                .serverNonce(resPQ.serverNonce())
-                .encryptedData(encryptedData)
-                .p(pb)
-                .q(qb)
-                .publicKeyFingerprint(foundKey.fingerprint())
-                .build());
+        });
     }
 
-    private static ByteBuf rsa(ByteBuf data, PublicRsaKey key) {
+    private static ByteBuf rsa(RandomSource random, ByteBuf data, PublicRsaKey key) {
         ByteBuf hash = sha1Digest(data);
         byte[] paddingb = new byte[255 - hash.readableBytes() - data.readableBytes()];
         random.nextBytes(paddingb);
@@ -196,7 +256,7 @@ final class Handshake extends ChannelInboundHandlerAdapter {
     // Adapted version of:
     // https://github.com/andrew-ld/LL-mtproto/blob/217d27ac04151c085dcf0a2173f9a868e97e4cec/ll_mtproto/crypto/public_rsa.py#L86
     // FIXME: it's not working right now; don't know what's wrong yet
-    private static ByteBuf rsaPad(ByteBuf data, PublicRsaKey key) {
+    private static ByteBuf rsaPad(RandomSource random, ByteBuf data, PublicRsaKey key) {
         if (data.readableBytes() > 144)
             throw new AuthorizationException("Plain data length is more that 144 bytes");
 
@@ -236,6 +296,10 @@ final class Handshake extends ChannelInboundHandlerAdapter {
         if (!serverDHParams.nonce().equals(context.nonce())) throw new AuthorizationException("nonce mismatch");
         if (!serverDHParams.serverNonce().equals(context.serverNonce())) throw new AuthorizationException("serverNonce mismatch");
 
+        offload(ctx, HandshakePhase.SERVER_DH_PARAMS, () -> computeClientDHParams(ctx, serverDHParams));
+    }
+
+    private MTProtoObject computeClientDHParams(ChannelHandlerContext ctx, ServerDHParams serverDHParams) {
         ByteBuf encryptedAnswer = serverDHParams.encryptedAnswer();
         if (encryptedAnswer.readableBytes() % 16 != 0) {
             throw new AuthorizationException("encryptedAnswer size mismatch");
@@ -336,7 +400,7 @@ final class Handshake extends ChannelInboundHandlerAdapter {
         }
 
         byte[] bs = new byte[256];
-        random.nextBytes(bs);
+        context.randomSource().nextBytes(bs);
 
         BigInteger b = fromByteArray(bs);
         BigInteger g = BigInteger.valueOf(serverDHInnerData.g());
@@ -375,7 +439,8 @@ final class Handshake extends ChannelInboundHandlerAdapter {
                 .build();
 
         ByteBuf innerData = TlSerializer.serialize(ctx.alloc(), clientDHInnerData);
-        ByteBuf innerDataWithHash = align(Unpooled.wrappedBuffer(sha1Digest(innerData), innerData), 16);
+        ByteBuf innerDataWithHash = align(context.randomSource(),
+                Unpooled.wrappedBuffer(sha1Digest(innerData), innerData), 16);
 
         cipher.init(true, tmpAesKey, tmpAesIv);
         ByteBuf dataWithHashEnc = cipher.encrypt(innerDataWithHash);
@@ -385,7 +450,7 @@ final class Handshake extends ChannelInboundHandlerAdapter {
         dataWithHashEnc.release();
 
         log.debug("[C:0x{}] Sending SetClientDHParam", clientId);
-        write(ctx, req);
+        return req;
     }
 
     private void handleDhGenOk(ChannelHandlerContext ctx, DhGenOk dhGenOk) {
@@ -398,7 +463,9 @@ final class Handshake extends ChannelInboundHandlerAdapter {
         if (!dhGenOk.serverNonce().equals(context.serverNonce())) throw new AuthorizationException("serverNonce mismatch");
         if (!dhGenOk.newNonceHash1().equals(newNonceHash)) throw new AuthorizationException("newNonceHash1 mismatch");
 
-        Instant expiresAtTimestamp = context.expiresAt() != 0 ? Instant.ofEpochSecond(context.expiresAt()) : null;
+        context.stats().recordHandshakePhase(HandshakePhase.TOTAL, System.nanoTime() - startNanos);
+
+        Instant expiresAtTimestamp = context.expiresAt() != 0 ? Instant.ofEpochMilli(context.expiresAt()) : null;
         ctx.fireUserEventTriggered(new HandshakeCompleteEvent(
                 new AuthKey(context.authKey(), expiresAtTimestamp),
                 context.serverSalt(), context.serverTimeDiff()));
@@ -432,7 +499,7 @@ final class Handshake extends ChannelInboundHandlerAdapter {
         throw new AuthorizationException("Failed to create an authorization key");
     }
 
-    static ByteBuf align(ByteBuf src, int factor) {
+    static ByteBuf align(RandomSource random, ByteBuf src, int factor) {
         if (src.readableBytes() % factor == 0) {
             return src;
         }
@@ -489,13 +556,13 @@ final class Handshake extends ChannelInboundHandlerAdapter {
         return c;
     }
 
-    static long pqFactorize(long pq) {
+    static long pqFactorize(RandomSource random, long pq) {
         if (pq <= 2) return 1;
         if ((pq & 1) == 0) return 2;
 
         long g = 0;
         for (int i = 0, iter = 0; i < 3 || iter < 1000; i++) {
-            long q = (17 + random.nextInt(32)) % (pq - 1);
+            long q = (17 + random.nextFastInt(32)) % (pq - 1);
             long x = Math.abs(random.nextLong()) % (pq - 1) + 1;
             long y = x;
             int lim = 1 << Math.min(5, i) + 18;
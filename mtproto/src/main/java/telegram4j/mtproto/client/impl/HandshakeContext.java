@@ -18,15 +18,20 @@ package telegram4j.mtproto.client.impl;
 import io.netty.buffer.ByteBuf;
 import telegram4j.mtproto.PublicRsaKeyRegister;
 import telegram4j.mtproto.auth.DhPrimeChecker;
+import telegram4j.mtproto.util.RandomSource;
 import telegram4j.tl.mtproto.ServerDHParams;
 
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
 final class HandshakeContext {
 
     private final int expiresIn;
     private final DhPrimeChecker dhPrimeChecker;
     private final PublicRsaKeyRegister publicRsaKeyRegister;
+    private final RandomSource randomSource;
+    private final Executor computeExecutor;
+    private final ConcurrentStats stats;
 
     private ByteBuf nonce;
     private ByteBuf newNonce;
@@ -38,10 +43,15 @@ final class HandshakeContext {
     private int retry;
     private long expiresAt;
 
-    public HandshakeContext(int expiresIn, DhPrimeChecker dhPrimeChecker, PublicRsaKeyRegister publicRsaKeyRegister) {
+    public HandshakeContext(int expiresIn, DhPrimeChecker dhPrimeChecker,
+                            PublicRsaKeyRegister publicRsaKeyRegister, RandomSource randomSource,
+                            Executor computeExecutor, ConcurrentStats stats) {
         this.expiresIn = expiresIn;
         this.dhPrimeChecker = dhPrimeChecker;
         this.publicRsaKeyRegister = publicRsaKeyRegister;
+        this.randomSource = randomSource;
+        this.computeExecutor = computeExecutor;
+        this.stats = stats;
     }
 
     public int expiresIn() {
@@ -64,6 +74,18 @@ final class HandshakeContext {
         return publicRsaKeyRegister;
     }
 
+    public RandomSource randomSource() {
+        return randomSource;
+    }
+
+    public Executor computeExecutor() {
+        return computeExecutor;
+    }
+
+    public ConcurrentStats stats() {
+        return stats;
+    }
+
     public ByteBuf nonce() {
         return nonce;
     }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import java.util.function.LongPredicate;
+
+/**
+ * Queue of in-flight message ids ordered by their sending time.
+ * Completed messages are not removed eagerly, but on {@link #retain(LongPredicate)} sweep,
+ * so registration of message is O(1) and sweep is linear in number of messages sent since previous sweep
+ * plus number of still pending messages.
+ */
+final class InflightQueue {
+    long[] ids;
+    long[] timestamps;
+    int head;
+    int size;
+
+    InflightQueue(int initialCapacity) {
+        int cap = Math.max(Integer.highestOneBit(initialCapacity - 1) << 1, 8);
+        ids = new long[cap];
+        timestamps = new long[cap];
+    }
+
+    int size() {
+        return size;
+    }
+
+    long id(int index) {
+        return ids[(head + index) & ids.length - 1];
+    }
+
+    long timestamp(int index) {
+        return timestamps[(head + index) & ids.length - 1];
+    }
+
+    void add(long id, long timestamp) {
+        if (size == ids.length) {
+            grow();
+        }
+
+        int idx = (head + size) & ids.length - 1;
+        ids[idx] = id;
+        timestamps[idx] = timestamp;
+        size++;
+    }
+
+    // Removes ids which don't match the predicate, preserving order of others
+    void retain(LongPredicate predicate) {
+        int mask = ids.length - 1;
+        int newSize = 0;
+        for (int i = 0; i < size; i++) {
+            int src = (head + i) & mask;
+            long id = ids[src];
+            if (predicate.test(id)) {
+                int dst = (head + newSize) & mask;
+                ids[dst] = id;
+                timestamps[dst] = timestamps[src];
+                newSize++;
+            }
+        }
+        size = newSize;
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        int cap = ids.length << 1;
+        long[] newIds = new long[cap];
+        long[] newTimestamps = new long[cap];
+        for (int i = 0; i < size; i++) {
+            newIds[i] = id(i);
+            newTimestamps[i] = timestamp(i);
+        }
+        ids = newIds;
+        timestamps = newTimestamps;
+        head = 0;
+    }
+}
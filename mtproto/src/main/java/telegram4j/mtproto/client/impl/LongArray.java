@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/** Growable array of primitive longs, used to collect message ids without boxing. */
+final class LongArray {
+    long[] array;
+    int size;
+
+    LongArray(int initialCapacity) {
+        this.array = new long[initialCapacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return array[index];
+    }
+
+    void add(long value) {
+        if (size == array.length) {
+            array = Arrays.copyOf(array, Math.max(8, size << 1));
+        }
+        array[size++] = value;
+    }
+
+    void addAll(List<Long> values) {
+        for (int i = 0, n = values.size(); i < n; i++) {
+            add(values.get(i));
+        }
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Removes first {@code count} elements and returns them as list,
+     * which is suitable for creation of {@code MsgsAck} or {@code MsgsStateReq}.
+     *
+     * @param count The number of elements to remove.
+     * @return The list view of removed elements.
+     */
+    List<Long> poll(int count) {
+        long[] batch = Arrays.copyOf(array, count);
+        System.arraycopy(array, count, array, 0, size - count);
+        size -= count;
+        return new ListView(batch);
+    }
+
+    /**
+     * Returns list view of elements without copying.
+     * The view will reflect changes of this array, so it must be used immediately.
+     *
+     * @return The list view of this array.
+     */
+    List<Long> asList() {
+        return new ListView(array, size);
+    }
+
+    @Override
+    public String toString() {
+        return asList().toString();
+    }
+
+    static final class ListView extends AbstractList<Long> implements RandomAccess {
+        final long[] array;
+        final int size;
+
+        ListView(long[] array) {
+            this(array, array.length);
+        }
+
+        ListView(long[] array, int size) {
+            this.array = array;
+            this.size = size;
+        }
+
+        @Override
+        public Long get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            return array[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -24,6 +24,7 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.timeout.ReadTimeoutException;
 import io.netty.util.AttributeKey;
 import io.netty.util.NetUtil;
+import io.netty.util.collection.LongObjectHashMap;
 import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.ScheduledFuture;
 import io.netty.util.internal.shaded.org.jctools.queues.MpscArrayQueue;
@@ -39,6 +40,7 @@ import reactor.util.Loggers;
 import reactor.util.annotation.Nullable;
 import reactor.util.concurrent.Queues;
 import telegram4j.mtproto.*;
+import telegram4j.mtproto.auth.AuthKey;
 import telegram4j.mtproto.auth.AuthorizationException;
 import telegram4j.mtproto.client.MTProtoClient;
 import telegram4j.mtproto.client.MTProtoClientGroup;
@@ -46,6 +48,7 @@ import telegram4j.mtproto.client.MTProtoOptions;
 import telegram4j.mtproto.internal.Preconditions;
 import telegram4j.mtproto.resource.impl.BaseProxyResources;
 import telegram4j.mtproto.transport.Transport;
+import telegram4j.tl.TlSerializer;
 import telegram4j.tl.api.TlMethod;
 import telegram4j.tl.mtproto.MsgsAck;
 import telegram4j.tl.request.account.GetPassword;
@@ -53,6 +56,9 @@ import telegram4j.tl.request.auth.CheckPassword;
 import telegram4j.tl.request.auth.ExportLoginToken;
 import telegram4j.tl.request.auth.ImportLoginToken;
 import telegram4j.tl.request.mtproto.*;
+import telegram4j.tl.request.upload.GetCdnFile;
+import telegram4j.tl.request.upload.GetFile;
+import telegram4j.tl.request.upload.GetWebFile;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
@@ -62,7 +68,6 @@ import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Locale;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
@@ -101,31 +106,41 @@ public final class MTProtoClientImpl implements MTProtoClient {
     int oldState = ChannelState.DISCONNECTED;
     boolean inflightPing;
     ScheduledFuture<?> pingTrigger;
+    ScheduledFuture<?> authKeyPrefetchTrigger;
+    ScheduledFuture<?> authKeyRotationTrigger;
 
     final MTProtoClientGroup group;
     final DcId.Type type;
     final AuthData authData;
     final MpscArrayQueue<RpcQuery> pendingRequests = new MpscArrayQueue<>(Queues.SMALL_BUFFER_SIZE);
-    final HashMap<Long, Request> requests = new HashMap<>();
+    final LongObjectHashMap<Request> requests = new LongObjectHashMap<>();
+    // Time-ordered ids of requests from the map above
+    final InflightQueue inflight = new InflightQueue(32);
     final ArrayDeque<RpcQuery> delayedUntilAuth = new ArrayDeque<>(16);
+    // Requests which were written during binding of the new temporary key
+    final ArrayDeque<RpcRequest> delayedUntilBind = new ArrayDeque<>(16);
     final ArrayDeque<RpcRequest> resend = new ArrayDeque<>(32);
     final String id = Integer.toHexString(hashCode());
     final ReconnectionContextImpl reconnectCtx = new ReconnectionContextImpl();
-    final ConcurrentStats stats = new ConcurrentStats();
+    final ConcurrentStats stats;
     final Sinks.Empty<Void> onClose = Sinks.empty();
 
     final MTProtoOptions mtProtoOptions;
     final Options options;
     final Bootstrap bootstrap;
+    // Present only for media clients, which use PFS
+    @Nullable
+    final TempAuthKeyGenerator tempAuthKeys;
 
     public MTProtoClientImpl(MTProtoClientGroup group, DcId.Type type,
                              DataCenter dc, MTProtoOptions mtProtoOptions,
                              Options options) {
         this.group = group;
         this.type = type;
-        this.authData = new AuthData(dc);
+        this.authData = new AuthData(dc, mtProtoOptions.randomSource());
         this.mtProtoOptions = mtProtoOptions;
         this.options = options;
+        this.stats = new ConcurrentStats(this, mtProtoOptions.metricsListener());
 
         var tcpClientRes = mtProtoOptions.tcpClientResources();
         this.bootstrap = new Bootstrap()
@@ -143,6 +158,12 @@ public final class MTProtoClientImpl implements MTProtoClient {
                         ch.pipeline().addLast(CORE, new MTProtoClientHandler());
                     }
                 });
+
+        // CDN DCs don't have user authorization, so temporary keys can't be bound to them
+        this.tempAuthKeys = type != DcId.Type.MAIN && dc.getType() != DataCenter.Type.CDN &&
+                !options.authKeyLifetime().isZero()
+                ? new TempAuthKeyGenerator(this, options.authKeyLifetime())
+                : null;
     }
 
     class MTProtoClientHandler extends ChannelInboundHandlerAdapter {
@@ -175,11 +196,21 @@ public final class MTProtoClientImpl implements MTProtoClient {
                     });
         }
 
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+            stats.writable = ctx.channel().isWritable();
+            ctx.fireChannelWritabilityChanged();
+        }
+
         @Override
         public void channelInactive(ChannelHandlerContext ctx) {
+            stats.writable = false;
             if (pingTrigger != null) {
                 pingTrigger.cancel(false);
             }
+            cancelAuthKeyRotation();
+            // responses for the previous key can't be received anymore
+            authData.previousAuthKey(null);
 
             long backoff;
             if (reconnectCtx.isResume() && (backoff = nextBackoff(null)) != -1) {
@@ -200,6 +231,9 @@ public final class MTProtoClientImpl implements MTProtoClient {
                 log.info("[C:0x{}] Disconnected from DC {}", id, authData.dc().getId());
 
                 cancelRequests(ctx);
+                if (tempAuthKeys != null) {
+                    tempAuthKeys.dispose();
+                }
 
                 Throwable cause = reconnectCtx.cause();
                 // Reset for correct close()
@@ -253,8 +287,6 @@ public final class MTProtoClientImpl implements MTProtoClient {
         @Override
         public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
             if (evt instanceof HandshakeCompleteEvent event) {
-                authData.authKey(event.authKey());
-                authData.serverSalt(event.serverSalt());
                 authData.timeOffset(event.serverTimeDiff());
 
                 // TODO: switch thread to publisher
@@ -264,7 +296,14 @@ public final class MTProtoClientImpl implements MTProtoClient {
                 ctx.pipeline().remove(HANDSHAKE);
                 ctx.pipeline().remove(HANDSHAKE_CODEC);
 
-                configure(ctx);
+                if (tempAuthKeys != null) {
+                    authData.permAuthKey(event.authKey());
+                    applyTempAuthKey(ctx);
+                } else {
+                    authData.authKey(event.authKey());
+                    authData.serverSalt(event.serverSalt());
+                    configure(ctx);
+                }
             } else {
                 ctx.fireUserEventTriggered(evt);
             }
@@ -289,12 +328,20 @@ public final class MTProtoClientImpl implements MTProtoClient {
                         .subscribe(null, ctx::fireExceptionCaught);
             }
 
-            send(ctx, options.initConnection())
+            Mono<Void> bind = Mono.empty();
+            if (tempAuthKeys != null && !authData.tempAuthKeyBound()) {
+                bind = encryption.bindTempAuthKey()
+                        .flatMap(ok -> ok ? Mono.empty() : Mono.error(
+                                new MTProtoException("Temporary auth key was not bound")));
+            }
+
+            bind.then(Mono.defer(() -> send(ctx, options.initConnection())))
                     .subscribe(freshConfig -> {
                         reconnectCtx.resetAfterConnect();
 
                         logStateChange(ChannelState.CONNECTED);
                         channelState = new ChannelState(ctx.channel(), ChannelState.CONNECTED);
+                        stats.writable = ctx.channel().isWritable();
 
                         var sinkAttr = ctx.channel().attr(NOTIFY);
                         var sink = sinkAttr.getAndSet(null);
@@ -303,9 +350,76 @@ public final class MTProtoClientImpl implements MTProtoClient {
                         }
 
                         sendPendingRequests(ctx);
+
+                        if (tempAuthKeys != null) {
+                            scheduleAuthKeyRotation(ctx);
+                        }
                     }, ctx::fireExceptionCaught);
         }
 
+        // Uses current temporary key if it's not going to expire soon or takes the new one
+        void applyTempAuthKey(ChannelHandlerContext ctx) {
+            assert tempAuthKeys != null;
+
+            var current = authData.authKey();
+            if (current != null && tempAuthKeys.isValid(current)) {
+                configure(ctx);
+                return;
+            }
+
+            tempAuthKeys.take()
+                    .subscribe(event -> ctx.executor().execute(() -> {
+                        if (!ctx.channel().isActive()) {
+                            return;
+                        }
+
+                        authData.authKey(event.authKey());
+                        authData.serverSalt(event.serverSalt());
+                        authData.timeOffset(event.serverTimeDiff());
+                        authData.tempAuthKeyBound(false);
+
+                        configure(ctx);
+                    }), ctx::fireExceptionCaught);
+        }
+
+        // Schedules generation of the next temporary key and replacing of the current one with it
+        void scheduleAuthKeyRotation(ChannelHandlerContext ctx) {
+            assert tempAuthKeys != null;
+
+            var authKey = authData.authKey();
+            if (authKey == null || authKey.expiresAtTimestamp().isEmpty()) {
+                return;
+            }
+
+            long expiresAt = authKey.expiresAtTimestamp().get().toEpochMilli();
+            long margin = tempAuthKeys.rotationMargin.toMillis();
+            long now = System.currentTimeMillis();
+
+            cancelAuthKeyRotation();
+            authKeyPrefetchTrigger = ctx.executor().schedule(tempAuthKeys::prefetch,
+                    Math.max(0, expiresAt - margin * 2 - now), TimeUnit.MILLISECONDS);
+            authKeyRotationTrigger = ctx.executor().schedule(() -> rotateAuthKey(ctx),
+                    Math.max(0, expiresAt - margin - now), TimeUnit.MILLISECONDS);
+        }
+
+        void rotateAuthKey(ChannelHandlerContext ctx) {
+            assert tempAuthKeys != null;
+
+            tempAuthKeys.take()
+                    .subscribe(event -> ctx.executor().execute(() -> {
+                        if (!ctx.channel().isActive() || encryption == null) {
+                            return;
+                        }
+
+                        if (log.isDebugEnabled()) {
+                            log.debug("[C:0x{}] Rotating temporary auth key to {}", id, event.authKey());
+                        }
+
+                        encryption.rotateAuthKey(event)
+                                .subscribe(null, ctx::fireExceptionCaught, () -> scheduleAuthKeyRotation(ctx));
+                    }), ctx::fireExceptionCaught);
+        }
+
         void schedulePing(ChannelHandlerContext ctx) {
             long period = options.pingInterval().toNanos();
             pingTrigger = ctx.executor().scheduleWithFixedDelay(() -> sendPing(ctx),
@@ -348,27 +462,58 @@ public final class MTProtoClientImpl implements MTProtoClient {
 
             ctx.pipeline().addFirst(TRANSPORT, new TransportCodec(tr));
 
-            if (authData.authKey() == null) {
+            var permAuthKey = tempAuthKeys != null ? authData.permAuthKey() : authData.authKey();
+            if (permAuthKey == null) {
                 // TODO: switch thread to publisher
                 mtProtoOptions.storeLayout().getAuthKey(authData.dc())
-                        .switchIfEmpty(Mono.fromRunnable(() -> ctx.executor().execute(() -> {
+                        .switchIfEmpty(publicRsaKeyRegister().flatMap(register -> Mono.<AuthKey>fromRunnable(() -> ctx.executor().execute(() -> {
                             ctx.pipeline().addAfter(TRANSPORT, HANDSHAKE_CODEC, new HandshakeCodec(authData));
 
-                            int expiresIn = 0;//type == DcId.Type.MAIN ? 0 : Math.toIntExact(options.authKeyLifetime().getSeconds());
-                            var handshakeCtx = new HandshakeContext(expiresIn,
-                                    mtProtoOptions.dhPrimeChecker(), mtProtoOptions.publicRsaKeyRegister());
+                            // Permanent key; temporary keys are generated by TempAuthKeyGenerator
+                            var handshakeCtx = new HandshakeContext(0,
+                                    mtProtoOptions.dhPrimeChecker(), register,
+                                    mtProtoOptions.randomSource(), mtProtoOptions.handshakeExecutor(), stats);
                             ctx.pipeline().addAfter(HANDSHAKE_CODEC, HANDSHAKE, new Handshake(id, authData, handshakeCtx));
-                        })))
+                        }))))
                         .subscribe(loadedAuthKey -> ctx.executor().execute(() -> {
-                            authData.authKey(loadedAuthKey);
-                            configure(ctx);
+                            if (tempAuthKeys != null) {
+                                authData.permAuthKey(loadedAuthKey);
+                                applyTempAuthKey(ctx);
+                            } else {
+                                authData.authKey(loadedAuthKey);
+                                configure(ctx);
+                            }
                         }), ctx::fireExceptionCaught);
+            } else if (tempAuthKeys != null) {
+                applyTempAuthKey(ctx);
             } else {
                 configure(ctx);
             }
         }
     }
 
+    // Keys of CDN DCs are received by help.getCdnConfig and saved to the store
+    Mono<PublicRsaKeyRegister> publicRsaKeyRegister() {
+        var register = mtProtoOptions.publicRsaKeyRegister();
+        if (authData.dc().getType() != DataCenter.Type.CDN) {
+            return Mono.just(register);
+        }
+        return mtProtoOptions.storeLayout().getPublicRsaKeyRegister()
+                .map(register::merge)
+                .defaultIfEmpty(register);
+    }
+
+    void cancelAuthKeyRotation() {
+        if (authKeyPrefetchTrigger != null) {
+            authKeyPrefetchTrigger.cancel(false);
+            authKeyPrefetchTrigger = null;
+        }
+        if (authKeyRotationTrigger != null) {
+            authKeyRotationTrigger.cancel(false);
+            authKeyRotationTrigger = null;
+        }
+    }
+
     boolean setException(Throwable t) {
         boolean resume = false;
 
@@ -423,6 +568,10 @@ public final class MTProtoClientImpl implements MTProtoClient {
             }
 
             bootstrap.attr(NOTIFY, sink);
+            if (tempAuthKeys != null) {
+                // generate temporary key in parallel with connection establishment
+                tempAuthKeys.prefetch();
+            }
             connect0(sink);
         });
     }
@@ -484,14 +633,20 @@ public final class MTProtoClientImpl implements MTProtoClient {
                 if (log.isDebugEnabled()) {
                     log.debug("[C:0x{}] Delaying request: {}", id, schemaTypeName(method));
                 }
-                return (Mono<R>) sink;
+                return (Mono<R>) trackPendingBytes(sink, method);
             } else { // CONNECTED
                 RequestMono sink = new RequestMono(false);
 
                 assert currentState.channel != null;
 
-                currentState.channel.writeAndFlush(new RpcQuery(method, sink), currentState.channel.voidPromise());
-                return (Mono<R>) sink;
+                var query = new RpcQuery(method, sink);
+                if (options.writeCoalescingDelay() != null) {
+                    // will be flushed by MTProtoEncryption in batch
+                    currentState.channel.write(query, currentState.channel.voidPromise());
+                } else {
+                    currentState.channel.writeAndFlush(query, currentState.channel.voidPromise());
+                }
+                return (Mono<R>) trackPendingBytes(sink, method);
             }
         })
         .transform(mono -> {
@@ -502,6 +657,12 @@ public final class MTProtoClientImpl implements MTProtoClient {
         });
     }
 
+    Mono<Object> trackPendingBytes(RequestMono sink, TlMethod<?> method) {
+        long bytes = TlSerializer.sizeOf(method) + expectedResponseSize(method);
+        stats.addPendingBytes(bytes);
+        return sink.doFinally(signal -> stats.addPendingBytes(-bytes));
+    }
+
     @SuppressWarnings("unchecked")
     <R> Mono<R> send(ChannelHandlerContext ctx, TlMethod<R> method) {
         if (!isResultAwait(method)) {
@@ -545,6 +706,9 @@ public final class MTProtoClientImpl implements MTProtoClient {
 
                 current.channel.close();
             } else { // client was not connected
+                if (tempAuthKeys != null) {
+                    tempAuthKeys.dispose();
+                }
                 sink.success();
                 onClose.emitEmpty(FAIL_FAST);
             }
@@ -588,6 +752,16 @@ public final class MTProtoClientImpl implements MTProtoClient {
             }
         }
 
+        while ((r = delayedUntilBind.pollFirst()) != null) {
+            if (r instanceof RpcQuery q) {
+                var resultPublisher = q.sink.isPublishOnEventLoop()
+                        ? ctx.executor()
+                        : mtProtoOptions.resultPublisher();
+
+                q.sink.emitError(resultPublisher, exc);
+            }
+        }
+
         RpcQuery q;
         while ((q = delayedUntilAuth.pollFirst()) != null) {
             var resultPublisher = q.sink.isPublishOnEventLoop()
@@ -610,6 +784,18 @@ public final class MTProtoClientImpl implements MTProtoClient {
         };
     }
 
+    // Only responses of file methods are considered, other responses are small enough
+    static int expectedResponseSize(TlMethod<?> method) {
+        if (method instanceof GetFile getFile) {
+            return getFile.limit();
+        } else if (method instanceof GetWebFile getWebFile) {
+            return getWebFile.limit();
+        } else if (method instanceof GetCdnFile getCdnFile) {
+            return getCdnFile.limit();
+        }
+        return 0;
+    }
+
     static boolean isPingPacket(TlMethod<?> method) {
         return switch (method.identifier()) {
             case PingDelayDisconnect.ID, Ping.ID -> true;
@@ -636,6 +822,8 @@ public final class MTProtoClientImpl implements MTProtoClient {
 
         // allows to avoid msgsStateReq flood
         long creationTimestamp;
+        // System.nanoTime() of the last sending, used to measure latency
+        long sendNanos;
 
         RpcRequest(TlMethod<?> method) {
             this.method = method;
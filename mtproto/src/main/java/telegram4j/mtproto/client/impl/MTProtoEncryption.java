@@ -20,10 +20,15 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.ScheduledFuture;
+import reactor.core.publisher.Mono;
 import telegram4j.mtproto.MTProtoException;
 import telegram4j.mtproto.RpcException;
 import telegram4j.mtproto.TransportException;
+import telegram4j.mtproto.auth.AuthKey;
+import telegram4j.mtproto.client.CompressionPolicy;
+import telegram4j.mtproto.internal.Gzip;
 import telegram4j.mtproto.util.AES256IGECipher;
 import telegram4j.tl.TlDeserializer;
 import telegram4j.tl.TlSerialUtil;
@@ -36,18 +41,23 @@ import telegram4j.tl.auth.LoginTokenSuccess;
 import telegram4j.tl.auth.SentCodeSuccess;
 import telegram4j.tl.mtproto.*;
 import telegram4j.tl.request.InvokeWithLayer;
+import telegram4j.tl.request.auth.BindTempAuthKey;
+import telegram4j.tl.request.auth.ImmutableBindTempAuthKey;
 
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.StringJoiner;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static telegram4j.mtproto.client.impl.MTProtoClientImpl.*;
 import static telegram4j.mtproto.transport.Transport.QUICK_ACK_MASK;
-import static telegram4j.mtproto.util.CryptoUtil.random;
+import static telegram4j.mtproto.internal.Crypto.sha1Digest;
 import static telegram4j.mtproto.internal.Crypto.sha256Digest;
 import static telegram4j.mtproto.util.TlEntityUtil.schemaTypeName;
 
@@ -57,19 +67,51 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
     static final int ACKS_FORCE_SEND_THRESHOLD = Integer.getInteger("telegram4j.mtproto.client.acksForceThreshold", 16);
     // Let delay state requests
     static final int STATE_ASK_DELAY = 300;
+    // Interval of in-flight requests sweep which sends state requests
+    static final int STATE_SWEEP_INTERVAL = Integer.getInteger("telegram4j.mtproto.client.stateSweepInterval", 1000);
+    // Age at which in-flight request is considered as stuck
+    static final int STUCK_THRESHOLD = Integer.getInteger("telegram4j.mtproto.client.stuckThreshold", 30_000);
 
     // limit for service container like a MsgsAck, MsgsStateReq
     static final int MAX_IDS_SIZE = 8192;
     static final int MAX_CONTAINER_SIZE = 1020; // count of messages
     static final int MAX_CONTAINER_LENGTH = 1 << 15; // length in bytes
 
+    // auth_key_id and msg_key which are placed before encrypted data
+    static final int PACKET_PREFIX_SIZE = 24;
+    // server_salt, session_id, msg_id, seq_no and length
+    static final int MESSAGE_HEADER_SIZE = 32;
+    // Max padding for outbound messages: 12 mandatory bytes and alignment by 16 bytes
+    static final int MAX_PADDING = 12 + 15;
+    // Count of remembered quick ack tokens; older ones are overwritten
+    static final int QUICK_ACK_SLOTS = 16;
+
+    static final int BIND_AUTH_KEY_INNER_ID = 0x75a3f765;
+    // constructor id, nonce, temp_auth_key_id, perm_auth_key_id, temp_session_id and expires_at
+    static final int BIND_AUTH_KEY_INNER_SIZE = 4 + 8 * 4 + 4;
+    // random, msg_id, seq_no, length and message body, which are encrypted by MTProto 1.0 scheme
+    static final int BIND_MESSAGE_SIZE = 16 + 8 + 4 + 4 + BIND_AUTH_KEY_INNER_SIZE;
+
     final MTProtoClientImpl client;
     final TransportCodec transportCodec;
-    final ArrayList<Long> acknowledgments = new ArrayList<>(32);
+    final LongArray acknowledgments = new LongArray(32);
     final AES256IGECipher cipher = AES256IGECipher.create();
+    final byte[] padding = new byte[MAX_PADDING];
+
+    final ArrayDeque<RpcRequest> coalesced = new ArrayDeque<>();
+    // Inbound messages in receiving order, which are decoding outside the event loop
+    final ArrayDeque<DecodeTask> decodeQueue = new ArrayDeque<>();
+    // Ring of quick ack tokens and send times of the messages which requested them
+    final int[] quickAckTokens = new int[QUICK_ACK_SLOTS];
+    final long[] quickAckTimes = new long[QUICK_ACK_SLOTS];
+    int quickAckCursor;
 
     ScheduledFuture<?> resendFuture;
+    ScheduledFuture<?> sweepFuture;
+    Future<?> coalesceFuture;
     boolean authTested;
+    // Outbound requests are held back until the new temporary key is bound
+    boolean binding;
 
     ChannelHandlerContext ctx;
 
@@ -81,6 +123,14 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) {
         this.ctx = ctx;
+
+        sweepFuture = ctx.executor().scheduleWithFixedDelay(this::sweepInflight,
+                STATE_SWEEP_INTERVAL, STATE_SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        cancelSweep();
     }
 
     @Override
@@ -98,25 +148,53 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
                     rpcLog.debug("[C:0x{}, Q:0x{}] Received quick ack",
                             client.id, Integer.toHexString(val));
                 }
+                handleQuickAck(val);
                 return;
             }
 
             throw new TransportException(val);
         }
 
+        client.stats.recordPacket(true, payload.readableBytes());
         decryptPayload(payload);
     }
 
+    void handleQuickAck(int token) {
+        // Server responds with the token with the highest bit set
+        token |= QUICK_ACK_MASK;
+        for (int i = 0; i < QUICK_ACK_SLOTS; i++) {
+            if (quickAckTokens[i] == token && quickAckTimes[i] != 0) {
+                client.stats.recordQuickAck(System.nanoTime() - quickAckTimes[i]);
+                quickAckTimes[i] = 0;
+                return;
+            }
+        }
+    }
+
+    void rememberQuickAck(int token) {
+        int slot = quickAckCursor;
+        quickAckTokens[slot] = token;
+        quickAckTimes[slot] = System.nanoTime();
+        quickAckCursor = (slot + 1) % QUICK_ACK_SLOTS;
+    }
+
     @Override
-    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws IOException {
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
         if (!(msg instanceof MTProtoClientImpl.RpcRequest req)) {
             throw new IllegalArgumentException("Unexpected type of message to encrypt: " + msg);
         }
 
         if (log.isTraceEnabled() && !client.requests.isEmpty()) {
-            log.trace("[C:0x{}] {}", client.id, client.requests.entrySet().stream()
-                    .map(e -> "0x" + Long.toHexString(e.getKey()) + ": " + e.getValue())
-                    .collect(Collectors.joining(", ", "{", "}")));
+            var joiner = new StringJoiner(", ", "{", "}");
+            for (var e : client.requests.entries()) {
+                joiner.add("0x" + Long.toHexString(e.key()) + ": " + e.value());
+            }
+            log.trace("[C:0x{}] {}", client.id, joiner);
+        }
+
+        if (binding) {
+            client.delayedUntilBind.addLast(req);
+            return;
         }
 
         if (client.authData.unauthorized()
@@ -129,6 +207,94 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
             return;
         }
 
+        if (client.options.writeCoalescingDelay() != null && promise.isVoid() &&
+                canContainerize(req) && !isPingPacket(req.method)) {
+            coalesce(req);
+            return;
+        }
+
+        writeRequest(ctx, req, promise);
+        // In coalescing mode requests are written without flush, so requests
+        // which can't be batched must be flushed here
+        if (client.options.writeCoalescingDelay() != null) {
+            ctx.flush();
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancelSweep();
+        if (coalesceFuture != null) {
+            coalesceFuture.cancel(false);
+            coalesceFuture = null;
+        }
+
+        // will be resent after reconnection or cancelled on close
+        client.resend.addAll(coalesced);
+        coalesced.clear();
+        client.resend.addAll(client.delayedUntilBind);
+        client.delayedUntilBind.clear();
+        binding = false;
+        // results of pending decoding are no longer needed
+        decodeQueue.clear();
+
+        ctx.fireChannelInactive();
+    }
+
+    void coalesce(RpcRequest req) {
+        coalesced.addLast(req);
+        if (coalesced.size() >= MAX_CONTAINER_SIZE) {
+            flushCoalesced();
+            return;
+        }
+
+        if (coalesceFuture == null) {
+            var delay = client.options.writeCoalescingDelay();
+            // Zero delay means that batch will be flushed after already queued writes of the event loop
+            coalesceFuture = delay.isZero()
+                    ? ctx.executor().submit(this::flushCoalesced)
+                    : ctx.executor().schedule(this::flushCoalesced, delay.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void flushCoalesced() {
+        if (coalesceFuture != null) {
+            coalesceFuture.cancel(false);
+            coalesceFuture = null;
+        }
+
+        int count = coalesced.size();
+        if (count == 0) {
+            return;
+        }
+
+        if (rpcLog.isDebugEnabled()) {
+            rpcLog.debug("[C:0x{}] Flushing batch of {} request(s)", client.id, count);
+        }
+
+        client.stats.recordWriteBatch(count);
+        try {
+            if (count == 1) {
+                writeRequest(ctx, coalesced.pollFirst(), ctx.voidPromise());
+            } else {
+                while (!coalesced.isEmpty()) {
+                    writeContainer(coalesced);
+                }
+            }
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        } finally {
+            ctx.flush();
+        }
+    }
+
+    void writeRequest(ChannelHandlerContext ctx, RpcRequest req, ChannelPromise promise) {
+        writeRequest(ctx, req, promise, 0);
+    }
+
+    // Non-zero presetMessageId is used for messages whose body depends on own msg_id;
+    // such messages are never packed to the container
+    void writeRequest(ChannelHandlerContext ctx, RpcRequest req, ChannelPromise promise, long presetMessageId) {
         var currentAuthKey = client.authData.authKey();
         if (currentAuthKey == null) {
             throw new MTProtoException("No auth key");
@@ -136,31 +302,18 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
 
         long now = System.currentTimeMillis();
 
-        TlObject actualMethod = req.method;
+        // Used only to presize the packet; method is serialized once directly into it
         int size = TlSerializer.sizeOf(req.method);
-        if (size >= client.options.gzipCompressionSizeThreshold()) {
-            ByteBuf serialized = ctx.alloc().ioBuffer(size);
-            TlSerializer.serialize(serialized, req.method);
-            ByteBuf gzipped = TlSerialUtil.compressGzip(ctx.alloc(), 9, serialized);
-
-            actualMethod = ImmutableGzipPacked.of(gzipped);
-            gzipped.release();
-
-            size = TlSerializer.sizeOf(actualMethod);
-        }
-
-        boolean canContainerize = canContainerize(req) && size < MAX_CONTAINER_LENGTH;
+        boolean canContainerize = presetMessageId == 0 && canContainerize(req) && size < MAX_CONTAINER_LENGTH;
 
         long containerMsgId = -1;
-        long requestMessageId = client.authData.nextMessageId();
+        long requestMessageId = presetMessageId != 0 ? presetMessageId : client.authData.nextMessageId();
         int requestSeqNo = client.authData.nextSeqNo(req.method);
 
-        record ContainerMessage(long messageId, int seqNo, int size, TlMethod<?> method,
-                                // possibly gzipped request
-                                TlObject actualMethod) {
+        record ContainerMessage(long messageId, int seqNo, int size, TlMethod<?> method) {
 
             ContainerMessage(long messageId, int seqNo, TlMethod<?> method) {
-                this(messageId, seqNo, TlSerializer.sizeOf(method), method, method);
+                this(messageId, seqNo, TlSerializer.sizeOf(method), method);
             }
         }
 
@@ -168,30 +321,6 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         if (canContainerize) {
             messages = new ArrayList<>(2);
 
-            var statesIds = new ArrayList<Long>();
-            for (var e : client.requests.entrySet()) {
-                long key = e.getKey();
-                var requestInfo = e.getValue();
-                if (!(requestInfo instanceof RpcRequest r)) {
-                    continue;
-                }
-
-                if (r.creationTimestamp + STATE_ASK_DELAY > now) {
-                    continue;
-                }
-
-                statesIds.add(key);
-                if (statesIds.size() == MAX_IDS_SIZE) {
-                    break;
-                }
-            }
-
-            // TODO length checks and if applicable use gzip
-            if (!statesIds.isEmpty()) {
-                messages.add(new ContainerMessage(client.authData.nextMessageId(),
-                        client.authData.nextSeqNo(false), ImmutableMsgsStateReq.of(statesIds)));
-            }
-
             if (!acknowledgments.isEmpty() &&
                     (acknowledgments.size() > ACKS_FORCE_SEND_THRESHOLD ||
                             // Ping is fine reason to send service messages
@@ -203,29 +332,20 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
             canContainerize = !messages.isEmpty();
         }
 
-        int padding;
-        ByteBuf message;
-
+        ByteBuf packet;
         ContainerRequest container = null;
         if (canContainerize) {
-            messages.add(new ContainerMessage(requestMessageId, requestSeqNo, size, req.method, actualMethod));
+            messages.add(new ContainerMessage(requestMessageId, requestSeqNo, size, req.method));
 
             containerMsgId = client.authData.nextMessageId();
             int containerSeqNo = client.authData.nextSeqNo(false);
 
             int payloadSize = messages.stream().mapToInt(c -> c.size() + 16).sum();
-            int messageSize = 40 + payloadSize;
-            int unpadded = (messageSize + 12) % 16;
-            padding = 12 + (unpadded != 0 ? 16 - unpadded : 0);
+            packet = allocatePacket(payloadSize + 8);
 
-            message = ctx.alloc().ioBuffer(messageSize + padding);
-            message.writeLongLE(client.authData.serverSalt());
-            message.writeLongLE(client.authData.sessionId());
-            message.writeLongLE(containerMsgId);
-            message.writeIntLE(containerSeqNo);
-            message.writeIntLE(payloadSize + 8);
-            message.writeIntLE(MessageContainer.ID);
-            message.writeIntLE(messages.size());
+            int lengthIndex = writeMessageHeader(packet, containerMsgId, containerSeqNo);
+            packet.writeIntLE(MessageContainer.ID);
+            packet.writeIntLE(messages.size());
 
             var msgIds = new long[messages.size()];
             for (int i = 0; i < messages.size(); i++) {
@@ -236,41 +356,24 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
                         ? req.wrap(containerMsgId)
                         : new RpcContainerRequest(c.method, containerMsgId);
                 wrapped.setCreationTimestamp(now);
-                client.requests.put(c.messageId, wrapped);
+                trackRequest(c.messageId, wrapped, now);
 
-                message.writeLongLE(c.messageId);
-                message.writeIntLE(c.seqNo);
-                message.writeIntLE(c.size);
-                TlSerializer.serialize(message, c.actualMethod);
+                writeMessage(packet, c.messageId, c.seqNo, c.method);
             }
+            packet.setIntLE(lengthIndex, packet.writerIndex() - lengthIndex - 4);
 
             container = new ContainerRequest(msgIds);
             client.requests.put(containerMsgId, container);
+            client.stats.recordContainer(msgIds.length);
         } else {
             req.creationTimestamp = now;
-            client.requests.put(requestMessageId, req);
-
-            int messageSize = 32 + size;
-            int unpadded = (messageSize + 12) % 16;
-            padding = 12 + (unpadded != 0 ? 16 - unpadded : 0);
+            trackRequest(requestMessageId, req, now);
 
-            message = ctx.alloc().ioBuffer(messageSize + padding)
-                    .writeLongLE(client.authData.serverSalt())
-                    .writeLongLE(client.authData.sessionId())
-                    .writeLongLE(requestMessageId)
-                    .writeIntLE(requestSeqNo)
-                    .writeIntLE(size);
-            TlSerializer.serialize(message, actualMethod);
+            packet = allocatePacket(size);
+            writeMessage(packet, requestMessageId, requestSeqNo, req.method);
         }
 
-        byte[] paddingb = new byte[padding];
-        random.nextBytes(paddingb);
-        message.writeBytes(paddingb);
-
-        ByteBuf authKey = currentAuthKey.value();
-        ByteBuf authKeyId = Unpooled.copyLong(Long.reverseBytes(currentAuthKey.id()));
-
-        ByteBuf messageKeyHash = sha256Digest(authKey.slice(88, 32), message);
+        ByteBuf messageKeyHash = encryptPacket(packet, currentAuthKey);
 
         boolean quickAck = false;
         int quickAckToken = -1;
@@ -280,12 +383,6 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
             quickAck = true;
         }
 
-        ByteBuf messageKey = messageKeyHash.slice(8, 16);
-        initCipher(messageKey, authKey, false);
-
-        ByteBuf encrypted = cipher.encrypt(message);
-        ByteBuf packet = Unpooled.wrappedBuffer(authKeyId, messageKey, encrypted);
-
         if (rpcLog.isDebugEnabled()) {
             if (container != null) {
                 rpcLog.debug("[C:0x{}, M:0x{}] Sending container: {{}}", client.id,
@@ -304,15 +401,169 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
             }
         }
 
-        if (!isPingPacket(req.method)) {
+        if (!isPingPacket(req.method) && req.method.identifier() != MsgsStateReq.ID) {
             client.stats.incrementQueriesCount();
             client.stats.lastQueryTimestamp = Instant.ofEpochMilli(now);
         }
 
+        if (quickAck) {
+            rememberQuickAck(quickAckToken);
+        }
+
+        client.stats.recordPacket(false, packet.readableBytes());
         transportCodec.setQuickAck(quickAck);
         ctx.write(packet, promise);
     }
 
+    void trackRequest(long messageId, Request request, long now) {
+        client.requests.put(messageId, request);
+
+        // there is no reason to ask states of service messages
+        if (request instanceof RpcRequest r) {
+            r.sendNanos = System.nanoTime();
+
+            int id = r.method.identifier();
+            if (id != MsgsAck.ID && id != MsgsStateReq.ID) {
+                client.inflight.add(messageId, now);
+            }
+        }
+    }
+
+    void cancelSweep() {
+        if (sweepFuture != null) {
+            sweepFuture.cancel(false);
+            sweepFuture = null;
+        }
+    }
+
+    // Drops completed requests from the in-flight queue, updates the stuck requests gauge
+    // and asks states of requests which are pending longer than STATE_ASK_DELAY
+    void sweepInflight() {
+        var inflight = client.inflight;
+        inflight.retain(msgId -> client.requests.get(msgId) instanceof RpcRequest);
+
+        long now = System.currentTimeMillis();
+        int stuck = 0;
+        var statesIds = new LongArray(8);
+        for (int i = 0, n = inflight.size(); i < n; i++) {
+            long timestamp = inflight.timestamp(i);
+            // queue is ordered by time, so others are more recent
+            if (timestamp + STATE_ASK_DELAY > now) {
+                break;
+            }
+
+            if (timestamp + STUCK_THRESHOLD <= now) {
+                stuck++;
+            }
+            if (statesIds.size() < MAX_IDS_SIZE) {
+                statesIds.add(inflight.id(i));
+            }
+        }
+
+        client.stats.stuckQueriesCount = stuck;
+        if (statesIds.isEmpty() || client.authData.authKey() == null || binding) {
+            return;
+        }
+
+        if (rpcLog.isDebugEnabled()) {
+            rpcLog.debug("[C:0x{}] Asking states of {} request(s), stuck: {}", client.id, statesIds.size(), stuck);
+        }
+
+        try {
+            writeRequest(ctx, new RpcRequest(ImmutableMsgsStateReq.of(statesIds.asList())), ctx.voidPromise());
+            ctx.flush();
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+    }
+
+    // Allocates buffer for the whole packet and writes server_salt and session_id.
+    // auth_key_id and msg_key fields are reserved and filled after encryption in place
+    ByteBuf allocatePacket(int payloadSize) {
+        ByteBuf packet = ctx.alloc().ioBuffer(PACKET_PREFIX_SIZE + MESSAGE_HEADER_SIZE + payloadSize + MAX_PADDING);
+        packet.writerIndex(PACKET_PREFIX_SIZE);
+        packet.writeLongLE(client.authData.serverSalt());
+        packet.writeLongLE(client.authData.sessionId());
+        return packet;
+    }
+
+    // Writes msg_id and seq_no and reserves space for length. Returns index of length field
+    static int writeMessageHeader(ByteBuf buf, long messageId, int seqNo) {
+        buf.writeLongLE(messageId);
+        buf.writeIntLE(seqNo);
+        int lengthIndex = buf.writerIndex();
+        buf.writeIntLE(0);
+        return lengthIndex;
+    }
+
+    void writeMessage(ByteBuf buf, long messageId, int seqNo, TlMethod<?> method) {
+        int lengthIndex = writeMessageHeader(buf, messageId, seqNo);
+        serializeBody(buf, method);
+        buf.setIntLE(lengthIndex, buf.writerIndex() - lengthIndex - 4);
+    }
+
+    // Serializes method into the buffer and replaces it by gzip_packed if policy allows and it's profitable
+    void serializeBody(ByteBuf buf, TlMethod<?> method) {
+        int start = buf.writerIndex();
+        TlSerializer.serialize(buf, method);
+
+        var policy = client.options.compressionPolicy();
+        int size = buf.writerIndex() - start;
+        if (size < policy.sizeThreshold()) {
+            return;
+        }
+
+        ByteBuf serialized = buf.slice(start, size);
+        int level = policy.compressionLevel(method, serialized);
+        if (level == CompressionPolicy.NO_COMPRESSION) {
+            client.stats.recordCompressionSkip(schemaTypeName(method));
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        ByteBuf gzipped = Gzip.compress(ctx.alloc(), level, serialized);
+        try {
+            int gzippedSize = gzipped.readableBytes();
+            // id of gzip_packed, length of bytes and their padding
+            int packedSize = 4 + (gzippedSize >= 254 ? 4 : 1) + gzippedSize;
+            packedSize += (4 - packedSize % 4) % 4;
+
+            boolean profitable = packedSize < size;
+            if (profitable) {
+                buf.writerIndex(start);
+                buf.writeIntLE(GzipPacked.ID);
+                TlSerialUtil.serializeBytes(buf, gzipped);
+            }
+
+            client.stats.recordCompression(schemaTypeName(method), size,
+                    profitable ? packedSize : size, System.nanoTime() - startTime);
+        } finally {
+            gzipped.release();
+        }
+    }
+
+    // Pads message, fills auth_key_id and msg_key of the packet and encrypts it in place.
+    // Returns full hash of message which is needed for quick acks
+    ByteBuf encryptPacket(ByteBuf packet, AuthKey currentAuthKey) {
+        int messageSize = packet.writerIndex() - PACKET_PREFIX_SIZE;
+        int unpadded = (messageSize + 12) % 16;
+        int paddingSize = 12 + (unpadded != 0 ? 16 - unpadded : 0);
+
+        client.mtProtoOptions.randomSource().nextBytes(padding);
+        packet.writeBytes(padding, 0, paddingSize);
+
+        ByteBuf authKey = currentAuthKey.value();
+        ByteBuf message = packet.slice(PACKET_PREFIX_SIZE, messageSize + paddingSize);
+        ByteBuf messageKeyHash = sha256Digest(authKey.slice(88, 32), message);
+
+        packet.setLongLE(0, currentAuthKey.id());
+        packet.setBytes(8, messageKeyHash, 8, 16);
+
+        initCipher(packet.slice(8, 16), authKey, false);
+        cipher.encryptInPlace(message);
+        return messageKeyHash;
+    }
+
     void decryptPayload(ByteBuf data) throws Exception {
         long authKeyId = data.readLongLE();
 
@@ -321,8 +572,16 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
             throw new MTProtoException("No auth key");
         }
 
+        long expectedSessionId = client.authData.sessionId();
         if (authKeyId != currentAuthKey.id()) {
-            throw new MTProtoException("Incorrect auth key id");
+            // Responses to requests which were sent before rotation of temporary key
+            var previousAuthKey = client.authData.previousAuthKey();
+            if (previousAuthKey == null || authKeyId != previousAuthKey.id()) {
+                throw new MTProtoException("Incorrect auth key id");
+            }
+
+            currentAuthKey = previousAuthKey;
+            expectedSessionId = client.authData.oldSessionId();
         }
 
         ByteBuf messageKey = data.readRetainedSlice(16);
@@ -330,7 +589,10 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         ByteBuf authKey = currentAuthKey.value();
         initCipher(messageKey, authKey, true);
 
-        ByteBuf decrypted = cipher.decrypt(data.slice());
+        ByteBuf encrypted = data.slice();
+        ByteBuf decrypted = encrypted.isReadOnly()
+                ? cipher.decrypt(encrypted)
+                : cipher.decryptInPlace(encrypted);
 
         ByteBuf messageKeyHash = sha256Digest(authKey.slice(96, 32), decrypted);
         ByteBuf messageKeyHashSlice = messageKeyHash.slice(8, 16);
@@ -343,7 +605,7 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
 
         decrypted.readLongLE();  // server_salt
         long sessionId = decrypted.readLongLE();
-        if (client.authData.sessionId() != sessionId) {
+        if (expectedSessionId != sessionId) {
             throw new MTProtoException("Incorrect session identifier");
         }
         long messageId = decrypted.readLongLE();
@@ -369,6 +631,24 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
             throw new MTProtoException("Invalid padding length");
         }
 
+        var decodeExecutor = client.mtProtoOptions.decodeExecutor();
+        if (decodeExecutor != null) {
+            if (length >= client.options.decodeOffloadThreshold()) {
+                offloadDecode(decodeExecutor, decrypted, payload, messageId);
+                return;
+            }
+
+            // Keep order of messages, while previous are decoding
+            if (!decodeQueue.isEmpty()) {
+                var task = new DecodeTask(messageId);
+                decodeQueue.addLast(task);
+                task.decode(decrypted, payload);
+                task.done = true;
+                return;
+            }
+        }
+
+        long startTime = System.nanoTime();
         TlObject obj;
         try {
             obj = TlDeserializer.deserialize(payload);
@@ -377,9 +657,102 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         }
 
         handleServiceMessage(obj, messageId);
+        client.stats.recordInboundDecode(System.nanoTime() - startTime);
+    }
+
+    void offloadDecode(Executor executor, ByteBuf decrypted, ByteBuf payload, long messageId) {
+        var task = new DecodeTask(messageId);
+        decodeQueue.addLast(task);
+
+        try {
+            executor.execute(() -> {
+                long startTime = System.nanoTime();
+                task.decode(decrypted, payload);
+                client.stats.recordOffloadedDecode(System.nanoTime() - startTime);
+
+                ctx.executor().execute(() -> {
+                    task.done = true;
+                    drainDecodeQueue();
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            // Executor is saturated, so decode message on the event loop
+            task.decode(decrypted, payload);
+            task.done = true;
+            drainDecodeQueue();
+        }
+    }
+
+    void drainDecodeQueue() {
+        DecodeTask task;
+        while ((task = decodeQueue.peekFirst()) != null && task.done) {
+            decodeQueue.pollFirst();
+
+            long startTime = System.nanoTime();
+            try {
+                if (task.error != null) {
+                    ctx.fireExceptionCaught(task.error);
+                } else {
+                    handleServiceMessage(task.result, task.messageId);
+                }
+            } catch (Throwable t) {
+                ctx.fireExceptionCaught(t);
+            }
+            client.stats.recordInboundDecode(System.nanoTime() - startTime);
+        }
+    }
+
+    // Unpacks gzipped parts of message which otherwise would be decompressed in the handleServiceMessage()
+    static Object predecode(Object obj) throws IOException {
+        if (obj instanceof RpcResult rpcResult) {
+            return rpcResult.result() instanceof GzipPacked
+                    ? new DecodedRpcResult(rpcResult.reqMsgId(), decompressIfApplicable(rpcResult.result()))
+                    : obj;
+        }
+
+        if (obj instanceof MessageContainer messageContainer) {
+            var messages = messageContainer.messages();
+            var bodies = new Object[messages.size()];
+            for (int i = 0; i < bodies.length; i++) {
+                bodies[i] = predecode(messages.get(i).body());
+            }
+            return new DecodedContainer(messageContainer, bodies);
+        }
+
+        return decompressIfApplicable(obj);
     }
 
-    Object decompressIfApplicable(Object obj) throws IOException {
+    // rpc_result with already decompressed result
+    record DecodedRpcResult(long reqMsgId, Object result) {}
+
+    // msg_container with predecoded bodies of messages
+    record DecodedContainer(MessageContainer container, Object[] bodies) {}
+
+    // Inbound message which is decoded outside the event loop
+    static final class DecodeTask {
+        final long messageId;
+
+        Object result;
+        Throwable error;
+        // accessed only from the event loop
+        boolean done;
+
+        DecodeTask(long messageId) {
+            this.messageId = messageId;
+        }
+
+        void decode(ByteBuf decrypted, ByteBuf payload) {
+            try {
+                result = predecode(TlDeserializer.deserialize(payload));
+            } catch (Throwable t) {
+                error = t;
+            } finally {
+                decrypted.release();
+            }
+        }
+    }
+
+    static Object decompressIfApplicable(Object obj) throws IOException {
         return obj instanceof GzipPacked gzipPacked
                 ? TlSerialUtil.decompressGzip(gzipPacked.packedData())
                 : obj;
@@ -402,79 +775,91 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         }
     }
 
-    void handleServiceMessage(Object obj, long messageId) throws Exception {
-        if (obj instanceof RpcResult rpcResult) {
-            messageId = rpcResult.reqMsgId();
-            obj = decompressIfApplicable(rpcResult.result());
-
-            var query = (RpcQuery) client.requests.remove(messageId);
-            if (query == null) {
-                if (rpcLog.isDebugEnabled()) {
-                    rpcLog.debug("[C:0x{}, M:0x{}] Receiving rpc result for unknown request",
-                            client.id, Long.toHexString(messageId));
-                }
-                return;
+    void handleRpcResult(long messageId, Object obj) throws Exception {
+        var query = (RpcQuery) client.requests.remove(messageId);
+        if (query == null) {
+            if (rpcLog.isDebugEnabled()) {
+                rpcLog.debug("[C:0x{}, M:0x{}] Receiving rpc result for unknown request",
+                        client.id, Long.toHexString(messageId));
             }
+            return;
+        }
 
-            client.stats.decrementQueriesCount();
-            decContainer(query);
-            acknowledgments.add(messageId);
+        client.stats.decrementQueriesCount();
+        client.stats.recordQuery(schemaTypeName(query.method), System.nanoTime() - query.sendNanos,
+                obj instanceof RpcError);
+        decContainer(query);
+        acknowledgments.add(messageId);
 
-            if (obj instanceof RpcError rpcError) {
-                if (rpcError.errorCode() == 401) {
-                    client.authData.unauthorized(true);
-                }
+        if (obj instanceof RpcError rpcError) {
+            if (rpcError.errorCode() == 401) {
+                client.authData.unauthorized(true);
+            }
 
-                if (rpcLog.isDebugEnabled()) {
-                    rpcLog.debug("[C:0x{}, M:0x{}] Receiving rpc error, code: {}, message: {}",
-                            client.id, Long.toHexString(messageId), rpcError.errorCode(), rpcError.errorMessage());
-                }
+            if (rpcLog.isDebugEnabled()) {
+                rpcLog.debug("[C:0x{}, M:0x{}] Receiving rpc error, code: {}, message: {}",
+                        client.id, Long.toHexString(messageId), rpcError.errorCode(), rpcError.errorMessage());
+            }
 
-                RpcException e = createRpcException(rpcError, query);
+            RpcException e = createRpcException(rpcError, query);
 
-                if (query.sink.isPublishOnEventLoop()) {
-                    query.sink.emitError(e);
-                } else {
-                    query.sink.emitError(client.mtProtoOptions.resultPublisher(), e);
-                }
+            if (query.sink.isPublishOnEventLoop()) {
+                query.sink.emitError(e);
             } else {
-                if (rpcLog.isDebugEnabled()) {
-                    rpcLog.debug("[C:0x{}, M:0x{}] Receiving rpc result", client.id, Long.toHexString(messageId));
-                }
+                query.sink.emitError(client.mtProtoOptions.resultPublisher(), e);
+            }
+        } else {
+            if (rpcLog.isDebugEnabled()) {
+                rpcLog.debug("[C:0x{}, M:0x{}] Receiving rpc result", client.id, Long.toHexString(messageId));
+            }
 
-                if (query.sink.isPublishOnEventLoop()) {
-                    query.sink.emitValue(obj);
-                } else {
-                    query.sink.emitValue(client.mtProtoOptions.resultPublisher(), obj);
-                }
+            if (query.sink.isPublishOnEventLoop()) {
+                query.sink.emitValue(obj);
+            } else {
+                query.sink.emitValue(client.mtProtoOptions.resultPublisher(), obj);
+            }
 
-                if (client.authData.unauthorized() &&
-                        (obj instanceof Authorization ||
-                        obj instanceof LoginTokenSuccess ||
-                        obj instanceof SentCodeSuccess)) {
-                    client.authData.unauthorized(false);
+            if (client.authData.unauthorized() &&
+                    (obj instanceof Authorization ||
+                    obj instanceof LoginTokenSuccess ||
+                    obj instanceof SentCodeSuccess)) {
+                client.authData.unauthorized(false);
 
-                    if (!client.delayedUntilAuth.isEmpty()) {
-                        client.resend.addAll(client.delayedUntilAuth);
-                        client.delayedUntilAuth.clear();
+                if (!client.delayedUntilAuth.isEmpty()) {
+                    client.resend.addAll(client.delayedUntilAuth);
+                    client.delayedUntilAuth.clear();
 
-                        resend();
-                    }
+                    resend();
                 }
             }
+        }
+    }
 
+    void handleServiceMessage(Object obj, long messageId) throws Exception {
+        if (obj instanceof DecodedRpcResult rpcResult) {
+            handleRpcResult(rpcResult.reqMsgId(), rpcResult.result());
             return;
         }
 
-        if (obj instanceof MessageContainer messageContainer) {
+        if (obj instanceof RpcResult rpcResult) {
+            handleRpcResult(rpcResult.reqMsgId(), decompressIfApplicable(rpcResult.result()));
+            return;
+        }
+
+        if (obj instanceof MessageContainer || obj instanceof DecodedContainer) {
+            var decoded = obj instanceof DecodedContainer d ? d : null;
+            var messageContainer = decoded != null ? decoded.container() : (MessageContainer) obj;
+
             if (rpcLog.isDebugEnabled()) {
                 rpcLog.debug("[C:0x{}] Handling message container: {}", client.id, messageContainer.messages().stream()
                         .map(msg -> "0x" + Long.toHexString(msg.msgId()) + ": " + schemaTypeName(msg.body()))
                         .collect(Collectors.joining(", ", "{", "}")));
             }
 
-            for (Message message : messageContainer.messages()) {
-                handleServiceMessage(message.body(), message.msgId());
+            var messages = messageContainer.messages();
+            for (int i = 0; i < messages.size(); i++) {
+                var message = messages.get(i);
+                handleServiceMessage(decoded != null ? decoded.bodies()[i] : message.body(), message.msgId());
             }
             return;
         }
@@ -502,6 +887,11 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
             decContainer(query);
             client.inflightPing = false;
 
+            // Only pings of the client have send time as id
+            if (query != null && !(query instanceof RpcQuery)) {
+                client.stats.recordRtt(System.nanoTime() - pong.pingId());
+            }
+
             if (query instanceof RpcQuery q) {
                 if (q.sink.isPublishOnEventLoop()) {
                     q.sink.emitValue(obj);
@@ -560,6 +950,8 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
                 }
             }
 
+            client.stats.recordBadMessage(badMsgNotification.errorCode(),
+                    badMsgNotification instanceof BadServerSalt);
             if (badMsgNotification instanceof BadServerSalt badServerSalt) {
                 client.authData.serverSalt(badServerSalt.newServerSalt());
             }
@@ -691,6 +1083,7 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
             rpcLog.debug("[C:0x{}, M:0x{}] Queued for resending", client.id, Long.toHexString(possibleCntMsgId));
         }
 
+        int queued = client.resend.size();
         if (request instanceof ContainerRequest container) {
             resendUnwrappedContainer(container);
         } else if (request instanceof ContainerizedRequest cntMessage) {
@@ -700,21 +1093,180 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
             if (cnt != null) {
                 resendUnwrappedContainer(cnt);
             }
+        } else if (request instanceof RpcQuery query && query.method.identifier() == BindTempAuthKey.ID) {
+            client.stats.recordResend(1);
+            writeBindQuery(query.sink);
+            ctx.flush();
+            return;
         } else if (request instanceof RpcRequest rpcRequest) {
             client.resend.add(rpcRequest);
         } else {
             throw new IllegalStateException("Unexpected request type: " + request);
         }
 
+        client.stats.recordResend(client.resend.size() - queued);
         delayResend();
     }
 
     MsgsAck collectAcks() {
         int count = Math.min(acknowledgments.size(), MAX_IDS_SIZE);
-        var batch = acknowledgments.subList(0, count);
-        var ack = ImmutableMsgsAck.of(batch);
-        batch.clear();
-        return ack;
+        return ImmutableMsgsAck.of(acknowledgments.poll(count));
+    }
+
+    /**
+     * Binds current temporary key to the permanent one with {@code auth.bindTempAuthKey} method.
+     * Must be called on the event loop.
+     *
+     * @return A {@link Mono} emitting result of binding.
+     */
+    Mono<Boolean> bindTempAuthKey() {
+        var sink = new RequestMono(true);
+        try {
+            writeBindQuery(sink);
+            ctx.flush();
+        } catch (Throwable t) {
+            return Mono.error(t);
+        }
+
+        return sink.cast(Boolean.class)
+                .doOnNext(client.authData::tempAuthKeyBound);
+    }
+
+    // Inner message contains msg_id of the outer one, so it's built anew on each (re)sending
+    void writeBindQuery(RequestMono sink) {
+        var authData = client.authData;
+        var permAuthKey = authData.permAuthKey();
+        var tempAuthKey = authData.authKey();
+        if (permAuthKey == null || tempAuthKey == null) {
+            throw new MTProtoException("No auth key");
+        }
+
+        // expires_at is specified in the server time
+        int expiresAt = Math.toIntExact(tempAuthKey.expiresAtTimestamp()
+                .map(Instant::getEpochSecond)
+                .orElseThrow() + authData.timeOffset());
+
+        long messageId = authData.nextMessageId();
+        long nonce = client.mtProtoOptions.randomSource().nextLong();
+        ByteBuf encryptedMessage = encryptBindMessage(permAuthKey, tempAuthKey, messageId, nonce, expiresAt);
+
+        if (log.isDebugEnabled()) {
+            log.debug("[C:0x{}] Binding temporary auth key 0x{} to 0x{}, expires at: {}", client.id,
+                    Long.toHexString(tempAuthKey.id()), Long.toHexString(permAuthKey.id()),
+                    Instant.ofEpochSecond(expiresAt - authData.timeOffset()));
+        }
+
+        var query = new RpcQuery(ImmutableBindTempAuthKey.of(permAuthKey.id(), nonce, expiresAt, encryptedMessage), sink);
+        writeRequest(ctx, query, ctx.voidPromise(), messageId);
+    }
+
+    /**
+     * Switches connection to the new temporary key and binds it, holding back other
+     * requests until {@code initConnection} is invoked with new key. Requests which were
+     * sent with previous key will be accepted until the next rotation.
+     * Must be called on the event loop.
+     *
+     * @param event The result of handshake with new temporary key.
+     * @return A {@link Mono} which completes after key binding and connection initialization.
+     */
+    Mono<Void> rotateAuthKey(HandshakeCompleteEvent event) {
+        // send everything batched with the old key
+        flushCoalesced();
+
+        var authData = client.authData;
+        authData.previousAuthKey(authData.authKey());
+        authData.authKey(event.authKey());
+        authData.serverSalt(event.serverSalt());
+        authData.timeOffset(event.serverTimeDiff());
+        authData.tempAuthKeyBound(false);
+        authData.resetSessionId();
+        binding = true;
+
+        return bindTempAuthKey()
+                .flatMap(ok -> {
+                    if (!ok) {
+                        return Mono.error(new MTProtoException("Temporary auth key was not bound"));
+                    }
+
+                    var sink = new RequestMono(true);
+                    writeRequest(ctx, new RpcQuery(client.options.initConnection(), sink), ctx.voidPromise());
+                    ctx.flush();
+                    return sink;
+                })
+                .doOnNext(freshConfig -> {
+                    binding = false;
+
+                    if (!client.delayedUntilBind.isEmpty()) {
+                        client.resend.addAll(client.delayedUntilBind);
+                        client.delayedUntilBind.clear();
+
+                        try {
+                            resend();
+                        } catch (Exception e) {
+                            ctx.fireExceptionCaught(e);
+                        }
+                    }
+                })
+                .then();
+    }
+
+    // Builds bind_auth_key_inner message, encrypted by permanent key with MTProto 1.0 scheme
+    ByteBuf encryptBindMessage(AuthKey permAuthKey, AuthKey tempAuthKey, long messageId, long nonce, int expiresAt) {
+        var random = client.mtProtoOptions.randomSource();
+        int paddingSize = (16 - BIND_MESSAGE_SIZE % 16) % 16;
+
+        ByteBuf message = ctx.alloc().buffer(BIND_MESSAGE_SIZE + paddingSize);
+        try {
+            random.nextBytes(padding);
+            message.writeBytes(padding, 0, 16);
+            message.writeLongLE(messageId);
+            message.writeIntLE(0); // seq_no
+            message.writeIntLE(BIND_AUTH_KEY_INNER_SIZE);
+            message.writeIntLE(BIND_AUTH_KEY_INNER_ID);
+            message.writeLongLE(nonce);
+            message.writeLongLE(tempAuthKey.id());
+            message.writeLongLE(permAuthKey.id());
+            message.writeLongLE(client.authData.sessionId());
+            message.writeIntLE(expiresAt);
+
+            // msg_key is computed from unpadded message
+            ByteBuf messageKey = sha1Digest(message).slice(4, 16);
+
+            random.nextBytes(padding);
+            message.writeBytes(padding, 0, paddingSize);
+
+            ByteBuf authKey = permAuthKey.value();
+            ByteBuf sha1a = sha1Digest(messageKey, authKey.slice(0, 32));
+            ByteBuf sha1b = sha1Digest(authKey.slice(32, 16), messageKey, authKey.slice(48, 16));
+            ByteBuf sha1c = sha1Digest(authKey.slice(64, 32), messageKey);
+            ByteBuf sha1d = sha1Digest(messageKey, authKey.slice(96, 32));
+
+            ByteBuf aesKey = Unpooled.wrappedBuffer(
+                    sha1a.retainedSlice(0, 8),
+                    sha1b.retainedSlice(8, 12),
+                    sha1c.retainedSlice(4, 12));
+
+            ByteBuf aesIV = Unpooled.wrappedBuffer(
+                    sha1a.retainedSlice(8, 12),
+                    sha1b.retainedSlice(0, 8),
+                    sha1c.retainedSlice(16, 4),
+                    sha1d.retainedSlice(0, 8));
+            sha1a.release();
+            sha1b.release();
+            sha1c.release();
+            sha1d.release();
+
+            cipher.init(true, aesKey, aesIV);
+            cipher.encryptInPlace(message);
+
+            ByteBuf encrypted = ctx.alloc().buffer(8 + 16 + message.readableBytes());
+            encrypted.writeLongLE(permAuthKey.id());
+            encrypted.writeBytes(messageKey);
+            encrypted.writeBytes(message);
+            return encrypted;
+        } finally {
+            message.release();
+        }
     }
 
     void initCipher(ByteBuf messageKey, ByteBuf authKey, boolean inbound) {
@@ -765,22 +1317,17 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         }
 
         // Sending requests that cannot be sent in a container
-        boolean any = false;
         for (var it = client.resend.iterator(); it.hasNext(); ) {
             var rpcRequest = it.next();
             if (!canContainerize(rpcRequest)) {
                 it.remove();
 
-                any = true;
                 ctx.channel().write(rpcRequest, ctx.voidPromise());
             }
         }
 
-        if (any) {
-            ctx.channel().flush();
-        }
-
-        writeContainer();
+        writeContainer(client.resend);
+        ctx.channel().flush();
 
         // Couldn't resend all requests
         if (!client.resend.isEmpty()) {
@@ -788,29 +1335,24 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         }
     }
 
-    void writeContainer() throws Exception {
-
+    // Writes requests from the specified queue as container without flushing.
+    // Requests which can't be packed to the container are written as is
+    void writeContainer(ArrayDeque<RpcRequest> queue) {
         long now = System.currentTimeMillis();
 
-        record ContainerMessage(long messageId, int seqNo, int size, RpcRequest request, TlObject actualMethod) {}
+        record ContainerMessage(long messageId, int seqNo, RpcRequest request) {}
 
+        // Sizes are computed before compression, so actual container may be a bit smaller
         int totalSize = 0;
-        var messages = new ArrayList<ContainerMessage>(Math.min(client.resend.size(), 16));
-        for (var it = client.resend.iterator(); it.hasNext(); ) {
+        var messages = new ArrayList<ContainerMessage>(Math.min(queue.size(), 16));
+        for (var it = queue.iterator(); it.hasNext(); ) {
             var rpcRequest = it.next();
 
-            TlObject actualMethod = rpcRequest.method;
             int requestSize = TlSerializer.sizeOf(rpcRequest.method);
-            // TODO
-            if (requestSize >= client.options.gzipCompressionSizeThreshold()) {
-                ByteBuf serialized = ctx.alloc().ioBuffer(requestSize);
-                TlSerializer.serialize(serialized, rpcRequest.method);
-                ByteBuf gzipped = TlSerialUtil.compressGzip(ctx.alloc(), 9, serialized);
-
-                actualMethod = ImmutableGzipPacked.of(gzipped);
-                gzipped.release();
-
-                requestSize = TlSerializer.sizeOf(actualMethod);
+            if (requestSize >= MAX_CONTAINER_LENGTH) {
+                it.remove();
+                writeRequest(ctx, rpcRequest, ctx.voidPromise());
+                continue;
             }
 
             // overflow? Not sure about bound
@@ -823,8 +1365,7 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
 
             it.remove();
             messages.add(new ContainerMessage(client.authData.nextMessageId(),
-                    client.authData.nextSeqNo(rpcRequest.method),
-                    requestSize, rpcRequest, actualMethod));
+                    client.authData.nextSeqNo(rpcRequest.method), rpcRequest));
 
             // Not sure about real max size. Perhaps off-by-one error
             if (messages.size() == MAX_CONTAINER_SIZE) {
@@ -832,6 +1373,10 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
             }
         }
 
+        if (messages.isEmpty()) {
+            return;
+        }
+
         var currentAuthKey = client.authData.authKey();
         if (currentAuthKey == null) {
             throw new MTProtoException("No auth key");
@@ -862,20 +1407,11 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         long containerMsgId = client.authData.nextMessageId();
         int containerSeqNo = client.authData.nextSeqNo(false);
 
-        int payloadSize = totalSize + messages.size() * 16;
-        int messageSize = 40 + payloadSize;
-        int unpadded = (messageSize + 12) % 16;
-        int padding = 12 + (unpadded != 0 ? 16 - unpadded : 0);
-
-        ByteBuf message = ctx.alloc().ioBuffer(messageSize + padding);
-        message.writeLongLE(client.authData.serverSalt());
-        message.writeLongLE(client.authData.sessionId());
-        message.writeLongLE(containerMsgId);
-        message.writeIntLE(containerSeqNo);
+        ByteBuf packet = allocatePacket(totalSize + messages.size() * 16 + 8);
 
-        message.writeIntLE(payloadSize + 8);
-        message.writeIntLE(MessageContainer.ID);
-        message.writeIntLE(messages.size());
+        int lengthIndex = writeMessageHeader(packet, containerMsgId, containerSeqNo);
+        packet.writeIntLE(MessageContainer.ID);
+        packet.writeIntLE(messages.size());
 
         var msgIds = new long[messages.size()];
         for (int i = 0; i < messages.size(); i++) {
@@ -885,33 +1421,19 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
             var wrapped = c.request.wrap(containerMsgId);
             wrapped.setCreationTimestamp(now);
 
-            client.requests.put(c.messageId(), wrapped);
+            trackRequest(c.messageId(), wrapped, now);
 
-            message.writeLongLE(c.messageId());
-            message.writeIntLE(c.seqNo());
-            message.writeIntLE(c.size());
-            TlSerializer.serialize(message, c.actualMethod);
+            writeMessage(packet, c.messageId(), c.seqNo(), c.request.method);
         }
+        packet.setIntLE(lengthIndex, packet.writerIndex() - lengthIndex - 4);
 
         client.requests.put(containerMsgId, new ContainerRequest(msgIds));
+        client.stats.recordContainer(msgIds.length);
 
         client.stats.addQueriesCount(msgIds.length);
         client.stats.lastQueryTimestamp = Instant.ofEpochMilli(now);
 
-        byte[] paddingb = new byte[padding];
-        random.nextBytes(paddingb);
-        message.writeBytes(paddingb);
-
-        ByteBuf authKey = currentAuthKey.value();
-        ByteBuf authKeyId = Unpooled.copyLong(Long.reverseBytes(currentAuthKey.id()));
-
-        ByteBuf messageKeyHash = sha256Digest(authKey.slice(88, 32), message);
-
-        ByteBuf messageKey = messageKeyHash.slice(8, 16);
-        initCipher(messageKey, authKey, false);
-
-        ByteBuf encrypted = cipher.encrypt(message);
-        ByteBuf packet = Unpooled.wrappedBuffer(authKeyId, messageKey, encrypted);
+        encryptPacket(packet, currentAuthKey);
 
         if (rpcLog.isDebugEnabled()) {
             rpcLog.debug("[C:0x{}, M:0x{}] Sending container: {{}}", client.id,
@@ -920,9 +1442,10 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
                             .collect(Collectors.joining(", ")));
         }
 
+        client.stats.recordPacket(false, packet.readableBytes());
         transportCodec.setQuickAck(false);
 
-        ctx.writeAndFlush(packet, ctx.voidPromise());
+        ctx.write(packet, ctx.voidPromise());
     }
 
     static boolean canContainerize(RpcRequest request) {
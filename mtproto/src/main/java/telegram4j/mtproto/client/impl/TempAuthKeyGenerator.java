@@ -0,0 +1,235 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.annotation.Nullable;
+import telegram4j.mtproto.MTProtoException;
+import telegram4j.mtproto.auth.AuthKey;
+import telegram4j.mtproto.resource.impl.BaseProxyResources;
+import telegram4j.mtproto.transport.Transport;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static telegram4j.mtproto.client.impl.MTProtoClientImpl.*;
+
+/**
+ * Generator of temporary auth keys, which performs handshakes over separate short-lived
+ * connections to the client's DC, so generation doesn't block traffic of the main connection.
+ * The next key is generated in background before it's needed and kept until {@link #take()}.
+ */
+final class TempAuthKeyGenerator {
+
+    private static final Logger log = Loggers.getLogger("telegram4j.mtproto.TempAuthKeyGenerator");
+
+    static final Duration MIN_ROTATION_MARGIN = Duration.ofMinutes(1);
+
+    final MTProtoClientImpl client;
+    final int expiresIn;
+    // Time before expiration at which key is replaced by the next one
+    final Duration rotationMargin;
+
+    // Connections of all running generations, closed ones are removed automatically
+    final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+
+    // Guarded by this
+    @Nullable
+    Mono<HandshakeCompleteEvent> next;
+    @Nullable
+    Disposable prefetching;
+    boolean disposed;
+
+    TempAuthKeyGenerator(MTProtoClientImpl client, Duration lifetime) {
+        this.client = client;
+        this.expiresIn = Math.toIntExact(lifetime.getSeconds());
+
+        var margin = lifetime.dividedBy(10);
+        if (margin.compareTo(MIN_ROTATION_MARGIN) < 0) {
+            margin = MIN_ROTATION_MARGIN.compareTo(lifetime.dividedBy(4)) < 0
+                    ? MIN_ROTATION_MARGIN
+                    : lifetime.dividedBy(4);
+        }
+        this.rotationMargin = margin;
+    }
+
+    /** Starts generation of the next key in background, if it's not started yet. */
+    synchronized void prefetch() {
+        if (next == null && !disposed) {
+            var mono = generate().cache();
+            next = mono;
+            prefetching = mono.subscribe(null, e -> log.debug("[C:0x{}] Failed to generate temporary auth key in background: {}",
+                    client.id, e.toString()));
+        }
+    }
+
+    /**
+     * Takes pre-generated key or generates a new one if there is no valid key.
+     *
+     * @return A {@link Mono} emitting handshake result with temporary key.
+     */
+    synchronized Mono<HandshakeCompleteEvent> take() {
+        var current = next;
+        next = null;
+        prefetching = null;
+        if (current == null) {
+            return generate();
+        }
+
+        return current
+                .filter(event -> isValid(event.authKey()))
+                .onErrorResume(e -> Mono.empty())
+                .switchIfEmpty(Mono.defer(this::generate));
+    }
+
+    /**
+     * Checks that key is not going to be rotated soon.
+     *
+     * @param authKey The temporary auth key to check.
+     * @return {@code true} if key can be used for at least {@link #rotationMargin}.
+     */
+    boolean isValid(AuthKey authKey) {
+        var expiresAt = authKey.expiresAtTimestamp().orElse(Instant.MAX);
+        return Instant.now().plus(rotationMargin).isBefore(expiresAt);
+    }
+
+    // Cancels all generations, including prefetched one
+    void dispose() {
+        synchronized (this) {
+            disposed = true;
+            next = null;
+            if (prefetching != null) {
+                prefetching.dispose();
+                prefetching = null;
+            }
+        }
+        channels.close();
+    }
+
+    Mono<HandshakeCompleteEvent> generate() {
+        return Mono.create(sink -> {
+            synchronized (this) {
+                if (disposed) {
+                    sink.error(new MTProtoException("Generator of temporary auth keys is disposed"));
+                    return;
+                }
+            }
+
+            var tcpClientRes = client.mtProtoOptions.tcpClientResources();
+            var future = client.bootstrap.clone()
+                    .handler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            var impl = (BaseProxyResources) tcpClientRes.proxyProvider().orElse(null);
+                            if (impl != null) {
+                                ch.pipeline().addFirst(PROXY, impl.createProxyHandler(impl.address));
+                            }
+
+                            ch.pipeline().addLast(CORE, new GeneratorHandler(sink));
+                        }
+                    })
+                    .connect();
+
+            Channel channel = future.channel();
+            channels.add(channel);
+            sink.onCancel(channel::close);
+            // Generator can be disposed during connection
+            synchronized (this) {
+                if (disposed) {
+                    channel.close();
+                }
+            }
+            future.addListener(notify -> {
+                Throwable t = notify.cause();
+                if (t != null) {
+                    sink.error(t);
+                }
+            });
+        });
+    }
+
+    class GeneratorHandler extends ChannelInboundHandlerAdapter {
+        final MonoSink<HandshakeCompleteEvent> sink;
+
+        GeneratorHandler(MonoSink<HandshakeCompleteEvent> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            if (log.isDebugEnabled()) {
+                log.debug("[C:0x{}] Generating temporary auth key for DC {}", client.id, client.authData.dc().getId());
+            }
+
+            var authData = new AuthData(client.authData.dc(), client.mtProtoOptions.randomSource());
+            Transport tr = client.options.transportFactory().create(client.authData.dc());
+            ctx.writeAndFlush(tr.identifier(ctx.alloc()))
+                    .addListener(notify -> {
+                        Throwable cause = notify.cause();
+                        if (cause != null) {
+                            ctx.fireExceptionCaught(cause);
+                        } else if (notify.isSuccess()) {
+                            var handshakeCtx = new HandshakeContext(expiresIn,
+                                    client.mtProtoOptions.dhPrimeChecker(), client.mtProtoOptions.publicRsaKeyRegister(),
+                                    client.mtProtoOptions.randomSource(), client.mtProtoOptions.handshakeExecutor(),
+                                    client.stats);
+
+                            ctx.pipeline().addFirst(TRANSPORT, new TransportCodec(tr));
+                            ctx.pipeline().addAfter(TRANSPORT, HANDSHAKE_CODEC, new HandshakeCodec(authData));
+                            ctx.pipeline().addAfter(HANDSHAKE_CODEC, HANDSHAKE, new Handshake(client.id, authData, handshakeCtx));
+                        }
+                    });
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+            if (evt instanceof HandshakeCompleteEvent event) {
+                if (log.isDebugEnabled()) {
+                    log.debug("[C:0x{}] Generated temporary auth key {}", client.id, event.authKey());
+                }
+
+                sink.success(event);
+                ctx.close();
+            } else {
+                ctx.fireUserEventTriggered(evt);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            sink.error(cause);
+            ctx.close();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            // no-op if key was already generated
+            sink.error(new MTProtoException("Connection closed during temporary auth key generation"));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.file;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Strategy of refreshing expired file references, which is used to continue downloads
+ * after {@code FILE_REFERENCE_EXPIRED} errors.
+ */
+@FunctionalInterface
+public interface FileReferenceRefresher {
+
+    /**
+     * Requests actual file reference and access hash of file from its {@link FileReferenceId#getContext() context}.
+     *
+     * @param fileRefId The file ref id with expired file reference.
+     * @return A {@link Mono} emitting refreshed {@link FileReferenceId}.
+     */
+    Mono<FileReferenceId> refresh(FileReferenceId fileRefId);
+}
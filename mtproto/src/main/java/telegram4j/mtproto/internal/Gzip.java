@@ -0,0 +1,90 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.internal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+public class Gzip {
+    private Gzip() {}
+
+    // ID1, ID2, CM (deflate), FLG, MTIME, XFL, OS
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final int TRAILER_SIZE = 8;
+
+    private static final FastThreadLocal<Deflater> DEFLATER = new FastThreadLocal<>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+
+        @Override
+        protected void onRemoval(Deflater value) {
+            value.end();
+        }
+    };
+
+    /**
+     * Compresses readable bytes of specified buffer into the new gzip buffer.
+     * Unlike {@link telegram4j.tl.TlSerialUtil#compressGzip(ByteBufAllocator, int, ByteBuf)}
+     * the source buffer will not be released and its reader index will not be modified,
+     * so this method can be used with slices of the larger buffers.
+     *
+     * @param alloc The allocator for result buffer.
+     * @param level The compression level.
+     * @param buf The buffer to compress.
+     * @return A new buffer with gzip data.
+     */
+    public static ByteBuf compress(ByteBufAllocator alloc, int level, ByteBuf buf) {
+        int length = buf.readableBytes();
+        ByteBuffer input = buf.nioBuffer();
+
+        var crc32 = new CRC32();
+        crc32.update(input.duplicate());
+
+        var deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setLevel(level);
+        deflater.setInput(input);
+        deflater.finish();
+
+        ByteBuf out = alloc.ioBuffer(HEADER.length + (length >> 1) + TRAILER_SIZE);
+        try {
+            out.writeBytes(HEADER);
+            while (!deflater.finished()) {
+                out.ensureWritable(Math.max(64, length >> 3));
+                int idx = out.writerIndex();
+                int written = deflater.deflate(out.internalNioBuffer(idx, out.writableBytes()));
+                out.writerIndex(idx + written);
+            }
+
+            out.writeIntLE((int) crc32.getValue());
+            out.writeIntLE(length);
+            return out;
+        } catch (Throwable t) {
+            out.release();
+            throw t;
+        } finally {
+            // drop reference to the input buffer
+            deflater.reset();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.annotation.Nullable;
+import telegram4j.mtproto.DcId;
+import telegram4j.mtproto.RpcException;
+import telegram4j.mtproto.util.AES256CTRCipher;
+import telegram4j.mtproto.util.CryptoUtil;
+import telegram4j.tl.FileHash;
+import telegram4j.tl.request.upload.ImmutableGetCdnFile;
+import telegram4j.tl.request.upload.ImmutableGetCdnFileHashes;
+import telegram4j.tl.request.upload.ImmutableReuploadCdnFile;
+import telegram4j.tl.upload.BaseCdnFile;
+import telegram4j.tl.upload.CdnFileReuploadNeeded;
+import telegram4j.tl.upload.FileCdnRedirect;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import static telegram4j.mtproto.service.UploadService.log;
+
+/**
+ * File, which was redirected to CDN DC by {@link FileCdnRedirect}. Parts are requested by {@code upload.getCdnFile}
+ * from CDN DC, decrypted with AES-256-CTR and verified against SHA-256 hashes of file ranges, which are
+ * requested from the origin DC. Bytes which are not covered by hashes are never returned: parts, which are not
+ * aligned by ranges of hashes (128 KB), are cut from the enclosing ranges, so they should be aligned to avoid
+ * excess requests.
+ * Thread-safe.
+ *
+ * @see <a href="https://core.telegram.org/cdn">Encrypted CDNs</a>
+ */
+final class CdnFile {
+    static final int MAX_REUPLOADS = 3;
+
+    // CDN token expired and redirect must be received again with upload.getFile
+    static final Predicate<Throwable> TOKEN_INVALID = RpcException.isErrorMessage("FILE_TOKEN_INVALID");
+
+    final UploadService service;
+    final int originDcId;
+    final int cdnDcId;
+    final ByteBuf fileToken;
+    final byte[] key;
+    final byte[] iv;
+
+    // Guarded by this
+    final TreeMap<Long, FileHash> hashes = new TreeMap<>();
+    final ConcurrentHashMap<Long, Mono<Void>> hashRequests = new ConcurrentHashMap<>();
+
+    CdnFile(UploadService service, int originDcId, FileCdnRedirect redirect) {
+        this.service = service;
+        this.originDcId = originDcId;
+        this.cdnDcId = redirect.dcId();
+        this.fileToken = redirect.fileToken();
+        this.key = ByteBufUtil.getBytes(redirect.encryptionKey());
+        this.iv = ByteBufUtil.getBytes(redirect.encryptionIv());
+
+        addHashes(redirect.fileHashes());
+    }
+
+    /**
+     * Requests part of file and returns decrypted and verified bytes, which must be released by caller.
+     *
+     * @param offset The offset of part.
+     * @param limit The max size of part.
+     * @param alloc The allocator for decrypted bytes.
+     * @return A {@link Mono} emitting decrypted bytes, which are empty if offset is out of file.
+     */
+    Mono<ByteBuf> getPart(long offset, int limit, ByteBufAllocator alloc) {
+        // Alignment of part is known only from hashes. Offsets out of file have no hashes,
+        // but they're requested too to receive empty part
+        return service.registerCdnKeys()
+                .then(ensureHashes(offset, offset + 1).onErrorResume(t -> Mono.empty()))
+                .then(Mono.defer(() -> {
+                    FileHash first = hashAt(offset);
+                    if (first == null) {
+                        return getVerified(offset, limit, alloc);
+                    }
+
+                    long from = first.offset();
+                    int hashLimit = first.limit();
+                    if (from == offset && limit % hashLimit == 0) {
+                        return getVerified(offset, limit, alloc);
+                    }
+
+                    // Hashes of unaligned part can't be checked, so the enclosing ranges are requested instead
+                    int count = Math.toIntExact((offset + limit - from + hashLimit - 1) / hashLimit);
+                    return Flux.range(0, count)
+                            .concatMap(i -> getVerified(from + (long) i * hashLimit, hashLimit, alloc))
+                            .takeUntil(range -> range.readableBytes() < hashLimit) // end of file
+                            .collectList()
+                            .map(ranges -> {
+                                ByteBuf joined = alloc.compositeBuffer(ranges.size()).addComponents(true, ranges);
+                                int start = (int) Math.min(offset - from, joined.readableBytes());
+                                ByteBuf part = joined.retainedSlice(start, Math.min(limit, joined.readableBytes() - start));
+                                joined.release();
+                                return part;
+                            });
+                }));
+    }
+
+    // Requests part, which is aligned by ranges of hashes, and verifies it
+    Mono<ByteBuf> getVerified(long offset, int limit, ByteBufAllocator alloc) {
+        return fetch(offset, limit, 0)
+                .flatMap(bytes -> {
+                    if (!bytes.isReadable()) {
+                        return Mono.just(alloc.buffer(0));
+                    }
+
+                    return ensureHashes(offset, offset + bytes.readableBytes())
+                            .then(Mono.fromCallable(() -> decrypt(bytes, offset, alloc)));
+                });
+    }
+
+    Mono<ByteBuf> fetch(long offset, int limit, int reuploads) {
+        return service.clientGroup.getOrCreateClient(DcId.download(cdnDcId))
+                .flatMap(client -> client.send(ImmutableGetCdnFile.of(fileToken, offset, limit)))
+                .flatMap(file -> {
+                    if (file instanceof BaseCdnFile b) {
+                        return Mono.just(b.bytes());
+                    }
+
+                    var reupload = (CdnFileReuploadNeeded) file;
+                    if (reuploads >= MAX_REUPLOADS) {
+                        return Mono.error(new IllegalStateException("CDN DC " + cdnDcId +
+                                " hasn't received file after " + reuploads + " reuploads"));
+                    }
+
+                    if (log.isDebugEnabled()) {
+                        log.debug("[DC:{}] Requesting reupload of file part at offset {} to CDN DC {}",
+                                originDcId, offset, cdnDcId);
+                    }
+                    return service.clientGroup.getOrCreateAuthorizedClient(DcId.download(originDcId))
+                            .flatMap(client -> client.send(ImmutableReuploadCdnFile.of(fileToken, reupload.requestToken())))
+                            .doOnNext(this::addHashes)
+                            .then(fetch(offset, limit, reuploads + 1));
+                });
+    }
+
+    // Concurrent parts await the same request of hashes
+    Mono<Void> ensureHashes(long from, long to) {
+        return Mono.defer(() -> {
+            long missing = findMissingHash(from, to);
+            if (missing == -1) {
+                return Mono.empty();
+            }
+
+            return hashRequests.computeIfAbsent(missing, o -> service.clientGroup
+                            .getOrCreateAuthorizedClient(DcId.download(originDcId))
+                            .flatMap(client -> client.send(ImmutableGetCdnFileHashes.of(fileToken, o)))
+                            .doOnNext(list -> {
+                                addHashes(list);
+                                if (findMissingHash(o, o + 1) != -1) {
+                                    throw new IllegalStateException("No CDN file hash received for offset " + o);
+                                }
+                            })
+                            .then()
+                            .doFinally(sig -> hashRequests.remove(o))
+                            .cache())
+                    .then(ensureHashes(from, to));
+        });
+    }
+
+    synchronized void addHashes(List<FileHash> list) {
+        for (FileHash hash : list) {
+            hashes.put(hash.offset(), hash);
+        }
+    }
+
+    // Returns the first offset in range without hash, or -1 if all range is covered
+    synchronized long findMissingHash(long from, long to) {
+        long position = from;
+        while (position < to) {
+            var entry = hashes.floorEntry(position);
+            if (entry == null) {
+                return position;
+            }
+
+            long end = entry.getKey() + entry.getValue().limit();
+            if (end <= position) {
+                return position;
+            }
+            position = end;
+        }
+        return -1;
+    }
+
+    @Nullable
+    synchronized FileHash hashAt(long offset) {
+        var entry = hashes.floorEntry(offset);
+        if (entry == null || entry.getKey() + entry.getValue().limit() <= offset) {
+            return null;
+        }
+        return entry.getValue();
+    }
+
+    synchronized List<FileHash> hashesOf(long from, long to) {
+        var list = new ArrayList<FileHash>();
+        var start = hashes.floorKey(from);
+        for (FileHash hash : hashes.subMap(start != null ? start : from, to).values()) {
+            if (hash.offset() >= from && hash.offset() + hash.limit() <= to) {
+                list.add(hash);
+            }
+        }
+        return list;
+    }
+
+    ByteBuf decrypt(ByteBuf bytes, long offset, ByteBufAllocator alloc) {
+        int length = bytes.readableBytes();
+        ByteBuf buf = alloc.buffer(length);
+        try {
+            buf.writeBytes(bytes, bytes.readerIndex(), length);
+            new AES256CTRCipher(key, ivOf(offset)).transform(buf);
+
+            MessageDigest sha256 = CryptoUtil.createDigest("SHA-256");
+            long position = offset;
+            for (FileHash hash : hashesOf(offset, offset + length)) {
+                if (hash.offset() != position) {
+                    break;
+                }
+                position += hash.limit();
+                sha256.update(buf.nioBuffer((int) (hash.offset() - offset), hash.limit()));
+                if (!MessageDigest.isEqual(sha256.digest(), ByteBufUtil.getBytes(hash.hash()))) {
+                    throw new IllegalStateException("Hash mismatch of CDN file part at offset " + hash.offset());
+                }
+            }
+            if (position != offset + length) {
+                throw new IllegalStateException("CDN file part at offset " + position + " is not covered by hashes");
+            }
+            return buf;
+        } catch (Throwable t) {
+            buf.release();
+            throw t;
+        }
+    }
+
+    // The last 4 bytes of iv are replaced by big-endian offset in 16 byte blocks
+    byte[] ivOf(long offset) {
+        byte[] result = iv.clone();
+        int block = (int) (offset >>> 4);
+        result[12] = (byte) (block >>> 24);
+        result[13] = (byte) (block >>> 16);
+        result[14] = (byte) (block >>> 8);
+        result[15] = (byte) block;
+        return result;
+    }
+}
@@ -0,0 +1,522 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.annotation.Nullable;
+import telegram4j.mtproto.file.FileReferenceId;
+import telegram4j.tl.storage.FileType;
+import telegram4j.tl.upload.BaseFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+
+/**
+ * {@code MediaCache} implementation which stores each file in a separate segment file of directory
+ * and reads cached files through memory mappings.
+ *
+ * <p> Total size of segments is bounded, the least recently used files are evicted first.
+ * Segments are named by key of file, so cache is restored from directory after restart,
+ * in which case files are ordered by time of their caching.
+ * Unfinished and unreadable segments are ignored and deleted.
+ *
+ * <p> Downloaded parts are written to disk by worker of specified {@link Scheduler}
+ * and segments are mapped on it too, so downloads aren't blocked by disk operations.
+ */
+public final class DiskMediaCache implements MediaCache {
+
+    private static final Logger log = Loggers.getLogger(DiskMediaCache.class);
+
+    static final int MAGIC = 0x434d3454; // T4MC in LE
+    // magic, mtime and length of type name
+    static final int HEADER_SIZE = 4 + 4 + 1;
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxSize;
+    private final Scheduler scheduler;
+    // Access-ordered, so iteration starts from the least recently used segment
+    private final LinkedHashMap<Key, Segment> segments = new LinkedHashMap<>(16, 0.75f, true);
+    private long size; // guarded by segments
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    private DiskMediaCache(Path directory, long maxSize, Scheduler scheduler) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Creates new {@code DiskMediaCache} which writes segments on {@link Schedulers#boundedElastic()}
+     * and restores cached files from specified directory.
+     * Directory is created if it doesn't exist.
+     *
+     * @throws UncheckedIOException If directory can't be read.
+     * @param directory The directory of segments.
+     * @param maxSize The max total size of segments in bytes.
+     * @return A new {@code DiskMediaCache}.
+     */
+    public static DiskMediaCache open(Path directory, long maxSize) {
+        return open(directory, maxSize, Schedulers.boundedElastic());
+    }
+
+    /**
+     * Creates new {@code DiskMediaCache} and restores cached files from specified directory.
+     * Directory is created if it doesn't exist.
+     *
+     * @throws UncheckedIOException If directory can't be read.
+     * @param directory The directory of segments.
+     * @param maxSize The max total size of segments in bytes.
+     * @param scheduler The scheduler for blocking reads and writes of segments.
+     * @return A new {@code DiskMediaCache}.
+     */
+    public static DiskMediaCache open(Path directory, long maxSize, Scheduler scheduler) {
+        Objects.requireNonNull(directory);
+        requireArgument(maxSize > 0, "maxSize must be positive");
+        Objects.requireNonNull(scheduler);
+
+        var cache = new DiskMediaCache(directory, maxSize, scheduler);
+        try {
+            cache.restore();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return cache;
+    }
+
+    /**
+     * Gets directory of segments.
+     *
+     * @return The directory of segments.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets max total size of segments in bytes.
+     *
+     * @return The max total size of segments.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public Mono<Entry> get(Key key) {
+        Objects.requireNonNull(key);
+        return Mono.fromCallable(() -> {
+            Segment segment;
+            synchronized (segments) {
+                segment = segments.get(key);
+            }
+            if (segment == null) {
+                misses.increment();
+                return null;
+            }
+
+            try {
+                var entry = segment.map();
+                hits.increment();
+                return entry;
+            } catch (IOException e) {
+                log.warn("Removing unreadable media cache segment " + segment.path, e);
+                synchronized (segments) {
+                    if (segments.remove(key, segment)) {
+                        size -= segment.fileSize;
+                        delete(segment.path);
+                    }
+                }
+                misses.increment();
+                return null;
+            }
+        }).subscribeOn(scheduler);
+    }
+
+    @Override
+    public Flux<BaseFile> store(Key key, Flux<BaseFile> parts) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(parts);
+        return Flux.defer(() -> {
+            var writer = new Writer(key);
+            return parts.doOnNext(writer::write)
+                    .doOnComplete(writer::commit)
+                    .doFinally(sig -> writer.discard());
+        });
+    }
+
+    @Override
+    public Stats getStats() {
+        synchronized (segments) {
+            return new Stats(hits.sum(), misses.sum(), bytesSaved.sum(), size, segments.size());
+        }
+    }
+
+    private void restore() throws IOException {
+        Files.createDirectories(directory);
+
+        var restored = new ArrayList<Segment>();
+        var lastModified = new HashMap<Segment, Long>();
+        try (var files = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) { // download was interrupted by shutdown
+                    delete(path);
+                    continue;
+                }
+                Key key = parseKey(name);
+                if (key == null) {
+                    continue;
+                }
+
+                var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                var segment = new Segment(key, path, attrs.size());
+                restored.add(segment);
+                lastModified.put(segment, attrs.lastModifiedTime().toMillis());
+            }
+        }
+
+        restored.sort(Comparator.comparing(lastModified::get));
+        synchronized (segments) {
+            for (Segment segment : restored) {
+                segments.put(segment.key, segment);
+                size += segment.fileSize;
+            }
+            evict();
+        }
+    }
+
+    private void add(Segment segment, Path temp) throws IOException {
+        synchronized (segments) {
+            // Readers of replaced segment keep its mapping
+            Files.move(temp, segment.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            Segment old = segments.put(segment.key, segment);
+            if (old != null) {
+                size -= old.fileSize;
+            }
+            size += segment.fileSize;
+            evict();
+        }
+    }
+
+    // Must be called under lock, otherwise new segment with the same name can be deleted
+    private void evict() {
+        var it = segments.values().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Segment eldest = it.next();
+            it.remove();
+            size -= eldest.fileSize;
+            delete(eldest.path);
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete media cache segment " + path, e);
+        }
+    }
+
+    static String fileName(Key key) {
+        return key.fileType().name().toLowerCase(Locale.ROOT) + '-' +
+                Long.toHexString(key.documentId()) + '-' +
+                Integer.toHexString(key.thumbSizeType()) +
+                (key.big() ? "-big" : "");
+    }
+
+    @Nullable
+    static Key parseKey(String name) {
+        if (!name.endsWith(SEGMENT_SUFFIX)) {
+            return null;
+        }
+
+        String[] parts = name.substring(0, name.length() - SEGMENT_SUFFIX.length()).split("-");
+        if (parts.length != 3 && (parts.length != 4 || !parts[3].equals("big"))) {
+            return null;
+        }
+        try {
+            var fileType = FileReferenceId.Type.valueOf(parts[0].toUpperCase(Locale.ROOT));
+            long documentId = Long.parseUnsignedLong(parts[1], 16);
+            int thumbSizeType = Integer.parseInt(parts[2], 16);
+            if (thumbSizeType > Character.MAX_VALUE) {
+                return null;
+            }
+            return new Key(fileType, documentId, (char) thumbSizeType, parts.length == 4);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    final class Segment {
+        final Key key;
+        final Path path;
+        final long fileSize;
+
+        @Nullable
+        MappedEntry entry; // guarded by this
+
+        Segment(Key key, Path path, long fileSize) {
+            this.key = key;
+            this.path = path;
+            this.fileSize = fileSize;
+        }
+
+        synchronized MappedEntry map() throws IOException {
+            MappedEntry entry = this.entry;
+            if (entry != null) {
+                return entry;
+            }
+
+            try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                var header = ByteBuffer.allocate(HEADER_SIZE + 255);
+                channel.read(header, 0);
+                header.flip().order(ByteOrder.LITTLE_ENDIAN);
+
+                if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                    throw new IOException("Unknown format of segment");
+                }
+                int mtime = header.getInt();
+                int typeLength = Byte.toUnsignedInt(header.get());
+                if (header.remaining() < typeLength) {
+                    throw new IOException("Truncated header of segment");
+                }
+                byte[] typeName = new byte[typeLength];
+                header.get(typeName);
+
+                FileType type;
+                try {
+                    type = FileType.valueOf(new String(typeName, StandardCharsets.US_ASCII));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Unknown file type of segment", e);
+                }
+
+                long dataOffset = HEADER_SIZE + typeLength;
+                long size = channel.size() - dataOffset;
+                if (size <= 0) {
+                    throw new IOException("Segment has no content");
+                }
+
+                var regions = new MappedByteBuffer[(int) ((size + MappedFile.REGION_SIZE - 1) / MappedFile.REGION_SIZE)];
+                for (int i = 0; i < regions.length; i++) {
+                    long position = (long) i * MappedFile.REGION_SIZE;
+                    regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + position,
+                            Math.min(MappedFile.REGION_SIZE, size - position));
+                }
+
+                return this.entry = new MappedEntry(type, mtime, size, regions);
+            }
+        }
+    }
+
+    final class MappedEntry implements Entry {
+        final FileType type;
+        final int mtime;
+        final long size;
+        final MappedByteBuffer[] regions;
+
+        MappedEntry(FileType type, int mtime, long size, MappedByteBuffer[] regions) {
+            this.type = type;
+            this.mtime = mtime;
+            this.size = size;
+            this.regions = regions;
+        }
+
+        @Override
+        public FileType type() {
+            return type;
+        }
+
+        @Override
+        public int mtime() {
+            return mtime;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public ByteBuf slice(long offset, int length) {
+            Objects.checkFromIndexSize(offset, length, size);
+
+            int first = (int) (offset / MappedFile.REGION_SIZE);
+            int last = (int) ((offset + length - 1) / MappedFile.REGION_SIZE);
+            int position = (int) (offset % MappedFile.REGION_SIZE);
+            var slices = new ByteBuffer[Math.max(1, last - first + 1)];
+            int remaining = length;
+            for (int i = 0; i < slices.length; i++) {
+                var region = regions[first + i];
+                int sliceLength = Math.min(remaining, region.capacity() - position);
+                slices[i] = region.slice(position, sliceLength);
+                remaining -= sliceLength;
+                position = 0;
+            }
+
+            bytesSaved.add(length);
+            return Unpooled.wrappedBuffer(slices).asReadOnly();
+        }
+    }
+
+    // Writes parts to the temporary file, which is renamed to segment after download completion.
+    // All disk operations are performed sequentially by the worker, so download is not blocked.
+    // Failures of cache never fail download, the file just won't be cached
+    final class Writer {
+        final Key key;
+        final Scheduler.Worker worker = scheduler.createWorker();
+
+        // Fields below are accessed only by worker
+        @Nullable
+        Path temp;
+        @Nullable
+        FileChannel channel;
+        long written;
+        boolean failed;
+
+        Writer(Key key) {
+            this.key = key;
+        }
+
+        void write(BaseFile part) {
+            // Part can be released by subscriber before it's written
+            var bytes = part.bytes().retainedDuplicate();
+            worker.schedule(() -> {
+                try {
+                    write0(part, bytes);
+                } finally {
+                    bytes.release();
+                }
+            });
+        }
+
+        void commit() {
+            worker.schedule(this::commit0);
+        }
+
+        // Called on termination of download, after commit()
+        void discard() {
+            worker.schedule(() -> {
+                discard0();
+                worker.dispose();
+            });
+        }
+
+        private void write0(BaseFile part, ByteBuf bytes) {
+            if (failed) {
+                return;
+            }
+
+            try {
+                if (channel == null) {
+                    temp = Files.createTempFile(directory, fileName(key) + '-', TEMP_SUFFIX);
+                    channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                    writeHeader(channel, part);
+                }
+                if (written + bytes.readableBytes() > maxSize) { // file will be evicted immediately
+                    discard0();
+                    return;
+                }
+
+                var buf = bytes.nioBuffer();
+                while (buf.hasRemaining()) {
+                    written += channel.write(buf);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to write media cache segment of " + key, e);
+                discard0();
+            }
+        }
+
+        private void commit0() {
+            if (failed || channel == null || written == 0) {
+                return;
+            }
+
+            try {
+                long fileSize = channel.size();
+                channel.close();
+                channel = null;
+                add(new Segment(key, directory.resolve(fileName(key) + SEGMENT_SUFFIX), fileSize), temp);
+                temp = null;
+            } catch (IOException e) {
+                log.warn("Failed to save media cache segment of " + key, e);
+                discard0();
+            }
+        }
+
+        private void discard0() {
+            failed = true;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close media cache segment of " + key, e);
+                }
+                channel = null;
+            }
+            if (temp != null) {
+                delete(temp);
+                temp = null;
+            }
+        }
+
+        private void writeHeader(FileChannel channel, BaseFile part) throws IOException {
+            byte[] typeName = part.type().name().getBytes(StandardCharsets.US_ASCII);
+            var header = ByteBuffer.allocate(HEADER_SIZE + typeName.length)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC)
+                    .putInt(part.mtime())
+                    .put((byte) typeName.length)
+                    .put(typeName)
+                    .flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+    }
+}
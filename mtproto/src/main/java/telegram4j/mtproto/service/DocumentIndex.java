@@ -0,0 +1,125 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import reactor.util.annotation.Nullable;
+import telegram4j.tl.BaseDocument;
+import telegram4j.tl.ImmutableBaseInputDocument;
+import telegram4j.tl.api.TlEncodingUtil;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Index of uploaded documents by their content, which is consulted by
+ * {@link UploadService#saveDocument(UploadOptions)} before uploading of file.
+ *
+ * @see DocumentIndexCache
+ * @see FileDocumentIndex
+ */
+public interface DocumentIndex {
+
+    /**
+     * Retrieves known document with specified content.
+     *
+     * @param key The key of document content.
+     * @return The known document, if present, otherwise {@code null}.
+     */
+    @Nullable
+    Entry lookup(Key key);
+
+    /**
+     * Adds or replaces document with specified content.
+     *
+     * @param key The key of document content.
+     * @param entry The document.
+     */
+    void add(Key key, Entry entry);
+
+    /**
+     * Removes document with specified content, e.g. if it's no longer available.
+     *
+     * @param key The key of document content.
+     */
+    void remove(Key key);
+
+    /**
+     * Content identity of document, the same as parameters of {@link telegram4j.tl.request.messages.GetDocumentByHash}.
+     *
+     * @param sha256 The hex dump of SHA-256 digest of file.
+     * @param size The size of file in bytes.
+     * @param mimeType The mime type of document.
+     */
+    record Key(String sha256, long size, String mimeType) {
+
+        public Key {
+            Objects.requireNonNull(sha256);
+            Objects.requireNonNull(mimeType);
+        }
+
+        /**
+         * Creates key from raw SHA-256 digest.
+         *
+         * @param sha256 The SHA-256 digest of file.
+         * @param size The size of file in bytes.
+         * @param mimeType The mime type of document.
+         * @return The new key.
+         */
+        public static Key of(ByteBuf sha256, long size, String mimeType) {
+            return new Key(ByteBufUtil.hexDump(sha256), size, mimeType);
+        }
+    }
+
+    /**
+     * Known document with the time of its receiving, so document with possibly expired file reference
+     * can be requested again.
+     *
+     * @param id The id of document.
+     * @param accessHash The access hash of document.
+     * @param fileReference The <i>immutable</i> file reference of document.
+     * @param timestamp The time of document receiving.
+     */
+    record Entry(long id, long accessHash, ByteBuf fileReference, Instant timestamp) {
+
+        public Entry {
+            Objects.requireNonNull(fileReference);
+            Objects.requireNonNull(timestamp);
+        }
+
+        /**
+         * Creates entry from specified document.
+         *
+         * @param document The document.
+         * @param timestamp The time of document receiving.
+         * @return The new entry.
+         */
+        public static Entry of(BaseDocument document, Instant timestamp) {
+            return new Entry(document.id(), document.accessHash(),
+                    TlEncodingUtil.copyAsUnpooled(document.fileReference()), timestamp);
+        }
+
+        /**
+         * Creates input document for sending of this document as media.
+         *
+         * @return The new input document.
+         */
+        public ImmutableBaseInputDocument asInputDocument() {
+            return ImmutableBaseInputDocument.of(id, accessHash, fileReference.duplicate());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import reactor.util.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/** In-memory {@code DocumentIndex} implementation. */
+public final class DocumentIndexCache implements DocumentIndex {
+
+    private final ConcurrentHashMap<Key, Entry> documents = new ConcurrentHashMap<>();
+
+    private DocumentIndexCache() {}
+
+    /**
+     * Creates new empty {@code DocumentIndexCache}.
+     *
+     * @return A new {@code DocumentIndexCache}.
+     */
+    public static DocumentIndexCache create() {
+        return new DocumentIndexCache();
+    }
+
+    @Nullable
+    @Override
+    public Entry lookup(Key key) {
+        return documents.get(key);
+    }
+
+    @Override
+    public void add(Key key, Entry entry) {
+        documents.put(key, entry);
+    }
+
+    @Override
+    public void remove(Key key) {
+        documents.remove(key);
+    }
+}
@@ -0,0 +1,553 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.Scannable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.annotation.Nullable;
+import telegram4j.mtproto.DcId;
+import telegram4j.mtproto.RpcException;
+import telegram4j.mtproto.client.MTProtoClient;
+import telegram4j.mtproto.client.MTProtoClientGroup;
+import telegram4j.mtproto.file.FileReferenceId;
+import telegram4j.tl.request.upload.ImmutableGetFile;
+import telegram4j.tl.upload.BaseFile;
+import telegram4j.tl.upload.FileCdnRedirect;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static telegram4j.mtproto.service.UploadService.DOWNLOAD_CHUNK_SIZE;
+import static telegram4j.mtproto.service.UploadService.log;
+
+class DownloadMono extends Mono<Void> {
+    static final int INITIAL_WINDOW = Integer.getInteger("telegram4j.mtproto.download.initialWindow", 2);
+    static final int MAX_WINDOW = Integer.getInteger("telegram4j.mtproto.download.maxWindow", 8);
+
+    private final UploadService service;
+    private final DownloadOptions options;
+
+    DownloadMono(UploadService service, DownloadOptions options) {
+        this.service = service;
+        this.options = options;
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super Void> actual) {
+        var inner = new DownloadInner(actual, service, options);
+        try {
+            inner.open();
+        } catch (Throwable t) {
+            inner.close();
+            Operators.error(actual, t);
+            return;
+        }
+
+        actual.onSubscribe(inner);
+        inner.connect();
+    }
+
+    static class DownloadInner implements Scannable, Subscription {
+        static final int MAX_ATTEMPTS = 5;
+
+        final CoreSubscriber<? super Void> actual;
+        final UploadService service;
+        final MTProtoClientGroup clientGroup;
+        final DownloadOptions options;
+        final AtomicBoolean terminated = new AtomicBoolean();
+        final AtomicLong downloaded = new AtomicLong();
+        // Subscriptions to the requested ranges and refreshing of file reference
+        final Disposable.Composite inflight = Disposables.composite();
+
+        FileChannel channel;
+        ProgressFile progress;
+
+        // Guarded by this
+        UploadWindow[] windows;
+        final ArrayDeque<Chunk> queued = new ArrayDeque<>();
+        int remaining;
+        ImmutableGetFile request;
+        FileReferenceId location;
+        // Whether file reference is being refreshed, dispatching of ranges is paused meanwhile
+        boolean refreshing;
+        // Whether file reference was refreshed and no range is downloaded since then
+        boolean refreshed;
+        // File redirected to CDN DC, ranges of which are requested directly
+        @Nullable
+        volatile CdnFile cdn;
+
+        DownloadInner(CoreSubscriber<? super Void> actual, UploadService service, DownloadOptions options) {
+            this.actual = actual;
+            this.service = service;
+            this.clientGroup = service.clientGroup;
+            this.options = options;
+            this.location = options.getLocation();
+            this.request = ImmutableGetFile.of(0, location.asLocation().orElseThrow(),
+                    0, DOWNLOAD_CHUNK_SIZE);
+        }
+
+        static final class Chunk {
+            final int id;
+            int attempts;
+
+            Chunk(int id) {
+                this.id = id;
+            }
+
+            long offset() {
+                return (long) id * DOWNLOAD_CHUNK_SIZE;
+            }
+        }
+
+        void open() throws IOException {
+            progress = ProgressFile.open(options);
+            // Content of file without progress of this download is unknown, so it's downloaded anew
+            if (progress.isResumed()) {
+                channel = FileChannel.open(options.getFile(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            } else {
+                channel = FileChannel.open(options.getFile(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+            }
+
+            for (int i = 0; i < options.getChunksCount(); i++) {
+                if (progress.isDone(i)) {
+                    downloaded.addAndGet(chunkLength(i));
+                } else {
+                    queued.addLast(new Chunk(i));
+                }
+            }
+            remaining = queued.size();
+        }
+
+        void connect() {
+            if (remaining == 0) {
+                completeInner();
+                return;
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("[F:{}] Downloading {}/{} ranges of file to {}", options.getLocation().getDocumentId(),
+                        remaining, options.getChunksCount(), options.getFile());
+            }
+
+            // Only the first connection is mandatory, download can continue with fewer ones
+            int dcId = options.getLocation().getDcId();
+            int parallelism = Math.min(options.getParallelism(), remaining);
+            Flux.range(0, parallelism)
+                    .flatMap(i -> clientGroup.getOrCreateAuthorizedClient(DcId.download(dcId, i))
+                            .onErrorResume(t -> i > 0, t -> {
+                                if (log.isDebugEnabled()) {
+                                    log.debug("[DC:{}, F:{}] Failed to create download client #{}: {}",
+                                            dcId, options.getLocation().getDocumentId(), i, t.toString());
+                                }
+                                return Mono.empty();
+                            }))
+                    .collectList()
+                    .subscribe(this::start, this::onError);
+        }
+
+        void start(List<MTProtoClient> clients) {
+            synchronized (this) {
+                windows = clients.stream()
+                        .map(c -> new UploadWindow(c, INITIAL_WINDOW, MAX_WINDOW))
+                        .toArray(UploadWindow[]::new);
+            }
+            drain();
+        }
+
+        // Dispatches queued ranges to the connections with free window
+        void drain() {
+            if (terminated.get()) {
+                return;
+            }
+
+            var toSend = new ArrayList<Chunk>();
+            var targets = new ArrayList<UploadWindow>();
+            var requests = new ArrayList<ImmutableGetFile>();
+            synchronized (this) {
+                if (windows == null || refreshing) {
+                    return;
+                }
+
+                while (!queued.isEmpty()) {
+                    UploadWindow target = null;
+                    for (var w : windows) {
+                        if (w.available() > 0 && (target == null || w.available() > target.available())) {
+                            target = w;
+                        }
+                    }
+                    if (target == null) {
+                        break;
+                    }
+
+                    target.inflight++;
+                    toSend.add(queued.pollFirst());
+                    targets.add(target);
+                    requests.add(request);
+                }
+            }
+
+            for (int i = 0; i < toSend.size(); i++) {
+                send(targets.get(i), requests.get(i), toSend.get(i));
+            }
+        }
+
+        void send(UploadWindow window, ImmutableGetFile request, Chunk chunk) {
+            var client = window.client;
+            if (log.isTraceEnabled()) {
+                log.trace("[DC:{}, F:{}] Requesting range {}/{}", client.dc().getId(),
+                        options.getLocation().getDocumentId(), chunk.id + 1, options.getChunksCount());
+            }
+
+            CdnFile cdnFile = cdn;
+            Mono<ByteBuf> part;
+            if (cdnFile != null) {
+                part = cdnFile.getPart(chunk.offset(), DOWNLOAD_CHUNK_SIZE, PooledByteBufAllocator.DEFAULT);
+            } else {
+                part = client.send(request.withOffset(chunk.offset()))
+                        .flatMap(file -> {
+                            if (file instanceof FileCdnRedirect redirect) {
+                                return redirect(redirect).getPart(chunk.offset(), DOWNLOAD_CHUNK_SIZE,
+                                        PooledByteBufAllocator.DEFAULT);
+                            }
+                            // Bytes are released after writing like decrypted ones
+                            return Mono.just(((BaseFile) file).bytes().retain());
+                        });
+            }
+
+            subscribe(part, bytes -> {
+                try {
+                    write(bytes, chunk);
+                } catch (Throwable t) {
+                    onError(t);
+                    return;
+                } finally {
+                    bytes.release();
+                }
+
+                int left;
+                synchronized (this) {
+                    window.onSuccess();
+                    refreshed = false;
+                    left = --remaining;
+                }
+
+                long cnt = downloaded.addAndGet(chunkLength(chunk.id));
+                options.getProgressListener().onProgress(cnt, options.getSize());
+
+                if (left == 0) {
+                    completeInner();
+                } else {
+                    drain();
+                }
+            }, t -> {
+                synchronized (this) {
+                    window.onFailure();
+                }
+
+                if (RpcException.isErrorCode(401).test(t)) {
+                    clientGroup.invalidateAuthorization(client);
+                }
+
+                if (options.getRefresher() != null && RpcException.isFileReferenceError().test(t)) {
+                    onFileReferenceError(request, chunk, t);
+                    return;
+                }
+
+                boolean tokenInvalid = CdnFile.TOKEN_INVALID.test(t);
+                if (tokenInvalid) {
+                    // Next range will receive new redirect from the origin DC
+                    cdn = null;
+                }
+
+                if (++chunk.attempts >= MAX_ATTEMPTS || !tokenInvalid && !UploadMono.UploadSubscriber.isRetryable(t)) {
+                    onError(t);
+                    return;
+                }
+
+                if (log.isDebugEnabled()) {
+                    log.debug("[DC:{}, F:{}] Retrying download of range {} after error: {}", client.dc().getId(),
+                            options.getLocation().getDocumentId(), chunk.id, t.toString());
+                }
+
+                synchronized (this) {
+                    queued.addFirst(chunk);
+                }
+                subscribe(Mono.delay(UploadMono.UploadSubscriber.RETRY_BACKOFF.multipliedBy(chunk.attempts),
+                        Schedulers.parallel()), v -> drain(), this::onError);
+            });
+        }
+
+        CdnFile redirect(FileCdnRedirect redirect) {
+            synchronized (this) {
+                CdnFile current = cdn;
+                if (current != null && current.fileToken.equals(redirect.fileToken())) {
+                    return current;
+                }
+
+                if (log.isDebugEnabled()) {
+                    log.debug("[F:{}] File is redirected to CDN DC {}", options.getLocation().getDocumentId(),
+                            redirect.dcId());
+                }
+                current = new CdnFile(service, options.getLocation().getDcId(), redirect);
+                cdn = current;
+                return current;
+            }
+        }
+
+        // Ranges requested with stale reference are only re-queued, reference is refreshed once in a row
+        void onFileReferenceError(ImmutableGetFile failed, Chunk chunk, Throwable t) {
+            FileReferenceId stale = null;
+            boolean stop = false;
+            synchronized (this) {
+                queued.addFirst(chunk);
+                if (failed == request && !refreshing) {
+                    if (refreshed) {
+                        stop = true;
+                    } else {
+                        refreshing = true;
+                        stale = location;
+                    }
+                }
+            }
+
+            if (stop) {
+                onError(t);
+                return;
+            }
+            if (stale == null) {
+                // Reference is already refreshed or will be, range is sent again with the actual one
+                drain();
+                return;
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("[F:{}] Refreshing file reference after error: {}",
+                        stale.getDocumentId(), t.toString());
+            }
+
+            subscribe(service.refreshFileReference(stale, options.getRefresher()), fresh -> {
+                synchronized (this) {
+                    location = fresh;
+                    request = request.withLocation(fresh.asLocation().orElseThrow());
+                    refreshing = false;
+                    refreshed = true;
+                }
+                drain();
+            }, this::onError);
+        }
+
+        // Subscribes to the mono, which is cancelled on termination of download
+        <T> void subscribe(Mono<T> mono, Consumer<? super T> onNext, Consumer<? super Throwable> onError) {
+            var subscription = Disposables.swap();
+            if (!inflight.add(subscription)) {
+                return;
+            }
+            subscription.update(mono.doFinally(sig -> inflight.remove(subscription))
+                    .subscribe(onNext, onError));
+        }
+
+        long chunkLength(int id) {
+            return Math.min(DOWNLOAD_CHUNK_SIZE, options.getSize() - (long) id * DOWNLOAD_CHUNK_SIZE);
+        }
+
+        // Positional writes don't move channel position, so ranges can be written concurrently
+        void write(ByteBuf bytes, Chunk chunk) throws IOException {
+            long length = chunkLength(chunk.id);
+            if (bytes.readableBytes() != length) {
+                throw new IllegalStateException("Unexpected size of range #" + chunk.id + ": "
+                        + bytes.readableBytes() + ", expected: " + length);
+            }
+
+            long position = chunk.offset();
+            for (ByteBuffer buf : bytes.nioBuffers()) {
+                while (buf.hasRemaining()) {
+                    position += channel.write(buf, position);
+                }
+            }
+            progress.mark(chunk.id);
+        }
+
+        void completeInner() {
+            if (!terminated.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                // Resumed file may be longer than downloaded one
+                channel.truncate(options.getSize());
+                channel.close();
+                progress.delete();
+            } catch (Throwable t) {
+                actual.onError(t);
+                return;
+            }
+            actual.onComplete();
+        }
+
+        void onError(Throwable t) {
+            if (!terminated.compareAndSet(false, true)) {
+                // Other ranges may fail after closing of file
+                return;
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("[F:{}] Failed to download file to {}", options.getLocation().getDocumentId(),
+                        options.getFile());
+            }
+
+            inflight.dispose();
+            close();
+            actual.onError(t);
+        }
+
+        // Progress file is kept to continue download later
+        void close() {
+            try {
+                if (channel != null) channel.close();
+                if (progress != null) progress.close();
+            } catch (IOException e) {
+                log.warn("Failed to close downloading file", e);
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            // Mono<Void> has nothing to emit
+        }
+
+        @Override
+        public void cancel() {
+            if (terminated.compareAndSet(false, true)) {
+                inflight.dispose();
+                close();
+            }
+        }
+
+        @Nullable
+        @Override
+        public Object scanUnsafe(Attr key) {
+            if (key == Attr.TERMINATED || key == Attr.CANCELLED) return terminated.get();
+            if (key == Attr.RUN_STYLE) return Attr.RunStyle.ASYNC;
+            if (key == Attr.ACTUAL) return actual;
+            return null;
+        }
+    }
+
+    /**
+     * Bitmap of written ranges stored near to downloading file.
+     * File layout: [ 8 bytes of file size | 8 bytes of document id | 4 bytes of DC id |
+     * bitmap of ranges in {@link BitSet#toByteArray()} order ].
+     */
+    static final class ProgressFile {
+        // size, document id and DC id
+        static final int HEADER_SIZE = 8 + 8 + 4;
+
+        final Path path;
+        final FileChannel channel;
+        final BitSet bitmap;
+        final boolean resumed;
+
+        ProgressFile(Path path, FileChannel channel, BitSet bitmap, boolean resumed) {
+            this.path = path;
+            this.channel = channel;
+            this.bitmap = bitmap;
+            this.resumed = resumed;
+        }
+
+        // Progress is trusted only if it's written by download of the same file
+        static ProgressFile open(DownloadOptions options) throws IOException {
+            Path path = options.getProgressFile();
+            int chunks = options.getChunksCount();
+            int bitmapSize = (chunks + 7) / 8;
+            var location = options.getLocation();
+
+            if (options.isResume() && Files.exists(path)) {
+                var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                var buf = ByteBuffer.allocate(HEADER_SIZE + bitmapSize);
+                while (buf.hasRemaining() && channel.read(buf, buf.position()) != -1);
+
+                if (!buf.hasRemaining() && buf.getLong(0) == options.getSize() &&
+                        buf.getLong(8) == location.getDocumentId() && buf.getInt(16) == location.getDcId()) {
+                    return new ProgressFile(path, channel, BitSet.valueOf(buf.position(HEADER_SIZE)), true);
+                }
+                channel.close();
+            }
+
+            var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            var buf = ByteBuffer.allocate(HEADER_SIZE + bitmapSize)
+                    .putLong(options.getSize())
+                    .putLong(location.getDocumentId())
+                    .putInt(location.getDcId())
+                    .position(0);
+            while (buf.hasRemaining()) {
+                channel.write(buf, buf.position());
+            }
+            return new ProgressFile(path, channel, new BitSet(chunks), false);
+        }
+
+        boolean isResumed() {
+            return resumed;
+        }
+
+        synchronized boolean isDone(int id) {
+            return bitmap.get(id);
+        }
+
+        synchronized void mark(int id) throws IOException {
+            bitmap.set(id);
+
+            int from = id & ~7;
+            int b = 0;
+            for (int i = 0; i < 8; i++) {
+                if (bitmap.get(from + i)) {
+                    b |= 1 << i;
+                }
+            }
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) b}), HEADER_SIZE + (id >> 3));
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+
+        void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import reactor.util.annotation.Nullable;
+import telegram4j.mtproto.file.FileReferenceId;
+import telegram4j.mtproto.file.FileReferenceRefresher;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static telegram4j.mtproto.service.UploadService.*;
+
+/**
+ * Options of file downloading, that splits file into {@value UploadService#DOWNLOAD_CHUNK_SIZE} byte ranges and
+ * requests them by several download connections with writing directly to the local file.
+ */
+public class DownloadOptions {
+    private final FileReferenceId location;
+    private final long size;
+    private final Path file;
+    private final int parallelism;
+    private final boolean resume;
+    private final ProgressListener progressListener;
+    @Nullable
+    private final FileReferenceRefresher refresher;
+
+    DownloadOptions(Builder builder) {
+        this.location = builder.location;
+        this.size = builder.size;
+        this.file = builder.file;
+        this.parallelism = builder.parallelism;
+        this.resume = builder.resume;
+        this.progressListener = builder.progressListener;
+        this.refresher = builder.refresher;
+    }
+
+    /**
+     * Gets location of downloading file.
+     *
+     * @return The location of downloading file.
+     */
+    public FileReferenceId getLocation() {
+        return location;
+    }
+
+    /**
+     * Gets exact size of downloading file.
+     *
+     * @return The exact size of downloading file.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets path to local file, where ranges will be written.
+     *
+     * @return The path to local file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets number of downloading in parallel media clients.
+     *
+     * @return The number of downloading in parallel media clients.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Gets whether already downloaded ranges of partially written file should be skipped.
+     * Downloaded ranges are tracked in the {@link #getProgressFile() progress file}, which is removed after completion.
+     *
+     * @return {@code true} if download continues from partially written file.
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * Gets listener notified about every written range.
+     *
+     * @return The listener of download progress.
+     */
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * Gets strategy of refreshing expired file reference, which allows continuing download
+     * after {@code FILE_REFERENCE_*} errors.
+     *
+     * @return The strategy of file reference refreshing, or {@code null} if errors should be propagated.
+     */
+    @Nullable
+    public FileReferenceRefresher getRefresher() {
+        return refresher;
+    }
+
+    /**
+     * Gets total number of {@value UploadService#DOWNLOAD_CHUNK_SIZE} byte ranges.
+     *
+     * @return The total number of ranges.
+     */
+    public int getChunksCount() {
+        return (int) ((size + DOWNLOAD_CHUNK_SIZE - 1) / DOWNLOAD_CHUNK_SIZE);
+    }
+
+    /**
+     * Gets path to file with bitmap of downloaded ranges, which is located near to the {@link #getFile() file}.
+     *
+     * @return The path to progress file.
+     */
+    public Path getProgressFile() {
+        return file.resolveSibling(file.getFileName() + ".part");
+    }
+
+    /**
+     * Creates new {@code DownloadOptions} with specified mandatory parameters.
+     * All other attributes will initialize depends on specified values.
+     *
+     * @throws IllegalArgumentException if {@code size} is not positive or more than {@link UploadService#MAX_FILE_SIZE}.
+     * @param location The location of file.
+     * @param size The exact size of file.
+     * @param file The path to local file.
+     */
+    public static DownloadOptions create(FileReferenceId location, long size, Path file) {
+        return builder()
+                .location(location)
+                .size(size)
+                .file(file)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Listener of file downloading progress. */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /** Listener which ignores all notifications. */
+        ProgressListener NOOP = (downloaded, total) -> {};
+
+        /**
+         * Notifies about written range. Can be invoked concurrently from different threads.
+         *
+         * @param downloaded The count of written bytes, including resumed ranges.
+         * @param total The exact size of file.
+         */
+        void onProgress(long downloaded, long total);
+    }
+
+    public static class Builder {
+        static final byte INIT_BIT_LOCATION = 1 << 0;
+        static final byte INIT_BIT_SIZE = 1 << 1;
+        static final byte INIT_BIT_FILE = 1 << 2;
+
+        private byte initBits = INIT_BIT_LOCATION | INIT_BIT_SIZE | INIT_BIT_FILE;
+
+        private FileReferenceId location;
+        private long size;
+        private Path file;
+        private int parallelism = -1;
+        private boolean resume = true;
+        private ProgressListener progressListener = ProgressListener.NOOP;
+        private FileReferenceRefresher refresher;
+
+        private Builder() {}
+
+        public Builder location(FileReferenceId location) {
+            if (location.getFileType() == FileReferenceId.Type.WEB_DOCUMENT)
+                throw new IllegalArgumentException("Web documents can not be downloaded as normal files");
+            this.location = location;
+            initBits &= ~INIT_BIT_LOCATION;
+            return this;
+        }
+
+        public Builder size(long size) {
+            if (size <= 0 || size > MAX_FILE_SIZE)
+                throw new IllegalArgumentException("Invalid file size: " + size);
+            this.size = size;
+            initBits &= ~INIT_BIT_SIZE;
+            return this;
+        }
+
+        public Builder file(Path file) {
+            this.file = Objects.requireNonNull(file);
+            initBits &= ~INIT_BIT_FILE;
+            return this;
+        }
+
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1 && parallelism != -1)
+                throw new IllegalArgumentException("Invalid parallelism");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public Builder resume(boolean resume) {
+            this.resume = resume;
+            return this;
+        }
+
+        public Builder progressListener(ProgressListener progressListener) {
+            this.progressListener = Objects.requireNonNull(progressListener);
+            return this;
+        }
+
+        public Builder refresher(@Nullable FileReferenceRefresher refresher) {
+            this.refresher = refresher;
+            return this;
+        }
+
+        public DownloadOptions build() {
+            if (initBits != 0) {
+                List<String> attributes = new ArrayList<>(Integer.bitCount(initBits));
+                if ((initBits & INIT_BIT_LOCATION) != 0) attributes.add("location");
+                if ((initBits & INIT_BIT_SIZE) != 0) attributes.add("size");
+                if ((initBits & INIT_BIT_FILE) != 0) attributes.add("file");
+                throw new IllegalStateException("Can not create DownloadOptions, some of required attributes are not set: " + attributes);
+            }
+            if (parallelism == -1) {
+                parallelism = UploadService.suggestDownloadParallelism(size);
+            }
+
+            return new DownloadOptions(this);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32C;
+
+/**
+ * {@code DocumentIndex} implementation which persists documents to the file,
+ * so uploads are deduplicated after restart.
+ *
+ * <p> Changes are saved in background after {@link #DEFAULT_SAVE_DELAY delay}, so bursts of changes
+ * are written at once. The whole file is rewritten on save and protected by CRC32C checksum.
+ * Corrupted file is ignored. Unlike {@link telegram4j.mtproto.auth.FileDhPrimeChecker} file is not merged
+ * on save, because removed documents must not be restored, so file must not be shared between processes.
+ */
+public final class FileDocumentIndex implements DocumentIndex {
+
+    private static final Logger log = Loggers.getLogger(FileDocumentIndex.class);
+
+    static final int MAGIC = 0x49443454; // T4DI in LE
+    static final int VERSION = 0;
+    // magic, version, count
+    static final int HEADER_SIZE = 4 + 1 + 4;
+    static final int SHA256_SIZE = 32;
+
+    /** The default delay before saving changes to the file. */
+    public static final Duration DEFAULT_SAVE_DELAY = Duration.ofSeconds(5);
+
+    private final Path file;
+    private final Duration saveDelay;
+    private final ConcurrentHashMap<Key, Entry> documents = new ConcurrentHashMap<>();
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+
+    private FileDocumentIndex(Path file, Duration saveDelay) {
+        this.file = file;
+        this.saveDelay = saveDelay;
+    }
+
+    /**
+     * Creates new {@code FileDocumentIndex} with {@link #DEFAULT_SAVE_DELAY} and
+     * loads known documents from specified file, if it exists.
+     *
+     * @param file The path to file with known documents.
+     * @return A new {@code FileDocumentIndex}.
+     */
+    public static FileDocumentIndex load(Path file) {
+        return load(file, DEFAULT_SAVE_DELAY);
+    }
+
+    /**
+     * Creates new {@code FileDocumentIndex} and loads known documents from specified file, if it exists.
+     *
+     * @param file The path to file with known documents.
+     * @param saveDelay The delay before saving changes to the file.
+     * @return A new {@code FileDocumentIndex}.
+     */
+    public static FileDocumentIndex load(Path file, Duration saveDelay) {
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(saveDelay);
+        var index = new FileDocumentIndex(file, saveDelay);
+        index.documents.putAll(read(file));
+        return index;
+    }
+
+    /**
+     * Gets path to file with known documents.
+     *
+     * @return The path to file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    @Nullable
+    @Override
+    public Entry lookup(Key key) {
+        return documents.get(key);
+    }
+
+    @Override
+    public void add(Key key, Entry entry) {
+        if (!entry.equals(documents.put(key, entry))) {
+            scheduleSave();
+        }
+    }
+
+    @Override
+    public void remove(Key key) {
+        if (documents.remove(key) != null) {
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Synchronously saves pending changes to the file.
+     * This method blocks and can be used before shutdown.
+     */
+    public synchronized void flush() {
+        if (!saveScheduled.getAndSet(false)) {
+            return;
+        }
+
+        var snapshot = new HashMap<>(documents);
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeIntLE(MAGIC);
+        buf.writeByte(VERSION);
+        buf.writeIntLE(snapshot.size());
+        snapshot.forEach((key, entry) -> {
+            buf.writeBytes(ByteBufUtil.decodeHexDump(key.sha256()));
+            buf.writeLongLE(key.size());
+            byte[] mimeType = key.mimeType().getBytes(StandardCharsets.UTF_8);
+            buf.writeShortLE(mimeType.length);
+            buf.writeBytes(mimeType);
+            buf.writeLongLE(entry.id());
+            buf.writeLongLE(entry.accessHash());
+            buf.writeShortLE(entry.fileReference().readableBytes());
+            buf.writeBytes(entry.fileReference(), entry.fileReference().readerIndex(),
+                    entry.fileReference().readableBytes());
+            buf.writeLongLE(entry.timestamp().toEpochMilli());
+        });
+        buf.writeIntLE(checksum(buf, buf.writerIndex()));
+
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, ByteBufUtil.getBytes(buf));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            if (log.isDebugEnabled()) {
+                log.debug("Saved {} documents to {}", snapshot.size(), file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to save documents to " + file, e);
+        }
+    }
+
+    private void scheduleSave() {
+        if (saveScheduled.compareAndSet(false, true)) {
+            Schedulers.boundedElastic().schedule(this::flush, saveDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    static Map<Key, Entry> read(Path file) {
+        if (Files.notExists(file)) {
+            return Map.of();
+        }
+
+        try {
+            ByteBuf buf = Unpooled.wrappedBuffer(Files.readAllBytes(file));
+            if (buf.readableBytes() < HEADER_SIZE + 4 || buf.readIntLE() != MAGIC || buf.readByte() != VERSION) {
+                log.warn("Ignoring documents file {} with unknown format", file);
+                return Map.of();
+            }
+
+            int size = buf.capacity() - 4;
+            int count = buf.readIntLE();
+            if (count < 0 || buf.getIntLE(size) != checksum(buf, size)) {
+                log.warn("Ignoring corrupted documents file {}", file);
+                return Map.of();
+            }
+
+            var documents = new HashMap<Key, Entry>(count);
+            for (int i = 0; i < count; i++) {
+                String sha256 = ByteBufUtil.hexDump(buf.readSlice(SHA256_SIZE));
+                long fileSize = buf.readLongLE();
+                String mimeType = buf.readCharSequence(buf.readUnsignedShortLE(), StandardCharsets.UTF_8).toString();
+                long id = buf.readLongLE();
+                long accessHash = buf.readLongLE();
+                ByteBuf fileReference = Unpooled.copiedBuffer(buf.readSlice(buf.readUnsignedShortLE()));
+                Instant timestamp = Instant.ofEpochMilli(buf.readLongLE());
+
+                documents.put(new Key(sha256, fileSize, mimeType), new Entry(id, accessHash, fileReference, timestamp));
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("Loaded {} documents from {}", documents.size(), file);
+            }
+            return documents;
+        } catch (IOException | IndexOutOfBoundsException e) {
+            log.warn("Failed to load documents from " + file, e);
+            return Map.of();
+        }
+    }
+
+    static int checksum(ByteBuf buf, int length) {
+        var crc = new CRC32C();
+        crc.update(buf.nioBuffer(0, length));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only memory-mapped file which parts can be sliced in any order without copying.
+ * Mappings stay valid after closing of the channel and are released by GC.
+ */
+final class MappedFile {
+    // Max size of single mapping, multiple of any valid part size
+    static final int REGION_SIZE = 256 * 1024 * 1024;
+
+    final MappedByteBuffer[] regions;
+    final long size;
+    final int partSize;
+
+    MappedFile(MappedByteBuffer[] regions, long size, int partSize) {
+        this.regions = regions;
+        this.size = size;
+        this.partSize = partSize;
+    }
+
+    static MappedFile map(Path path, long size, int partSize) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < size) {
+                throw new IOException("File is smaller than specified size: " + fileSize + " < " + size);
+            }
+
+            var regions = new MappedByteBuffer[(int) ((size + REGION_SIZE - 1) / REGION_SIZE)];
+            for (int i = 0; i < regions.length; i++) {
+                long position = (long) i * REGION_SIZE;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(REGION_SIZE, size - position));
+            }
+            return new MappedFile(regions, size, partSize);
+        }
+    }
+
+    /**
+     * Slices part with specified index. Returned buffer is read-only view of mapping.
+     *
+     * @param index The index of part.
+     * @return The read-only buffer with part content.
+     */
+    ByteBuf part(int index) {
+        long offset = (long) index * partSize;
+        int length = (int) Math.min(partSize, size - offset);
+        // Parts never cross regions, because region size is a multiple of part size
+        var region = regions[(int) (offset / REGION_SIZE)];
+        return Unpooled.wrappedBuffer(region.slice((int) (offset % REGION_SIZE), length)).asReadOnly();
+    }
+}
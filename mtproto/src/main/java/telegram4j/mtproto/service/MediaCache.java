@@ -0,0 +1,144 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBuf;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import telegram4j.mtproto.file.FileReferenceId;
+import telegram4j.tl.storage.FileType;
+import telegram4j.tl.upload.BaseFile;
+
+import java.util.Optional;
+
+/**
+ * Cache of downloaded files, consulted by {@link UploadService#getFile(FileReferenceId, long, int, boolean)}
+ * before requesting of file from DC. Files are cached only after full download from zero offset,
+ * but cached file can be read by any range.
+ *
+ * @see DiskMediaCache
+ */
+public interface MediaCache {
+
+    /**
+     * Retrieves cached file by specified key.
+     *
+     * @param key The key of file.
+     * @return A {@link Mono} emitting cached file, if present.
+     */
+    Mono<Entry> get(Key key);
+
+    /**
+     * Wraps download of file from zero offset to cache passing parts.
+     * File is added to cache only after successful completion of returned {@link Flux},
+     * cancellation or error discard already written parts.
+     *
+     * @param key The key of file.
+     * @param parts The {@link Flux} of contiguous file parts starting from zero offset.
+     * @return A {@link Flux} emitting the same parts.
+     */
+    Flux<BaseFile> store(Key key, Flux<BaseFile> parts);
+
+    /**
+     * Gets snapshot of cache statistics.
+     *
+     * @return The snapshot of cache statistics.
+     */
+    Stats getStats();
+
+    /** Cached file, which content can be read by any range. */
+    interface Entry {
+
+        /**
+         * Gets type of file as reported by first downloaded part.
+         *
+         * @return The type of file.
+         */
+        FileType type();
+
+        /**
+         * Gets modification timestamp of file as reported by first downloaded part.
+         *
+         * @return The modification timestamp of file.
+         */
+        int mtime();
+
+        /**
+         * Gets size of file in bytes.
+         *
+         * @return The size of file in bytes.
+         */
+        long size();
+
+        /**
+         * Slices range of file content. Returned buffer doesn't need releasing.
+         *
+         * @param offset The number of bytes to be skipped.
+         * @param length The number of bytes to read.
+         * @throws IndexOutOfBoundsException If range is out of file bounds.
+         * @return The read-only buffer with file content.
+         */
+        ByteBuf slice(long offset, int length);
+    }
+
+    /**
+     * Identity of cached file, which doesn't depend on file reference and context of file.
+     *
+     * @param fileType The type of file.
+     * @param documentId The id of document or photo.
+     * @param thumbSizeType The thumbnail transformation type or {@code '\0'}.
+     * @param big Whether file is big chat photo.
+     */
+    record Key(FileReferenceId.Type fileType, long documentId, char thumbSizeType, boolean big) {
+
+        /**
+         * Creates key for specified file, if file can be cached.
+         * Web documents and sticker set thumbnails are not cached, because they have no stable id.
+         *
+         * @param location The location of file.
+         * @return The key for file, if file can be cached.
+         */
+        public static Optional<Key> of(FileReferenceId location) {
+            if (location.getFileType() == FileReferenceId.Type.WEB_DOCUMENT || location.getDocumentId() == -1) {
+                return Optional.empty();
+            }
+            return Optional.of(new Key(location.getFileType(), location.getDocumentId(),
+                    location.getThumbSizeType(), location.isBig()));
+        }
+    }
+
+    /**
+     * Snapshot of cache statistics.
+     *
+     * @param hits The count of requests served from cache.
+     * @param misses The count of requests of files absent in cache.
+     * @param bytesSaved The count of bytes served from cache instead of downloading.
+     * @param size The current size of cached files in bytes.
+     * @param count The current count of cached files.
+     */
+    record Stats(long hits, long misses, long bytesSaved, long size, int count) {
+
+        /**
+         * Computes ratio of hits to all requests.
+         *
+         * @return The ratio of hits in range {@code [0, 1]}, or {@code 0} if there were no requests.
+         */
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package telegram4j.mtproto.service;
 
+import reactor.util.annotation.Nullable;
 import telegram4j.mtproto.client.MTProtoClientGroup;
 import telegram4j.mtproto.store.StoreLayout;
 
@@ -32,13 +33,18 @@ public final class ServiceHolder {
     private final BotService botService;
 
     public ServiceHolder(MTProtoClientGroup clientGroup, StoreLayout storeLayout) {
+        this(clientGroup, storeLayout, null, DocumentIndexCache.create());
+    }
+
+    public ServiceHolder(MTProtoClientGroup clientGroup, StoreLayout storeLayout,
+                         @Nullable MediaCache mediaCache, DocumentIndex documentIndex) {
         this.authService = new AuthService(clientGroup, storeLayout);
         this.accountService = new AccountService(clientGroup, storeLayout);
         this.chatService = new ChatService(clientGroup, storeLayout);
         this.phoneService = new PhoneService(clientGroup, storeLayout);
         this.stickersService = new StickersService(clientGroup, storeLayout);
         this.helpService = new HelpService(clientGroup, storeLayout);
-        this.uploadService = new UploadService(clientGroup, storeLayout);
+        this.uploadService = new UploadService(clientGroup, storeLayout, mediaCache, documentIndex);
         this.updatesService = new UpdatesService(clientGroup, storeLayout);
         this.userService = new UserService(clientGroup, storeLayout);
         this.botService = new BotService(clientGroup, storeLayout);
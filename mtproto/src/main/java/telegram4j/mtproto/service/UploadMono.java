@@ -23,12 +23,15 @@ import io.netty.util.ReferenceCountUtil;
 import org.reactivestreams.Subscription;
 import reactor.core.CoreSubscriber;
 import reactor.core.Scannable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Operators;
 import reactor.core.scheduler.Schedulers;
 import reactor.util.annotation.Nullable;
 import reactor.util.context.Context;
 import telegram4j.mtproto.DcId;
+import telegram4j.mtproto.RpcException;
+import telegram4j.mtproto.client.MTProtoClient;
 import telegram4j.mtproto.client.MTProtoClientGroup;
 import telegram4j.tl.ImmutableBaseInputFile;
 import telegram4j.tl.ImmutableInputFileBig;
@@ -40,6 +43,9 @@ import telegram4j.tl.request.upload.ImmutableSaveFilePart;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -49,50 +55,112 @@ class UploadMono extends Mono<InputFile> {
 
     private final MTProtoClientGroup clientGroup;
     private final UploadOptions options;
+    @Nullable
+    private final MappedFile file;
+    @Nullable
+    private final MessageDigest sha256;
 
     UploadMono(MTProtoClientGroup clientGroup, UploadOptions options) {
+        this(clientGroup, options, null, null);
+    }
+
+    // Digest is updated by parts of publisher in their order, local files are not digested
+    UploadMono(MTProtoClientGroup clientGroup, UploadOptions options, @Nullable MessageDigest sha256) {
+        this(clientGroup, options, null, sha256);
+    }
+
+    // Uploads local file, which is already mapped
+    UploadMono(MTProtoClientGroup clientGroup, UploadOptions options, MappedFile file) {
+        this(clientGroup, options, file, null);
+    }
+
+    private UploadMono(MTProtoClientGroup clientGroup, UploadOptions options,
+                       @Nullable MappedFile file, @Nullable MessageDigest sha256) {
         this.clientGroup = clientGroup;
         this.options = options;
+        this.file = file;
+        this.sha256 = sha256;
     }
 
     @Override
     public void subscribe(CoreSubscriber<? super InputFile> actual) {
-        options.getData().subscribe(new UploadSubscriber(actual, clientGroup, options));
+        var path = options.getFile();
+        if (path == null) {
+            options.getData().subscribe(new UploadSubscriber(actual, clientGroup, options, null, sha256));
+            return;
+        }
+
+        MappedFile file = this.file;
+        if (file == null) {
+            try {
+                file = MappedFile.map(path, options.getSize(), options.getPartSize());
+            } catch (Throwable t) {
+                Operators.error(actual, t);
+                return;
+            }
+        }
+
+        // Parts are sliced from the file on demand, so there is no upstream
+        new UploadSubscriber(actual, clientGroup, options, file, null)
+                .onSubscribe(Operators.emptySubscription());
     }
 
     static class UploadSubscriber implements CoreSubscriber<ByteBuf>, Scannable, Subscription {
-        // It's necessary to avoid connection reset by server
-        static final Duration UPLOAD_INTERVAL = Duration.ofMillis(300);
+        static final int MAX_ATTEMPTS = 5;
+        static final Duration RETRY_BACKOFF = Duration.ofMillis(500);
 
         final AtomicInteger readParts = new AtomicInteger();
         CompositeByteBuf buffer;
         MessageDigest md5;
-        final AtomicInteger roundRobin = new AtomicInteger();
+        @Nullable
+        final MessageDigest sha256;
 
         final CoreSubscriber<? super InputFile> actual;
         final MTProtoClientGroup clientGroup;
         final UploadOptions options;
+        @Nullable
+        final MappedFile file;
         final AtomicInteger received = new AtomicInteger();
-        final AtomicInteger requested = new AtomicInteger();
 
         final AtomicReference<Subscription> subscription = new AtomicReference<>();
 
+        // Guarded by this
+        UploadWindow[] windows;
+        final ArrayDeque<Part> queued = new ArrayDeque<>();
+        // The count of requested, but not yet received buffers
+        int demand;
+
         public UploadSubscriber(CoreSubscriber<? super InputFile> actual,
                                 MTProtoClientGroup clientGroup,
-                                UploadOptions options) {
+                                UploadOptions options, @Nullable MappedFile file,
+                                @Nullable MessageDigest sha256) {
             this.actual = actual;
             this.clientGroup = clientGroup;
             this.options = options;
+            this.file = file;
+            this.sha256 = sha256;
+        }
 
-            this.requested.setRelease(options.getParallelism());
+        static final class Part {
+            final int id;
+            final TlMethod<Boolean> method;
+            int attempts;
+
+            Part(int id, TlMethod<Boolean> method) {
+                this.id = id;
+                this.method = method;
+            }
         }
 
-        void send(ByteBuf buf) {
+        void enqueue(ByteBuf buf) {
             if (md5 != null)
                 md5.update(buf.nioBuffer());
+            if (sha256 != null)
+                sha256.update(buf.nioBuffer());
 
             int partId = readParts.getAndIncrement();
             TlMethod<Boolean> part;
+            // Requests copy content of buffer, so it's released right after
             try {
                 if (options.isBigFile()) {
                     part = ImmutableSaveBigFilePart.of(options.getFileId(), partId, options.getPartsCount(), buf);
@@ -103,44 +171,139 @@ class UploadMono extends Mono<InputFile> {
                 ReferenceCountUtil.safeRelease(buf);
             }
 
-            int idx = Math.abs(roundRobin.getAndIncrement() % options.getParallelism());
+            synchronized (this) {
+                queued.addLast(new Part(partId, part));
+            }
+        }
+
+        void start(List<MTProtoClient> clients) {
+            synchronized (this) {
+                windows = clients.stream()
+                        .map(UploadWindow::new)
+                        .toArray(UploadWindow[]::new);
+            }
+            drain();
+        }
+
+        // Dispatches queued parts to the connections with free window and requests more data
+        void drain() {
+            if (subscription.get() == Operators.cancelledSubscription()) {
+                return;
+            }
+
+            var toSend = new ArrayList<Part>();
+            var targets = new ArrayList<UploadWindow>();
+            int request = 0;
+            synchronized (this) {
+                if (windows == null) {
+                    return;
+                }
+
+                int free = 0;
+                for (var w : windows) {
+                    free += w.available();
+                }
+                if (file != null) {
+                    while (queued.size() < free && readParts.get() < options.getPartsCount()) {
+                        enqueue(file.part(readParts.get()));
+                    }
+                }
 
-            DcId dcId = DcId.upload(clientGroup.main().dc().getId(), idx);
+                while (!queued.isEmpty()) {
+                    UploadWindow target = null;
+                    for (var w : windows) {
+                        if (w.available() > 0 && (target == null || w.available() > target.available())) {
+                            target = w;
+                        }
+                    }
+                    if (target == null) {
+                        break;
+                    }
+
+                    target.inflight++;
+                    toSend.add(queued.pollFirst());
+                    targets.add(target);
+                }
+
+                if (file == null) {
+                    int available = 0;
+                    for (var w : windows) {
+                        available += w.available();
+                    }
+                    int remaining = options.getPartsCount() - readParts.get() - demand;
+                    request = Math.min(available - queued.size() - demand, remaining);
+                    if (request > 0) {
+                        demand += request;
+                    }
+                }
+            }
+
+            for (int i = 0; i < toSend.size(); i++) {
+                send(targets.get(i), toSend.get(i));
+            }
+            if (request > 0) {
+                subscription.get().request(request);
+            }
+        }
+
+        void send(UploadWindow window, Part part) {
+            var client = window.client;
             if (log.isDebugEnabled()) {
-                log.debug("[DC:{}, F:{}] Preparing to send {}/{}", dcId, options.getFileId(),
-                        partId + 1, options.getPartsCount());
+                log.debug("[DC:{}, F:{}] Sending part {}/{}", client.dc().getId(), options.getFileId(),
+                        part.id + 1, options.getPartsCount());
             }
 
-            Mono.delay(UPLOAD_INTERVAL, Schedulers.single())
-                    .then(clientGroup.send(dcId, part))
+            client.send(part.method)
                     .subscribe(res -> {
                         if (!res) throw new IllegalStateException("Unexpected result state");
 
+                        synchronized (this) {
+                            window.onSuccess();
+                        }
+
                         int cnt = received.incrementAndGet();
                         if (log.isDebugEnabled()) {
-                            log.debug("[DC:{}, F:{}] Uploaded part {}, {}/{}", dcId, options.getFileId(),
-                                    partId + 1, cnt, options.getPartsCount());
+                            log.debug("[DC:{}, F:{}] Uploaded part {}, {}/{}", client.dc().getId(),
+                                    options.getFileId(), part.id + 1, cnt, options.getPartsCount());
                         }
 
-                        int d = requested.decrementAndGet();
                         if (cnt == options.getPartsCount()) {
                             completeInner();
-                        } else if (d == 0) {
-                            int remain = options.getPartsCount() - readParts.get();
-                            int r = Math.min(options.getParallelism(), remain);
-                            if (requested.compareAndSet(0, r)) {
-                                subscription.get().request(r);
-                            }
+                        } else {
+                            drain();
                         }
                     }, t -> {
+                        synchronized (this) {
+                            window.onFailure();
+                        }
+
+                        if (++part.attempts >= MAX_ATTEMPTS || !isRetryable(t)) {
+                            if (log.isDebugEnabled()) {
+                                log.debug("[DC:{}, F:{}] Failed to upload file part: {}",
+                                        client.dc().getId(), options.getFileId(), part.id);
+                            }
+                            onError(t);
+                            return;
+                        }
+
                         if (log.isDebugEnabled()) {
-                            log.debug("[DC:{}, F:{}] Failed to upload file part: {}",
-                                    dcId, options.getFileId(), partId);
+                            log.debug("[DC:{}, F:{}] Retrying upload of part {} after error: {}",
+                                    client.dc().getId(), options.getFileId(), part.id, t.toString());
+                        }
+
+                        synchronized (this) {
+                            queued.addFirst(part);
                         }
-                        onError(t);
+                        Mono.delay(RETRY_BACKOFF.multipliedBy(part.attempts), Schedulers.parallel())
+                                .subscribe(v -> drain());
                     });
         }
 
+        // Connection resets and internal server errors are transient
+        static boolean isRetryable(Throwable t) {
+            return !(t instanceof RpcException) || RpcException.isErrorCode(500).test(t);
+        }
+
         void completeInner() {
             var sub = subscription.getAndSet(Operators.cancelledSubscription());
             if (sub == Operators.cancelledSubscription()) {
@@ -171,12 +334,17 @@ class UploadMono extends Mono<InputFile> {
                 return;
             }
 
+            synchronized (this) {
+                demand--;
+            }
+
             // aligned buffer
             if (buf.readableBytes() % options.getPartSize() == 0) {
                 while (buf.isReadable()) {
-                    send(buf.readRetainedSlice(options.getPartSize()));
+                    enqueue(buf.readRetainedSlice(options.getPartSize()));
                 }
                 ReferenceCountUtil.release(buf);
+                drain();
                 return;
             }
 
@@ -186,12 +354,13 @@ class UploadMono extends Mono<InputFile> {
 
             buffer.addFlattenedComponents(true, buf);
             while (buffer.isReadable(options.getPartSize())) {
-                send(buffer.readRetainedSlice(options.getPartSize()));
+                enqueue(buffer.readRetainedSlice(options.getPartSize()));
             }
 
             if (readParts.get() == options.getPartsCount() - 1 && buffer.isReadable()) {
-                send(buffer);
+                enqueue(buffer);
             }
+            drain();
         }
 
         @Override
@@ -207,7 +376,12 @@ class UploadMono extends Mono<InputFile> {
 
         @Override
         public void onComplete() {
-            subscription.set(Operators.cancelledSubscription());
+            // Parts may still be in-flight, upload completes after receiving of all acknowledgements
+            int read = readParts.get();
+            if (read < options.getPartsCount()) {
+                onError(new IllegalStateException("Data completed before all parts were read, parts: "
+                        + read + "/" + options.getPartsCount()));
+            }
         }
 
         @Override
@@ -224,17 +398,19 @@ class UploadMono extends Mono<InputFile> {
                     }
                 }
 
-                AtomicInteger pending = new AtomicInteger(options.getParallelism());
-                for (int i = 0; i < options.getParallelism(); i++) {
-                    DcId dcId = DcId.upload(clientGroup.main().dc().getId(), i);
-
-                    clientGroup.getOrCreateClient(dcId)
-                            .subscribe(client -> {
-                                if (pending.decrementAndGet() == 0) {
-                                    subscription.get().request(Math.min(options.getParallelism(), options.getPartsCount()));
-                                }
-                            }, this::onError);
-                }
+                // Only the first connection is mandatory, upload can continue with fewer ones
+                int dcId = clientGroup.main().dc().getId();
+                Flux.range(0, options.getParallelism())
+                        .flatMap(i -> clientGroup.getOrCreateClient(DcId.upload(dcId, i))
+                                .onErrorResume(t -> i > 0, t -> {
+                                    if (log.isDebugEnabled()) {
+                                        log.debug("[DC:{}, F:{}] Failed to create upload client #{}: {}",
+                                                dcId, options.getFileId(), i, t.toString());
+                                    }
+                                    return Mono.empty();
+                                }))
+                        .collectList()
+                        .subscribe(this::start, this::onError);
             }
         }
 
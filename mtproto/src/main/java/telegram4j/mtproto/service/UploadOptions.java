@@ -17,53 +17,85 @@ package telegram4j.mtproto.service;
 
 import io.netty.buffer.ByteBuf;
 import org.reactivestreams.Publisher;
+import reactor.util.annotation.Nullable;
 import telegram4j.mtproto.util.CryptoUtil;
 import telegram4j.tl.InputFileBig;
+import telegram4j.tl.api.TlEncodingUtil;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 import static telegram4j.mtproto.service.UploadService.*;
 
 public class UploadOptions {
+    @Nullable
     private final Publisher<? extends ByteBuf> data;
+    @Nullable
+    private final Path file;
     private final long size;
     private final int partSize;
     private final int partsCount;
     private final String name;
     private final int parallelism;
     private final long fileId;
+    @Nullable
+    private final String mimeType;
+    private final boolean deduplicate;
+    @Nullable
+    private final ByteBuf sha256;
 
     UploadOptions(Builder builder) {
         this.data = builder.data;
+        this.file = builder.file;
         this.size = builder.size;
         this.partSize = builder.partSize;
         this.name = builder.name;
         this.parallelism = builder.parallelism;
         this.partsCount = builder.partsCount;
         this.fileId = builder.fileId;
+        this.mimeType = builder.mimeType;
+        this.deduplicate = builder.deduplicate;
+        this.sha256 = builder.sha256;
     }
 
     UploadOptions(Publisher<? extends ByteBuf> data, long size, String name) {
         this.data = Objects.requireNonNull(data);
+        this.file = null;
         this.size = size;
         this.name = Objects.requireNonNull(name);
         this.parallelism = UploadService.suggestParallelism(size);
         this.partSize = UploadService.suggestPartSize(size, -1);
         this.partsCount = (int) Math.ceil((double) size / partSize);
         this.fileId = CryptoUtil.random.nextLong();
+        this.mimeType = null;
+        this.deduplicate = false;
+        this.sha256 = null;
     }
 
     /**
      * Gets {@code ByteBuf} source for this file.
      *
-     * @return A {@link Publisher} with file source.
+     * @return A {@link Publisher} with file source, or {@code null} if options were created for {@link #getFile() local file}.
      */
+    @Nullable
     public Publisher<? extends ByteBuf> getData() {
         return data;
     }
 
+    /**
+     * Gets path to local file, parts of which will be sliced from the memory-mapped file
+     * and may be read in any order by parallel uploaders.
+     *
+     * @return The path to local file, or {@code null} if options were created for {@link #getData() publisher}.
+     */
+    @Nullable
+    public Path getFile() {
+        return file;
+    }
+
     /**
      * Gets whether file size is more than {@value UploadService#BIG_FILE_THRESHOLD} bytes and
      * {@link InputFileBig} file id should be returned.
@@ -128,6 +160,34 @@ public class UploadOptions {
         return fileId;
     }
 
+    /**
+     * Gets mime type of uploading document, if present.
+     *
+     * @return The mime type of document, if present.
+     */
+    public Optional<String> getMimeType() {
+        return Optional.ofNullable(mimeType);
+    }
+
+    /**
+     * Gets whether {@link UploadService#saveDocument(UploadOptions)} should look up already
+     * uploaded document with the same content before uploading.
+     *
+     * @return {@code true} if uploads of known documents should be skipped.
+     */
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * Gets <i>immutable</i> SHA-256 digest of file, if it's known before uploading.
+     *
+     * @return The <i>immutable</i> SHA-256 digest of file, if present.
+     */
+    public Optional<ByteBuf> getSha256() {
+        return Optional.ofNullable(sha256).map(ByteBuf::duplicate);
+    }
+
     /**
      * Creates new {@code UploadOptions} with specified mandatory parameters.
      * All other attributes will initialize depends on specified values.
@@ -158,16 +218,38 @@ public class UploadOptions {
 
         private int partsCount;
         private Publisher<? extends ByteBuf> data;
+        private Path file;
         private long size;
         private String name;
         private int partSize = -1;
         private int parallelism = -1;
         private long fileId;
+        private String mimeType;
+        private boolean deduplicate;
+        private ByteBuf sha256;
 
         private Builder() {}
 
         public Builder data(Publisher<? extends ByteBuf> data) {
             this.data = Objects.requireNonNull(data);
+            this.file = null;
+            initBits &= ~INIT_BIT_DATA;
+            return this;
+        }
+
+        /**
+         * Sets local file as source of data, replacing {@link #data(Publisher) publisher}.
+         * File will be memory-mapped on upload start, so parts are sliced from the mapping
+         * instead of being read to intermediate buffers. Requests still hold own copy of
+         * their part until it's uploaded.
+         * File must not be truncated during uploading.
+         *
+         * @param file The path to local file.
+         * @return This builder.
+         */
+        public Builder file(Path file) {
+            this.file = Objects.requireNonNull(file);
+            this.data = null;
             initBits &= ~INIT_BIT_DATA;
             return this;
         }
@@ -206,6 +288,39 @@ public class UploadOptions {
             return this;
         }
 
+        public Builder mimeType(String mimeType) {
+            this.mimeType = Objects.requireNonNull(mimeType);
+            return this;
+        }
+
+        /**
+         * Sets whether uploading should be skipped if document with the same SHA-256 digest, size and
+         * {@link #mimeType(String) mime type} is already known by index or server.
+         * Digest of local file is computed from the memory-mapped file before uploading,
+         * digest of publisher is computed during uploading and only used to index sent document.
+         *
+         * @param deduplicate Whether uploads of known documents should be skipped.
+         * @return This builder.
+         */
+        public Builder deduplicate(boolean deduplicate) {
+            this.deduplicate = deduplicate;
+            return this;
+        }
+
+        /**
+         * Sets SHA-256 digest of file, if it's known before uploading,
+         * so deduplication of {@link #data(Publisher) publisher} doesn't require uploading.
+         *
+         * @param sha256 The SHA-256 digest of file.
+         * @return This builder.
+         */
+        public Builder sha256(ByteBuf sha256) {
+            if (sha256.readableBytes() != 32)
+                throw new IllegalArgumentException("Invalid SHA-256 digest length: " + sha256.readableBytes());
+            this.sha256 = TlEncodingUtil.copyAsUnpooled(sha256);
+            return this;
+        }
+
         public UploadOptions build() {
             if (initBits != 0) {
                 List<String> attributes = new ArrayList<>(Integer.bitCount(initBits));
@@ -228,6 +343,10 @@ public class UploadOptions {
                 throw new IllegalArgumentException("Parallelism option is disabled for small files");
             }
 
+            if (deduplicate && mimeType == null) {
+                throw new IllegalStateException("Mime type must be set for deduplication of uploads");
+            }
+
             if ((optBits & OPT_BIT_FILE_ID) != 0)
                 fileId = CryptoUtil.random.nextLong();
 
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import reactor.util.annotation.Nullable;
+import telegram4j.tl.ImmutableBaseInputDocument;
+import telegram4j.tl.InputFile;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Result of {@link UploadService#saveDocument(UploadOptions)}, which contains either uploaded file
+ * or already known document with the same content.
+ */
+public final class UploadResult {
+    @Nullable
+    private final InputFile file;
+    @Nullable
+    private final ImmutableBaseInputDocument document;
+    @Nullable
+    private final DocumentIndex.Key key;
+
+    private UploadResult(@Nullable InputFile file, @Nullable ImmutableBaseInputDocument document,
+                         @Nullable DocumentIndex.Key key) {
+        this.file = file;
+        this.document = document;
+        this.key = key;
+    }
+
+    static UploadResult ofFile(InputFile file, @Nullable DocumentIndex.Key key) {
+        return new UploadResult(Objects.requireNonNull(file), null, key);
+    }
+
+    static UploadResult ofDocument(ImmutableBaseInputDocument document, DocumentIndex.Key key) {
+        return new UploadResult(null, Objects.requireNonNull(document), Objects.requireNonNull(key));
+    }
+
+    /**
+     * Gets uploaded file, if upload wasn't skipped.
+     *
+     * @return The uploaded file, if present.
+     */
+    public Optional<InputFile> getFile() {
+        return Optional.ofNullable(file);
+    }
+
+    /**
+     * Gets known document with the same content, if upload was skipped.
+     *
+     * @return The known document, if present.
+     */
+    public Optional<ImmutableBaseInputDocument> getDocument() {
+        return Optional.ofNullable(document);
+    }
+
+    /**
+     * Gets whether upload was skipped, because document with the same content is already known.
+     *
+     * @return {@code true} if upload was skipped.
+     */
+    public boolean isDeduplicated() {
+        return document != null;
+    }
+
+    /**
+     * Gets content identity of file, if deduplication was enabled.
+     * Document sent with {@link #getFile() uploaded file} should be added to the index by
+     * {@link UploadService#addDocument(UploadResult, telegram4j.tl.BaseDocument)}.
+     *
+     * @return The content identity of file, if present.
+     */
+    public Optional<DocumentIndex.Key> getKey() {
+        return Optional.ofNullable(key);
+    }
+
+    @Override
+    public String toString() {
+        return "UploadResult{" +
+                "file=" + file +
+                ", document=" + document +
+                ", key=" + key +
+                '}';
+    }
+}
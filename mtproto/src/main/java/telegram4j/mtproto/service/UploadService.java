@@ -15,38 +15,61 @@
  */
 package telegram4j.mtproto.service;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
-import reactor.function.TupleUtils;
 import reactor.util.Logger;
 import reactor.util.Loggers;
+import reactor.util.annotation.Nullable;
+import reactor.util.retry.Retry;
 import telegram4j.mtproto.DcId;
+import telegram4j.mtproto.PublicRsaKey;
+import telegram4j.mtproto.PublicRsaKeyRegister;
+import telegram4j.mtproto.RpcException;
 import telegram4j.mtproto.client.MTProtoClient;
 import telegram4j.mtproto.client.MTProtoClientGroup;
+import telegram4j.mtproto.file.Context;
 import telegram4j.mtproto.file.FileReferenceId;
+import telegram4j.mtproto.file.FileReferenceRefresher;
 import telegram4j.mtproto.service.Compatible.Type;
 import telegram4j.mtproto.store.StoreLayout;
+import telegram4j.mtproto.util.CryptoUtil;
+import telegram4j.tl.BaseDocument;
 import telegram4j.tl.FileHash;
+import telegram4j.tl.ImmutableBaseInputDocument;
 import telegram4j.tl.InputFile;
 import telegram4j.tl.InputFileLocation;
 import telegram4j.tl.InputWebFileLocation;
-import telegram4j.tl.request.auth.ImmutableExportAuthorization;
-import telegram4j.tl.request.auth.ImmutableImportAuthorization;
+import telegram4j.tl.request.help.GetCdnConfig;
 import telegram4j.tl.request.help.GetConfig;
+import telegram4j.tl.request.messages.ImmutableGetDocumentByHash;
 import telegram4j.tl.request.upload.ImmutableGetFile;
 import telegram4j.tl.request.upload.ImmutableGetFileHashes;
 import telegram4j.tl.request.upload.ImmutableGetWebFile;
 import telegram4j.tl.storage.FileType;
 import telegram4j.tl.upload.BaseFile;
+import telegram4j.tl.upload.FileCdnRedirect;
+import telegram4j.tl.upload.ImmutableBaseFile;
 import telegram4j.tl.upload.WebFile;
 
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class UploadService extends RpcService {
     static final Logger log = Loggers.getLogger(UploadService.class);
@@ -59,13 +82,138 @@ public class UploadService extends RpcService {
     static final int MAX_PARTS_COUNT = 4000; // it's for users with tg premium; for other users limit is 3000
     static final long MAX_FILE_SIZE = 4L * 1000 * 1024 * 1024; // 4gb for premium users; for other = 2gb
     static final int MAX_INFLIGHT_REQUESTS = 3; // optimal count of pending upload.getFile requests
+    static final int MAX_UPLOAD_PARALLELISM = 8;
+    // Size of file per additional upload connection
+    static final long UPLOAD_CONNECTION_SHARE = 64 * 1024 * 1024;
+
+    // The max limit of upload.getFile request, also an alignment for offsets of non-precise requests
+    public static final int DOWNLOAD_CHUNK_SIZE = 1024 * 1024;
+    static final int MAX_DOWNLOAD_PARALLELISM = 4;
+    // Size of file per additional download connection
+    static final long DOWNLOAD_CONNECTION_SHARE = 16 * 1024 * 1024;
+
+    // Max age of indexed documents, after which their file reference may be expired
+    public static final Duration DOCUMENT_MAX_AGE = Duration.ofHours(1);
+
+    // In-progress refreshes of file references, shared by concurrent downloads of the same media
+    private final ConcurrentHashMap<RefreshKey, Mono<FileReferenceId>> refreshes = new ConcurrentHashMap<>();
+    private final AtomicLong fileReferenceRefreshes = new AtomicLong();
+    private volatile Mono<Void> cdnKeys;
+    @Nullable
+    private final MediaCache mediaCache;
+    private final DocumentIndex documentIndex;
+    private final AtomicLong deduplicatedUploads = new AtomicLong();
+    private final AtomicLong avoidedUploadBytes = new AtomicLong();
 
     public UploadService(MTProtoClientGroup groupManager, StoreLayout storeLayout) {
+        this(groupManager, storeLayout, null, DocumentIndexCache.create());
+    }
+
+    public UploadService(MTProtoClientGroup groupManager, StoreLayout storeLayout,
+                         @Nullable MediaCache mediaCache, DocumentIndex documentIndex) {
         super(groupManager, storeLayout);
+        this.mediaCache = mediaCache;
+        this.documentIndex = Objects.requireNonNull(documentIndex);
+    }
+
+    /**
+     * Gets cache of downloaded files, if present.
+     *
+     * @return The cache of downloaded files, if present.
+     */
+    public Optional<MediaCache> getMediaCache() {
+        return Optional.ofNullable(mediaCache);
+    }
+
+    /**
+     * Gets count of file references refreshed by downloads after {@code FILE_REFERENCE_*} errors.
+     *
+     * @return The count of performed file reference refreshes.
+     */
+    public long getFileReferenceRefreshes() {
+        return fileReferenceRefreshes.get();
+    }
+
+    /**
+     * Gets index of uploaded documents, which is used for deduplication of uploads.
+     *
+     * @return The index of uploaded documents.
+     */
+    public DocumentIndex getDocumentIndex() {
+        return documentIndex;
+    }
+
+    /**
+     * Gets count of uploads skipped by {@link #saveDocument(UploadOptions)}, because documents were already known.
+     *
+     * @return The count of skipped uploads.
+     */
+    public long getDeduplicatedUploads() {
+        return deduplicatedUploads.get();
+    }
+
+    /**
+     * Gets total size of files which weren't uploaded by {@link #saveDocument(UploadOptions)},
+     * because documents were already known.
+     *
+     * @return The count of bytes which weren't uploaded.
+     */
+    public long getAvoidedUploadBytes() {
+        return avoidedUploadBytes.get();
+    }
+
+    // Keys of CDN DCs are requested once and saved to the store, where clients of CDN DCs look for them
+    Mono<Void> registerCdnKeys() {
+        Mono<Void> keys = cdnKeys;
+        if (keys == null) {
+            keys = sendMain(GetCdnConfig.instance())
+                    .flatMap(config -> {
+                        var register = PublicRsaKeyRegister.create(config.publicKeys().stream()
+                                .map(k -> PublicRsaKey.fromPem(k.publicKey()))
+                                .collect(Collectors.toList()));
+
+                        return storeLayout.getPublicRsaKeyRegister()
+                                .map(stored -> stored.merge(register))
+                                .defaultIfEmpty(register)
+                                .flatMap(storeLayout::updatePublicRsaKeyRegister);
+                    })
+                    // failed request must be retried by next download
+                    .doOnError(e -> cdnKeys = null)
+                    .cache();
+            cdnKeys = keys;
+        }
+        return keys;
+    }
+
+    record RefreshKey(FileReferenceId.Type type, long documentId, Context context) {
+        RefreshKey(FileReferenceId location) {
+            this(location.getFileType(), location.getDocumentId(), location.getContext());
+        }
+    }
+
+    // Concurrent downloads of one media await the same refresh
+    Mono<FileReferenceId> refreshFileReference(FileReferenceId location, FileReferenceRefresher refresher) {
+        var key = new RefreshKey(location);
+        return Mono.defer(() -> refreshes.computeIfAbsent(key, k -> refresher.refresh(location)
+                        .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                                "Failed to refresh file reference of " + location)))
+                        .doOnNext(r -> fileReferenceRefreshes.incrementAndGet())
+                        .doFinally(sig -> refreshes.remove(k))
+                        .cache()))
+                // Refresh is shared by thumbnails of media, but may return file ref id without thumbnail
+                .map(r -> r.getThumbSizeType() == location.getThumbSizeType()
+                        ? r : r.withThumbSizeType(location.getThumbSizeType()));
     }
 
     public static int suggestParallelism(long size) {
-        return size > BIG_FILE_THRESHOLD ? 3 : 1;
+        if (size <= BIG_FILE_THRESHOLD) {
+            return 1;
+        }
+        return (int) Math.min(MAX_UPLOAD_PARALLELISM, 2 + size / UPLOAD_CONNECTION_SHARE);
+    }
+
+    public static int suggestDownloadParallelism(long size) {
+        return (int) Math.min(MAX_DOWNLOAD_PARALLELISM, 1 + size / DOWNLOAD_CONNECTION_SHARE);
     }
 
     public static int suggestPartSize(long size, int partSize) {
@@ -80,13 +228,6 @@ public class UploadService extends RpcService {
         }
     }
 
-    // additional methods
-    // =========================
-    // TODO list:
-    // upload.getCdnFile#395f69da file_token:bytes offset:long limit:int = upload.CdnFile;
-    // upload.reuploadCdnFile#9b2754a8 file_token:bytes request_token:bytes = Vector<FileHash>;
-    // upload.getCdnFileHashes#91dc3f31 file_token:bytes offset:long = Vector<FileHash>;
-
     @Compatible(Type.BOTH)
     public Mono<InputFile> saveFile(UploadOptions options) {
         Objects.requireNonNull(options);
@@ -94,6 +235,128 @@ public class UploadService extends RpcService {
         return new UploadMono(clientGroup, options);
     }
 
+    /**
+     * Uploads file which will be sent as document. If {@link UploadOptions#isDeduplicate() deduplication} is enabled
+     * and SHA-256 digest of file is known before uploading, upload is skipped if document with the same digest,
+     * size and mime type is found in the {@link DocumentIndex} or by {@code messages.getDocumentByHash} request.
+     * Indexed documents older than {@link #DOCUMENT_MAX_AGE} are requested again to refresh their file reference.
+     *
+     * @param options The options of uploading.
+     * @return A {@link Mono} emitting uploaded file or already known document.
+     */
+    @Compatible(Type.BOTH)
+    public Mono<UploadResult> saveDocument(UploadOptions options) {
+        Objects.requireNonNull(options);
+        if (!options.isDeduplicate()) {
+            return new UploadMono(clientGroup, options).map(file -> UploadResult.ofFile(file, null));
+        }
+
+        String mimeType = options.getMimeType().orElseThrow();
+        Path path = options.getFile();
+        if (options.getSha256().isPresent()) {
+            return deduplicate(options, mimeType, options.getSha256().get(), () -> new UploadMono(clientGroup, options));
+        } else if (path != null) {
+            // Uploading reuses the mapping, so pages touched by digest are read from disk
+            // again only if they have been evicted from the page cache meanwhile
+            return Mono.fromCallable(() -> MappedFile.map(path, options.getSize(), options.getPartSize()))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flatMap(file -> deduplicate(options, mimeType, digest(file, options.getPartsCount()),
+                            () -> new UploadMono(clientGroup, options, file)));
+        }
+
+        // Digest of publisher is known only after uploading, so it only can be used to index sent document
+        return Mono.defer(() -> {
+            var sha256 = CryptoUtil.createDigest("SHA-256");
+            return new UploadMono(clientGroup, options, sha256)
+                    .map(file -> UploadResult.ofFile(file, DocumentIndex.Key.of(
+                            Unpooled.wrappedBuffer(sha256.digest()), options.getSize(), mimeType)));
+        });
+    }
+
+    private Mono<UploadResult> deduplicate(UploadOptions options, String mimeType, ByteBuf sha256,
+                                           Supplier<UploadMono> upload) {
+        var key = DocumentIndex.Key.of(sha256, options.getSize(), mimeType);
+        return findDocument(key)
+                .map(document -> {
+                    deduplicatedUploads.incrementAndGet();
+                    avoidedUploadBytes.addAndGet(options.getSize());
+                    if (log.isDebugEnabled()) {
+                        log.debug("[F:{}] Skipping upload of known document {}",
+                                options.getFileId(), document.id());
+                    }
+                    return UploadResult.ofDocument(document, key);
+                })
+                .switchIfEmpty(Mono.defer(() -> upload.get()
+                        .map(file -> UploadResult.ofFile(file, key))));
+    }
+
+    /**
+     * Adds document sent with uploaded file to the {@link DocumentIndex}, so next uploads
+     * of the same content with enabled deduplication will be skipped.
+     *
+     * @param result The result of {@link #saveDocument(UploadOptions)}, which was sent as document.
+     * @param document The document received after sending of uploaded file.
+     */
+    public void addDocument(UploadResult result, BaseDocument document) {
+        Objects.requireNonNull(document);
+        result.getKey().ifPresent(key -> documentIndex.add(key, DocumentIndex.Entry.of(document, Instant.now())));
+    }
+
+    private Mono<ImmutableBaseInputDocument> findDocument(DocumentIndex.Key key) {
+        return Mono.defer(() -> {
+            var known = documentIndex.lookup(key);
+            if (known != null && known.timestamp().plus(DOCUMENT_MAX_AGE).isAfter(Instant.now())) {
+                return Mono.just(known.asInputDocument());
+            }
+            if (key.size() > Integer.MAX_VALUE) { // can't be requested by hash
+                return Mono.empty();
+            }
+
+            var sha256 = Unpooled.wrappedBuffer(ByteBufUtil.decodeHexDump(key.sha256()));
+            return sendMain(ImmutableGetDocumentByHash.of(sha256, (int) key.size(), key.mimeType()))
+                    // Lookup errors must not fail uploading, so file is uploaded as usual
+                    .onErrorResume(e -> {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Failed to lookup document by hash {}: {}", key.sha256(), e.toString());
+                        }
+                        return Mono.empty();
+                    })
+                    .flatMap(document -> {
+                        if (!(document instanceof BaseDocument b)) {
+                            documentIndex.remove(key);
+                            return Mono.empty();
+                        }
+
+                        var entry = DocumentIndex.Entry.of(b, Instant.now());
+                        documentIndex.add(key, entry);
+                        return Mono.just(entry.asInputDocument());
+                    });
+        });
+    }
+
+    static ByteBuf digest(MappedFile file, int partsCount) {
+        var sha256 = CryptoUtil.createDigest("SHA-256");
+        for (int i = 0; i < partsCount; i++) {
+            sha256.update(file.part(i).nioBuffer());
+        }
+        return Unpooled.wrappedBuffer(sha256.digest());
+    }
+
+    /**
+     * Downloads file of known size to the local file by {@value #DOWNLOAD_CHUNK_SIZE} byte ranges,
+     * which are requested in parallel by several download clients and written at their positions.
+     * If download was interrupted it can be continued with the same options, only missing ranges will be requested.
+     *
+     * @param options The options of downloading.
+     * @return A {@link Mono} completing after writing of all ranges.
+     */
+    @Compatible(Type.BOTH)
+    public Mono<Void> downloadFile(DownloadOptions options) {
+        Objects.requireNonNull(options);
+
+        return new DownloadMono(this, options);
+    }
+
     // upload namespace
     // =========================
 
@@ -104,14 +367,34 @@ public class UploadService extends RpcService {
         ImmutableGetFile request = ImmutableGetFile.of(precise ? ImmutableGetFile.PRECISE_MASK : 0,
                 fileRefId.asLocation().orElseThrow(), baseOffset, limit);
 
+        // After redirect parts are requested directly from CDN DC
+        AtomicReference<CdnFile> cdn = new AtomicReference<>();
+
         return Flux.range(0, MAX_INFLIGHT_REQUESTS)
                 .flatMapSequential(i -> {
                     var requiredDelay = Mono.delay(Duration.ofMillis(20), Schedulers.single());
-                    return client.send(request.withOffset(offset.getAndAdd(limit)))
+                    long partOffset = offset.getAndAdd(limit);
+                    CdnFile cdnFile = cdn.get();
+                    if (cdnFile != null) {
+                        return getCdnPart(cdnFile, partOffset, limit)
+                                .flatMap(requiredDelay::thenReturn);
+                    }
+
+                    return client.send(request.withOffset(partOffset))
+                            .flatMap(file -> {
+                                if (file instanceof FileCdnRedirect redirect) {
+                                    var newCdnFile = new CdnFile(this, fileRefId.getDcId(), redirect);
+                                    if (cdn.compareAndSet(null, newCdnFile) && log.isDebugEnabled()) {
+                                        log.debug("[F:{}] File is redirected to CDN DC {}",
+                                                fileRefId.getDocumentId(), redirect.dcId());
+                                    }
+                                    return getCdnPart(cdn.get(), partOffset, limit);
+                                }
+                                return Mono.just((BaseFile) file);
+                            })
                             .flatMap(requiredDelay::thenReturn);
                 })
                 .repeat(() -> !complete.get())
-                .cast(BaseFile.class)
                 .mapNotNull(part -> {
                     if (part.type() == FileType.UNKNOWN || !part.bytes().isReadable()) { // download completed
                         complete.set(true);
@@ -121,9 +404,38 @@ public class UploadService extends RpcService {
                 });
     }
 
+    // Decrypted parts are not pooled, because the ownership of them is passed to user
+    private Mono<BaseFile> getCdnPart(CdnFile cdnFile, long offset, int limit) {
+        return cdnFile.getPart(offset, limit, UnpooledByteBufAllocator.DEFAULT)
+                .map(bytes -> ImmutableBaseFile.of(bytes.isReadable() ? FileType.PARTIAL : FileType.UNKNOWN,
+                        0, bytes));
+    }
+
     @Compatible(Type.BOTH)
     public Flux<BaseFile> getFile(FileReferenceId location,
                                   long offset, int limit, boolean precise) {
+        return getFile(location, offset, limit, precise, null);
+    }
+
+    /**
+     * Downloads file by parts of {@code limit} bytes starting from {@code offset}.
+     * If {@code refresher} is present, download continues from the failed part
+     * after refreshing of expired file reference. Reference is refreshed once in a row,
+     * so error is propagated if the refreshed reference is rejected too.
+     *
+     * <p> If {@link MediaCache} is present, cached files are read from it without requests to DC,
+     * and files downloaded from zero offset are added to it.
+     *
+     * @param location The location of file.
+     * @param offset The number of bytes to be skipped.
+     * @param limit The number of bytes to be returned in each part.
+     * @param precise Disable some checks on limit and offset values.
+     * @param refresher The strategy of file reference refreshing, or {@code null} to propagate errors.
+     * @return A {@link Flux} emitting parts of file.
+     */
+    @Compatible(Type.BOTH)
+    public Flux<BaseFile> getFile(FileReferenceId location, long offset, int limit, boolean precise,
+                                  @Nullable FileReferenceRefresher refresher) {
         if (offset < 0) return Flux.error(new IllegalArgumentException("offset is negative"));
         if (limit <= 0) return Flux.error(new IllegalArgumentException("limit is not positive"));
 
@@ -146,17 +458,61 @@ public class UploadService extends RpcService {
         if (location.getFileType() == FileReferenceId.Type.WEB_DOCUMENT)
             return Flux.error(new IllegalArgumentException("Web documents can not be downloaded as normal files"));
 
-        DcId dcId = DcId.download(location.getDcId());
-        if (location.getDcId() != clientGroup.main().dc().getId()) {
-            return sendMain(ImmutableExportAuthorization.of(location.getDcId()))
-                    .zipWith(clientGroup.getOrCreateClient(dcId))
-                    .flatMap(TupleUtils.function((auth, client) -> client.send(
-                                    ImmutableImportAuthorization.of(auth.id(), auth.bytes()))
-                            .thenReturn(client)))
-                    .flatMapMany(client -> getFile0(client, location, offset, limit, precise));
+        Flux<BaseFile> download = Flux.defer(() -> {
+            var current = new AtomicReference<>(location);
+            var position = new AtomicLong(offset);
+            var refreshable = new AtomicBoolean(true);
+            var redirectable = new AtomicBoolean(true);
+
+            return Flux.defer(() -> clientGroup.getOrCreateAuthorizedClient(DcId.download(current.get().getDcId()))
+                            .flatMapMany(client -> getFile0(client, current.get(), position.get(), limit, precise)
+                                    .transform(f -> invalidateOnUnauthorized(f, client))))
+                    .doOnNext(part -> {
+                        position.addAndGet(limit);
+                        refreshable.set(true);
+                        redirectable.set(true);
+                    })
+                    .retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                        Throwable t = signal.failure();
+                        // New CDN redirect will be received on resubscription
+                        if (CdnFile.TOKEN_INVALID.test(t) && redirectable.getAndSet(false)) {
+                            return Mono.just(signal);
+                        }
+                        if (refresher == null || !RpcException.isFileReferenceError().test(t) ||
+                                !refreshable.getAndSet(false)) {
+                            return Mono.error(t);
+                        }
+
+                        if (log.isDebugEnabled()) {
+                            log.debug("[F:{}] Refreshing file reference at offset {} after error: {}",
+                                    location.getDocumentId(), position.get(), t.toString());
+                        }
+                        return refreshFileReference(current.get(), refresher)
+                                .doOnNext(current::set);
+                    })));
+        });
+
+        var key = mediaCache != null ? MediaCache.Key.of(location).orElse(null) : null;
+        if (key == null) {
+            return download;
         }
-        return clientGroup.getOrCreateClient(dcId)
-                .flatMapMany(client -> getFile0(client, location, offset, limit, precise));
+        return mediaCache.get(key)
+                .map(entry -> readCached(entry, offset, limit))
+                .switchIfEmpty(Mono.fromSupplier(() -> offset == 0 ? mediaCache.store(key, download) : download))
+                .flatMapMany(Function.identity());
+    }
+
+    // Cached file is sliced as DC would return it: by parts of limit bytes until end of file
+    private static Flux<BaseFile> readCached(MediaCache.Entry entry, long offset, int limit) {
+        return Flux.generate(() -> offset, (position, sink) -> {
+            if (position >= entry.size()) {
+                sink.complete();
+                return position;
+            }
+            int length = (int) Math.min(limit, entry.size() - position);
+            sink.next(ImmutableBaseFile.of(entry.type(), entry.mtime(), entry.slice(position, length)));
+            return position + length;
+        });
     }
 
     private Flux<WebFile> getWebFile0(MTProtoClient client, InputWebFileLocation location,
@@ -188,15 +544,14 @@ public class UploadService extends RpcService {
                 .switchIfEmpty(sendMain(GetConfig.instance())
                         .flatMap(cfg -> storeLayout.onUpdateConfig(cfg)
                                 .thenReturn(cfg)))
-                .flatMap(cfg -> {
-                    DcId dc = DcId.download(cfg.webfileDcId());
-                    return sendMain(ImmutableExportAuthorization.of(cfg.webfileDcId()))
-                            .zipWith(clientGroup.getOrCreateClient(dc));
-                })
-                .flatMap(TupleUtils.function((auth, client) -> client.send(
-                        ImmutableImportAuthorization.of(auth.id(), auth.bytes()))
-                        .thenReturn(client)))
-                .flatMapMany(client -> getWebFile0(client, location, offset, limit));
+                .flatMap(cfg -> clientGroup.getOrCreateAuthorizedClient(DcId.download(cfg.webfileDcId())))
+                .flatMapMany(client -> getWebFile0(client, location, offset, limit)
+                        .transform(f -> invalidateOnUnauthorized(f, client)));
+    }
+
+    // Authorization of client may be lost, e.g. after auth key reset, and must be imported again
+    private <T> Flux<T> invalidateOnUnauthorized(Flux<T> flux, MTProtoClient client) {
+        return flux.doOnError(RpcException.isErrorCode(401), e -> clientGroup.invalidateAuthorization(client));
     }
 
     @Compatible(Type.BOTH)
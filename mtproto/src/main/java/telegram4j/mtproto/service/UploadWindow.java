@@ -0,0 +1,57 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import telegram4j.mtproto.client.MTProtoClient;
+
+/**
+ * Congestion window of upload or download connection, which limits count of in-flight file parts.
+ * Window grows by one part per window of successfully uploaded parts and halves on failure.
+ * Not thread-safe.
+ */
+final class UploadWindow {
+    static final int INITIAL_SIZE = Integer.getInteger("telegram4j.mtproto.upload.initialWindow", 2);
+    static final int MAX_SIZE = Integer.getInteger("telegram4j.mtproto.upload.maxWindow", 16);
+
+    final MTProtoClient client;
+    final int maxSize;
+    double size;
+    int inflight;
+
+    UploadWindow(MTProtoClient client) {
+        this(client, INITIAL_SIZE, MAX_SIZE);
+    }
+
+    UploadWindow(MTProtoClient client, int initialSize, int maxSize) {
+        this.client = client;
+        this.size = initialSize;
+        this.maxSize = maxSize;
+    }
+
+    int available() {
+        return (int) size - inflight;
+    }
+
+    void onSuccess() {
+        inflight--;
+        size = Math.min(maxSize, size + 1 / size);
+    }
+
+    void onFailure() {
+        inflight--;
+        size = Math.max(1, size / 2);
+    }
+}
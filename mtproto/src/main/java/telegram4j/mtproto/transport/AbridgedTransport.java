@@ -0,0 +1,105 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+/**
+ * A MTProto transport with the lightest overhead, which encodes length of 4-byte aligned
+ * data in one byte for packets smaller than 508 bytes, and in four bytes otherwise.
+ */
+public class AbridgedTransport implements Transport {
+    public static final byte ID = (byte) 0xef;
+
+    static final int QUICK_ACK_BIT = 0x80;
+    static final int EXTENDED_LENGTH = 0x7f;
+
+    private final boolean useQuickAck;
+
+    public AbridgedTransport(boolean useQuickAck) {
+        this.useQuickAck = useQuickAck;
+    }
+
+    @Override
+    public ByteBuf identifier(ByteBufAllocator alloc) {
+        return alloc.buffer(1).writeByte(ID);
+    }
+
+    @Override
+    public ByteBuf encode(ByteBuf payload, boolean quickAck) {
+        int length = payload.readableBytes() >> 2;
+        int quickAckBit = quickAck && useQuickAck ? QUICK_ACK_BIT : 0;
+
+        ByteBuf header;
+        if (length < EXTENDED_LENGTH) {
+            header = payload.alloc().buffer(1).writeByte(length | quickAckBit);
+        } else {
+            header = payload.alloc().buffer(4)
+                    .writeByte(EXTENDED_LENGTH | quickAckBit)
+                    .writeMediumLE(length);
+        }
+
+        return Unpooled.wrappedBuffer(header, payload);
+    }
+
+    @Override
+    public boolean supportsQuickAck() {
+        return useQuickAck;
+    }
+
+    @Override
+    public ByteBuf tryDecode(ByteBuf payload) {
+        if (!payload.isReadable()) {
+            return null;
+        }
+
+        int idx = payload.readerIndex();
+        int header = payload.getUnsignedByte(idx);
+        // Quick acks are sent as big-endian int with the highest bit set.
+        // Convert it to the little-endian to be consistent with other transports
+        if ((header & QUICK_ACK_BIT) != 0) {
+            if (!payload.isReadable(4)) {
+                return null;
+            }
+
+            int token = payload.readInt();
+            return payload.alloc().buffer(4).writeIntLE(token);
+        }
+
+        int headerSize;
+        int length;
+        if (header < EXTENDED_LENGTH) {
+            headerSize = 1;
+            length = header << 2;
+        } else {
+            if (!payload.isReadable(4)) {
+                return null;
+            }
+
+            headerSize = 4;
+            length = payload.getUnsignedMediumLE(idx + 1) << 2;
+        }
+
+        if (!payload.isReadable(headerSize + length)) {
+            return null;
+        }
+
+        payload.skipBytes(headerSize);
+        return payload.readRetainedSlice(length);
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import reactor.util.annotation.Nullable;
+import telegram4j.mtproto.util.AES256CTRCipher;
+import telegram4j.mtproto.util.CryptoUtil;
+import telegram4j.mtproto.util.RandomSource;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A transport obfuscation layer (obfuscated2) over other {@code Transport}, which
+ * encrypts all traffic by AES-256-CTR to prevent detection of MTProto protocol.
+ * This transport may be used to connect to the MTProxy with specified secret.
+ *
+ * <p> Transport identifier of this transport is a random 64-byte header with
+ * encrypted protocol tag of the delegate and dc id.
+ * Outbound packets are encrypted in place, so the payloads must not be used after {@link #encode(ByteBuf, boolean)}.
+ *
+ * @see <a href="https://core.telegram.org/mtproto/mtproto-transports#transport-obfuscation">Transport Obfuscation</a>
+ */
+public class ObfuscatedTransport implements Transport {
+    static final int HEADER_SIZE = 64;
+    static final int KEY_OFFSET = 8;
+    static final int IV_OFFSET = 40;
+    static final int TAG_OFFSET = 56;
+    static final int DC_ID_OFFSET = 60;
+
+    static final int SECRET_SIZE = 16;
+    static final byte PADDED_SECRET_PREFIX = (byte) 0xdd;
+    static final byte FAKE_TLS_SECRET_PREFIX = (byte) 0xee;
+
+    private final Transport delegate;
+    private final int dcId;
+    @Nullable
+    private final byte[] secret;
+    private final RandomSource randomSource;
+
+    private AES256CTRCipher encryptor;
+    private AES256CTRCipher decryptor;
+    // count of already decrypted bytes after reader index of inbound buffer
+    private int decrypted;
+
+    /**
+     * Constructs obfuscated transport.
+     *
+     * @param delegate The transport to wrap.
+     * @param dcId The internal id of dc, see {@link telegram4j.mtproto.DataCenter#getInternalId()}.
+     * @param secret The MTProxy secret, if present. 16-byte secrets and
+     * 17-byte secrets with {@code 0xdd} prefix are supported.
+     * @param randomSource The source of the header bytes.
+     * @throws IllegalArgumentException if secret has unsupported format.
+     */
+    public ObfuscatedTransport(Transport delegate, int dcId, @Nullable ByteBuf secret, RandomSource randomSource) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.dcId = dcId;
+        this.secret = secret != null ? parseSecret(secret) : null;
+        this.randomSource = Objects.requireNonNull(randomSource);
+    }
+
+    /**
+     * Gets whether specified MTProxy secret requires {@link PaddedIntermediateTransport}.
+     *
+     * @param secret The MTProxy secret.
+     * @return {@code true} if secret has {@code 0xdd} prefix.
+     */
+    public static boolean isPaddedSecret(ByteBuf secret) {
+        return secret.readableBytes() == SECRET_SIZE + 1 && secret.getByte(secret.readerIndex()) == PADDED_SECRET_PREFIX;
+    }
+
+    static byte[] parseSecret(ByteBuf secret) {
+        int size = secret.readableBytes();
+        if (size == SECRET_SIZE) {
+            return ByteBufUtil.getBytes(secret);
+        }
+        if (isPaddedSecret(secret)) {
+            return ByteBufUtil.getBytes(secret, secret.readerIndex() + 1, SECRET_SIZE);
+        }
+        if (size > 0 && secret.getByte(secret.readerIndex()) == FAKE_TLS_SECRET_PREFIX) {
+            throw new IllegalArgumentException("Fake-TLS MTProxy secrets are not supported");
+        }
+        throw new IllegalArgumentException("Malformed MTProxy secret of size " + size);
+    }
+
+    /**
+     * Gets wrapped transport.
+     *
+     * @return The wrapped transport.
+     */
+    public Transport delegate() {
+        return delegate;
+    }
+
+    @Override
+    public ByteBuf identifier(ByteBufAllocator allocator) {
+        byte[] header = new byte[HEADER_SIZE];
+        int tag = protocolTag(allocator);
+        do {
+            randomSource.nextBytes(header);
+        } while (!isValidHeader(header));
+
+        writeIntLE(header, TAG_OFFSET, tag);
+        header[DC_ID_OFFSET] = (byte) dcId;
+        header[DC_ID_OFFSET + 1] = (byte) (dcId >> 8);
+
+        byte[] reversed = new byte[TAG_OFFSET - KEY_OFFSET];
+        for (int i = 0; i < reversed.length; i++) {
+            reversed[i] = header[TAG_OFFSET - 1 - i];
+        }
+
+        encryptor = createCipher(header, KEY_OFFSET, secret);
+        decryptor = createCipher(reversed, 0, secret);
+        decrypted = 0;
+
+        // only tag and dc id are sent encrypted, but the keystream is consumed for whole header
+        byte[] encrypted = header.clone();
+        encryptor.transform(encrypted, 0, HEADER_SIZE);
+        System.arraycopy(encrypted, TAG_OFFSET, header, TAG_OFFSET, HEADER_SIZE - TAG_OFFSET);
+
+        return allocator.buffer(HEADER_SIZE).writeBytes(header);
+    }
+
+    @Override
+    public ByteBuf encode(ByteBuf payload, boolean quickAck) {
+        checkInitialized();
+        ByteBuf encoded = delegate.encode(payload, quickAck);
+        return encryptor.transform(encoded);
+    }
+
+    @Override
+    public ByteBuf tryDecode(ByteBuf payload) {
+        checkInitialized();
+        int readable = payload.readableBytes();
+        if (decrypted < readable) {
+            decryptor.transform(payload, payload.readerIndex() + decrypted, readable - decrypted);
+            decrypted = readable;
+        }
+
+        int readerIndex = payload.readerIndex();
+        ByteBuf result = delegate.tryDecode(payload);
+        decrypted -= payload.readerIndex() - readerIndex;
+        return result;
+    }
+
+    @Override
+    public boolean supportsQuickAck() {
+        return delegate.supportsQuickAck();
+    }
+
+    private void checkInitialized() {
+        if (encryptor == null) {
+            throw new IllegalStateException("Transport identifier was not sent");
+        }
+    }
+
+    private int protocolTag(ByteBufAllocator allocator) {
+        ByteBuf id = delegate.identifier(allocator);
+        try {
+            return switch (id.readableBytes()) {
+                // abridged transport, the 0xef byte is repeated
+                case 1 -> (id.getByte(id.readerIndex()) & 0xff) * 0x01010101;
+                case 4 -> id.getIntLE(id.readerIndex());
+                default -> throw new IllegalStateException("Unexpected transport identifier size: " + id.readableBytes());
+            };
+        } finally {
+            id.release();
+        }
+    }
+
+    static boolean isValidHeader(byte[] header) {
+        if (header[0] == AbridgedTransport.ID) {
+            return false;
+        }
+
+        int first = readIntLE(header, 0);
+        int second = readIntLE(header, 4);
+        return second != 0 &&
+                first != 0x44414548 && // HEAD
+                first != 0x54534f50 && // POST
+                first != 0x20544547 && // GET
+                first != 0x4954504f && // OPTI
+                first != 0x02010316 && // TLS handshake
+                first != PaddedIntermediateTransport.ID &&
+                first != IntermediateTransport.ID;
+    }
+
+    // Derives cipher from key and iv located at specified offset
+    static AES256CTRCipher createCipher(byte[] keyAndIv, int offset, @Nullable byte[] secret) {
+        byte[] key = Arrays.copyOfRange(keyAndIv, offset, offset + 32);
+        byte[] iv = Arrays.copyOfRange(keyAndIv, offset + 32, offset + 48);
+        if (secret != null) {
+            MessageDigest sha256 = CryptoUtil.createDigest("SHA-256");
+            sha256.update(key);
+            sha256.update(secret);
+            key = sha256.digest();
+        }
+        return new AES256CTRCipher(key, iv);
+    }
+
+    static int readIntLE(byte[] b, int offset) {
+        return (b[offset] & 0xff) | (b[offset + 1] & 0xff) << 8 |
+                (b[offset + 2] & 0xff) << 16 | (b[offset + 3] & 0xff) << 24;
+    }
+
+    static void writeIntLE(byte[] b, int offset, int value) {
+        b[offset] = (byte) value;
+        b[offset + 1] = (byte) (value >> 8);
+        b[offset + 2] = (byte) (value >> 16);
+        b[offset + 3] = (byte) (value >> 24);
+    }
+}
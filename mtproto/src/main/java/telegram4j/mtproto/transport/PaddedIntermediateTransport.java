@@ -0,0 +1,110 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import telegram4j.mtproto.util.RandomSource;
+
+/**
+ * A variant of {@link IntermediateTransport} which appends 0-15 random bytes to the each packet
+ * to hide packet sizes. This transport is required by some MTProxy servers.
+ */
+public class PaddedIntermediateTransport implements Transport {
+    public static final int ID = 0xdddddddd;
+
+    static final int MAX_PADDING = 15;
+    // auth_key_id, message_id and message_data_length of unencrypted messages
+    static final int PLAIN_HEADER_SIZE = 20;
+    // auth_key_id and msg_key of encrypted messages
+    static final int ENCRYPTED_HEADER_SIZE = 24;
+
+    private final boolean useQuickAck;
+    private final RandomSource randomSource;
+
+    public PaddedIntermediateTransport(boolean useQuickAck, RandomSource randomSource) {
+        this.useQuickAck = useQuickAck;
+        this.randomSource = randomSource;
+    }
+
+    @Override
+    public ByteBuf identifier(ByteBufAllocator alloc) {
+        return alloc.buffer(Integer.BYTES).writeIntLE(ID);
+    }
+
+    @Override
+    public ByteBuf encode(ByteBuf payload, boolean quickAck) {
+        int padding = randomSource.nextFastInt(MAX_PADDING + 1);
+        int packetSize = payload.readableBytes() + padding;
+        if (quickAck && useQuickAck) {
+            packetSize |= QUICK_ACK_MASK;
+        }
+
+        ByteBuf header = payload.alloc().buffer(4).writeIntLE(packetSize);
+        if (padding == 0) {
+            return Unpooled.wrappedBuffer(header, payload);
+        }
+
+        byte[] paddingb = new byte[padding];
+        randomSource.nextBytes(paddingb);
+        return Unpooled.wrappedBuffer(header, payload, Unpooled.wrappedBuffer(paddingb));
+    }
+
+    @Override
+    public boolean supportsQuickAck() {
+        return useQuickAck;
+    }
+
+    @Override
+    public ByteBuf tryDecode(ByteBuf payload) {
+        if (!payload.isReadable(4)) {
+            return null;
+        }
+
+        payload.markReaderIndex();
+        int length = payload.readIntLE();
+
+        if ((length & QUICK_ACK_MASK) != 0 && useQuickAck) {
+            payload.resetReaderIndex();
+            return payload.readRetainedSlice(4);
+        }
+
+        if (payload.isReadable(length)) {
+            ByteBuf packet = payload.readRetainedSlice(length);
+            packet.writerIndex(packet.readerIndex() + unpaddedLength(packet));
+            return packet;
+        }
+
+        payload.resetReaderIndex();
+        return null;
+    }
+
+    // Computes length of packet without transport padding
+    static int unpaddedLength(ByteBuf packet) {
+        int length = packet.readableBytes();
+        int idx = packet.readerIndex();
+        if (length >= PLAIN_HEADER_SIZE && packet.getLongLE(idx) == 0) {
+            return Math.min(length, PLAIN_HEADER_SIZE + packet.getIntLE(idx + 16));
+        }
+        if (length >= ENCRYPTED_HEADER_SIZE) {
+            // encrypted data is aligned by 16 bytes
+            return length - (length - ENCRYPTED_HEADER_SIZE) % 16;
+        }
+        // transport error code
+        return Math.min(length, 4);
+    }
+}
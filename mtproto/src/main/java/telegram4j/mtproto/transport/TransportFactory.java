@@ -15,11 +15,85 @@
  */
 package telegram4j.mtproto.transport;
 
+import io.netty.buffer.ByteBuf;
 import telegram4j.mtproto.DataCenter;
+import telegram4j.mtproto.util.RandomSource;
+
+import java.util.Objects;
 
 /** Interface for creating {@code Transport} instances for specified DC. */
 public interface TransportFactory {
 
+    /**
+     * Creates new {@code TransportFactory} for {@link IntermediateTransport}.
+     *
+     * @param useQuickAck Whether quick acks should be requested.
+     * @return A new {@code TransportFactory}.
+     */
+    static TransportFactory intermediate(boolean useQuickAck) {
+        return dc -> new IntermediateTransport(useQuickAck);
+    }
+
+    /**
+     * Creates new {@code TransportFactory} for {@link AbridgedTransport}.
+     *
+     * @param useQuickAck Whether quick acks should be requested.
+     * @return A new {@code TransportFactory}.
+     */
+    static TransportFactory abridged(boolean useQuickAck) {
+        return dc -> new AbridgedTransport(useQuickAck);
+    }
+
+    /**
+     * Creates new {@code TransportFactory} for {@link PaddedIntermediateTransport}.
+     *
+     * @param useQuickAck Whether quick acks should be requested.
+     * @param randomSource The source of padding length and bytes.
+     * @return A new {@code TransportFactory}.
+     */
+    static TransportFactory paddedIntermediate(boolean useQuickAck, RandomSource randomSource) {
+        Objects.requireNonNull(randomSource);
+        return dc -> new PaddedIntermediateTransport(useQuickAck, randomSource);
+    }
+
+    /**
+     * Creates new {@code TransportFactory} which wraps transports of
+     * specified factory into {@link ObfuscatedTransport}. The secret of DC, if present, is used as MTProxy secret
+     * and secrets with {@code 0xdd} prefix force usage of {@link PaddedIntermediateTransport}.
+     *
+     * @param delegate The factory of transports to wrap.
+     * @param randomSource The source of obfuscation headers and padding.
+     * @return A new {@code TransportFactory}.
+     */
+    static TransportFactory obfuscated(TransportFactory delegate, RandomSource randomSource) {
+        Objects.requireNonNull(delegate);
+        Objects.requireNonNull(randomSource);
+        return dc -> {
+            ByteBuf secret = dc.getSecret().orElse(null);
+            Transport transport = delegate.create(dc);
+            if (secret != null && ObfuscatedTransport.isPaddedSecret(secret) &&
+                    !(transport instanceof PaddedIntermediateTransport)) {
+                transport = new PaddedIntermediateTransport(transport.supportsQuickAck(), randomSource);
+            }
+            return new ObfuscatedTransport(transport, dc.getInternalId(), secret, randomSource);
+        };
+    }
+
+    /**
+     * Creates new {@code TransportFactory} which uses {@link #obfuscated(TransportFactory, RandomSource) obfuscation}
+     * only for DCs that {@link DataCenter#isTcpObfuscatedOnly() require} it or have MTProxy secret.
+     *
+     * @param delegate The factory of transports.
+     * @param randomSource The source of obfuscation headers and padding.
+     * @return A new {@code TransportFactory}.
+     */
+    static TransportFactory obfuscatedIfRequired(TransportFactory delegate, RandomSource randomSource) {
+        TransportFactory obfuscated = obfuscated(delegate, randomSource);
+        return dc -> dc.isTcpObfuscatedOnly() || dc.getSecret().isPresent()
+                ? obfuscated.create(dc)
+                : delegate.create(dc);
+    }
+
     /**
      * Creates new {@code Transport} for specified DC.
      *
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.util;
+
+import io.netty.buffer.ByteBuf;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.GeneralSecurityException;
+
+import static telegram4j.mtproto.util.AES256IGECipher.BLOCK_SIZE;
+import static telegram4j.mtproto.util.AES256IGECipher.initCipher;
+import static telegram4j.mtproto.util.AES256IGECipher.newCipher;
+
+/**
+ * The streaming AES-256 cipher in the CTR mode with 128-bit big-endian counter,
+ * used by obfuscated transports. Encryption and decryption are the same operation.
+ *
+ * @implNote The keystream is generated by a persistent {@code AES/ECB/NoPadding} cipher
+ * into the reusable buffer and applied to the data in place, so a
+ * stream can be processed without allocations and additional copies of the data.
+ * Instances are not thread-safe.
+ */
+public final class AES256CTRCipher {
+    private static final VarHandle LONG_VIEW_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_VIEW_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final String AES_ECB_ALGORITHM = "AES/ECB/NoPadding";
+
+    static final int KEYSTREAM_SIZE = 1024;
+
+    final Cipher baseCipher;
+    final byte[] keystream = new byte[KEYSTREAM_SIZE];
+    // the next keystream byte to use, when equals to KEYSTREAM_SIZE keystream must be refilled
+    int position = KEYSTREAM_SIZE;
+    // 128-bit counter, incremented as big-endian number
+    long counterHigh, counterLow;
+
+    /**
+     * Constructs a new cipher with given key and initial counter block.
+     *
+     * @param key The 32 byte key.
+     * @param iv The 16 byte initial counter block.
+     * @throws IllegalArgumentException if the key or iv has unexpected length.
+     */
+    public AES256CTRCipher(byte[] key, byte[] iv) {
+        if (key.length != 32) {
+            throw new IllegalArgumentException("Unexpected key length: " + key.length);
+        }
+        if (iv.length != BLOCK_SIZE) {
+            throw new IllegalArgumentException("Unexpected iv length: " + iv.length);
+        }
+
+        this.baseCipher = newCipher(AES_ECB_ALGORITHM);
+        initCipher(baseCipher, Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+        this.counterHigh = (long) LONG_VIEW_BE.get(iv, 0);
+        this.counterLow = (long) LONG_VIEW_BE.get(iv, 8);
+    }
+
+    /**
+     * Transforms readable bytes of specified buffer in place, without changing its indices.
+     * Any buffer type, including composite ones, is supported.
+     *
+     * @param data The writable buffer.
+     * @return The {@code data} buffer.
+     */
+    public ByteBuf transform(ByteBuf data) {
+        transform(data, data.readerIndex(), data.readableBytes());
+        return data;
+    }
+
+    /**
+     * Transforms specified region of the buffer in place, without changing its indices.
+     *
+     * @param data The writable buffer.
+     * @param index The start index of region.
+     * @param length The length of region.
+     */
+    public void transform(ByteBuf data, int index, int length) {
+        if (data.hasArray()) {
+            transform(data.array(), data.arrayOffset() + index, length);
+            return;
+        }
+
+        int end = index + length;
+        while (index < end) {
+            if (position == KEYSTREAM_SIZE) {
+                refill();
+            }
+
+            int count = Math.min(end - index, KEYSTREAM_SIZE - position);
+            int i = 0;
+            for (; i + Long.BYTES <= count; i += Long.BYTES) {
+                long k = (long) LONG_VIEW_LE.get(keystream, position + i);
+                data.setLongLE(index + i, data.getLongLE(index + i) ^ k);
+            }
+            for (; i < count; i++) {
+                data.setByte(index + i, data.getByte(index + i) ^ keystream[position + i]);
+            }
+
+            index += count;
+            position += count;
+        }
+    }
+
+    /**
+     * Transforms specified region of the array in place.
+     *
+     * @param data The array.
+     * @param offset The start offset of region.
+     * @param length The length of region.
+     */
+    public void transform(byte[] data, int offset, int length) {
+        int end = offset + length;
+        while (offset < end) {
+            if (position == KEYSTREAM_SIZE) {
+                refill();
+            }
+
+            int count = Math.min(end - offset, KEYSTREAM_SIZE - position);
+            int i = 0;
+            for (; i + Long.BYTES <= count; i += Long.BYTES) {
+                long k = (long) LONG_VIEW_LE.get(keystream, position + i);
+                LONG_VIEW_LE.set(data, offset + i, (long) LONG_VIEW_LE.get(data, offset + i) ^ k);
+            }
+            for (; i < count; i++) {
+                data[offset + i] ^= keystream[position + i];
+            }
+
+            offset += count;
+            position += count;
+        }
+    }
+
+    private void refill() {
+        long hi = counterHigh, lo = counterLow;
+        for (int i = 0; i < KEYSTREAM_SIZE; i += BLOCK_SIZE) {
+            LONG_VIEW_BE.set(keystream, i, hi);
+            LONG_VIEW_BE.set(keystream, i + 8, lo);
+            if (++lo == 0) {
+                hi++;
+            }
+        }
+        counterHigh = hi;
+        counterLow = lo;
+
+        try {
+            // ECB/NoPadding doesn't buffer full blocks and supports in-place transformation
+            baseCipher.update(keystream, 0, KEYSTREAM_SIZE, keystream, 0);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+        position = 0;
+    }
+}
@@ -25,23 +25,41 @@ import java.lang.invoke.VarHandle;
 import java.nio.ByteOrder;
 import java.security.GeneralSecurityException;
 
-import static telegram4j.mtproto.util.CryptoUtil.random;
 import static telegram4j.mtproto.util.CryptoUtil.toByteArray;
 
+/**
+ * The AES-256 cipher in the IGE mode, used by MTProto.
+ *
+ * @implNote The IGE chaining is done over a persistent {@code AES/ECB/NoPadding} cipher
+ * which is updated block-by-block on a reusable chunk buffer, so
+ * large payloads are processed without per-block allocations and {@code Cipher.doFinal} resets.
+ * Heap buffers are transformed directly on their backing arrays.
+ * Instances are not thread-safe.
+ */
 public final class AES256IGECipher {
-    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    // byte order is irrelevant for xor, so use native one to avoid byte swapping
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
 
     private static final String AES_ECB_ALGORITHM = "AES/ECB/NoPadding";
 
+    static final int BLOCK_SIZE = 16;
+    static final int CHUNK_SIZE = 4096;
+
     final Cipher baseCipher;
+    final byte[] chunk = new byte[CHUNK_SIZE];
+    boolean encrypt;
     ByteBuf iv;
 
+    // IGE chaining state: 'a' is applied before block cipher, 'b' after it
+    long a0, a1, b0, b1;
+
     private AES256IGECipher(Cipher baseCipher) {
         this.baseCipher = baseCipher;
     }
 
     public AES256IGECipher(boolean encrypt, byte[] key, ByteBuf iv) {
         this.baseCipher = newCipher(AES_ECB_ALGORITHM);
+        this.encrypt = encrypt;
         this.iv = iv;
 
         SecretKey secretKey = new SecretKeySpec(key, "AES");
@@ -57,109 +75,180 @@ public final class AES256IGECipher {
     }
 
     public void init(boolean encrypt, ByteBuf aesKey, ByteBuf aesIv) {
+        this.encrypt = encrypt;
         iv = aesIv;
         SecretKey secretKey = new SecretKeySpec(toByteArray(aesKey), "AES");
         initCipher(baseCipher, encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, secretKey);
     }
 
+    /**
+     * Encrypts readable bytes of specified buffer into the new buffer.
+     * Both {@code data} and initialization vector will be released after this operation.
+     *
+     * @param data The buffer with data aligned by 16 bytes.
+     * @return A new buffer with encrypted data.
+     */
     public ByteBuf encrypt(ByteBuf data) {
-        int size = data.readableBytes();
-        int blockSize = baseCipher.getBlockSize();
-        ByteBuf encrypted = data.alloc().ioBuffer(size);
-        // first 16 - input, second - output
-        byte[] buffer = new byte[blockSize + blockSize];
-
-        ByteBuf x = iv;
-        int xOffset = blockSize;
-        ByteBuf y = iv;
-        int yOffset = 0;
-        for (int i = 0, n = size/blockSize; i < n; i++) {
-            int offset = i * blockSize;
-            for (int b = 0; b < blockSize/8; b++) {
-                int d = b * 8;
-                LONG_VIEW.set(buffer, d, data.getLong(offset + d) ^ y.getLong(yOffset + d));
-            }
+        checkMode(true);
+        return process(data, data.alloc().ioBuffer(data.readableBytes()));
+    }
 
-            doFinal(baseCipher, buffer);
-            for (int b = 0; b < blockSize/8; b++) {
-                int d = b * 8;
-                LONG_VIEW.set(buffer, blockSize + d, (long)LONG_VIEW.get(buffer, blockSize + d) ^ x.getLong(xOffset + d));
-            }
+    /**
+     * Decrypts readable bytes of specified buffer into the new buffer.
+     * Both {@code data} and initialization vector will be released after this operation.
+     *
+     * @param data The buffer with data aligned by 16 bytes.
+     * @return A new buffer with decrypted data.
+     */
+    public ByteBuf decrypt(ByteBuf data) {
+        checkMode(false);
+        return process(data, data.alloc().buffer(data.readableBytes()));
+    }
+
+    /**
+     * Encrypts readable bytes of specified buffer in place, without changing its indices.
+     * Only initialization vector will be released after this operation.
+     *
+     * @param data The writable buffer with data aligned by 16 bytes.
+     * @return The {@code data} buffer.
+     */
+    public ByteBuf encryptInPlace(ByteBuf data) {
+        checkMode(true);
+        return processInPlace(data);
+    }
 
-            encrypted.writeBytes(buffer, blockSize, blockSize);
+    /**
+     * Decrypts readable bytes of specified buffer in place, without changing its indices.
+     * Only initialization vector will be released after this operation.
+     *
+     * @param data The writable buffer with data aligned by 16 bytes.
+     * @return The {@code data} buffer.
+     */
+    public ByteBuf decryptInPlace(ByteBuf data) {
+        checkMode(false);
+        return processInPlace(data);
+    }
 
-            x = data;
-            yOffset = offset;
-            y = encrypted;
-            xOffset = offset;
+    private void checkMode(boolean expected) {
+        if (encrypt != expected) {
+            throw new IllegalStateException("Cipher is initialized for " + (encrypt ? "encryption" : "decryption"));
         }
+    }
+
+    private ByteBuf process(ByteBuf data, ByteBuf result) {
+        try {
+            int size = data.readableBytes() - data.readableBytes() % BLOCK_SIZE;
+            loadIv();
 
-        data.release();
-        iv.release();
+            if (result.hasArray()) {
+                result.ensureWritable(size);
+                int index = result.writerIndex();
+                data.getBytes(data.readerIndex(), result.array(), result.arrayOffset() + index, size);
+                transform(result.array(), result.arrayOffset() + index, size);
+            } else {
+                int index = result.writerIndex();
+                result.ensureWritable(size);
+                for (int offset = 0; offset < size; offset += CHUNK_SIZE) {
+                    int length = Math.min(CHUNK_SIZE, size - offset);
+                    data.getBytes(data.readerIndex() + offset, chunk, 0, length);
+                    transform(chunk, 0, length);
+                    result.setBytes(index + offset, chunk, 0, length);
+                }
+            }
+            result.writerIndex(result.writerIndex() + size);
 
-        return encrypted;
+            return result;
+        } catch (Throwable t) {
+            result.release();
+            throw t;
+        } finally {
+            data.release();
+            iv.release();
+        }
     }
 
-    public ByteBuf decrypt(ByteBuf data) {
-        int size = data.readableBytes();
-        int blockSize = baseCipher.getBlockSize();
-        ByteBuf decrypted = data.alloc().buffer(size);
-        // first 16b - input, second 16b - output
-        byte[] buffer = new byte[blockSize + blockSize];
-
-        ByteBuf x = iv;
-        int xOffset = blockSize;
-        ByteBuf y = iv;
-        int yOffset = 0;
-
-        for (int i = 0, n = size/blockSize; i < n; i++) {
-            int offset = i * blockSize;
-
-            for (int b = 0; b < blockSize/8; b++) {
-                int d = b * 8;
-                LONG_VIEW.set(buffer, d, data.getLong(offset + d) ^ x.getLong(xOffset + d));
-            }
+    private ByteBuf processInPlace(ByteBuf data) {
+        try {
+            int size = data.readableBytes() - data.readableBytes() % BLOCK_SIZE;
+            int index = data.readerIndex();
+            loadIv();
 
-            doFinal(baseCipher, buffer);
-            for (int b = 0; b < blockSize/8; b++) {
-                int d = b * 8;
-                LONG_VIEW.set(buffer, blockSize + d, (long)LONG_VIEW.get(buffer, blockSize + d) ^ y.getLong(yOffset + d));
+            if (data.hasArray()) {
+                transform(data.array(), data.arrayOffset() + index, size);
+            } else {
+                for (int offset = 0; offset < size; offset += CHUNK_SIZE) {
+                    int length = Math.min(CHUNK_SIZE, size - offset);
+                    data.getBytes(index + offset, chunk, 0, length);
+                    transform(chunk, 0, length);
+                    data.setBytes(index + offset, chunk, 0, length);
+                }
             }
 
-            decrypted.writeBytes(buffer, blockSize, blockSize);
-
-            y = data;
-            yOffset = offset;
-            x = decrypted;
-            xOffset = offset;
+            return data;
+        } finally {
+            iv.release();
         }
+    }
 
-        data.release();
-        iv.release();
+    private void loadIv() {
+        // IGE for encryption:  c[i] = E(p[i] ^ c[i-1]) ^ p[i-1], where c[0] = iv[0:16], p[0] = iv[16:32]
+        // IGE for decryption:  p[i] = D(c[i] ^ p[i-1]) ^ c[i-1]
+        iv.getBytes(iv.readerIndex(), chunk, 0, BLOCK_SIZE + BLOCK_SIZE);
+        long c0 = (long) LONG_VIEW.get(chunk, 0);
+        long c1 = (long) LONG_VIEW.get(chunk, 8);
+        long p0 = (long) LONG_VIEW.get(chunk, 16);
+        long p1 = (long) LONG_VIEW.get(chunk, 24);
 
-        return decrypted;
+        if (encrypt) {
+            a0 = c0; a1 = c1;
+            b0 = p0; b1 = p1;
+        } else {
+            a0 = p0; a1 = p1;
+            b0 = c0; b1 = c1;
+        }
     }
 
-    static Cipher newCipher(String algorithm) {
+    private void transform(byte[] buf, int offset, int length) {
+        long a0 = this.a0, a1 = this.a1;
+        long b0 = this.b0, b1 = this.b1;
         try {
-            return Cipher.getInstance(algorithm);
-        } catch (GeneralSecurityException t) {
-            throw new RuntimeException(t);
+            for (int i = offset, end = offset + length; i < end; i += BLOCK_SIZE) {
+                long in0 = (long) LONG_VIEW.get(buf, i);
+                long in1 = (long) LONG_VIEW.get(buf, i + 8);
+
+                LONG_VIEW.set(buf, i, in0 ^ a0);
+                LONG_VIEW.set(buf, i + 8, in1 ^ a1);
+
+                // ECB/NoPadding doesn't buffer full blocks and supports in-place transformation
+                baseCipher.update(buf, i, BLOCK_SIZE, buf, i);
+
+                a0 = (long) LONG_VIEW.get(buf, i) ^ b0;
+                a1 = (long) LONG_VIEW.get(buf, i + 8) ^ b1;
+                LONG_VIEW.set(buf, i, a0);
+                LONG_VIEW.set(buf, i + 8, a1);
+
+                b0 = in0;
+                b1 = in1;
+            }
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
         }
+
+        this.a0 = a0; this.a1 = a1;
+        this.b0 = b0; this.b1 = b1;
     }
 
-    static void initCipher(Cipher cipher, int mode, SecretKey secretKey) {
+    static Cipher newCipher(String algorithm) {
         try {
-            cipher.init(mode, secretKey, random);
+            return Cipher.getInstance(algorithm);
         } catch (GeneralSecurityException t) {
             throw new RuntimeException(t);
         }
     }
 
-    static void doFinal(Cipher cipher, byte[] buffer) {
+    static void initCipher(Cipher cipher, int mode, SecretKey secretKey) {
         try {
-            int blockSize = cipher.getBlockSize();
-            cipher.doFinal(buffer, 0, blockSize, buffer, blockSize);
+            cipher.init(mode, secretKey);
         } catch (GeneralSecurityException t) {
             throw new RuntimeException(t);
         }
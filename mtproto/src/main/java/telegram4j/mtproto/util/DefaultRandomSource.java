@@ -0,0 +1,150 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.util;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import telegram4j.mtproto.internal.Preconditions;
+
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default implementation of {@link RandomSource} which holds thread-confined
+ * {@code DRBG} instances, so the event loops do not contend on the single {@link SecureRandom}.
+ * Each instance is seeded from the system entropy source
+ * and is reseeded after generating configured count of bytes.
+ * Non-secret values are generated with {@link ThreadLocalRandom}.
+ */
+public final class DefaultRandomSource implements RandomSource {
+    /** Default count of bytes after which thread-local generator will be reseeded, 1MiB. */
+    public static final long DEFAULT_RESEED_INTERVAL = 1 << 20;
+
+    private final long reseedInterval;
+    private final FastThreadLocal<State> state = new FastThreadLocal<>() {
+        @Override
+        protected State initialValue() {
+            instances.increment();
+            return new State(newGenerator());
+        }
+    };
+
+    private final LongAdder instances = new LongAdder();
+    private final LongAdder generatedBytes = new LongAdder();
+    private final LongAdder reseeds = new LongAdder();
+
+    /**
+     * Constructs a {@code DefaultRandomSource} with specified reseed interval.
+     *
+     * @param reseedInterval The count of bytes after which thread-local generator will be reseeded.
+     * @throws IllegalArgumentException if {@code reseedInterval} is not positive.
+     */
+    public DefaultRandomSource(long reseedInterval) {
+        Preconditions.requireArgument(reseedInterval > 0, "reseedInterval must be positive");
+        this.reseedInterval = reseedInterval;
+    }
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+        var s = state.get();
+        s.random.nextBytes(bytes);
+        s.account(bytes.length);
+    }
+
+    @Override
+    public long nextLong() {
+        var s = state.get();
+        long val = s.random.nextLong();
+        s.account(Long.BYTES);
+        return val;
+    }
+
+    @Override
+    public int nextFastInt(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound);
+    }
+
+    /**
+     * Gets count of thread-local generators created by this source.
+     *
+     * @return The count of thread-local generators.
+     */
+    public long instancesCount() {
+        return instances.sum();
+    }
+
+    /**
+     * Gets total count of cryptographically strong bytes generated by this source.
+     *
+     * @return The count of generated bytes.
+     */
+    public long generatedBytes() {
+        return generatedBytes.sum();
+    }
+
+    /**
+     * Gets count of generator reseeds.
+     *
+     * @return The count of generator reseeds.
+     */
+    public long reseedsCount() {
+        return reseeds.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "DefaultRandomSource{" +
+                "instances=" + instances.sum() +
+                ", generatedBytes=" + generatedBytes.sum() +
+                ", reseeds=" + reseeds.sum() +
+                '}';
+    }
+
+    static SecureRandom newGenerator() {
+        try {
+            // Entropy is requested only on instantiation and explicit reseed
+            return SecureRandom.getInstance("DRBG", DrbgParameters.instantiation(256,
+                    DrbgParameters.Capability.RESEED_ONLY, null));
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    final class State {
+        final SecureRandom random;
+        long generated;
+
+        State(SecureRandom random) {
+            this.random = random;
+        }
+
+        void account(int count) {
+            generatedBytes.add(count);
+            generated += count;
+            if (generated >= reseedInterval) {
+                generated = 0;
+                try {
+                    random.reseed();
+                    reseeds.increment();
+                } catch (UnsupportedOperationException ignored) {
+                    // fallback generator is self-seeding
+                }
+            }
+        }
+    }
+}
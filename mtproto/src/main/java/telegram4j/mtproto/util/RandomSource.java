@@ -0,0 +1,60 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.util;
+
+/**
+ * Source of randomness for MTProto clients.
+ *
+ * <p> Implementation separates cryptographically strong values, which used for
+ * nonces, session ids and message padding from cheap non-secret values,
+ * like low bits of message ids. All methods can be called concurrently
+ * from event loop threads and must not block.
+ *
+ * @see DefaultRandomSource
+ */
+public interface RandomSource {
+
+    /**
+     * Creates new default {@code RandomSource} with thread-confined DRBG instances.
+     *
+     * @return A new default {@code RandomSource}.
+     */
+    static RandomSource create() {
+        return new DefaultRandomSource(DefaultRandomSource.DEFAULT_RESEED_INTERVAL);
+    }
+
+    /**
+     * Fills specified array with cryptographically strong random bytes.
+     *
+     * @param bytes The array to fill.
+     */
+    void nextBytes(byte[] bytes);
+
+    /**
+     * Generates cryptographically strong random {@code long} value.
+     *
+     * @return The random {@code long} value.
+     */
+    long nextLong();
+
+    /**
+     * Generates non-secret random value between zero (inclusive) and {@code bound} (exclusive).
+     *
+     * @param bound The upper bound, must be positive.
+     * @return The random value in range {@code [0, bound)}.
+     */
+    int nextFastInt(int bound);
+}
@@ -29,4 +29,22 @@ class PublicRsaKeyTest {
             Assertions.assertEquals(t, e.getKey(), () -> "Incorrect tail for " + e.getValue());
         }
     }
+
+    @Test
+    void parsePem() {
+        // prod dc 1
+        String pem = """
+                -----BEGIN RSA PUBLIC KEY-----
+                MIIBCgKCAQEAwVACPi9w23mF3tBkdZz+zwrzKOaaQdr01vAbU4E1pvkfj4sqDsm6
+                lyDONS789sVoD/xCS9Y0hkkC3gtL1tSfTlgCMOOul9lcixlEKzwKENj1Yz/s7daS
+                an9tqw3bfUV/nqgbhGX81v/+7RFAEd+RwFnK7a+XYl9sluzHRyVVaTTveB2GazTw
+                Efzk2DWgkBluml8OREmvfraX3bkHZJTKX4EQSjBbbdJ2ZXIsRrYOXfaA+xayEGB+
+                8hdlLmAjbCVfaigxX0CDqWeR1yFL9kwd9P0NsZRPsmoqVwMbMu7mStFai6aIhc3n
+                Slv8kg9qv1m6XHVQY3PnEw+QQtqSIXklHwIDAQAB
+                -----END RSA PUBLIC KEY-----
+                """;
+
+        var expected = PublicRsaKeyRegister.createDefault().find(0xc3b42b026ce86b21L).orElseThrow();
+        Assertions.assertEquals(expected, PublicRsaKey.fromPem(pem));
+    }
 }
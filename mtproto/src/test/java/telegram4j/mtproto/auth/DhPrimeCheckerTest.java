@@ -0,0 +1,88 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.auth;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import telegram4j.mtproto.auth.DhPrimeChecker.PrimeStatus;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DhPrimeCheckerTest {
+
+    static ByteBuf randomPrime() {
+        byte[] b = new byte[256];
+        ThreadLocalRandom.current().nextBytes(b);
+        return Unpooled.wrappedBuffer(b);
+    }
+
+    @Test
+    void builtInPrime() {
+        var prime = Unpooled.wrappedBuffer(DhPrimeCheckerCache.builtInGoodPrime);
+        assertEquals(PrimeStatus.GOOD, DhPrimeCheckerCache.instance().lookup(prime));
+    }
+
+    @Test
+    void badPrime() {
+        var checker = DhPrimeCheckerCache.instance();
+        var prime = randomPrime();
+        assertEquals(PrimeStatus.UNKNOWN, checker.lookup(prime));
+        checker.addBadPrime(prime);
+        assertEquals(PrimeStatus.BAD, checker.lookup(prime));
+    }
+
+    @Test
+    void persistence(@TempDir Path dir) {
+        Path file = dir.resolve("primes.bin");
+        var good = randomPrime();
+        var bad = randomPrime();
+
+        var checker = FileDhPrimeChecker.load(file);
+        checker.addGoodPrime(good);
+        checker.addBadPrime(bad);
+
+        // another process shares the file
+        var other = randomPrime();
+        var replica = FileDhPrimeChecker.load(file);
+        replica.addGoodPrime(other);
+
+        var restored = FileDhPrimeChecker.load(file);
+        assertEquals(PrimeStatus.GOOD, restored.lookup(good));
+        assertEquals(PrimeStatus.BAD, restored.lookup(bad));
+        assertEquals(PrimeStatus.GOOD, restored.lookup(other));
+        assertEquals(PrimeStatus.GOOD, restored.lookup(Unpooled.wrappedBuffer(DhPrimeCheckerCache.builtInGoodPrime)));
+    }
+
+    @Test
+    void corruptedFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("primes.bin");
+        var prime = randomPrime();
+        FileDhPrimeChecker.load(file).addGoodPrime(prime);
+
+        byte[] content = Files.readAllBytes(file);
+        content[FileDhPrimeChecker.HEADER_SIZE + 3] ^= 1;
+        Files.write(file, content);
+
+        assertEquals(PrimeStatus.UNKNOWN, FileDhPrimeChecker.load(file).lookup(prime));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import telegram4j.mtproto.RpcException;
+import telegram4j.tl.mtproto.ImmutableRpcError;
+import telegram4j.tl.request.help.GetConfig;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestSchedulerTest {
+
+    @Test
+    void testTokenBucket() {
+        var limit = new DefaultRequestScheduler.RateLimit(2, Duration.ofSeconds(1));
+        var bucket = new DefaultRequestScheduler.TokenBucket(limit, 0);
+
+        assertEquals(0, bucket.delayNanos(0));
+        bucket.take();
+        bucket.take();
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), bucket.delayNanos(0));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(250), bucket.delayNanos(TimeUnit.MILLISECONDS.toNanos(250)));
+        assertEquals(0, bucket.delayNanos(TimeUnit.MILLISECONDS.toNanos(500)));
+        assertTrue(bucket.isFull(TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    @Test
+    void testLimitedFamily() {
+        var family = new DefaultRequestScheduler.Family("test",
+                new DefaultRequestScheduler.RateLimit(1, Duration.ofMillis(100)), null, null);
+        var scheduler = DefaultRequestScheduler.builder()
+                .family(family, GetConfig.ID)
+                .build();
+
+        var method = GetConfig.instance();
+        long start = System.nanoTime();
+        StepVerifier.create(scheduler.schedule(method, Mono.just(1))
+                        .then(scheduler.schedule(method, Mono.just(2))))
+                .expectNext(2)
+                .verifyComplete();
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertEquals(0, scheduler.stats().queueDepth(RequestScheduler.Priority.NORMAL));
+    }
+
+    @Test
+    void testUnlimitedMethodIsNotQueued() {
+        var scheduler = DefaultRequestScheduler.create();
+        var subscriptions = new AtomicInteger();
+        var request = Mono.fromCallable(subscriptions::incrementAndGet);
+
+        // sent on subscription without timer, so result is available synchronously
+        for (int i = 1; i <= 100; i++) {
+            assertEquals(i, scheduler.schedule(GetConfig.instance(), request).block(Duration.ZERO));
+        }
+        assertEquals(0, scheduler.stats().queueDepth(RequestScheduler.Priority.NORMAL));
+    }
+
+    @Test
+    void testUnlimitedMethodIsPausedByFloodWait() {
+        var scheduler = DefaultRequestScheduler.builder()
+                .maxFloodWait(Duration.ofSeconds(1))
+                .build();
+        var method = GetConfig.instance();
+        var attempts = new AtomicInteger();
+        var request = Mono.defer(() -> attempts.getAndIncrement() == 0
+                ? Mono.error(new RpcException("flood", ImmutableRpcError.of(420, "FLOOD_WAIT_1"), method))
+                : Mono.just(attempts.get()));
+
+        long start = System.nanoTime();
+        StepVerifier.create(scheduler.schedule(method, request))
+                .expectNext(2)
+                .verifyComplete();
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+        assertEquals(1, scheduler.stats().floodWaits());
+    }
+}
@@ -15,18 +15,27 @@
  */
 package telegram4j.mtproto.client.impl;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import reactor.test.StepVerifier;
+import reactor.util.annotation.Nullable;
 import reactor.util.concurrent.Queues;
 import telegram4j.mtproto.*;
+import telegram4j.mtproto.auth.AuthKey;
 import telegram4j.mtproto.auth.DhPrimeCheckerCache;
+import telegram4j.mtproto.client.DefaultCompressionPolicy;
 import telegram4j.mtproto.client.DefaultReconnectionStrategy;
 import telegram4j.mtproto.client.MTProtoClient;
 import telegram4j.mtproto.client.MTProtoOptions;
+import telegram4j.mtproto.client.MetricsListener;
+import telegram4j.mtproto.client.RequestScheduler;
 import telegram4j.mtproto.resource.TcpClientResources;
 import telegram4j.mtproto.store.StoreLayoutImpl;
 import telegram4j.mtproto.transport.IntermediateTransport;
+import telegram4j.mtproto.util.RandomSource;
 import telegram4j.tl.TlInfo;
 import telegram4j.tl.api.TlObject;
 import telegram4j.tl.mtproto.ImmutableMsgsAck;
@@ -50,6 +59,10 @@ public class ClientTest {
 
     @BeforeEach
     void clientInit() {
+        client = createClient(null);
+    }
+
+    static MTProtoClientImpl createClient(@Nullable Duration writeCoalescingDelay) {
         final var DC_2 = DcOptions.createDefault(false)
                 .find(DcId.Type.MAIN, 2)
                 .orElseThrow();
@@ -59,7 +72,9 @@ public class ClientTest {
                 PublicRsaKeyRegister.createDefault(),
                 DhPrimeCheckerCache.instance(),
                 new StoreLayoutImpl(Function.identity()),
-                ForkJoinPool.commonPool(), false
+                ForkJoinPool.commonPool(), false,
+                RandomSource.create(), null, MTProtoOptions.defaultHandshakeExecutor(),
+                MetricsListener.NOOP, RequestScheduler.direct()
         );
 
         final var clientOptions = new MTProtoClient.Options(
@@ -67,11 +82,11 @@ public class ClientTest {
                 ImmutableInvokeWithLayer.of(TlInfo.LAYER, ImmutableInitConnection.of(1337,
                         "N/A", "N/A", "N/A", "N/A", "N/A", "N/A", GetConfig.instance())),
                 Duration.ofSeconds(10), DefaultReconnectionStrategy.create(3, 5, Duration.ofSeconds(1)),
-                16 * 1024, List.of(),
-                Duration.ofDays(1)
+                DefaultCompressionPolicy.create(), List.of(),
+                Duration.ofDays(1), writeCoalescingDelay, 64 * 1024
         );
 
-        client = new MTProtoClientImpl(
+        return new MTProtoClientImpl(
                 null, DcId.Type.MAIN,
                 DC_2, mtprotoOptions, clientOptions);
     }
@@ -124,4 +139,67 @@ public class ClientTest {
                 .verifyErrorMatches(t -> t instanceof DiscardedRpcRequestException d
                         && d.getMethod() == GetConfig.instance());
     }
+
+    static EmbeddedChannel coalescingChannel() {
+        var client = createClient(Duration.ZERO);
+        client.authData.authKey(new AuthKey(Unpooled.wrappedBuffer(new byte[256])));
+        var encryption = new MTProtoEncryption(client, new TransportCodec(new IntermediateTransport(true)));
+        return new EmbeddedChannel(encryption);
+    }
+
+    static int readPackets(EmbeddedChannel channel) {
+        int count = 0;
+        ByteBuf packet;
+        while ((packet = channel.readOutbound()) != null) {
+            packet.release();
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    void testWriteCoalescing() {
+        var channel = coalescingChannel();
+
+        for (int i = 0; i < 3; i++) {
+            channel.write(new MTProtoClientImpl.RpcRequest(GetConfig.instance()), channel.voidPromise());
+        }
+        // batch is flushed after already queued tasks of the event loop
+        assertEquals(0, readPackets(channel));
+        channel.runPendingTasks();
+        assertEquals(1, readPackets(channel));
+
+        channel.write(new MTProtoClientImpl.RpcRequest(GetConfig.instance()), channel.voidPromise());
+        channel.runPendingTasks();
+        assertEquals(1, readPackets(channel));
+
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void testWriteCoalescingSplit() {
+        var channel = coalescingChannel();
+
+        for (int i = 0; i < MTProtoEncryption.MAX_CONTAINER_SIZE + 1; i++) {
+            channel.write(new MTProtoClientImpl.RpcRequest(GetConfig.instance()), channel.voidPromise());
+        }
+        // full batch is flushed immediately
+        assertEquals(1, readPackets(channel));
+        channel.runPendingTasks();
+        assertEquals(1, readPackets(channel));
+
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void testWriteCoalescingFlushesNonContainerizable() {
+        var channel = coalescingChannel();
+
+        var invokeWithLayer = ImmutableInvokeWithLayer.of(TlInfo.LAYER, ImmutableInitConnection.of(1337,
+                "N/A", "N/A", "N/A", "N/A", "N/A", "N/A", GetConfig.instance()));
+        channel.write(new MTProtoClientImpl.RpcRequest(invokeWithLayer), channel.voidPromise());
+        assertEquals(1, readPackets(channel));
+
+        channel.finishAndReleaseAll();
+    }
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import telegram4j.mtproto.client.CompressionPolicy;
+import telegram4j.mtproto.client.DefaultCompressionPolicy;
+import telegram4j.tl.request.help.GetConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CompressionPolicyTest {
+
+    @Test
+    void testDefaultImpl() {
+        var policy = DefaultCompressionPolicy.create();
+
+        byte[] random = new byte[64 * 1024];
+        new Random(1337).nextBytes(random);
+        assertEquals(CompressionPolicy.NO_COMPRESSION, policy.compressionLevel(GetConfig.instance(),
+                Unpooled.wrappedBuffer(random)));
+
+        ByteBuf text = Unpooled.copiedBuffer("Lorem ipsum dolor sit amet, consectetur adipiscing elit. "
+                .repeat(1024), StandardCharsets.US_ASCII);
+        assertEquals(DefaultCompressionPolicy.DEFAULT_LEVEL, policy.compressionLevel(GetConfig.instance(), text));
+
+        var excluding = DefaultCompressionPolicy.builder()
+                .excludeMethod(GetConfig.instance().identifier())
+                .build();
+        assertEquals(CompressionPolicy.NO_COMPRESSION, excluding.compressionLevel(GetConfig.instance(), text));
+    }
+}
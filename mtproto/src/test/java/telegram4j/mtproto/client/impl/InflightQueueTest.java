@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class InflightQueueTest {
+
+    @Test
+    void testRetain() {
+        var queue = new InflightQueue(4);
+        for (long i = 0; i < 6; i++) {
+            queue.add(i, i * 10);
+        }
+        // move head to check wrapping
+        queue.retain(id -> id >= 4);
+        for (long i = 6; i < 20; i++) {
+            queue.add(i, i * 10);
+        }
+
+        queue.retain(id -> id % 2 == 0);
+        assertEquals(8, queue.size());
+        for (int i = 0; i < queue.size(); i++) {
+            long expected = 4 + i * 2L;
+            assertEquals(expected, queue.id(i));
+            assertEquals(expected * 10, queue.timestamp(i));
+        }
+    }
+}
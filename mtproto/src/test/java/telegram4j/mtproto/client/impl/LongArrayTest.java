@@ -0,0 +1,40 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LongArrayTest {
+
+    @Test
+    void testPoll() {
+        var array = new LongArray(1);
+        for (long i = 0; i < 10; i++) {
+            array.add(i);
+        }
+        array.addAll(List.of(10L, 11L));
+
+        assertEquals(12, array.size());
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L), array.poll(5));
+        assertEquals(List.of(5L, 6L, 7L, 8L, 9L, 10L, 11L), array.asList());
+        assertEquals(List.of(5L, 6L, 7L, 8L, 9L, 10L, 11L), array.poll(array.size()));
+        assertEquals(0, array.size());
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+import reactor.util.annotation.Nullable;
+import telegram4j.mtproto.MTProtoException;
+import telegram4j.mtproto.auth.AuthKey;
+import telegram4j.mtproto.client.impl.MTProtoClientImpl.RequestMono;
+import telegram4j.mtproto.client.impl.MTProtoClientImpl.RpcQuery;
+import telegram4j.tl.request.auth.BindTempAuthKey;
+import telegram4j.tl.request.help.GetConfig;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TempAuthKeyTest {
+
+    static AuthKey randomKey(@Nullable Instant expiresAt) {
+        byte[] value = new byte[256];
+        ThreadLocalRandom.current().nextBytes(value);
+        return new AuthKey(Unpooled.wrappedBuffer(value), expiresAt);
+    }
+
+    static MTProtoClientImpl createClient() {
+        var client = ClientTest.createClient(null);
+        client.authData.permAuthKey(randomKey(null));
+        client.authData.authKey(randomKey(Instant.now().plus(Duration.ofDays(1))));
+        client.authData.tempAuthKeyBound(true);
+        return client;
+    }
+
+    static EmbeddedChannel createChannel(MTProtoClientImpl client) {
+        var channel = new EmbeddedChannel();
+        channel.pipeline().addLast(new MTProtoEncryption(client, new TransportCodec(client.options.transportFactory()
+                .create(client.authData.dc()))));
+        return channel;
+    }
+
+    static MTProtoEncryption encryption(EmbeddedChannel channel) {
+        return channel.pipeline().get(MTProtoEncryption.class);
+    }
+
+    static void releaseOutbound(EmbeddedChannel channel) {
+        ByteBuf packet;
+        while ((packet = channel.readOutbound()) != null) {
+            packet.release();
+        }
+    }
+
+    static void rotate(MTProtoClientImpl client, EmbeddedChannel channel) {
+        var event = new HandshakeCompleteEvent(randomKey(Instant.now().plus(Duration.ofDays(1))),
+                1337, client.authData.timeOffset());
+        // binding is not answered, so requests are held back
+        encryption(channel).rotateAuthKey(event).subscribe();
+        releaseOutbound(channel);
+    }
+
+    @Test
+    void testRotationMargin() {
+        var client = ClientTest.createClient(null);
+
+        assertEquals(Duration.ofMinutes(144), new TempAuthKeyGenerator(client, Duration.ofDays(1)).rotationMargin);
+        assertEquals(TempAuthKeyGenerator.MIN_ROTATION_MARGIN,
+                new TempAuthKeyGenerator(client, Duration.ofMinutes(5)).rotationMargin);
+        assertEquals(Duration.ofSeconds(30), new TempAuthKeyGenerator(client, Duration.ofMinutes(2)).rotationMargin);
+
+        var generator = new TempAuthKeyGenerator(client, Duration.ofDays(1));
+        assertTrue(generator.isValid(randomKey(Instant.now().plus(Duration.ofDays(1)))));
+        assertFalse(generator.isValid(randomKey(Instant.now().plus(Duration.ofHours(1)))));
+    }
+
+    @Test
+    void testDisposedGenerator() {
+        var generator = new TempAuthKeyGenerator(ClientTest.createClient(null), Duration.ofDays(1));
+        generator.dispose();
+
+        generator.prefetch();
+        assertNull(generator.next);
+        StepVerifier.create(generator.take())
+                .verifyErrorMatches(t -> t instanceof MTProtoException);
+    }
+
+    @Test
+    void testBindExpiresAt() {
+        var client = createClient();
+        client.authData.timeOffset(-42);
+        var expiresAt = Instant.ofEpochSecond(Instant.now().plus(Duration.ofDays(1)).getEpochSecond());
+        client.authData.authKey(randomKey(expiresAt));
+        var channel = createChannel(client);
+
+        encryption(channel).bindTempAuthKey().subscribe();
+        releaseOutbound(channel);
+
+        var bind = client.requests.values().stream()
+                .filter(r -> r instanceof RpcQuery q && q.method instanceof BindTempAuthKey)
+                .map(r -> (BindTempAuthKey) ((RpcQuery) r).method)
+                .findFirst()
+                .orElseThrow();
+        // expires_at is specified in the server time
+        assertEquals(expiresAt.getEpochSecond() - 42, bind.expiresAt());
+        assertEquals(client.authData.permAuthKey().id(), bind.permAuthKeyId());
+
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void testRotationKeepsInflightRequests() {
+        var client = createClient();
+        var oldKey = client.authData.authKey();
+        var channel = createChannel(client);
+
+        var inflight = new RpcQuery(GetConfig.instance(), new RequestMono(false));
+        channel.writeAndFlush(inflight);
+        releaseOutbound(channel);
+
+        rotate(client, channel);
+        assertSame(oldKey, client.authData.previousAuthKey());
+        assertNotSame(oldKey, client.authData.authKey());
+        assertTrue(client.requests.containsValue(inflight));
+        assertTrue(client.resend.isEmpty());
+
+        var delayed = new RpcQuery(GetConfig.instance(), new RequestMono(false));
+        channel.writeAndFlush(delayed);
+        assertNull(channel.readOutbound());
+        assertTrue(client.delayedUntilBind.contains(delayed));
+
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void testRequestsDelayedUntilBindAreResentOnInactive() {
+        var client = createClient();
+        var channel = createChannel(client);
+
+        rotate(client, channel);
+        var delayed = new RpcQuery(GetConfig.instance(), new RequestMono(false));
+        channel.writeAndFlush(delayed);
+        assertTrue(client.delayedUntilBind.contains(delayed));
+
+        channel.close();
+        assertTrue(client.delayedUntilBind.isEmpty());
+        assertTrue(client.resend.contains(delayed));
+
+        channel.finishAndReleaseAll();
+    }
+}
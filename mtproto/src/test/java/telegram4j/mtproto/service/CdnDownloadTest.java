@@ -0,0 +1,173 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+import telegram4j.mtproto.file.FileReferenceId;
+import telegram4j.mtproto.store.StoreLayoutImpl;
+import telegram4j.mtproto.util.AES256CTRCipher;
+import telegram4j.mtproto.util.CryptoUtil;
+import telegram4j.tl.FileHash;
+import telegram4j.tl.ImmutableCdnConfig;
+import telegram4j.tl.ImmutableFileHash;
+import telegram4j.tl.api.TlMethod;
+import telegram4j.tl.request.help.GetCdnConfig;
+import telegram4j.tl.request.upload.GetCdnFile;
+import telegram4j.tl.request.upload.GetCdnFileHashes;
+import telegram4j.tl.request.upload.GetFile;
+import telegram4j.tl.request.upload.ReuploadCdnFile;
+import telegram4j.tl.upload.BaseFile;
+import telegram4j.tl.upload.ImmutableBaseCdnFile;
+import telegram4j.tl.upload.ImmutableCdnFileReuploadNeeded;
+import telegram4j.tl.upload.ImmutableFileCdnRedirect;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class CdnDownloadTest {
+    static final int HASH_RANGE = 128 * 1024;
+    static final int SIZE = 300 * 1024;
+
+    @Test
+    void testGetFile() {
+        var cdn = new StandInCdn(false);
+
+        StepVerifier.create(cdn.uploadService.getFile(cdn.location, 0, HASH_RANGE, false)
+                        .map(BaseFile::bytes)
+                        .reduce(Unpooled.buffer(), ByteBuf::writeBytes)
+                        .map(ByteBufUtil::getBytes))
+                .assertNext(bytes -> assertArrayEquals(cdn.content, bytes))
+                .verifyComplete();
+    }
+
+    @Test
+    void testDownloadFile(@TempDir Path dir) throws IOException {
+        var cdn = new StandInCdn(false);
+        Path file = dir.resolve("file.bin");
+
+        StepVerifier.create(cdn.uploadService.downloadFile(DownloadOptions.create(cdn.location, SIZE, file)))
+                .verifyComplete();
+
+        assertArrayEquals(cdn.content, Files.readAllBytes(file));
+        assertFalse(Files.exists(dir.resolve("file.bin.part")));
+    }
+
+    @Test
+    void testHashMismatch() {
+        var cdn = new StandInCdn(true);
+
+        StepVerifier.create(cdn.uploadService.getFile(cdn.location, 0, HASH_RANGE, false))
+                .verifyErrorMessage("Hash mismatch of CDN file part at offset 0");
+    }
+
+    @Test
+    void testUnalignedGetFile() {
+        var cdn = new StandInCdn(false);
+        int limit = 64 * 1024;
+
+        StepVerifier.create(cdn.uploadService.getFile(cdn.location, limit, limit, false)
+                        .map(BaseFile::bytes)
+                        .reduce(Unpooled.buffer(), ByteBuf::writeBytes)
+                        .map(ByteBufUtil::getBytes))
+                .assertNext(bytes -> assertArrayEquals(Arrays.copyOfRange(cdn.content, limit, SIZE), bytes))
+                .verifyComplete();
+    }
+
+    @Test
+    void testUnalignedHashMismatch() {
+        var cdn = new StandInCdn(true);
+        int limit = 64 * 1024;
+
+        // Corrupted byte is out of part, but in the same range of hash
+        StepVerifier.create(cdn.uploadService.getFile(cdn.location, limit, limit, false))
+                .verifyErrorMessage("Hash mismatch of CDN file part at offset 0");
+    }
+
+    // Serves encrypted file like CDN DC and its hashes like origin DC
+    static class StandInCdn {
+        final UploadService uploadService = new UploadService(new FakeClientGroup(this::handle),
+                new StoreLayoutImpl(Function.identity()));
+        final FileReferenceId location = FakeClientGroup.documentLocation(SIZE, Unpooled.EMPTY_BUFFER);
+
+        final byte[] content = new byte[SIZE];
+        final byte[] encrypted;
+        final byte[] key = new byte[32];
+        final byte[] iv = new byte[16];
+        final ByteBuf fileToken = Unpooled.wrappedBuffer(new byte[]{1, 2, 3});
+        final List<FileHash> hashes = new ArrayList<>();
+        final AtomicBoolean reuploaded = new AtomicBoolean();
+
+        StandInCdn(boolean corrupted) {
+            CryptoUtil.random.nextBytes(content);
+            CryptoUtil.random.nextBytes(key);
+            CryptoUtil.random.nextBytes(iv);
+
+            var sha256 = CryptoUtil.createDigest("SHA-256");
+            for (int offset = 0; offset < SIZE; offset += HASH_RANGE) {
+                int limit = Math.min(HASH_RANGE, SIZE - offset);
+                sha256.update(content, offset, limit);
+                hashes.add(ImmutableFileHash.of(offset, limit, Unpooled.wrappedBuffer(sha256.digest())));
+            }
+
+            encrypted = content.clone();
+            byte[] counter = iv.clone();
+            counter[12] = counter[13] = counter[14] = counter[15] = 0;
+            new AES256CTRCipher(key, counter).transform(encrypted, 0, encrypted.length);
+            if (corrupted) {
+                encrypted[0] ^= 1;
+            }
+        }
+
+        Object handle(TlMethod<?> method) {
+            if (method instanceof GetFile) {
+                // Only the first hash is known from redirect, others are requested separately
+                return ImmutableFileCdnRedirect.of(2, fileToken, Unpooled.wrappedBuffer(key),
+                        Unpooled.wrappedBuffer(iv), hashes.subList(0, 1));
+            } else if (method instanceof GetCdnFile getCdnFile) {
+                if (!reuploaded.get()) {
+                    return ImmutableCdnFileReuploadNeeded.of(Unpooled.wrappedBuffer(new byte[]{4}));
+                }
+                int offset = (int) Math.min(getCdnFile.offset(), SIZE);
+                int limit = Math.min(getCdnFile.limit(), SIZE - offset);
+                return ImmutableBaseCdnFile.of(Unpooled.wrappedBuffer(encrypted, offset, limit));
+            } else if (method instanceof ReuploadCdnFile) {
+                reuploaded.set(true);
+                return List.of();
+            } else if (method instanceof GetCdnFileHashes getHashes) {
+                return hashes.stream()
+                        .filter(h -> h.offset() >= getHashes.offset())
+                        .toList();
+            } else if (method instanceof GetCdnConfig) {
+                return ImmutableCdnConfig.of(List.of());
+            }
+            throw new IllegalArgumentException("Unexpected method: " + method);
+        }
+    }
+}
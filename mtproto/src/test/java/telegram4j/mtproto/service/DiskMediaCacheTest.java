@@ -0,0 +1,117 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import telegram4j.mtproto.file.FileReferenceId;
+import telegram4j.mtproto.service.MediaCache.Key;
+import telegram4j.tl.storage.FileType;
+import telegram4j.tl.upload.BaseFile;
+import telegram4j.tl.upload.ImmutableBaseFile;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DiskMediaCacheTest {
+
+    static final Key STICKER = new Key(FileReferenceId.Type.DOCUMENT, -4242L, '\0', false);
+    static final Key PHOTO = new Key(FileReferenceId.Type.PHOTO, 42L, 'x', false);
+
+    static byte[] content(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    static Flux<BaseFile> parts(byte[] content, int limit) {
+        return Flux.range(0, (content.length + limit - 1) / limit)
+                .map(i -> ImmutableBaseFile.of(FileType.WEBP, 1000, Unpooled.wrappedBuffer(content,
+                        i * limit, Math.min(limit, content.length - i * limit))));
+    }
+
+    @Test
+    void testStoreAndSlice(@TempDir Path dir) {
+        var cache = DiskMediaCache.open(dir, 1024 * 1024, Schedulers.immediate());
+        byte[] content = content(10_000);
+
+        StepVerifier.create(cache.get(STICKER))
+                .verifyComplete();
+        StepVerifier.create(cache.store(STICKER, parts(content, 4096)))
+                .expectNextCount(3)
+                .verifyComplete();
+
+        StepVerifier.create(cache.get(STICKER))
+                .assertNext(entry -> {
+                    assertEquals(FileType.WEBP, entry.type());
+                    assertEquals(1000, entry.mtime());
+                    assertEquals(content.length, entry.size());
+                    assertArrayEquals(Arrays.copyOfRange(content, 1024, 9024),
+                            ByteBufUtil.getBytes(entry.slice(1024, 8000)));
+                })
+                .verifyComplete();
+
+        var stats = cache.getStats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(8000, stats.bytesSaved());
+        assertEquals(1, stats.count());
+        assertEquals(0.5, stats.hitRatio());
+    }
+
+    @Test
+    void testCancelledDownloadIsNotCached(@TempDir Path dir) {
+        var cache = DiskMediaCache.open(dir, 1024 * 1024, Schedulers.immediate());
+
+        StepVerifier.create(cache.store(STICKER, parts(content(10_000), 4096)).take(1))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        StepVerifier.create(cache.get(STICKER))
+                .verifyComplete();
+        assertEquals(0, dir.toFile().list().length);
+    }
+
+    @Test
+    void testEvictionAndRestore(@TempDir Path dir) {
+        var cache = DiskMediaCache.open(dir, 15_000, Schedulers.immediate());
+
+        cache.store(STICKER, parts(content(6000), 4096)).blockLast();
+        cache.store(PHOTO, parts(content(6000), 4096)).blockLast();
+        cache.get(STICKER).block(); // photo is now least recently used
+        cache.store(new Key(FileReferenceId.Type.CHAT_PHOTO, 1L, '\0', true), parts(content(6000), 4096)).blockLast();
+
+        assertEquals(2, cache.getStats().count());
+        StepVerifier.create(cache.get(PHOTO))
+                .verifyComplete();
+
+        var restored = DiskMediaCache.open(dir, 15_000, Schedulers.immediate());
+        assertEquals(2, restored.getStats().count());
+        StepVerifier.create(restored.get(STICKER).map(MediaCache.Entry::size))
+                .expectNext(6000L)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import telegram4j.mtproto.util.CryptoUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DocumentIndexTest {
+
+    static DocumentIndex.Key randomKey() {
+        byte[] sha256 = new byte[32];
+        ThreadLocalRandom.current().nextBytes(sha256);
+        return DocumentIndex.Key.of(Unpooled.wrappedBuffer(sha256), 1024, "image/webp");
+    }
+
+    static DocumentIndex.Entry entry(long id) {
+        return new DocumentIndex.Entry(id, ~id, Unpooled.wrappedBuffer(new byte[]{1, 2, 3}),
+                Instant.now().truncatedTo(ChronoUnit.MILLIS));
+    }
+
+    @Test
+    void persistence(@TempDir Path dir) {
+        Path file = dir.resolve("documents.bin");
+        var kept = randomKey();
+        var removed = randomKey();
+
+        var index = FileDocumentIndex.load(file);
+        index.add(kept, entry(1));
+        index.add(removed, entry(2));
+        index.remove(removed);
+        index.flush();
+
+        var restored = FileDocumentIndex.load(file);
+        assertEquals(index.lookup(kept), restored.lookup(kept));
+        assertNull(restored.lookup(removed));
+    }
+
+    @Test
+    void delayedSave(@TempDir Path dir) {
+        Path file = dir.resolve("documents.bin");
+        var key = randomKey();
+
+        var index = FileDocumentIndex.load(file, Duration.ofDays(1));
+        index.add(key, entry(1));
+        index.add(key, entry(1));
+        assertFalse(Files.exists(file));
+
+        index.flush();
+        assertEquals(index.lookup(key), FileDocumentIndex.load(file).lookup(key));
+    }
+
+    @Test
+    void corruptedFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("documents.bin");
+        var key = randomKey();
+        var index = FileDocumentIndex.load(file);
+        index.add(key, entry(1));
+        index.flush();
+
+        byte[] content = Files.readAllBytes(file);
+        content[FileDocumentIndex.HEADER_SIZE + 3] ^= 1;
+        Files.write(file, content);
+
+        assertNull(FileDocumentIndex.load(file).lookup(key));
+    }
+
+    @Test
+    void mappedFileDigest(@TempDir Path dir) throws IOException {
+        byte[] content = new byte[3 * 1024 + 100];
+        ThreadLocalRandom.current().nextBytes(content);
+        Path file = Files.write(dir.resolve("file"), content);
+
+        var digest = UploadService.digest(MappedFile.map(file, content.length, 1024), 4);
+        assertEquals(ByteBufUtil.hexDump(CryptoUtil.createDigest("SHA-256").digest(content)),
+                ByteBufUtil.hexDump(digest));
+    }
+}
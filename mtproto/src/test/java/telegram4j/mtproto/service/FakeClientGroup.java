@@ -0,0 +1,125 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBuf;
+import reactor.core.publisher.Mono;
+import telegram4j.mtproto.DataCenter;
+import telegram4j.mtproto.DcId;
+import telegram4j.mtproto.DcOptions;
+import telegram4j.mtproto.client.MTProtoClient;
+import telegram4j.mtproto.client.MTProtoClientGroup;
+import telegram4j.mtproto.client.UpdateDispatcher;
+import telegram4j.mtproto.file.Context;
+import telegram4j.mtproto.file.FileReferenceId;
+import telegram4j.tl.ImmutableBaseDocument;
+import telegram4j.tl.api.TlMethod;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Client group, all clients of which are the same main client of DC 2.
+ * Requests are answered by handler, exceptions thrown by handler are emitted as errors.
+ */
+class FakeClientGroup implements MTProtoClientGroup, MTProtoClient {
+    final DataCenter dc = DcOptions.createDefault(false)
+            .find(DcId.Type.MAIN, 2)
+            .orElseThrow();
+    final Function<TlMethod<?>, Object> handler;
+
+    FakeClientGroup(Function<TlMethod<?>, Object> handler) {
+        this.handler = handler;
+    }
+
+    static FileReferenceId documentLocation(long size, ByteBuf fileReference) {
+        return documentLocation(1, size, fileReference);
+    }
+
+    static FileReferenceId documentLocation(long documentId, long size, ByteBuf fileReference) {
+        return FileReferenceId.ofDocument(ImmutableBaseDocument.builder()
+                .id(documentId)
+                .accessHash(1)
+                .fileReference(fileReference)
+                .date(0)
+                .mimeType("application/octet-stream")
+                .size(size)
+                .dcId(2)
+                .attributes(List.of())
+                .build(), Context.noOpContext());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <R> Mono<R> send(TlMethod<? extends R> method) {
+        return Mono.fromSupplier(() -> (R) handler.apply(method));
+    }
+
+    @Override
+    public MTProtoClient main() {
+        return this;
+    }
+
+    @Override
+    public <R> Mono<R> send(DcId id, TlMethod<? extends R> method) {
+        return send(method);
+    }
+
+    @Override
+    public UpdateDispatcher updates() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Mono<Void> start() {
+        return Mono.never();
+    }
+
+    @Override
+    public Mono<MTProtoClient> getOrCreateClient(DcId id) {
+        return Mono.just(this);
+    }
+
+    @Override
+    public Mono<Void> connect() {
+        return Mono.empty();
+    }
+
+    @Override
+    public DataCenter dc() {
+        return dc;
+    }
+
+    @Override
+    public DcId.Type type() {
+        return DcId.Type.MAIN;
+    }
+
+    @Override
+    public Stats stats() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Mono<Void> close() {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> onClose() {
+        return Mono.never();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import telegram4j.mtproto.RpcException;
+import telegram4j.mtproto.file.FileReferenceId;
+import telegram4j.mtproto.file.FileReferenceRefresher;
+import telegram4j.mtproto.store.StoreLayoutImpl;
+import telegram4j.mtproto.util.CryptoUtil;
+import telegram4j.tl.InputDocumentFileLocation;
+import telegram4j.tl.api.TlMethod;
+import telegram4j.tl.mtproto.ImmutableRpcError;
+import telegram4j.tl.request.upload.GetFile;
+import telegram4j.tl.storage.FileType;
+import telegram4j.tl.upload.BaseFile;
+import telegram4j.tl.upload.ImmutableBaseFile;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileReferenceRefreshTest {
+    static final int LIMIT = 4 * 1024;
+    static final int SIZE = 6 * LIMIT + 100;
+    // Parts of the first batch are received with stale reference
+    static final int EXPIRES_AT = UploadService.MAX_INFLIGHT_REQUESTS * LIMIT;
+
+    static ByteBuf collect(List<BaseFile> parts) {
+        ByteBuf buf = Unpooled.buffer();
+        parts.forEach(part -> buf.writeBytes(part.bytes()));
+        return buf;
+    }
+
+    @Test
+    void testDownloadContinuesAfterRefresh() {
+        var stub = new StubGroup();
+        var refresher = new CountingRefresher(Mono.just(stub.fresh));
+
+        StepVerifier.create(stub.uploadService.getFile(stub.stale, 0, LIMIT, false, refresher)
+                        .collectList()
+                        .map(parts -> ByteBufUtil.getBytes(collect(parts))))
+                .assertNext(bytes -> assertArrayEquals(stub.content, bytes))
+                .verifyComplete();
+
+        assertEquals(1, refresher.calls.get());
+        // Already emitted parts are not requested again
+        assertTrue(stub.freshOffsets.contains((long) EXPIRES_AT));
+        assertTrue(stub.freshOffsets.stream().allMatch(offset -> offset >= EXPIRES_AT));
+    }
+
+    @Test
+    void testConcurrentDownloadsShareRefresh() throws Exception {
+        var stub = new StubGroup();
+        Sinks.One<FileReferenceId> refreshed = Sinks.one();
+        var refresher = new CountingRefresher(refreshed.asMono());
+
+        var first = stub.uploadService.getFile(stub.stale, 0, LIMIT, false, refresher)
+                .collectList().toFuture();
+        var second = stub.uploadService.getFile(stub.stale, 0, LIMIT, false, refresher)
+                .collectList().toFuture();
+
+        assertTrue(stub.expired.await(5, TimeUnit.SECONDS));
+        refreshed.tryEmitValue(stub.fresh).orThrow();
+
+        assertArrayEquals(stub.content, ByteBufUtil.getBytes(collect(first.get(5, TimeUnit.SECONDS))));
+        assertArrayEquals(stub.content, ByteBufUtil.getBytes(collect(second.get(5, TimeUnit.SECONDS))));
+        assertEquals(1, refresher.calls.get());
+    }
+
+    static class CountingRefresher implements FileReferenceRefresher {
+        final AtomicInteger calls = new AtomicInteger();
+        final Mono<FileReferenceId> result;
+
+        CountingRefresher(Mono<FileReferenceId> result) {
+            this.result = result;
+        }
+
+        @Override
+        public Mono<FileReferenceId> refresh(FileReferenceId fileRefId) {
+            calls.incrementAndGet();
+            return result.delayElement(Duration.ofMillis(50));
+        }
+    }
+
+    // Serves file, which reference expires after the first batch of parts
+    static class StubGroup {
+        final UploadService uploadService = new UploadService(new FakeClientGroup(this::handle),
+                new StoreLayoutImpl(Function.identity()));
+        final FileReferenceId stale = FakeClientGroup.documentLocation(SIZE, Unpooled.wrappedBuffer(new byte[]{1}));
+        final FileReferenceId fresh = FakeClientGroup.documentLocation(SIZE, Unpooled.wrappedBuffer(new byte[]{2}));
+        final byte[] content = new byte[SIZE];
+        final Queue<Long> freshOffsets = new ConcurrentLinkedQueue<>();
+        final CountDownLatch expired = new CountDownLatch(2);
+
+        StubGroup() {
+            CryptoUtil.random.nextBytes(content);
+        }
+
+        Object handle(TlMethod<?> method) {
+            if (!(method instanceof GetFile getFile)) {
+                throw new IllegalArgumentException("Unexpected method: " + method);
+            }
+
+            var location = (InputDocumentFileLocation) getFile.location();
+            boolean isFresh = location.fileReference().getByte(0) == 2;
+            if (!isFresh && getFile.offset() >= EXPIRES_AT) {
+                expired.countDown();
+                throw new RpcException("FILE_REFERENCE_EXPIRED",
+                        ImmutableRpcError.of(400, "FILE_REFERENCE_EXPIRED"), method);
+            }
+            if (isFresh) {
+                freshOffsets.add(getFile.offset());
+            }
+
+            int offset = (int) Math.min(getFile.offset(), SIZE);
+            int limit = Math.min(getFile.limit(), SIZE - offset);
+            return ImmutableBaseFile.of(FileType.PARTIAL, 0, Unpooled.wrappedBuffer(content, offset, limit));
+        }
+    }
+}
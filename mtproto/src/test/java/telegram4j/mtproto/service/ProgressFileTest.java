@@ -0,0 +1,118 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import telegram4j.mtproto.service.DownloadMono.ProgressFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static telegram4j.mtproto.service.UploadService.DOWNLOAD_CHUNK_SIZE;
+
+class ProgressFileTest {
+    static final long SIZE = 3L * DOWNLOAD_CHUNK_SIZE + 10;
+
+    static DownloadOptions options(Path file, long documentId, long size) {
+        var location = FakeClientGroup.documentLocation(documentId, size, Unpooled.EMPTY_BUFFER);
+
+        return DownloadOptions.builder()
+                .location(location)
+                .size(size)
+                .file(file)
+                .resume(true)
+                .build();
+    }
+
+    static void assertRestarted(ProgressFile progress, DownloadOptions options) throws IOException {
+        assertFalse(progress.isResumed());
+        for (int i = 0; i < options.getChunksCount(); i++) {
+            assertFalse(progress.isDone(i));
+        }
+        progress.close();
+
+        var header = ByteBuffer.wrap(Files.readAllBytes(options.getProgressFile()));
+        assertEquals(options.getSize(), header.getLong());
+        assertEquals(options.getLocation().getDocumentId(), header.getLong());
+    }
+
+    @Test
+    void testResume(@TempDir Path dir) throws IOException {
+        var options = options(dir.resolve("file.bin"), 1, SIZE);
+
+        var progress = ProgressFile.open(options);
+        assertFalse(progress.isResumed());
+        progress.mark(0);
+        progress.mark(2);
+        progress.close();
+
+        var resumed = ProgressFile.open(options);
+        assertTrue(resumed.isResumed());
+        assertTrue(resumed.isDone(0));
+        assertFalse(resumed.isDone(1));
+        assertTrue(resumed.isDone(2));
+        assertFalse(resumed.isDone(3));
+
+        resumed.mark(1);
+        resumed.mark(3);
+        resumed.delete();
+        assertFalse(Files.exists(options.getProgressFile()));
+    }
+
+    @Test
+    void testSizeMismatch(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("file.bin");
+        Files.write(file, new byte[DOWNLOAD_CHUNK_SIZE + 100]);
+
+        var progress = ProgressFile.open(options(file, 1, SIZE));
+        progress.mark(0);
+        progress.mark(1);
+        progress.close();
+
+        // Progress of other file is discarded and download starts over
+        var options = options(file, 1, SIZE + DOWNLOAD_CHUNK_SIZE);
+        assertRestarted(ProgressFile.open(options), options);
+    }
+
+    @Test
+    void testDocumentMismatch(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("file.bin");
+
+        var progress = ProgressFile.open(options(file, 1, SIZE));
+        progress.mark(0);
+        progress.close();
+
+        var options = options(file, 2, SIZE);
+        assertRestarted(ProgressFile.open(options), options);
+    }
+
+    @Test
+    void testNoProgress(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("file.bin");
+        // Existing file of the same size is not trusted without progress
+        Files.write(file, new byte[(int) SIZE]);
+
+        var options = options(file, 1, SIZE);
+        assertRestarted(ProgressFile.open(options), options);
+    }
+}
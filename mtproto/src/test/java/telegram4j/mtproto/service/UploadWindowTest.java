@@ -0,0 +1,46 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class UploadWindowTest {
+
+    @Test
+    void testAimd() {
+        var window = new UploadWindow(null);
+        assertEquals(UploadWindow.INITIAL_SIZE, window.available());
+
+        // about one window of acknowledgements increases window by one part
+        for (int i = 0; i <= UploadWindow.INITIAL_SIZE; i++) {
+            window.inflight++;
+            window.onSuccess();
+        }
+        assertEquals(UploadWindow.INITIAL_SIZE + 1, window.available());
+
+        window.inflight++;
+        window.onFailure();
+        assertEquals((UploadWindow.INITIAL_SIZE + 1) / 2, window.available());
+
+        for (int i = 0; i < 10; i++) {
+            window.inflight++;
+            window.onFailure();
+        }
+        assertEquals(1, window.available());
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import reactor.util.annotation.Nullable;
+import telegram4j.mtproto.DataCenter;
+import telegram4j.mtproto.util.AES256CTRCipher;
+import telegram4j.mtproto.util.RandomSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObfuscatedTransportTest {
+
+    static final int DC_ID = -2; // media dc 2
+
+    @Test
+    void intermediate() throws Exception {
+        roundTrip(null, new IntermediateTransport(true), IntermediateTransport::new);
+    }
+
+    @Test
+    void abridged() throws Exception {
+        roundTrip(null, new AbridgedTransport(true), AbridgedTransport::new);
+    }
+
+    @Test
+    void secret() throws Exception {
+        byte[] secret = new byte[16];
+        ThreadLocalRandom.current().nextBytes(secret);
+        roundTrip(secret, new IntermediateTransport(true), IntermediateTransport::new);
+    }
+
+    @Test
+    void paddedSecret() throws Exception {
+        byte[] secret = new byte[17];
+        ThreadLocalRandom.current().nextBytes(secret);
+        secret[0] = ObfuscatedTransport.PADDED_SECRET_PREFIX;
+
+        var dc = DataCenter.builder()
+                .type(DataCenter.Type.MEDIA)
+                .id(2)
+                .address("127.0.0.1")
+                .port(443)
+                .secret(Unpooled.wrappedBuffer(secret))
+                .build();
+        var factory = TransportFactory.obfuscated(TransportFactory.intermediate(true), RandomSource.create());
+        var transport = (ObfuscatedTransport) factory.create(dc);
+        assertInstanceOf(PaddedIntermediateTransport.class, transport.delegate());
+
+        roundTrip(Arrays.copyOfRange(secret, 1, 17), transport,
+                quickAck -> new PaddedIntermediateTransport(quickAck, RandomSource.create()));
+    }
+
+    @Test
+    void malformedSecret() {
+        assertThrows(IllegalArgumentException.class, () -> new ObfuscatedTransport(new IntermediateTransport(true),
+                DC_ID, Unpooled.wrappedBuffer(new byte[5]), RandomSource.create()));
+    }
+
+    void roundTrip(@Nullable byte[] secret, Transport inner, Function<Boolean, Transport> serverTransport) throws Exception {
+        var transport = inner instanceof ObfuscatedTransport o ? o : new ObfuscatedTransport(inner, DC_ID,
+                secret != null ? Unpooled.wrappedBuffer(secret) : null, RandomSource.create());
+
+        try (var server = new LoopbackServer(secret, serverTransport.apply(false));
+             var socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            ByteBuf cumulation = Unpooled.buffer();
+
+            write(out, transport.identifier(ByteBufAllocator.DEFAULT));
+            for (int size : new int[]{24 + 16, 24 + 16 * 40, 24 + 16 * 5000}) {
+                byte[] data = new byte[size];
+                ThreadLocalRandom.current().nextBytes(data);
+
+                write(out, transport.encode(Unpooled.directBuffer(size).writeBytes(data), false));
+
+                ByteBuf response;
+                byte[] chunk = new byte[1024];
+                while ((response = transport.tryDecode(cumulation)) == null) {
+                    int read = in.read(chunk);
+                    assertTrue(read > 0, "Unexpected end of stream");
+                    cumulation.discardReadBytes();
+                    cumulation.writeBytes(chunk, 0, read);
+                }
+
+                assertArrayEquals(data, ByteBufUtil.getBytes(response));
+                response.release();
+            }
+
+            socket.shutdownOutput();
+            assertEquals(DC_ID, server.dcId.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    static void write(OutputStream out, ByteBuf buf) throws IOException {
+        try {
+            out.write(ByteBufUtil.getBytes(buf));
+            out.flush();
+        } finally {
+            buf.release();
+        }
+    }
+
+    /** A simple blocking server which accepts one obfuscated connection and echoes received packets. */
+    static class LoopbackServer implements AutoCloseable {
+        final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        final CompletableFuture<Integer> dcId = new CompletableFuture<>();
+        final Thread thread;
+
+        LoopbackServer(@Nullable byte[] secret, Transport transport) throws IOException {
+            thread = new Thread(() -> {
+                try (Socket socket = serverSocket.accept()) {
+                    dcId.complete(serve(socket, secret, transport));
+                } catch (Throwable t) {
+                    dcId.completeExceptionally(t);
+                }
+            }, "obfuscated-loopback-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        static int serve(Socket socket, @Nullable byte[] secret, Transport transport) throws IOException {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+
+            byte[] header = in.readNBytes(ObfuscatedTransport.HEADER_SIZE);
+            assertEquals(ObfuscatedTransport.HEADER_SIZE, header.length);
+
+            byte[] reversed = new byte[ObfuscatedTransport.TAG_OFFSET - ObfuscatedTransport.KEY_OFFSET];
+            for (int i = 0; i < reversed.length; i++) {
+                reversed[i] = header[ObfuscatedTransport.TAG_OFFSET - 1 - i];
+            }
+            // client's encryption key is our decryption key and vice versa
+            AES256CTRCipher decryptor = ObfuscatedTransport.createCipher(header, ObfuscatedTransport.KEY_OFFSET, secret);
+            AES256CTRCipher encryptor = ObfuscatedTransport.createCipher(reversed, 0, secret);
+
+            decryptor.transform(header, 0, header.length);
+            ByteBuf expectedTag = transport.identifier(ByteBufAllocator.DEFAULT);
+            int tag = ObfuscatedTransport.readIntLE(header, ObfuscatedTransport.TAG_OFFSET);
+            assertEquals(expectedTag.readableBytes() == 1 ? 0xefefefef : expectedTag.getIntLE(0), tag);
+            expectedTag.release();
+            int dcId = (short) ((header[ObfuscatedTransport.DC_ID_OFFSET] & 0xff) |
+                    (header[ObfuscatedTransport.DC_ID_OFFSET + 1] & 0xff) << 8);
+
+            ByteBuf cumulation = Unpooled.buffer();
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                decryptor.transform(chunk, 0, read);
+                cumulation.writeBytes(chunk, 0, read);
+
+                ByteBuf packet;
+                while ((packet = transport.tryDecode(cumulation)) != null) {
+                    ByteBuf encoded = transport.encode(packet, false);
+                    byte[] bytes = ByteBufUtil.getBytes(encoded);
+                    encoded.release();
+
+                    encryptor.transform(bytes, 0, bytes.length);
+                    out.write(bytes);
+                    out.flush();
+                }
+                cumulation.discardReadBytes();
+            }
+            return dcId;
+        }
+
+        @Override
+        public void close() throws Exception {
+            serverSocket.close();
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import telegram4j.mtproto.util.RandomSource;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransportTest {
+
+    @Test
+    void roundTrip() {
+        var transports = List.of(new IntermediateTransport(true), new AbridgedTransport(true),
+                new PaddedIntermediateTransport(true, RandomSource.create()));
+
+        for (Transport transport : transports) {
+            // sizes of encrypted packets: 24 bytes of header and aligned by 16 data
+            for (int size : new int[]{24 + 16, 24 + 16 * 31, 24 + 16 * 32, 24 + 16 * 4096}) {
+                byte[] data = new byte[size];
+                ThreadLocalRandom.current().nextBytes(data);
+                ByteBuf payload = Unpooled.wrappedBuffer(data);
+
+                ByteBuf encoded = transport.encode(payload, false);
+                // feed by parts
+                ByteBuf wire = Unpooled.buffer();
+                wire.writeBytes(encoded, 1);
+                assertNull(transport.tryDecode(wire));
+                wire.writeBytes(encoded);
+
+                ByteBuf decoded = transport.tryDecode(wire);
+                assertNotNull(decoded, transport.getClass().getSimpleName());
+                assertEquals(Unpooled.wrappedBuffer(data), decoded, transport.getClass().getSimpleName());
+                assertFalse(wire.isReadable());
+
+                decoded.release();
+                encoded.release();
+            }
+        }
+    }
+
+    @Test
+    void abridgedQuickAck() {
+        var transport = new AbridgedTransport(true);
+
+        ByteBuf encoded = transport.encode(Unpooled.wrappedBuffer(new byte[16]), true);
+        assertEquals(0x80 | 4, encoded.getUnsignedByte(0));
+        encoded.release();
+
+        int token = 0x8badf00d;
+        ByteBuf decoded = transport.tryDecode(Unpooled.buffer().writeInt(token));
+        assertNotNull(decoded);
+        assertEquals(token, decoded.readIntLE());
+        decoded.release();
+    }
+}
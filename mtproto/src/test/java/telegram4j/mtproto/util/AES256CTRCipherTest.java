@@ -0,0 +1,83 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class AES256CTRCipherTest {
+
+    @Test
+    void matchesReference() throws Exception {
+        var rnd = new Random(42);
+        byte[] key = new byte[32];
+        byte[] iv = new byte[16];
+        rnd.nextBytes(key);
+        rnd.nextBytes(iv);
+        // check carry to the high half of counter
+        for (int i = 8; i < 16; i++) {
+            iv[i] = (byte) 0xff;
+        }
+
+        byte[] data = new byte[20000];
+        rnd.nextBytes(data);
+
+        var reference = Cipher.getInstance("AES/CTR/NoPadding");
+        reference.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        byte[] expected = reference.doFinal(data);
+
+        // heap, direct and composite buffers with chunks not aligned to block size
+        ByteBuf[] buffers = {
+                Unpooled.buffer(),
+                Unpooled.directBuffer(),
+                Unpooled.compositeBuffer()
+        };
+        for (ByteBuf buf : buffers) {
+            var cipher = new AES256CTRCipher(key, iv);
+            int offset = 0;
+            while (offset < data.length) {
+                int length = Math.min(data.length - offset, 1 + rnd.nextInt(3000));
+                ByteBuf chunk = Unpooled.directBuffer(length).writeBytes(data, offset, length);
+                cipher.transform(chunk);
+
+                if (buf instanceof CompositeByteBuf c) {
+                    c.addComponent(true, chunk);
+                } else {
+                    buf.writeBytes(chunk);
+                    chunk.release();
+                }
+                offset += length;
+            }
+
+            assertArrayEquals(expected, ByteBufUtil.getBytes(buf));
+
+            var decryptor = new AES256CTRCipher(key, iv);
+            decryptor.transform(buf);
+            assertArrayEquals(data, ByteBufUtil.getBytes(buf));
+            buf.release();
+        }
+    }
+}
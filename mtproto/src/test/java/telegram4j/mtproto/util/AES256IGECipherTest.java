@@ -0,0 +1,114 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class AES256IGECipherTest {
+
+    static final int[] SIZES = {16, 4096, 4096 + 16, 40000};
+
+    @Test
+    void matchesReference() throws Exception {
+        var rnd = new Random(42);
+        byte[] key = new byte[32];
+        byte[] iv = new byte[32];
+        rnd.nextBytes(key);
+        rnd.nextBytes(iv);
+
+        var cipher = AES256IGECipher.create();
+        for (int size : SIZES) {
+            byte[] data = new byte[size];
+            rnd.nextBytes(data);
+            byte[] expected = reference(key, iv, data);
+
+            cipher.init(true, Unpooled.wrappedBuffer(key), Unpooled.wrappedBuffer(iv));
+            ByteBuf encrypted = cipher.encrypt(Unpooled.directBuffer(size).writeBytes(data));
+            assertArrayEquals(expected, ByteBufUtil.getBytes(encrypted));
+
+            cipher.init(false, Unpooled.wrappedBuffer(key), Unpooled.wrappedBuffer(iv));
+            ByteBuf decrypted = cipher.decrypt(encrypted);
+            assertArrayEquals(data, ByteBufUtil.getBytes(decrypted));
+            decrypted.release();
+        }
+    }
+
+    @Test
+    void inPlace() throws Exception {
+        var rnd = new Random(1337);
+        byte[] key = new byte[32];
+        byte[] iv = new byte[32];
+        rnd.nextBytes(key);
+        rnd.nextBytes(iv);
+
+        var cipher = AES256IGECipher.create();
+        for (int size : SIZES) {
+            byte[] data = new byte[size];
+            rnd.nextBytes(data);
+            byte[] expected = reference(key, iv, data);
+
+            for (ByteBuf buf : new ByteBuf[]{Unpooled.buffer(size), Unpooled.directBuffer(size)}) {
+                buf.writeBytes(data);
+
+                cipher.init(true, Unpooled.wrappedBuffer(key), Unpooled.wrappedBuffer(iv));
+                cipher.encryptInPlace(buf);
+                assertArrayEquals(expected, ByteBufUtil.getBytes(buf));
+
+                cipher.init(false, Unpooled.wrappedBuffer(key), Unpooled.wrappedBuffer(iv));
+                cipher.decryptInPlace(buf);
+                assertArrayEquals(data, ByteBufUtil.getBytes(buf));
+                buf.release();
+            }
+        }
+    }
+
+    // straightforward IGE encryption with a single block per Cipher.doFinal()
+    static byte[] reference(byte[] key, byte[] iv, byte[] data) throws Exception {
+        var cipher = Cipher.getInstance("AES/ECB/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+
+        byte[] result = new byte[data.length];
+        byte[] y = Arrays.copyOfRange(iv, 0, 16);
+        byte[] x = Arrays.copyOfRange(iv, 16, 32);
+        for (int i = 0; i < data.length; i += 16) {
+            byte[] block = Arrays.copyOfRange(data, i, i + 16);
+            byte[] tmp = new byte[16];
+            for (int j = 0; j < 16; j++) {
+                tmp[j] = (byte) (block[j] ^ y[j]);
+            }
+
+            byte[] out = cipher.doFinal(tmp);
+            for (int j = 0; j < 16; j++) {
+                out[j] ^= x[j];
+            }
+
+            System.arraycopy(out, 0, result, i, 16);
+            x = block;
+            y = out;
+        }
+        return result;
+    }
+}